@@ -0,0 +1,41 @@
+package edu.curtin.metrotik;
+
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Helpers shared by the benchmarks. The figures they measure depend on the
+ * machine and on whatever else it is doing, so they are reported rather than
+ * asserted, and can be compared between runs.
+ *
+ * @author Kyer Potts
+ */
+public final class Benchmarks {
+  private static final Logger LOGGER = Logger.getLogger(Benchmarks.class.getName());
+
+  private Benchmarks() {
+  }
+
+  /**
+   * Reports a figure measured by a benchmark.
+   *
+   * @param message the figure, formatted for reading.
+   */
+  public static void report(Supplier<String> message) {
+    LOGGER.info(message);
+  }
+
+  /**
+   * Accessor for the heap in use, once garbage has been collected. Collection
+   * is requested several times, as the JVM is free to ignore any one request.
+   *
+   * @return the heap in use, in bytes.
+   */
+  public static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
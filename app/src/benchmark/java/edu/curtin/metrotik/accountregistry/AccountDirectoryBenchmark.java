@@ -0,0 +1,144 @@
+package edu.curtin.metrotik.accountregistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import edu.curtin.metrotik.Benchmarks;
+import edu.curtin.metrotik.ConcurrentRunner;
+import edu.curtin.metrotik.tickethistory.TicketHistoryLog;
+import edu.curtin.metrotik.useraccounts.UserAccount;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Measures the memory the account directory takes for each account, against
+ * a pair of concurrent hash maps holding the same two indexes, and the time
+ * taken to look accounts up by ID and by email from one thread and from
+ * several. Every lookup is checked to find the right account.
+ *
+ * @author Kyer Potts
+ */
+public class AccountDirectoryBenchmark {
+  private static final int ACCOUNTS = 200_000;
+  private static final int LOOKUPS_PER_THREAD = 1_000_000;
+  private static final int LOOKUP_THREADS = 4;
+
+  private TicketHistoryLog ticketHistory;
+  private List<UserAccount> accounts;
+
+  @Before
+  public void createAccounts() {
+    // The accounts share one history, so that each is no larger than it
+    // needs to be for the directory to hold it.
+    ticketHistory = new TicketHistoryLog();
+    accounts = new ArrayList<>(ACCOUNTS);
+    for (int id = 0; id < ACCOUNTS; id++) {
+      accounts.add(new UserAccount(id, "Rider", String.valueOf(id), emailOf(id),
+          ticketHistory));
+    }
+  }
+
+  @After
+  public void closeTicketHistory() {
+    ticketHistory.close();
+  }
+
+  @Test
+  public void memoryPerAccount() {
+    long before = Benchmarks.usedHeap();
+    AccountDirectory directory = new AccountDirectory();
+    for (UserAccount account : accounts) {
+      directory.add(account);
+    }
+    double directoryBytes = (double) (Benchmarks.usedHeap() - before) / ACCOUNTS;
+    assertEquals(ACCOUNTS, directory.size());
+
+    before = Benchmarks.usedHeap();
+    Map<Integer, UserAccount> byID = new ConcurrentHashMap<>();
+    Map<String, Integer> byEmail = new ConcurrentHashMap<>();
+    for (UserAccount account : accounts) {
+      byID.put(account.getAccountID(), account);
+      byEmail.put(account.getEmail(), account.getAccountID());
+    }
+    double mapBytes = (double) (Benchmarks.usedHeap() - before) / ACCOUNTS;
+    assertEquals(ACCOUNTS, byID.size());
+    assertEquals(ACCOUNTS, byEmail.size());
+
+    Benchmarks.report(() -> String.format(
+        "Memory per account: directory %.1f B, hash maps %.1f B", directoryBytes, mapBytes));
+    // The directory must still be reachable when the heap is measured.
+    assertSame(accounts.get(0), directory.get(0));
+  }
+
+  @Test
+  public void lookupLatency()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    AccountDirectory directory = new AccountDirectory();
+    for (UserAccount account : accounts) {
+      directory.add(account);
+    }
+    String[] emails = new String[ACCOUNTS];
+    for (int id = 0; id < ACCOUNTS; id++) {
+      emails[id] = emailOf(id);
+    }
+    // The first runs warm up the JIT, and are not reported.
+    timeLookups(directory, emails, 1);
+    for (int threads : new int[] {1, LOOKUP_THREADS}) {
+      double[] nanos = timeLookups(directory, emails, threads);
+      Benchmarks.report(() -> String.format(
+          "%d threads: get(id) %.1f ns, findAccountID(email) %.1f ns per lookup",
+          threads, nanos[0], nanos[1]));
+    }
+  }
+
+  /**
+   * Looks up every account in turn by ID, and then by email, from the given
+   * number of threads at once.
+   *
+   * @return the mean time of a lookup by ID and by email, in nanoseconds,
+   *         across every thread.
+   */
+  private double[] timeLookups(AccountDirectory directory, String[] emails, int threads)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    long idNanos = runLookups(threads, first -> {
+      for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+        int id = (first + i) % ACCOUNTS;
+        assertSame(accounts.get(id), directory.get(id));
+      }
+    });
+    long emailNanos = runLookups(threads, first -> {
+      for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+        int id = (first + i) % ACCOUNTS;
+        assertEquals(id, directory.findAccountID(emails[id]));
+      }
+    });
+    long lookups = (long) threads * LOOKUPS_PER_THREAD;
+    return new double[] {(double) idNanos / lookups, (double) emailNanos / lookups};
+  }
+
+  private static long runLookups(int threads, Lookups lookups)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    // Each thread starts at a different account.
+    return ConcurrentRunner.runTogether(threads,
+        thread -> lookups.run(thread * (ACCOUNTS / threads)));
+  }
+
+  private static String emailOf(int id) {
+    return "rider" + id + "@metrotik.com.au";
+  }
+
+  /**
+   * The lookups made by a single thread.
+   */
+  @FunctionalInterface
+  private interface Lookups {
+    void run(int firstAccountID);
+  }
+}
@@ -0,0 +1,144 @@
+package edu.curtin.metrotik.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.curtin.metrotik.Benchmarks;
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.useraccounts.AccountEvent;
+import edu.curtin.metrotik.useraccounts.AccountEventCode;
+import edu.curtin.metrotik.useraccounts.AccountStatus;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import org.junit.Test;
+
+/**
+ * Compares the binary codecs with the two other ways a ticket or an account
+ * event can be written out: its toString, and Java serialization. Neither
+ * tickets nor events are Serializable, so serialization is measured on an
+ * array of the same fields, which is the least it could cost. Each approach
+ * is checked to round trip, and the time and size of each are reported.
+ *
+ * @author Kyer Potts
+ */
+public class CodecBenchmark {
+  private static final int ITERATIONS = 200_000;
+  private static final int SERIALIZED_ITERATIONS = 10_000;
+
+  private final TimedTicket ticket = new TimedTicket(48_213L,
+      LocalDateTime.of(2024, 3, 14, 8, 30), 1_710_405_000_000L);
+  private final AccountEvent event = new AccountEvent(18490,
+      AccountEventCode.DEBIT_SUCCEEDED, 1500, AccountStatus.GOOD_STANDING,
+      AccountStatus.GOOD_STANDING);
+
+  @Test
+  public void timedTicketRoundTrip() {
+    ByteBuffer buffer = ByteBuffer.allocate(TicketCodec.RECORD_SIZE);
+    TicketCodec.encodeTimedTicket(buffer, 0, ticket);
+    TimedTicket decoded = TicketCodec.decodeTimedTicket(buffer, 0);
+    assertEquals(ticket.getTicketID(), decoded.getTicketID());
+    assertEquals(ticket.getPurchaseTimeDate(), decoded.getPurchaseTimeDate());
+    assertEquals(ticket.getValidFromMillis(), decoded.getValidFromMillis());
+    assertEquals(ticket.getValidToMillis(), decoded.getValidToMillis());
+
+    double codecNanos = nanosPerOperation(ITERATIONS, () -> {
+      TicketCodec.encodeTimedTicket(buffer, 0, ticket);
+      return TicketCodec.decodeTimedTicket(buffer, 0).getTicketID();
+    });
+    double toStringNanos = nanosPerOperation(ITERATIONS, () -> ticket.toString().length());
+    Object[] fields = {ticket.getTicketID(), ticket.getPurchaseTimeDate(),
+        ticket.getValidFromMillis(), ticket.getValidToMillis()};
+    byte[] serialized = serialize(fields);
+    assertArrayEquals(fields, deserialize(serialized));
+    double serializedNanos = nanosPerOperation(SERIALIZED_ITERATIONS,
+        () -> deserialize(serialize(fields)).length);
+
+    Benchmarks.report(() -> String.format(
+        "Timed ticket: codec %.1f ns (%d B), toString %.1f ns, serialization %.1f ns (%d B)",
+        codecNanos, TicketCodec.RECORD_SIZE, toStringNanos, serializedNanos, serialized.length));
+  }
+
+  @Test
+  public void accountEventRoundTrip() {
+    ByteBuffer buffer = ByteBuffer.allocate(AccountEventCodec.RECORD_SIZE);
+    AccountEventCodec.encode(buffer, 0, event);
+    AccountEvent decoded = AccountEventCodec.decode(buffer, 0);
+    assertEquals(event.getAccountID(), decoded.getAccountID());
+    assertEquals(event.getCode(), decoded.getCode());
+    assertEquals(event.getAmount(), decoded.getAmount());
+    assertEquals(event.getOldStatus(), decoded.getOldStatus());
+    assertEquals(event.getNewStatus(), decoded.getNewStatus());
+
+    double codecNanos = nanosPerOperation(ITERATIONS, () -> {
+      AccountEventCodec.encode(buffer, 0, event);
+      return AccountEventCodec.decode(buffer, 0).getAmount();
+    });
+    double toStringNanos = nanosPerOperation(ITERATIONS, () -> event.toString().length());
+    Object[] fields = {event.getAccountID(), event.getCode(), event.getAmount(),
+        event.getOldStatus(), event.getNewStatus()};
+    byte[] serialized = serialize(fields);
+    assertArrayEquals(fields, deserialize(serialized));
+    double serializedNanos = nanosPerOperation(SERIALIZED_ITERATIONS,
+        () -> deserialize(serialize(fields)).length);
+
+    Benchmarks.report(() -> String.format(
+        "Account event: codec %.1f ns (%d B), toString %.1f ns, serialization %.1f ns (%d B)",
+        codecNanos, AccountEventCodec.RECORD_SIZE, toStringNanos, serializedNanos,
+        serialized.length));
+  }
+
+  /**
+   * Times an operation once the JIT has warmed up on a quarter as many runs,
+   * summing its results so that the work cannot be optimised away.
+   *
+   * @return the mean time of the operation, in nanoseconds.
+   */
+  private static double nanosPerOperation(int iterations, Operation operation) {
+    long sink = 0;
+    for (int i = 0; i < iterations / 4; i++) {
+      sink += operation.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      sink += operation.run();
+    }
+    long elapsed = System.nanoTime() - start;
+    assertTrue(sink != 0);
+    return (double) elapsed / iterations;
+  }
+
+  private static byte[] serialize(Object[] fields) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(fields);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object[] deserialize(byte[] bytes) {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (Object[]) in.readObject();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Serialized fields could not be read", e);
+    }
+  }
+
+  /**
+   * An operation being timed, returning a value derived from its result.
+   */
+  @FunctionalInterface
+  private interface Operation {
+    long run();
+  }
+}
@@ -0,0 +1,86 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.curtin.metrotik.Benchmarks;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+/**
+ * Compares the columnar zone ticket chain with the hash chain it was written
+ * to replace, for the heap each ticket takes and the time taken to travel a
+ * journey that walks every ticket in the chain. Both chains are checked to
+ * hold every ticket and to pay for the journey in the same way.
+ *
+ * @author Kyer Potts
+ */
+public class ColumnarZoneTicketChainBenchmark {
+  private static final int TICKETS = 200_000;
+  private static final int ROUNDS = 3;
+
+  @Test
+  public void heapPerTicket() {
+    double hashBytes = heapPerTicket(ZoneTicketChain::new);
+    double columnarBytes = heapPerTicket(ColumnarZoneTicketChain::new);
+    Benchmarks.report(() -> String.format(
+        "Heap per ticket: hash chain %.1f B, columnar chain %.1f B", hashBytes, columnarBytes));
+  }
+
+  @Test
+  public void journeyOverEveryTicket() {
+    long hashNanos = Long.MAX_VALUE;
+    long columnarNanos = Long.MAX_VALUE;
+    // The best of several rounds is taken, once the JIT has warmed up.
+    for (int round = 0; round < ROUNDS; round++) {
+      hashNanos = Math.min(hashNanos, timeFullJourney(new ZoneTicketChain()));
+      columnarNanos = Math.min(columnarNanos, timeFullJourney(new ColumnarZoneTicketChain()));
+    }
+    double hashMillis = hashNanos / 1e6;
+    double columnarMillis = columnarNanos / 1e6;
+    Benchmarks.report(() -> String.format(
+        "Journey over %d tickets: hash chain %.1f ms, columnar chain %.1f ms",
+        TICKETS, hashMillis, columnarMillis));
+  }
+
+  private static long timeFullJourney(TicketChain<ZoneTicket> chain) {
+    long allocated = fill(chain);
+    int zones = (int) allocated;
+    TravelReceipt receipt = new TravelReceipt(zones);
+    long start = System.nanoTime();
+    int paid = chain.travelZones(zones, System.currentTimeMillis(), receipt);
+    long elapsed = System.nanoTime() - start;
+    assertEquals(zones, paid);
+    assertEquals(TICKETS, receipt.getPayments().size());
+    assertTrue(chain.isEmpty());
+    return elapsed;
+  }
+
+  private static double heapPerTicket(Supplier<TicketChain<ZoneTicket>> chains) {
+    long before = Benchmarks.usedHeap();
+    TicketChain<ZoneTicket> chain = chains.get();
+    fill(chain);
+    long after = Benchmarks.usedHeap();
+    // The chain must still be reachable when the heap is measured.
+    assertEquals(TICKETS, chain.getTickets().size());
+    return (double) (after - before) / TICKETS;
+  }
+
+  /**
+   * Fills a chain with tickets of one to three zones each.
+   *
+   * @return the total zones allocated.
+   */
+  private static long fill(TicketChain<ZoneTicket> chain) {
+    LocalDateTime purchased = LocalDateTime.now();
+    long allocated = 0;
+    for (int id = 1; id <= TICKETS; id++) {
+      int zones = id % 3 + 1;
+      chain.addTicket(new ZoneTicket(id, purchased, zones));
+      allocated += zones;
+    }
+    return allocated;
+  }
+}
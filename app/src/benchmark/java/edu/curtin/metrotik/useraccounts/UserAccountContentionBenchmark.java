@@ -0,0 +1,78 @@
+package edu.curtin.metrotik.useraccounts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.curtin.metrotik.Benchmarks;
+import edu.curtin.metrotik.ConcurrentRunner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+
+/**
+ * Measures how balance updates on a single account scale as more threads
+ * contend for it. Each thread runs the same mix of credits, debits, and holds
+ * that are captured or released, so the final balance is known exactly. The
+ * benchmark checks that no update was lost and no funds were left held, and
+ * reports the throughput at each thread count.
+ *
+ * @author Kyer Potts
+ */
+public class UserAccountContentionBenchmark {
+  private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+  private static final int CYCLES_PER_THREAD = 20_000;
+  // Each cycle is a credit, a debit, and two holds, one captured and one
+  // released, which comes to six requests.
+  private static final int REQUESTS_PER_CYCLE = 6;
+  private static final long OPENING_FUNDS = 1_000_000;
+  private static final long PRICE = 100;
+
+  @Test
+  public void balanceUpdatesUnderContention()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    // The first run warms up the JIT, and is not reported.
+    runCycles(THREAD_COUNTS[THREAD_COUNTS.length - 1]);
+    for (int threads : THREAD_COUNTS) {
+      long elapsed = runCycles(threads);
+      long requests = (long) threads * CYCLES_PER_THREAD * REQUESTS_PER_CYCLE;
+      double perSecond = requests * 1e9 / elapsed;
+      double nanosPerRequest = (double) elapsed / requests;
+      Benchmarks.report(() -> String.format("%d threads: %.2fM requests/s, %.0f ns each",
+          threads, perSecond / 1e6, nanosPerRequest));
+    }
+  }
+
+  /**
+   * Runs the cycles on a new account from the given number of threads at
+   * once, and checks the balance they leave.
+   *
+   * @return the time taken, in nanoseconds.
+   */
+  private static long runCycles(int threads)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    UserAccount account = new UserAccount(1, "Jimmy", "Barnes", "jimmy.barnes@yahoo.com");
+    assertTrue(account.creditFunds(OPENING_FUNDS));
+    long elapsed = ConcurrentRunner.runTogether(threads, thread -> {
+      for (int cycle = 0; cycle < CYCLES_PER_THREAD; cycle++) {
+        runCycle(account);
+      }
+    });
+    AccountBalance balance = account.getBalance();
+    // Every cycle leaves the account one price better off.
+    assertEquals(OPENING_FUNDS + (long) threads * CYCLES_PER_THREAD * PRICE, balance.getFunds());
+    assertEquals(0, balance.getHeld());
+    assertEquals(AccountStatus.GOOD_STANDING, balance.getState().getAccountStatus());
+    return elapsed;
+  }
+
+  private static void runCycle(UserAccount account) {
+    assertTrue(account.creditFunds(PRICE * 3));
+    assertTrue(account.debitFunds(PRICE));
+    UserAccount.FundsHold captured = account.holdFunds(PRICE);
+    UserAccount.FundsHold released = account.holdFunds(PRICE);
+    assertTrue(captured.isHeld());
+    assertTrue(released.isHeld());
+    account.captureFunds(captured);
+    account.releaseFunds(released);
+  }
+}
@@ -7,35 +7,209 @@
  */
 package edu.curtin.metrotik;
 
+import edu.curtin.metrotik.accountregistry.AccountDirectory;
+import edu.curtin.metrotik.accountregistry.AccountRegistry;
+import edu.curtin.metrotik.accountregistry.AccountSession;
 import edu.curtin.metrotik.controller.MainController;
+import edu.curtin.metrotik.eventbus.BlockingWaitStrategy;
+import edu.curtin.metrotik.eventbus.BusySpinWaitStrategy;
+import edu.curtin.metrotik.eventbus.EventBus;
+import edu.curtin.metrotik.eventbus.ObserverEventHandler;
+import edu.curtin.metrotik.eventbus.SleepingWaitStrategy;
+import edu.curtin.metrotik.eventbus.WaitStrategy;
+import edu.curtin.metrotik.eventbus.YieldingWaitStrategy;
+import edu.curtin.metrotik.journal.JournalCheckpointer;
+import edu.curtin.metrotik.journal.JournalSnapshot;
+import edu.curtin.metrotik.journal.JournalledTicketIDSource;
+import edu.curtin.metrotik.journal.RecoveredState;
+import edu.curtin.metrotik.journal.TransactionJournal;
 import edu.curtin.metrotik.monorailsimulator.MonorailSimulator;
-import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.persistence.MappedTicketStore;
+import edu.curtin.metrotik.persistence.PersistentTimedTicketChain;
+import edu.curtin.metrotik.ticketing.AtomicTicketIDSource;
 import edu.curtin.metrotik.ticketing.TicketFactory;
+import edu.curtin.metrotik.ticketing.TicketObserver;
+import edu.curtin.metrotik.ticketing.TicketIDSequence;
+import edu.curtin.metrotik.ticketing.TicketIDSource;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import edu.curtin.metrotik.tickethistory.TicketHistoryLog;
+import edu.curtin.metrotik.ticketingsystem.ColumnarZoneTicketChain;
+import edu.curtin.metrotik.ticketingsystem.ConcurrentZoneTicketChain;
+import edu.curtin.metrotik.ticketingsystem.HeapZoneTicketColumns;
 import edu.curtin.metrotik.ticketingsystem.TicketChain;
+import edu.curtin.metrotik.ticketingsystem.TicketExpiryWheel;
+import edu.curtin.metrotik.ticketingsystem.TicketListenerList;
 import edu.curtin.metrotik.ticketingsystem.TicketManager;
+import edu.curtin.metrotik.ticketingsystem.TimedTicketChain;
+import edu.curtin.metrotik.ticketingsystem.ZoneTicketChain;
+import edu.curtin.metrotik.useraccounts.AccountStateObserver;
+import edu.curtin.metrotik.useraccounts.AccountTransactionObserver;
+import edu.curtin.metrotik.useraccounts.Money;
+import edu.curtin.metrotik.useraccounts.StripedBalance;
 import edu.curtin.metrotik.useraccounts.UserAccount;
 import edu.curtin.metrotik.userinterface.AccountDetails;
 import edu.curtin.metrotik.userinterface.CurrentStation;
 import edu.curtin.metrotik.userinterface.Menu;
 import edu.curtin.metrotik.userinterface.NotificationHandler;
+import edu.curtin.metrotik.userinterface.OverflowPolicy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class App {
     private static final Logger LOGGER = Logger.getLogger(App.class.getName());
+    private static final int ACCOUNT_ID = 18490;
+    private static final int EVENT_BUS_SIZE = 1024;
+    private static final int NOTIFICATION_CAPACITY = 1024;
+    // Each stripe of a striped balance is granted enough for a few zone
+    // tickets at a time.
+    private static final long STRIPE_BUDGET = Money.ofDollars(20);
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 60;
+    private static final String DEFAULT_HISTORY_DIR = "ticket-history";
 
     public static void main(String[] args) {
-        // Hard coded some values into the user account. The account will be reset
-        // every time the program is run.
-        UserAccount userAccount = new UserAccount(18490, "Jimmy", "Barnes", "jimmy.barnes@yahoo.com");
-        NotificationHandler notificationHandler = new NotificationHandler();
-        TicketFactory ticketFactory = new TicketFactory();
-        TicketManager ticketManager = instantiateTicketManager();
+        // Older purchase history is spilled to files in the ticket-history
+        // directory, or in another directory by running with
+        // -Dmetrotik.historyDir=<dir>, so that history counts and queries
+        // always cover every purchase.
+        String historyDir = System.getProperty("metrotik.historyDir", DEFAULT_HISTORY_DIR);
+        // Accounts and tickets can be made durable by running with
+        // -Dmetrotik.journal=<file>, in which case every change is written to
+        // the journal before it is acknowledged, and the journal is replayed on
+        // the next run. Changes made at the same moment share a single fsync,
+        // and -Dmetrotik.journalWindowMicros=<micros> holds each group open for
+        // longer to gather more changes into it.
+        String journalPath = System.getProperty("metrotik.journal");
+        long journalWindowNanos = TimeUnit.MICROSECONDS.toNanos(
+                Long.getLong("metrotik.journalWindowMicros", 0));
+        try (TicketHistoryLog ticketHistory = new TicketHistoryLog(Paths.get(historyDir));
+                TransactionJournal journal = journalPath == null ? null
+                        : new TransactionJournal(Paths.get(journalPath), journalWindowNanos)) {
+            // Tickets can optionally be kept in a memory mapped file between runs by
+            // running with -Dmetrotik.ticketStore=<file>.
+            String storePath = System.getProperty("metrotik.ticketStore");
+            if (storePath == null) {
+                startApplication(null, ticketHistory, journal);
+            } else {
+                try (MappedTicketStore ticketStore = new MappedTicketStore(Paths.get(storePath))) {
+                    startApplication(ticketStore, ticketHistory, journal);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recovers the journal, if there is one, starts the event bus, if there is
+     * one, and runs the program until the user exits.
+     *
+     * @param ticketStore   the store that tickets persist to, or null if
+     *                      tickets should not persist between runs.
+     * @param ticketHistory the log that every account records its purchases
+     *                      in.
+     * @param journal       the journal that changes are made durable in, or
+     *                      null if nothing persists between runs.
+     */
+    private static void startApplication(MappedTicketStore ticketStore,
+            TicketHistoryLog ticketHistory, TransactionJournal journal) {
+        NotificationHandler notificationHandler = new NotificationHandler(NOTIFICATION_CAPACITY,
+                notificationOverflowPolicy());
+        // Every component reads the time from this clock. A fixed or offset
+        // clock can be substituted here to run simulations.
+        Clock clock = Clock.systemDefaultZone();
+        RecoveredState recovered = new RecoveredState();
+        JournalCheckpointer checkpointer = recoverJournal(journal, recovered, clock);
+        try (EventBus eventBus = createEventBus(notificationHandler)) {
+            runApplication(ticketStore, ticketHistory, journal, recovered, notificationHandler,
+                    eventBus, clock);
+        } finally {
+            // A last snapshot is taken on exit, so the next run starts without
+            // replaying anything.
+            if (checkpointer != null) {
+                checkpointer.close();
+            }
+        }
+        // Closing the bus delivers any events still in flight, which are shown
+        // before the program exits.
+        notificationHandler.printNotifications();
+    }
+
+    /**
+     * Wires together the components of the program and hands control to the
+     * user interface.
+     *
+     * @param ticketStore         the store that tickets persist to, or null if
+     *                            tickets should not persist between runs.
+     * @param ticketHistory       the log that every account records its
+     *                            purchases in.
+     * @param journal             the journal that changes are made durable
+     *                            in, or null if nothing persists between runs.
+     * @param recovered           the accounts and tickets left by the previous
+     *                            run, which are restored as each session is
+     *                            created.
+     * @param notificationHandler the handler that displays events to the user.
+     * @param eventBus            the bus that events are published to, or null
+     *                            if they are delivered directly.
+     * @param clock               the clock every component reads the time
+     *                            from.
+     */
+    private static void runApplication(MappedTicketStore ticketStore,
+            TicketHistoryLog ticketHistory, TransactionJournal journal,
+            RecoveredState recovered, NotificationHandler notificationHandler,
+            EventBus eventBus, Clock clock) {
+        // Events are either delivered straight to the notification handler, or
+        // published to the event bus, which delivers them from its own thread.
+        TicketObserver ticketObserver = eventBus == null ? notificationHandler : eventBus;
+        AccountStateObserver stateObserver = eventBus == null ? notificationHandler : eventBus;
+        AccountTransactionObserver transactionObserver = eventBus == null ? notificationHandler
+                : eventBus;
+        // Every ticket chain passes the events of its tickets on to this one
+        // list of listeners, rather than each ticket being observed directly.
+        TicketListenerList ticketListeners = new TicketListenerList();
+        ticketListeners.addListener(ticketObserver);
+        TicketFactory ticketFactory;
+        AccountRegistry accountRegistry;
+        // Accounts outlive their sessions, so a session created again after
+        // being evicted is given the account it had before, rather than a
+        // new one.
+        AccountDirectory accountDirectory = new AccountDirectory();
+        if (ticketStore == null) {
+            // With a journal, ticket IDs continue on from the highest block
+            // leased in a previous run.
+            TicketIDSource ticketIDs = new AtomicTicketIDSource(recovered.getLastTicketID());
+            if (journal != null) {
+                ticketIDs = new JournalledTicketIDSource(ticketIDs, journal);
+            }
+            ticketFactory = new TicketFactory(clock, new TicketIDSequence(ticketIDs));
+            accountRegistry = new AccountRegistry(
+                    accountID -> instantiateSession(
+                            accountDirectory.getOrCreate(accountID, id -> createUserAccount(id,
+                                    ticketHistory, journal, recovered)),
+                            ticketListeners, clock, journal, recovered),
+                    clock);
+        } else {
+            // Ticket IDs are leased from the store, so they continue on from the
+            // highest ID leased in a previous run.
+            ticketFactory = new TicketFactory(clock, new TicketIDSequence(ticketStore));
+            accountRegistry = new AccountRegistry(
+                    accountID -> instantiatePersistentSession(
+                            accountDirectory.getOrCreate(accountID, id -> createUserAccount(id,
+                                    ticketHistory, journal, recovered)),
+                            ticketListeners, ticketStore, clock),
+                    clock);
+        }
+        // The user interface serves a single rider, whose session is created by
+        // the registry on first request.
+        AccountSession session = accountRegistry.execute(ACCOUNT_ID, accountSession -> accountSession);
+        UserAccount userAccount = session.getUserAccount();
+        TicketManager ticketManager = session.getTicketManager();
         MonorailSimulator monorailSimulator = new MonorailSimulator(1);
-        MainController mainController = new MainController(ticketFactory, ticketManager, notificationHandler,
-                userAccount, monorailSimulator);
-        userAccount.subscribeAccountStateObserver(notificationHandler);
-        userAccount.subscribeAccountTransactionObserver(notificationHandler);
+        MainController mainController = new MainController(ticketFactory, ticketManager,
+                userAccount, monorailSimulator, clock);
+        userAccount.subscribeAccountStateObserver(stateObserver);
+        userAccount.subscribeAccountTransactionObserver(transactionObserver);
 
         LOGGER.info(() -> "Program has initialised successfully");
 
@@ -55,6 +229,9 @@ public class App {
                 accountDetails.printAccountStatus();
                 accountDetails.printAccountBalance();
                 currentStation.printCurrentStation();
+                // Tickets that have expired since the last cycle are expired
+                // first, so that their notifications are printed below.
+                mainController.expireTickets();
                 notificationHandler.printNotifications();
 
                 // The user needs to be presented with the main options in order to make
@@ -95,9 +272,150 @@ public class App {
         }
     }
 
-    private static TicketManager instantiateTicketManager() {
-        TicketChain<Ticket> timedTicketChain = new TicketChain<>();
-        TicketChain<Ticket> zoneTicketChain = new TicketChain<>();
-        return new TicketManager(timedTicketChain, zoneTicketChain);
+    /**
+     * Rebuilds the accounts and tickets left by the previous run from the
+     * latest snapshot and the journal written since it was taken, then starts
+     * keeping the snapshot up to date in the background, so that the journal
+     * replayed on the next run stays short. A snapshot is taken every
+     * -Dmetrotik.snapshotIntervalSeconds=<seconds>, and again on exit.
+     *
+     * @param journal   the journal to be recovered, or null if nothing
+     *                  persists between runs.
+     * @param recovered the state the accounts and tickets are rebuilt in.
+     * @param clock     the clock used to drop expired tickets from snapshots.
+     * @return the started checkpointer, or null if there is no journal.
+     */
+    private static JournalCheckpointer recoverJournal(TransactionJournal journal,
+            RecoveredState recovered, Clock clock) {
+        if (journal == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Path snapshotFile = JournalSnapshot.fileFor(journal.getFile());
+        long snapshotPosition = JournalSnapshot.load(snapshotFile, recovered);
+        long replayed = journal.recover(recovered, snapshotPosition);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info(() -> recovered.getAccountCount() + " accounts and " +
+                recovered.getTicketCount() + " tickets have been recovered in " + elapsedMillis +
+                " ms, replaying " + replayed + " journal records after the snapshot");
+        long intervalSeconds = Long.getLong("metrotik.snapshotIntervalSeconds",
+                DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+        return new JournalCheckpointer(journal, recovered, journal.getDurablePosition(),
+                snapshotFile, TimeUnit.SECONDS.toMillis(intervalSeconds), clock);
+    }
+
+    /**
+     * Reads what the notification handler should do when its queue fills up,
+     * from -Dmetrotik.notificationOverflow=<policy>, where the policy is
+     * drop, block or coalesce. Coalescing is the default. Blocking is only
+     * allowed alongside an event bus, as without one the thread that would
+     * block is the one that prints the notifications.
+     *
+     * @return the overflow policy.
+     */
+    private static OverflowPolicy notificationOverflowPolicy() {
+        String policyName = System.getProperty("metrotik.notificationOverflow", "coalesce");
+        if ("drop".equals(policyName)) {
+            return OverflowPolicy.DROP_OLDEST;
+        } else if ("block".equals(policyName) && System.getProperty("metrotik.eventBus") != null) {
+            return OverflowPolicy.BLOCK;
+        }
+        return OverflowPolicy.COALESCE;
+    }
+
+    /**
+     * Creates an event bus if running with -Dmetrotik.eventBus=<strategy>,
+     * where the strategy is how the bus thread waits for events: blocking,
+     * sleeping, yielding or busyspin.
+     *
+     * @param notificationHandler the handler the bus delivers events to.
+     * @return the started bus, or null if events should be delivered directly.
+     */
+    private static EventBus createEventBus(NotificationHandler notificationHandler) {
+        String strategyName = System.getProperty("metrotik.eventBus");
+        if (strategyName == null) {
+            return null;
+        }
+        WaitStrategy waitStrategy;
+        switch (strategyName) {
+            case "busyspin":
+                waitStrategy = new BusySpinWaitStrategy();
+                break;
+            case "yielding":
+                waitStrategy = new YieldingWaitStrategy();
+                break;
+            case "sleeping":
+                waitStrategy = new SleepingWaitStrategy();
+                break;
+            default:
+                waitStrategy = new BlockingWaitStrategy();
+                break;
+        }
+        EventBus eventBus = new EventBus(EVENT_BUS_SIZE, waitStrategy);
+        eventBus.addHandler(new ObserverEventHandler(notificationHandler, notificationHandler,
+                notificationHandler));
+        eventBus.start();
+        return eventBus;
+    }
+
+    private static UserAccount createUserAccount(int accountID, TicketHistoryLog ticketHistory,
+            TransactionJournal journal, RecoveredState recovered) {
+        // Hard coded some values into the user account. The account will be reset
+        // every time the program is run. Accounts shared by many riders can
+        // have their debits spread over several budgets by running with
+        // -Dmetrotik.balanceStripes=<count>.
+        Integer stripeCount = Integer.getInteger("metrotik.balanceStripes");
+        StripedBalance stripes = stripeCount == null ? null
+                : new StripedBalance(stripeCount, STRIPE_BUDGET);
+        // The account directory refuses a second account with the same email,
+        // so every account other than the one the program runs as is given an
+        // email made from its ID.
+        String email = accountID == ACCOUNT_ID ? "jimmy.barnes@yahoo.com"
+                : "rider." + accountID + "@metrotik.com.au";
+        UserAccount userAccount = new UserAccount(accountID, "Jimmy", "Barnes", email,
+                ticketHistory, stripes, journal);
+        recovered.restoreAccount(userAccount);
+        return userAccount;
+    }
+
+    private static AccountSession instantiateSession(UserAccount userAccount,
+            TicketListenerList ticketListeners, Clock clock, TransactionJournal journal,
+            RecoveredState recovered) {
+        TimedTicketChain timedTicketChain = new TimedTicketChain(ticketListeners);
+        TicketChain<ZoneTicket> zoneTicketChain;
+        // Zone tickets can optionally be stored in primitive columns rather than
+        // as ticket objects by running with -Dmetrotik.zoneStore=columnar, or
+        // in a chain that can be travelled on from several threads by running
+        // with -Dmetrotik.zoneStore=concurrent.
+        String zoneStore = System.getProperty("metrotik.zoneStore");
+        if ("columnar".equals(zoneStore)) {
+            zoneTicketChain = new ColumnarZoneTicketChain(new HeapZoneTicketColumns(),
+                    ticketListeners);
+        } else if ("concurrent".equals(zoneStore)) {
+            zoneTicketChain = new ConcurrentZoneTicketChain(ticketListeners);
+        } else {
+            zoneTicketChain = new ZoneTicketChain(ticketListeners);
+        }
+        recovered.restoreTickets(userAccount.getAccountID(), zoneTicketChain, timedTicketChain);
+        TicketManager ticketManager = new TicketManager(zoneTicketChain, timedTicketChain,
+                new TicketExpiryWheel(clock.millis()), journal);
+        return new AccountSession(userAccount, zoneTicketChain, timedTicketChain, ticketManager);
+    }
+
+    private static AccountSession instantiatePersistentSession(UserAccount userAccount,
+            TicketListenerList ticketListeners, MappedTicketStore ticketStore, Clock clock) {
+        // Zone tickets are read and written in place in the mapped file, while
+        // timed tickets are restored onto the heap to be indexed by validity.
+        // The store keeps the tickets, so only the account is journalled. Its
+        // records do not say which account they belong to, so the store is
+        // claimed by the first account and refused to any other.
+        ticketStore.claimAccount(userAccount.getAccountID());
+        ColumnarZoneTicketChain zoneTicketChain = new ColumnarZoneTicketChain(
+                ticketStore.getZoneColumns(), ticketListeners);
+        TimedTicketChain timedTicketChain = PersistentTimedTicketChain.load(ticketStore,
+                ticketListeners);
+        TicketManager ticketManager = new TicketManager(zoneTicketChain, timedTicketChain,
+                new TicketExpiryWheel(clock.millis()));
+        return new AccountSession(userAccount, zoneTicketChain, timedTicketChain, ticketManager);
     }
 }
@@ -0,0 +1,453 @@
+package edu.curtin.metrotik.accountregistry;
+
+import edu.curtin.metrotik.useraccounts.UserAccount;
+import java.util.Locale;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+
+/**
+ * A directory of every account known to the process, found by ID or by email.
+ * Accounts are held in an open addressing table keyed by the primitive ID, so
+ * looking an account up never boxes its ID, and emails are indexed to IDs in a
+ * second table of the same kind. Both tables use linear probing, and are
+ * doubled once they are three quarters full.
+ *
+ * Accounts are looked up far more often than they are added, so lookups take
+ * an optimistic read of a stamped lock and take no lock at all unless an
+ * account was added or removed while they ran, in which case they are
+ * repeated under the read lock. Adding and removing accounts is done one
+ * thread at a time under the write lock. Each table is replaced, rather than
+ * grown in place, so a lookup racing a resize still probes arrays of matching
+ * length, and every probe is bounded by the length of the table.
+ *
+ * Emails are matched without regard to case. Account IDs must not be
+ * negative, so that a missing email can be reported without boxing the ID.
+ *
+ * @author Kyer Potts
+ */
+public class AccountDirectory {
+  // Returned when no account has an email.
+  public static final int NO_ACCOUNT = -1;
+
+  private static final Logger LOGGER = Logger.getLogger(AccountDirectory.class.getName());
+  private static final int DEFAULT_EXPECTED_ACCOUNTS = 64;
+  private static final int MIN_CAPACITY = 16;
+
+  private final StampedLock lock;
+  // Only replaced while holding the write lock.
+  private IdTable ids;
+  private EmailTable emails;
+  private int size;
+
+  /**
+   * Creates a directory sized for the default number of accounts.
+   */
+  public AccountDirectory() {
+    this(DEFAULT_EXPECTED_ACCOUNTS);
+  }
+
+  /**
+   * Creates a directory.
+   *
+   * @param expectedAccounts the number of accounts the directory can hold
+   *                         before its tables are first doubled.
+   */
+  public AccountDirectory(int expectedAccounts) {
+    int capacity = MIN_CAPACITY;
+    while (capacity / 4 * 3 < expectedAccounts) {
+      capacity <<= 1;
+    }
+    this.lock = new StampedLock();
+    this.ids = new IdTable(capacity);
+    this.emails = new EmailTable(capacity);
+    this.size = 0;
+    int initialCapacity = capacity;
+    LOGGER.info(() -> "Account directory has been initialised with " + initialCapacity +
+        " slots");
+  }
+
+  /**
+   * Finds an account by its ID. Can be called from any thread.
+   *
+   * @param accountID the ID of the account.
+   * @return the account, or null if it is not in the directory.
+   */
+  public UserAccount get(int accountID) {
+    long stamp = lock.tryOptimisticRead();
+    UserAccount account = ids.get(accountID);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        account = ids.get(accountID);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return account;
+  }
+
+  /**
+   * Finds the ID of the account with an email. Can be called from any thread.
+   *
+   * @param email the email of the account holder, in any case.
+   * @return the ID of the account, or NO_ACCOUNT if no account has the email.
+   */
+  public int findAccountID(String email) {
+    long stamp = lock.tryOptimisticRead();
+    int accountID = lookupEmail(email);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        accountID = lookupEmail(email);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return accountID;
+  }
+
+  /**
+   * Finds an account by its email. Can be called from any thread.
+   *
+   * @param email the email of the account holder, in any case.
+   * @return the account, or null if no account has the email.
+   */
+  public UserAccount findByEmail(String email) {
+    int accountID = findAccountID(email);
+    return accountID == NO_ACCOUNT ? null : get(accountID);
+  }
+
+  /**
+   * Finds an account by its ID, creating and adding it if it is not in the
+   * directory. The account is created while holding the write lock, so it is
+   * only ever created once.
+   *
+   * @param accountID the ID of the account.
+   * @param factory   creates the account if it is not in the directory.
+   * @return the account with the ID.
+   * @throws AccountDirectoryException if the created account cannot be added.
+   */
+  public UserAccount getOrCreate(int accountID, IntFunction<UserAccount> factory) {
+    UserAccount account = get(accountID);
+    if (account == null) {
+      long stamp = lock.writeLock();
+      try {
+        account = ids.get(accountID);
+        if (account == null) {
+          account = factory.apply(accountID);
+          if (account.getAccountID() != accountID) {
+            throw new AccountDirectoryException("Account " + account.getAccountID() +
+                " was created for ID " + accountID);
+          }
+          insert(account);
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+    return account;
+  }
+
+  /**
+   * Adds an account to the directory.
+   *
+   * @param account the account to be added.
+   * @throws AccountDirectoryException if the ID or email of the account
+   *                                   already belongs to an account in the
+   *                                   directory, or the ID is negative.
+   */
+  public void add(UserAccount account) {
+    long stamp = lock.writeLock();
+    try {
+      if (ids.get(account.getAccountID()) != null) {
+        throw new AccountDirectoryException("Account " + account.getAccountID() +
+            " is already in the directory");
+      }
+      insert(account);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes an account, and its email, from the directory.
+   *
+   * @param accountID the ID of the account.
+   * @return the removed account, or null if it was not in the directory.
+   */
+  public UserAccount remove(int accountID) {
+    long stamp = lock.writeLock();
+    try {
+      UserAccount account = ids.remove(accountID);
+      if (account != null) {
+        if (account.getEmail() != null) {
+          emails.remove(account.getEmail().toLowerCase(Locale.ROOT));
+        }
+        size--;
+      }
+      return account;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Accessor for the number of accounts in the directory.
+   *
+   * @return the number of accounts.
+   */
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Adds an account whose ID is known not to be in the directory. Must be
+   * called while holding the write lock.
+   *
+   * @param account the account to be added.
+   */
+  private void insert(UserAccount account) {
+    int accountID = account.getAccountID();
+    if (accountID < 0) {
+      throw new AccountDirectoryException("Account ID " + accountID + " is negative");
+    }
+    String email = account.getEmail() == null ? null
+        : account.getEmail().toLowerCase(Locale.ROOT);
+    if (email != null) {
+      int owner = emails.get(email);
+      if (owner != NO_ACCOUNT) {
+        throw new AccountDirectoryException("Email of account " + accountID +
+            " already belongs to account " + owner);
+      }
+    }
+    if ((size + 1) * 4L > ids.capacity() * 3L) {
+      int capacity = ids.capacity() * 2;
+      ids = ids.copy(capacity);
+      emails = emails.copy(capacity);
+      LOGGER.info(() -> "Account directory has grown to " + capacity + " slots");
+    }
+    ids.put(accountID, account);
+    if (email != null) {
+      emails.put(email, accountID);
+    }
+    size++;
+  }
+
+  /**
+   * Looks an email up in the email table, first as given and then in lower
+   * case. Emails are kept in lower case, and are usually looked up as they
+   * were given, so the first probe can use the hash cached in the email,
+   * and only emails holding upper case letters are copied.
+   *
+   * @param email the email of the account holder, in any case.
+   * @return the ID of the account, or NO_ACCOUNT if no account has the email.
+   */
+  private int lookupEmail(String email) {
+    int accountID = emails.get(email);
+    if (accountID == NO_ACCOUNT) {
+      String lowerCase = email.toLowerCase(Locale.ROOT);
+      // An email that was already lower case has already been looked up.
+      if (!lowerCase.equals(email)) {
+        accountID = emails.get(lowerCase);
+      }
+    }
+    return accountID;
+  }
+
+  /**
+   * Spreads the bits of a hash so that sequential IDs, and hashes that only
+   * differ in their high bits, do not fall on neighbouring slots.
+   *
+   * @param hash the hash, or ID, to be mixed.
+   * @return the mixed hash.
+   */
+  private static int mix(int hash) {
+    int mixed = hash * 0x9E3779B9;
+    return mixed ^ (mixed >>> 16);
+  }
+
+  /**
+   * An open addressing table of accounts keyed by ID. An empty slot holds a
+   * null account. Lookups may run while the table is being changed, so they
+   * must not fail or loop forever on a half written table; their result is
+   * then discarded by the directory.
+   */
+  private static final class IdTable {
+    private final int[] keys;
+    private final UserAccount[] accounts;
+    private final int mask;
+
+    private IdTable(int capacity) {
+      this.keys = new int[capacity];
+      this.accounts = new UserAccount[capacity];
+      this.mask = capacity - 1;
+    }
+
+    private int capacity() {
+      return keys.length;
+    }
+
+    private UserAccount get(int accountID) {
+      int slot = mix(accountID) & mask;
+      for (int probes = 0; probes <= mask; probes++) {
+        UserAccount account = accounts[slot];
+        if (account == null) {
+          return null;
+        }
+        if (keys[slot] == accountID) {
+          return account;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    }
+
+    private void put(int accountID, UserAccount account) {
+      int slot = mix(accountID) & mask;
+      while (accounts[slot] != null && keys[slot] != accountID) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = accountID;
+      accounts[slot] = account;
+    }
+
+    private UserAccount remove(int accountID) {
+      int slot = mix(accountID) & mask;
+      while (accounts[slot] != null) {
+        if (keys[slot] == accountID) {
+          UserAccount account = accounts[slot];
+          removeAt(slot);
+          return account;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    }
+
+    /**
+     * Empties a slot, shifting later entries of the same run back into the
+     * gap so that no probe stops short of them. An entry is only moved if the
+     * gap does not come before its home slot.
+     *
+     * @param slot the slot to be emptied.
+     */
+    private void removeAt(int slot) {
+      int gap = slot;
+      int next = (gap + 1) & mask;
+      while (accounts[next] != null) {
+        int home = mix(keys[next]) & mask;
+        if (((next - home) & mask) >= ((next - gap) & mask)) {
+          keys[gap] = keys[next];
+          accounts[gap] = accounts[next];
+          gap = next;
+        }
+        next = (next + 1) & mask;
+      }
+      keys[gap] = 0;
+      accounts[gap] = null;
+    }
+
+    private IdTable copy(int capacity) {
+      IdTable table = new IdTable(capacity);
+      for (int slot = 0; slot < keys.length; slot++) {
+        if (accounts[slot] != null) {
+          table.put(keys[slot], accounts[slot]);
+        }
+      }
+      return table;
+    }
+  }
+
+  /**
+   * An open addressing table of account IDs keyed by email in lower case. An
+   * empty slot holds a null email. The hash of each email is kept beside it,
+   * so that probing past other emails rarely has to compare their contents.
+   */
+  private static final class EmailTable {
+    private final String[] keys;
+    private final int[] hashes;
+    private final int[] accountIDs;
+    private final int mask;
+
+    private EmailTable(int capacity) {
+      this.keys = new String[capacity];
+      this.hashes = new int[capacity];
+      this.accountIDs = new int[capacity];
+      this.mask = capacity - 1;
+    }
+
+    private int get(String email) {
+      int hash = mix(email.hashCode());
+      int slot = hash & mask;
+      for (int probes = 0; probes <= mask; probes++) {
+        String key = keys[slot];
+        if (key == null) {
+          return NO_ACCOUNT;
+        }
+        if (hashes[slot] == hash && key.equals(email)) {
+          return accountIDs[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return NO_ACCOUNT;
+    }
+
+    private void put(String email, int accountID) {
+      insert(email, mix(email.hashCode()), accountID);
+    }
+
+    private void insert(String email, int hash, int accountID) {
+      int slot = hash & mask;
+      while (keys[slot] != null && !(hashes[slot] == hash && keys[slot].equals(email))) {
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = hash;
+      accountIDs[slot] = accountID;
+      keys[slot] = email;
+    }
+
+    private void remove(String email) {
+      int hash = mix(email.hashCode());
+      int slot = hash & mask;
+      while (keys[slot] != null) {
+        if (hashes[slot] == hash && keys[slot].equals(email)) {
+          removeAt(slot);
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    private void removeAt(int slot) {
+      int gap = slot;
+      int next = (gap + 1) & mask;
+      while (keys[next] != null) {
+        int home = hashes[next] & mask;
+        if (((next - home) & mask) >= ((next - gap) & mask)) {
+          keys[gap] = keys[next];
+          hashes[gap] = hashes[next];
+          accountIDs[gap] = accountIDs[next];
+          gap = next;
+        }
+        next = (next + 1) & mask;
+      }
+      keys[gap] = null;
+    }
+
+    private EmailTable copy(int capacity) {
+      EmailTable table = new EmailTable(capacity);
+      for (int slot = 0; slot < keys.length; slot++) {
+        if (keys[slot] != null) {
+          table.insert(keys[slot], hashes[slot], accountIDs[slot]);
+        }
+      }
+      return table;
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package edu.curtin.metrotik.accountregistry;
+
+/**
+ * This exception should be thrown whenever an account cannot be added to the
+ * account directory, such as when its email already belongs to another
+ * account.
+ *
+ * @author Kyer Potts
+ */
+public class AccountDirectoryException extends RuntimeException {
+  public AccountDirectoryException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,212 @@
+package edu.curtin.metrotik.accountregistry;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * A registry of the sessions of every account served by the process. The
+ * registry is split into shards, each guarded by its own lock, so that looking
+ * up accounts in different shards never contends. Shard locks are only held to
+ * find or create a session. Operations themselves run under the lock of the
+ * session, so accounts that share a shard do not wait on each other either.
+ * Sessions are created the first time their account is requested, and
+ * sessions that have been idle for a while can be evicted to free memory.
+ * Only sessions without tickets are evicted, as the chains of a session are
+ * the only up to date copy of its tickets. Accounts outlive their sessions in
+ * the account directory, so evicting a session loses nothing.
+ *
+ * @author Kyer Potts
+ */
+public class AccountRegistry {
+  private static final Logger LOGGER = Logger.getLogger(AccountRegistry.class.getName());
+  private static final int DEFAULT_SHARD_COUNT = 64;
+
+  private final List<Shard> shards;
+  private final int shardMask;
+  private final AccountSessionFactory sessionFactory;
+  private final Clock clock;
+
+  /**
+   * Creates a registry with the default number of shards.
+   *
+   * @param sessionFactory creates the session of an account when it is first
+   *                       requested.
+   * @param clock          the clock used to record when sessions were last
+   *                       active.
+   */
+  public AccountRegistry(AccountSessionFactory sessionFactory, Clock clock) {
+    this(sessionFactory, clock, DEFAULT_SHARD_COUNT);
+  }
+
+  /**
+   * Creates a registry.
+   *
+   * @param sessionFactory creates the session of an account when it is first
+   *                       requested.
+   * @param clock          the clock used to record when sessions were last
+   *                       active.
+   * @param shardCount     the number of shards, which is rounded up to a power
+   *                       of two.
+   */
+  public AccountRegistry(AccountSessionFactory sessionFactory, Clock clock,
+      int shardCount) {
+    int count = 1;
+    while (count < shardCount) {
+      count <<= 1;
+    }
+    this.sessionFactory = sessionFactory;
+    this.clock = clock;
+    this.shardMask = count - 1;
+    this.shards = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      shards.add(new Shard());
+    }
+    int shardTotal = count;
+    LOGGER.info(() -> "Account registry has been initialised with " +
+        shardTotal + " shards");
+  }
+
+  /**
+   * Runs an operation on the session of an account, creating the session if
+   * the account has not been requested before or has since been evicted. Only
+   * one operation runs on a session at a time.
+   *
+   * @param accountID the ID of the account.
+   * @param operation the operation to be run on the session.
+   * @param <R>       the type of the result of the operation.
+   * @return the result of the operation.
+   */
+  public <R> R execute(int accountID, Function<AccountSession, R> operation) {
+    while (true) {
+      AccountSession session = getOrCreateSession(accountID);
+      Lock lock = session.getLock();
+      lock.lock();
+      try {
+        // The session may have been evicted between being found and being
+        // locked, in which case the lookup is repeated to find its replacement.
+        if (!session.isEvicted()) {
+          session.touch(clock.millis());
+          return operation.apply(session);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Evicts every session that has not been active for the given period and
+   * holds no tickets. Sessions that are in use are skipped, rather than
+   * waited on.
+   *
+   * @param idleMillis the period of inactivity after which a session is
+   *                   evicted, in milliseconds.
+   * @return the number of sessions that were evicted.
+   */
+  public int evictIdleSessions(long idleMillis) {
+    long cutoff = clock.millis() - idleMillis;
+    int evicted = 0;
+    for (Shard shard : shards) {
+      evicted += shard.evictIdle(cutoff);
+    }
+    int evictedTotal = evicted;
+    LOGGER.info(() -> evictedTotal + " idle sessions have been evicted");
+    return evicted;
+  }
+
+  /**
+   * Accessor for the number of sessions currently held by the registry.
+   *
+   * @return the number of sessions in every shard.
+   */
+  public int getSessionCount() {
+    int count = 0;
+    for (Shard shard : shards) {
+      count += shard.size();
+    }
+    return count;
+  }
+
+  private AccountSession getOrCreateSession(int accountID) {
+    return shardFor(accountID).getOrCreate(accountID);
+  }
+
+  /**
+   * Finds the shard for an account. The ID is mixed before masking so that
+   * sequential IDs are spread across every shard.
+   *
+   * @param accountID the ID of the account.
+   * @return the shard holding the session of the account.
+   */
+  private Shard shardFor(int accountID) {
+    int hash = accountID * 0x9E3779B9;
+    return shards.get((hash ^ (hash >>> 16)) & shardMask);
+  }
+
+  /**
+   * A single stripe of the registry, holding the sessions of the accounts that
+   * hash to it.
+   */
+  private final class Shard {
+    private final Lock lock = new ReentrantLock();
+    private final Map<Integer, AccountSession> sessions = new HashMap<>();
+
+    private AccountSession getOrCreate(int accountID) {
+      lock.lock();
+      try {
+        AccountSession session = sessions.get(accountID);
+        if (session == null) {
+          session = sessionFactory.createSession(accountID);
+          session.touch(clock.millis());
+          sessions.put(accountID, session);
+        }
+        return session;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private int evictIdle(long cutoffMillis) {
+      int evicted = 0;
+      lock.lock();
+      try {
+        Iterator<AccountSession> iter = sessions.values().iterator();
+        while (iter.hasNext()) {
+          AccountSession session = iter.next();
+          Lock sessionLock = session.getLock();
+          if (session.getLastAccessMillis() < cutoffMillis && sessionLock.tryLock()) {
+            try {
+              if (!session.holdsTickets()) {
+                session.evict();
+                iter.remove();
+                evicted++;
+              }
+            } finally {
+              sessionLock.unlock();
+            }
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+      return evicted;
+    }
+
+    private int size() {
+      lock.lock();
+      try {
+        return sessions.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
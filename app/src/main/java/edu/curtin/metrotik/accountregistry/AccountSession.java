@@ -0,0 +1,124 @@
+package edu.curtin.metrotik.accountregistry;
+
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import edu.curtin.metrotik.ticketingsystem.TicketChain;
+import edu.curtin.metrotik.ticketingsystem.TicketManager;
+import edu.curtin.metrotik.useraccounts.UserAccount;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Everything the system holds in memory for a single account: the account
+ * itself, its ticket chains and the ticket manager that operates on them. The
+ * components of a session are not thread-safe, so the registry only runs one
+ * operation on a session at a time.
+ *
+ * @author Kyer Potts
+ */
+public class AccountSession {
+  private static final Logger LOGGER = Logger.getLogger(AccountSession.class.getName());
+
+  private final UserAccount userAccount;
+  private final TicketManager ticketManager;
+  private final TicketChain<ZoneTicket> zoneTickets;
+  private final TicketChain<TimedTicket> timedTickets;
+  // Operations on the session are serialised by this lock rather than the lock
+  // of the shard holding it, so that accounts in the same shard do not wait on
+  // each other.
+  private final Lock lock;
+  private volatile long lastAccessMillis;
+  private boolean evicted;
+
+  public AccountSession(UserAccount userAccount,
+      TicketChain<ZoneTicket> zoneTickets,
+      TicketChain<TimedTicket> timedTickets,
+      TicketManager ticketManager) {
+    this.userAccount = userAccount;
+    this.zoneTickets = zoneTickets;
+    this.timedTickets = timedTickets;
+    this.ticketManager = ticketManager;
+    this.lock = new ReentrantLock();
+    this.lastAccessMillis = 0;
+    this.evicted = false;
+    LOGGER.info(() -> "Session has been created for account: " +
+        userAccount.getAccountID());
+  }
+
+  public UserAccount getUserAccount() {
+    return userAccount;
+  }
+
+  public TicketManager getTicketManager() {
+    return ticketManager;
+  }
+
+  public TicketChain<ZoneTicket> getZoneTickets() {
+    return zoneTickets;
+  }
+
+  public TicketChain<TimedTicket> getTimedTickets() {
+    return timedTickets;
+  }
+
+  /**
+   * Checks whether the session holds any tickets. The chains of a session
+   * are the only copy of its live tickets, so such a session must not be
+   * evicted. Must be called while holding the session lock.
+   *
+   * @return true if either chain of the session holds a ticket.
+   */
+  public boolean holdsTickets() {
+    return !zoneTickets.isEmpty() || !timedTickets.isEmpty();
+  }
+
+  /**
+   * Accessor for the last time an operation was run on the session.
+   *
+   * @return the time of the last operation, in epoch milliseconds.
+   */
+  public long getLastAccessMillis() {
+    return lastAccessMillis;
+  }
+
+  /**
+   * Records that an operation has been run on the session.
+   *
+   * @param currentTimeMillis the time of the operation, in epoch milliseconds.
+   */
+  public void touch(long currentTimeMillis) {
+    lastAccessMillis = currentTimeMillis;
+  }
+
+  /**
+   * Provides access to the lock that serialises operations on the session.
+   *
+   * @return the lock of the session.
+   */
+  public Lock getLock() {
+    return lock;
+  }
+
+  /**
+   * Checks whether the session has been evicted from the registry. An evicted
+   * session must not be operated on, as the registry will create a new session
+   * for the account the next time it is requested. Must be called while
+   * holding the session lock.
+   *
+   * @return true if the session has been evicted.
+   */
+  public boolean isEvicted() {
+    return evicted;
+  }
+
+  /**
+   * Marks the session as evicted. Must be called while holding the session
+   * lock.
+   */
+  public void evict() {
+    evicted = true;
+    LOGGER.info(() -> "Session has been evicted for account: " +
+        userAccount.getAccountID());
+  }
+}
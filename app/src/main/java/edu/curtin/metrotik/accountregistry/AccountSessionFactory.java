@@ -0,0 +1,19 @@
+package edu.curtin.metrotik.accountregistry;
+
+/**
+ * Contract for creating the session of an account the first time it is
+ * requested from the registry, such as by loading the account and its tickets
+ * from storage.
+ *
+ * @author Kyer Potts
+ */
+@FunctionalInterface
+public interface AccountSessionFactory {
+  /**
+   * Provides a contract for creating the session of an account.
+   *
+   * @param accountID the ID of the account.
+   * @return the newly created session.
+   */
+  public AccountSession createSession(int accountID);
+}
@@ -0,0 +1,118 @@
+package edu.curtin.metrotik.codec;
+
+import edu.curtin.metrotik.useraccounts.AccountEvent;
+import edu.curtin.metrotik.useraccounts.AccountEventCode;
+import edu.curtin.metrotik.useraccounts.AccountStatus;
+import java.nio.ByteBuffer;
+
+/**
+ * Hand written binary encoding for account events. Every event is encoded as
+ * a fixed width record holding the ID of the originating account, the code of
+ * the event, the standing of the account before and after the event, and the
+ * amount involved in cents. The message of an event is not stored, as it can
+ * be put together again from these fields, so encoding allocates nothing and
+ * a record is only 16 bytes.
+ *
+ * @author Kyer Potts
+ */
+public final class AccountEventCodec {
+  public static final int RECORD_SIZE = 16;
+
+  // Record layout.
+  public static final int ACCOUNT_ID_OFFSET = 0;
+  public static final int CODE_OFFSET = 4;
+  public static final int OLD_STATUS_OFFSET = 5;
+  public static final int NEW_STATUS_OFFSET = 6;
+  public static final int AMOUNT_OFFSET = 8;
+
+  private static final AccountEventCode[] CODES = AccountEventCode.values();
+  private static final AccountStatus[] STATUSES = AccountStatus.values();
+
+  private AccountEventCodec() {
+  }
+
+  /**
+   * Encodes an event at the given index of the buffer. The position of the
+   * buffer is left unchanged.
+   *
+   * @param buffer the buffer to be written to.
+   * @param index  the index of the start of the record.
+   * @param event  the event to be encoded.
+   */
+  public static void encode(ByteBuffer buffer, int index, AccountEvent event) {
+    buffer.putInt(index + ACCOUNT_ID_OFFSET, event.getAccountID());
+    buffer.put(index + CODE_OFFSET, (byte) event.getCode().ordinal());
+    buffer.put(index + OLD_STATUS_OFFSET, (byte) event.getOldStatus().ordinal());
+    buffer.put(index + NEW_STATUS_OFFSET, (byte) event.getNewStatus().ordinal());
+    buffer.putLong(index + AMOUNT_OFFSET, event.getAmount());
+  }
+
+  /**
+   * Encodes an event at the position of the buffer, and moves the position
+   * past the record.
+   *
+   * @param buffer the buffer to be written to.
+   * @param event  the event to be encoded.
+   */
+  public static void encode(ByteBuffer buffer, AccountEvent event) {
+    encode(buffer, buffer.position(), event);
+    buffer.position(buffer.position() + RECORD_SIZE);
+  }
+
+  /**
+   * Reads the ID of the account that the event at the given index originated
+   * from, without decoding the rest of the event.
+   *
+   * @param buffer the buffer to be read from.
+   * @param index  the index of the start of the record.
+   * @return the ID of the originating account.
+   */
+  public static int accountIDOf(ByteBuffer buffer, int index) {
+    return buffer.getInt(index + ACCOUNT_ID_OFFSET);
+  }
+
+  /**
+   * Decodes the event at the given index of the buffer. The position of the
+   * buffer is left unchanged.
+   *
+   * @param buffer the buffer to be read from.
+   * @param index  the index of the start of the record.
+   * @return a new event holding the decoded fields.
+   */
+  public static AccountEvent decode(ByteBuffer buffer, int index) {
+    return new AccountEvent(accountIDOf(buffer, index),
+        lookup(CODES, buffer.get(index + CODE_OFFSET), index),
+        buffer.getLong(index + AMOUNT_OFFSET),
+        lookup(STATUSES, buffer.get(index + OLD_STATUS_OFFSET), index),
+        lookup(STATUSES, buffer.get(index + NEW_STATUS_OFFSET), index));
+  }
+
+  /**
+   * Decodes the event at the position of the buffer, and moves the position
+   * past the record.
+   *
+   * @param buffer the buffer to be read from.
+   * @return a new event holding the decoded fields.
+   */
+  public static AccountEvent decode(ByteBuffer buffer) {
+    AccountEvent event = decode(buffer, buffer.position());
+    buffer.position(buffer.position() + RECORD_SIZE);
+    return event;
+  }
+
+  /**
+   * Finds the constant with the given ordinal, checking that the record holds
+   * a constant that exists.
+   *
+   * @param values  the constants of the enum.
+   * @param ordinal the ordinal read from the record.
+   * @param index   the index of the start of the record, for the error.
+   * @return the constant with the ordinal.
+   */
+  private static <T> T lookup(T[] values, byte ordinal, int index) {
+    if (ordinal < 0 || ordinal >= values.length) {
+      throw new CodecException("Event at " + index + " holds unknown value " + ordinal);
+    }
+    return values[ordinal];
+  }
+}
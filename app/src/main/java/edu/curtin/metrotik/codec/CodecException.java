@@ -0,0 +1,13 @@
+package edu.curtin.metrotik.codec;
+
+/**
+ * Exception thrown when a record cannot be encoded or decoded, such as when a
+ * record holds a different type than the one requested.
+ *
+ * @author Kyer Potts
+ */
+public class CodecException extends RuntimeException {
+  public CodecException(String message) {
+    super(message);
+  }
+}
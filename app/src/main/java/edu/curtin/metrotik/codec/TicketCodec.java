@@ -0,0 +1,210 @@
+package edu.curtin.metrotik.codec;
+
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Hand written binary encoding for tickets. Every ticket is encoded as a fixed
+ * width record, so records can be addressed by position and overwritten in
+ * place. Encoding writes primitives straight into the buffer and allocates
+ * nothing. Decoding allocates only the ticket being decoded.
+ *
+ * This is the single encoding of a ticket, shared by the ticket store and
+ * anything else that needs to move tickets out of the process.
+ *
+ * @author Kyer Potts
+ */
+public final class TicketCodec {
+  public static final int RECORD_SIZE = 40;
+
+  // Record layout. Zone tickets leave the validity window empty, and timed
+  // tickets leave the zone allocation empty.
+  public static final int ID_OFFSET = 0;
+  public static final int TYPE_OFFSET = 8;
+  public static final int ALLOCATION_OFFSET = 12;
+  public static final int PURCHASE_OFFSET = 16;
+  public static final int VALID_FROM_OFFSET = 24;
+  public static final int VALID_TO_OFFSET = 32;
+
+  // Record types. A free record holds no ticket.
+  public static final byte TYPE_FREE = 0;
+  public static final byte TYPE_ZONE = 1;
+  public static final byte TYPE_TIMED = 2;
+
+  private TicketCodec() {
+  }
+
+  /**
+   * Encodes a zone ticket at the given index of the buffer. The position of
+   * the buffer is left unchanged.
+   *
+   * @param buffer the buffer to be written to.
+   * @param index  the index of the start of the record.
+   * @param ticket the ticket to be encoded.
+   */
+  public static void encodeZoneTicket(ByteBuffer buffer, int index, ZoneTicket ticket) {
+    encodeZoneTicket(buffer, index, ticket.getTicketID(), ticket.getZoneAllocation(),
+        toEpochSecond(ticket.getPurchaseTimeDate()));
+  }
+
+  /**
+   * Encodes the fields of a zone ticket at the given index of the buffer, for
+   * callers that hold the fields rather than a ticket object.
+   *
+   * @param buffer              the buffer to be written to.
+   * @param index               the index of the start of the record.
+   * @param ticketID            the ID of the ticket.
+   * @param zoneAllocation      the zones remaining on the ticket.
+   * @param purchaseEpochSecond the purchase time of the ticket, in epoch
+   *                            seconds.
+   */
+  public static void encodeZoneTicket(ByteBuffer buffer, int index, long ticketID,
+      int zoneAllocation, long purchaseEpochSecond) {
+    buffer.putLong(index + ID_OFFSET, ticketID);
+    buffer.put(index + TYPE_OFFSET, TYPE_ZONE);
+    buffer.putInt(index + ALLOCATION_OFFSET, zoneAllocation);
+    buffer.putLong(index + PURCHASE_OFFSET, purchaseEpochSecond);
+    buffer.putLong(index + VALID_FROM_OFFSET, 0);
+    buffer.putLong(index + VALID_TO_OFFSET, 0);
+  }
+
+  /**
+   * Encodes a timed ticket at the given index of the buffer. The position of
+   * the buffer is left unchanged.
+   *
+   * @param buffer the buffer to be written to.
+   * @param index  the index of the start of the record.
+   * @param ticket the ticket to be encoded.
+   */
+  public static void encodeTimedTicket(ByteBuffer buffer, int index, TimedTicket ticket) {
+    buffer.putLong(index + ID_OFFSET, ticket.getTicketID());
+    buffer.put(index + TYPE_OFFSET, TYPE_TIMED);
+    buffer.putInt(index + ALLOCATION_OFFSET, 0);
+    buffer.putLong(index + PURCHASE_OFFSET, toEpochSecond(ticket.getPurchaseTimeDate()));
+    buffer.putLong(index + VALID_FROM_OFFSET, ticket.getValidFromMillis());
+    buffer.putLong(index + VALID_TO_OFFSET, ticket.getValidToMillis());
+  }
+
+  /**
+   * Encodes a zone ticket at the position of the buffer, and moves the
+   * position past the record.
+   *
+   * @param buffer the buffer to be written to.
+   * @param ticket the ticket to be encoded.
+   */
+  public static void encodeZoneTicket(ByteBuffer buffer, ZoneTicket ticket) {
+    encodeZoneTicket(buffer, buffer.position(), ticket);
+    buffer.position(buffer.position() + RECORD_SIZE);
+  }
+
+  /**
+   * Encodes a timed ticket at the position of the buffer, and moves the
+   * position past the record.
+   *
+   * @param buffer the buffer to be written to.
+   * @param ticket the ticket to be encoded.
+   */
+  public static void encodeTimedTicket(ByteBuffer buffer, TimedTicket ticket) {
+    encodeTimedTicket(buffer, buffer.position(), ticket);
+    buffer.position(buffer.position() + RECORD_SIZE);
+  }
+
+  /**
+   * Reads the type of the record at the given index of the buffer.
+   *
+   * @param buffer the buffer to be read from.
+   * @param index  the index of the start of the record.
+   * @return one of TYPE_FREE, TYPE_ZONE or TYPE_TIMED.
+   */
+  public static byte typeOf(ByteBuffer buffer, int index) {
+    return buffer.get(index + TYPE_OFFSET);
+  }
+
+  /**
+   * Decodes the zone ticket at the given index of the buffer. The position of
+   * the buffer is left unchanged.
+   *
+   * @param buffer the buffer to be read from.
+   * @param index  the index of the start of the record.
+   * @return a new zone ticket holding the decoded fields.
+   */
+  public static ZoneTicket decodeZoneTicket(ByteBuffer buffer, int index) {
+    checkType(buffer, index, TYPE_ZONE);
+    return new ZoneTicket(buffer.getLong(index + ID_OFFSET),
+        fromEpochSecond(buffer.getLong(index + PURCHASE_OFFSET)),
+        buffer.getInt(index + ALLOCATION_OFFSET));
+  }
+
+  /**
+   * Decodes the timed ticket at the given index of the buffer. The position of
+   * the buffer is left unchanged.
+   *
+   * @param buffer the buffer to be read from.
+   * @param index  the index of the start of the record.
+   * @return a new timed ticket holding the decoded fields.
+   */
+  public static TimedTicket decodeTimedTicket(ByteBuffer buffer, int index) {
+    checkType(buffer, index, TYPE_TIMED);
+    return new TimedTicket(buffer.getLong(index + ID_OFFSET),
+        fromEpochSecond(buffer.getLong(index + PURCHASE_OFFSET)),
+        buffer.getLong(index + VALID_FROM_OFFSET));
+  }
+
+  /**
+   * Decodes the zone ticket at the position of the buffer, and moves the
+   * position past the record.
+   *
+   * @param buffer the buffer to be read from.
+   * @return a new zone ticket holding the decoded fields.
+   */
+  public static ZoneTicket decodeZoneTicket(ByteBuffer buffer) {
+    ZoneTicket ticket = decodeZoneTicket(buffer, buffer.position());
+    buffer.position(buffer.position() + RECORD_SIZE);
+    return ticket;
+  }
+
+  /**
+   * Decodes the timed ticket at the position of the buffer, and moves the
+   * position past the record.
+   *
+   * @param buffer the buffer to be read from.
+   * @return a new timed ticket holding the decoded fields.
+   */
+  public static TimedTicket decodeTimedTicket(ByteBuffer buffer) {
+    TimedTicket ticket = decodeTimedTicket(buffer, buffer.position());
+    buffer.position(buffer.position() + RECORD_SIZE);
+    return ticket;
+  }
+
+  /**
+   * Converts a purchase time to the epoch seconds held in a record. Purchase
+   * times are local to the rider, so they are stored without an offset.
+   *
+   * @param dateTime the purchase time.
+   * @return the purchase time in epoch seconds.
+   */
+  public static long toEpochSecond(LocalDateTime dateTime) {
+    return dateTime.toEpochSecond(ZoneOffset.UTC);
+  }
+
+  /**
+   * Converts the epoch seconds held in a record back to a purchase time.
+   *
+   * @param epochSecond the purchase time in epoch seconds.
+   * @return the purchase time.
+   */
+  public static LocalDateTime fromEpochSecond(long epochSecond) {
+    return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+  }
+
+  private static void checkType(ByteBuffer buffer, int index, byte expectedType) {
+    byte type = typeOf(buffer, index);
+    if (type != expectedType) {
+      throw new CodecException("Record at " + index + " has type " + type +
+          ", expected " + expectedType);
+    }
+  }
+}
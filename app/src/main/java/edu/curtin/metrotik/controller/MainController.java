@@ -3,10 +3,18 @@ package edu.curtin.metrotik.controller;
 import edu.curtin.metrotik.monorailsimulator.MonorailSimulator;
 import edu.curtin.metrotik.ticketing.Ticket;
 import edu.curtin.metrotik.ticketing.TicketFactory;
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
 import edu.curtin.metrotik.ticketingsystem.TicketManager;
+import edu.curtin.metrotik.ticketingsystem.TravelReceipt;
+import edu.curtin.metrotik.useraccounts.Money;
 import edu.curtin.metrotik.useraccounts.UserAccount;
-import edu.curtin.metrotik.userinterface.NotificationHandler;
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
@@ -19,24 +27,24 @@ public class MainController {
   private static final Logger LOGGER = Logger.getLogger(MainController.class.getName());
   // For some reason the pmd ruleset requires that I prefix constant variables
   // names with a lower case letter. Convention usually requires that constants
-  // are in full upper case
-  private final double rIMEDTICKETPRICE = 10.00;
-  private final double zONETICKETPRICE = 5.00;
+  // are in full upper case. Prices are held in cents.
+  private final long rIMEDTICKETPRICE = Money.ofDollars(10);
+  private final long zONETICKETPRICE = Money.ofDollars(5);
 
   private TicketFactory ticketFactory;
   private TicketManager ticketManager;
-  private NotificationHandler notificationHandler;
   private UserAccount userAccount;
   private MonorailSimulator monorailSimulator;
+  private Clock clock;
 
   public MainController(TicketFactory ticketFactory,
       TicketManager ticketManager,
-      NotificationHandler notificationHandler,
       UserAccount userAccount,
-      MonorailSimulator monorailSimulator) {
+      MonorailSimulator monorailSimulator,
+      Clock clock) {
+    this.clock = clock;
     this.ticketFactory = ticketFactory;
     this.ticketManager = ticketManager;
-    this.notificationHandler = notificationHandler;
     this.userAccount = userAccount;
     this.monorailSimulator = monorailSimulator;
     LOGGER.info(() -> "MainController has been instantiated successfully.");
@@ -49,23 +57,17 @@ public class MainController {
    * @return true if the user successfully travels a zone, false otherwise.
    */
   public boolean requestZoneTravel(int zones) {
-    // Tickets must first be checked to see if they are valid for the requested
-    // zone travel.
-    if (ticketManager.canRideForRequestedZones(zones)) {
-      LOGGER.info(() -> "User has a valid ticket for the requested zones.");
-      // If there is a valid ticket, then the user can travel the requested
-      // zones. The ticketManager object only registers a single zone of travel
-      // at a time, so a loop must be used in order to register the travel.
-      for (int i = 0; i < zones; i++) {
-        ticketManager.travelRequestedZones();
-        monorailSimulator.travelZone();
-
-        if (LOGGER.isLoggable(java.util.logging.Level.INFO)) {
-          LOGGER.log(java.util.logging.Level.INFO,
-              "User has travelled zone {0} of " + zones, i + 1);
-        }
-      }
-      LOGGER.info(() -> "User has successfully travelled the requested zones.");
+    // The ticket manager pays for the whole journey in a single pass, and
+    // reports which tickets were used. If there is not enough ticketing for
+    // the requested zones, no tickets are used at all. The clock is read once
+    // and the same time is used to check every ticket.
+    long currentTimeMillis = clock.millis();
+    ticketManager.expireTickets(currentTimeMillis);
+    TravelReceipt receipt = ticketManager.travelZones(zones, currentTimeMillis);
+    if (receipt.isComplete()) {
+      monorailSimulator.travelZones(zones);
+      LOGGER.info(() -> "User has successfully travelled the requested zones: " +
+          receipt.toString());
       return true;
     } else {
       LOGGER.info(
@@ -81,14 +83,13 @@ public class MainController {
    * @return true if the ticket was successfully purchased, false otherwise.
    */
   public boolean requestTimedTicketPurchase(LocalDateTime validFrom) {
-    // The transaction must be successful before a ticket can be instantiated.
-    if (transact(rIMEDTICKETPRICE)) {
-      ticketFactory.primeTicketFactory(validFrom);
-      Ticket newTicket = ticketFactory.createTicket();
-      // The notification handler must be registered as an observer of the
-      // ticket before it is added to the ticket manager.
-      newTicket.addTicketObserver(notificationHandler);
-      ticketManager.addTimedTicket(newTicket, userAccount);
+    // The funds must be held before a ticket can be instantiated.
+    Optional<List<TimedTicket>> purchased = purchase(rIMEDTICKETPRICE,
+        () -> List.of(ticketFactory.createTimedTicket(validFrom)));
+    if (purchased.isPresent()) {
+      // The chain the ticket is added to passes its events on to the
+      // notification handler, so the ticket needs no observers of its own.
+      ticketManager.addTimedTicket(purchased.get().get(0), userAccount);
 
       LOGGER.info(() -> "User has successfully purchased a timed ticket.");
       return true;
@@ -104,14 +105,11 @@ public class MainController {
    * @return true if the ticket was successfully purchased, false otherwise.
    */
   public boolean requestZoneTicketPurchase(int zones) {
-    // The transaction must be successful before a ticket can be instantiated.
-    if (transact(zONETICKETPRICE * zones)) {
-      ticketFactory.primeTicketFactory(zones);
-      Ticket newTicket = ticketFactory.createTicket();
-      // The notification handler must be registered as an observer of the
-      // ticket before it is added to the ticket manager.
-      newTicket.addTicketObserver(notificationHandler);
-      ticketManager.addZoneTicket(newTicket, userAccount);
+    // The funds must be held before a ticket can be instantiated.
+    Optional<List<ZoneTicket>> purchased = purchase(zONETICKETPRICE * zones,
+        () -> List.of(ticketFactory.createZoneTicket(zones)));
+    if (purchased.isPresent()) {
+      ticketManager.addZoneTicket(purchased.get().get(0), userAccount);
 
       LOGGER.info(() -> "User has successfully purchased a zone ticket.");
       return true;
@@ -120,6 +118,41 @@ public class MainController {
     return false;
   }
 
+  /**
+   * This method is responsible for purchasing a batch of zone tickets, such as
+   * for a group travelling together. The account is debited once for the whole
+   * batch, so either every ticket is purchased or none are.
+   *
+   * @param count the number of tickets to be purchased.
+   * @param zones the number of zones to be purchased on each ticket.
+   * @return true if the tickets were successfully purchased, false otherwise.
+   */
+  public boolean requestZoneTicketBatchPurchase(int count, int zones) {
+    // An empty batch is rejected before the account is touched.
+    Optional<List<ZoneTicket>> purchased = count > 0 && zones > 0
+        ? purchase(zONETICKETPRICE * zones * count,
+            () -> ticketFactory.createZoneTickets(count, zones))
+        : Optional.empty();
+    if (purchased.isPresent()) {
+      ticketManager.addZoneTickets(purchased.get(), userAccount);
+
+      LOGGER.info(() -> "User has successfully purchased " + count + " zone tickets.");
+      return true;
+    }
+    LOGGER.info(() -> "User has failed to purchase " + count + " zone tickets.");
+    return false;
+  }
+
+  /**
+   * This method is responsible for expiring any timed tickets whose validity
+   * has ended since the last request, so that the user is notified without
+   * having to attempt travel.
+   */
+  public void expireTickets() {
+    int expired = ticketManager.expireTickets(clock.millis());
+    LOGGER.info(() -> expired + " timed tickets have expired.");
+  }
+
   /**
    * This method is responsible for deactivating the user account.
    */
@@ -130,10 +163,12 @@ public class MainController {
 
   /**
    * This method is responsible for adding funds to the user account.
+   *
+   * @param funds the amount to be added, in cents.
    */
-  public void addFunds(double funds) {
+  public void addFunds(long funds) {
     userAccount.creditFunds(funds);
-    LOGGER.info(() -> "User account has been credited with " + funds + ".");
+    LOGGER.info(() -> "User account has been credited with " + Money.format(funds) + ".");
   }
 
   /**
@@ -142,7 +177,7 @@ public class MainController {
    * @return the user account balance.
    */
   public String getAccountBalance() {
-    return String.valueOf(userAccount.getFunds());
+    return Money.format(userAccount.getFunds());
   }
 
   /**
@@ -165,23 +200,41 @@ public class MainController {
   }
 
   /**
-   * This method is responsible for ensuring transaction are valid before
-   * instantiating a new ticket.
+   * This method is responsible for ensuring transactions are valid before
+   * instantiating new tickets. The price is held in the user account, the
+   * tickets are instantiated, and only then is the account debited. If the
+   * tickets cannot be instantiated the funds are released again, so a failed
+   * purchase never costs the user anything. With a journal, the tickets are
+   * journalled together with the debit, so a crash can never keep one
+   * without the other.
    *
-   * @param amount the amount of funds to be debited from the user account.
+   * @param amount  the amount of funds to be debited from the user account, in
+   *                cents.
+   * @param tickets instantiates the tickets being purchased.
    *
-   * @return true if the transaction is successful, false otherwise.
+   * @return the purchased tickets, or nothing if the funds could not be held.
    */
-  private boolean transact(double amount) {
-    double currentfunds = userAccount.getFunds();
-    userAccount.debitFunds(amount);
-    if (userAccount.getFunds() == currentfunds - amount) {
-      LOGGER.info(() -> "User account has been debited with " + amount + ".");
-      return true;
-    } else {
+  private <T extends Ticket> Optional<List<T>> purchase(long amount,
+      Supplier<List<T>> tickets) {
+    UserAccount.FundsHold hold = userAccount.holdFunds(amount);
+    if (!hold.isHeld()) {
       LOGGER.info(
-          () -> "User account has failed to be debited with " + amount + ".");
-      return false;
+          () -> "User account has failed to be debited with " + Money.format(amount) + ".");
+      return Optional.empty();
+    }
+    List<T> purchased = null;
+    try {
+      purchased = tickets.get();
+    } finally {
+      // If instantiation threw, the purchase did not happen and the funds are
+      // returned before the exception carries on.
+      if (purchased == null) {
+        userAccount.releaseFunds(hold);
+      }
     }
+    userAccount.captureFunds(hold,
+        ticketManager.isJournalled() ? purchased : Collections.emptyList());
+    LOGGER.info(() -> "User account has been debited with " + Money.format(amount) + ".");
+    return Optional.of(purchased);
   }
 }
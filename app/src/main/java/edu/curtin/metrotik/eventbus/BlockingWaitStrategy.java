@@ -0,0 +1,71 @@
+package edu.curtin.metrotik.eventbus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Waits by blocking on a condition until a producer publishes an event. An
+ * idle processor uses no processor time at all. Producers only take the lock
+ * when a processor has said that it is about to block, so publishing while
+ * the processors are busy costs no more than with the other strategies.
+ *
+ * @author Kyer Potts
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+  // Blocked processors also wake on their own after this long, so that a
+  // halted processor notices even if no event is ever published again.
+  private static final long MAX_BLOCK_MILLIS = 100;
+
+  private final Lock lock;
+  private final Condition published;
+  // Set by a processor before it blocks, and cleared by the first producer to
+  // publish afterwards, which then wakes the processors.
+  private final AtomicBoolean signalNeeded;
+
+  public BlockingWaitStrategy() {
+    lock = new ReentrantLock();
+    published = lock.newCondition();
+    signalNeeded = new AtomicBoolean(false);
+  }
+
+  @Override
+  public boolean waitFor(long sequence, EventRingBuffer ringBuffer,
+      EventProcessor processor) {
+    if (ringBuffer.isPublished(sequence)) {
+      return true;
+    }
+    lock.lock();
+    try {
+      while (!ringBuffer.isPublished(sequence) && processor.isRunning()) {
+        // The flag is raised before the ring is checked again, so a producer
+        // either publishes before the check or sees the flag afterwards and
+        // waits on the lock until this thread is blocked.
+        signalNeeded.set(true);
+        if (ringBuffer.isPublished(sequence) || !processor.isRunning()) {
+          break;
+        }
+        published.await(MAX_BLOCK_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lock.unlock();
+    }
+    return ringBuffer.isPublished(sequence);
+  }
+
+  @Override
+  public void signalAllWhenBlocking() {
+    if (signalNeeded.getAndSet(false)) {
+      lock.lock();
+      try {
+        published.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
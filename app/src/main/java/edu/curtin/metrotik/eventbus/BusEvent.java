@@ -0,0 +1,68 @@
+package edu.curtin.metrotik.eventbus;
+
+import edu.curtin.metrotik.ticketing.TicketEventType;
+import edu.curtin.metrotik.useraccounts.AccountEvent;
+
+/**
+ * A single slot of the event ring. Slots are allocated once, when the ring is
+ * created, and are overwritten in place by every event published into them,
+ * so publishing an event never allocates. Only the fields for the type of the
+ * event are meaningful.
+ *
+ * Handlers are given the slot itself, and must copy anything they need to
+ * keep, as the slot will be reused once every handler has moved past it.
+ *
+ * @author Kyer Potts
+ */
+public class BusEvent {
+  private BusEventType type;
+  private AccountEvent accountEvent;
+  private long ticketID;
+  private TicketEventType ticketEventType;
+
+  /**
+   * Fills the slot with an account event. Only the bus should call this, while
+   * the slot is claimed for publishing.
+   *
+   * @param type         the type of the event, either a state change or a
+   *                     transaction.
+   * @param accountEvent the event raised by the account.
+   */
+  public void setAccountEvent(BusEventType type, AccountEvent accountEvent) {
+    this.type = type;
+    this.accountEvent = accountEvent;
+    this.ticketEventType = null;
+  }
+
+  /**
+   * Fills the slot with a ticket event. Only the bus should call this, while
+   * the slot is claimed for publishing.
+   *
+   * @param ticketID        the ID of the ticket.
+   * @param ticketEventType what happened to the ticket.
+   */
+  public void setTicketEvent(long ticketID, TicketEventType ticketEventType) {
+    this.type = BusEventType.TICKET;
+    this.ticketID = ticketID;
+    this.ticketEventType = ticketEventType;
+    // The account event of an earlier use of the slot is released, so that it
+    // is not kept reachable by the ring.
+    this.accountEvent = null;
+  }
+
+  public BusEventType getType() {
+    return type;
+  }
+
+  public AccountEvent getAccountEvent() {
+    return accountEvent;
+  }
+
+  public long getTicketID() {
+    return ticketID;
+  }
+
+  public TicketEventType getTicketEventType() {
+    return ticketEventType;
+  }
+}
@@ -0,0 +1,15 @@
+package edu.curtin.metrotik.eventbus;
+
+/**
+ * The kinds of event carried by the event bus.
+ *
+ * @author Kyer Potts
+ */
+public enum BusEventType {
+  // The state of an account has changed.
+  ACCOUNT_STATE,
+  // A transaction on an account has succeeded or failed.
+  ACCOUNT_TRANSACTION,
+  // A ticket has become invalid.
+  TICKET
+}
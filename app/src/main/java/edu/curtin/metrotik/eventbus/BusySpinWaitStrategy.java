@@ -0,0 +1,27 @@
+package edu.curtin.metrotik.eventbus;
+
+/**
+ * Waits by spinning on the ring without ever giving up the processor. This
+ * hands events over with the lowest latency, but keeps a core busy for every
+ * handler, so it should only be used when each handler has a core to itself.
+ *
+ * @author Kyer Potts
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+  @Override
+  public boolean waitFor(long sequence, EventRingBuffer ringBuffer,
+      EventProcessor processor) {
+    while (!ringBuffer.isPublished(sequence)) {
+      if (!processor.isRunning()) {
+        return false;
+      }
+      Thread.onSpinWait();
+    }
+    return true;
+  }
+
+  @Override
+  public void signalAllWhenBlocking() {
+    // Processors never block, so there is no one to wake.
+  }
+}
@@ -0,0 +1,156 @@
+package edu.curtin.metrotik.eventbus;
+
+import edu.curtin.metrotik.ticketing.TicketEventType;
+import edu.curtin.metrotik.ticketing.TicketObserver;
+import edu.curtin.metrotik.useraccounts.AccountEvent;
+import edu.curtin.metrotik.useraccounts.AccountStateObserver;
+import edu.curtin.metrotik.useraccounts.AccountTransactionObserver;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * An asynchronous bus for account and ticket events, built over a ring of
+ * preallocated slots. Accounts and ticket chains publish into the ring and
+ * return straight away, while each handler runs in batches on a thread of its
+ * own. A debit therefore only pays for publishing its events, rather than for
+ * whatever the observers do with them.
+ *
+ * The bus observes accounts and ticket chains itself, so it is registered
+ * with them in place of the observers it hands the events on to.
+ *
+ * @author Kyer Potts
+ */
+public class EventBus implements Closeable, AccountStateObserver,
+    AccountTransactionObserver, TicketObserver {
+  private static final Logger LOGGER = Logger.getLogger(EventBus.class.getName());
+  private static final long SHUTDOWN_WAIT_MILLIS = 5000;
+
+  private final EventRingBuffer ringBuffer;
+  private final List<EventProcessor> processors;
+  private final List<Thread> threads;
+  private boolean started;
+
+  /**
+   * Creates a bus. Handlers must be added before the bus is started.
+   *
+   * @param bufferSize   the number of events the ring can hold before
+   *                     producers wait for the slowest handler, which must be
+   *                     a power of two.
+   * @param waitStrategy the strategy handlers use to wait for events.
+   */
+  public EventBus(int bufferSize, WaitStrategy waitStrategy) {
+    this.ringBuffer = new EventRingBuffer(bufferSize, waitStrategy);
+    this.processors = new ArrayList<>();
+    this.threads = new ArrayList<>();
+    this.started = false;
+    LOGGER.info(() -> "Event bus has been initialised with " + bufferSize + " slots");
+  }
+
+  /**
+   * Adds a handler to be run on a thread of its own once the bus is started.
+   *
+   * @param handler the handler to be given every event.
+   */
+  public synchronized void addHandler(EventHandler handler) {
+    if (started) {
+      throw new EventBusException("Handlers cannot be added once the event bus has started");
+    }
+    processors.add(new EventProcessor(ringBuffer, handler));
+  }
+
+  /**
+   * Starts a daemon thread for each handler.
+   */
+  public synchronized void start() {
+    if (started) {
+      throw new EventBusException("The event bus has already been started");
+    }
+    started = true;
+    for (int i = 0; i < processors.size(); i++) {
+      Thread thread = new Thread(processors.get(i), "event-bus-" + i);
+      thread.setDaemon(true);
+      thread.start();
+      threads.add(thread);
+    }
+    LOGGER.info(() -> "Event bus has started " + threads.size() + " handlers");
+  }
+
+  /**
+   * Publishes an account state change.
+   *
+   * @param accountEvent the event raised by the account.
+   */
+  public void publishAccountStateEvent(AccountEvent accountEvent) {
+    long sequence = ringBuffer.next();
+    try {
+      ringBuffer.get(sequence).setAccountEvent(BusEventType.ACCOUNT_STATE, accountEvent);
+    } finally {
+      ringBuffer.publish(sequence);
+    }
+  }
+
+  /**
+   * Publishes an account transaction.
+   *
+   * @param accountEvent the event raised by the account.
+   */
+  public void publishAccountTransactionEvent(AccountEvent accountEvent) {
+    long sequence = ringBuffer.next();
+    try {
+      ringBuffer.get(sequence).setAccountEvent(BusEventType.ACCOUNT_TRANSACTION, accountEvent);
+    } finally {
+      ringBuffer.publish(sequence);
+    }
+  }
+
+  /**
+   * Publishes a ticket event.
+   *
+   * @param ticketID  the ID of the ticket.
+   * @param eventType what happened to the ticket.
+   */
+  public void publishTicketEvent(long ticketID, TicketEventType eventType) {
+    long sequence = ringBuffer.next();
+    try {
+      ringBuffer.get(sequence).setTicketEvent(ticketID, eventType);
+    } finally {
+      ringBuffer.publish(sequence);
+    }
+  }
+
+  @Override
+  public void accountStateUpdated(AccountEvent accountEvent) {
+    publishAccountStateEvent(accountEvent);
+  }
+
+  @Override
+  public void accountTransactionEventOccured(AccountEvent accountEvent) {
+    publishAccountTransactionEvent(accountEvent);
+  }
+
+  @Override
+  public void ticketEventOccurred(long ticketID, TicketEventType eventType) {
+    publishTicketEvent(ticketID, eventType);
+  }
+
+  /**
+   * Stops every handler once it has handled the events already published, and
+   * waits for their threads to finish.
+   */
+  @Override
+  public synchronized void close() {
+    for (EventProcessor processor : processors) {
+      processor.halt();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join(SHUTDOWN_WAIT_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    LOGGER.info(() -> "Event bus has been shut down");
+  }
+}
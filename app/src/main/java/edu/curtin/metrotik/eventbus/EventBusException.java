@@ -0,0 +1,18 @@
+package edu.curtin.metrotik.eventbus;
+
+/**
+ * This exception should be thrown whenever the event bus is misused, such as
+ * being given a ring size that is not a power of two, or having handlers added
+ * after it has been started.
+ *
+ * @author Kyer Potts
+ */
+public class EventBusException extends RuntimeException {
+  public EventBusException(String message) {
+    super(message);
+  }
+
+  public EventBusException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
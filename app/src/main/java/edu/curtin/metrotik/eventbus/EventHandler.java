@@ -0,0 +1,22 @@
+package edu.curtin.metrotik.eventbus;
+
+/**
+ * Contract for the consumers of the event bus. Each handler runs on a thread
+ * of its own, and is given every event published to the bus in order.
+ *
+ * @author Kyer Potts
+ */
+public interface EventHandler {
+  /**
+   * Called for each event published to the bus. Events are handed over in
+   * batches of whatever has been published since the handler last caught up,
+   * so handlers that write to a slow destination can hold their work until
+   * the end of the batch.
+   *
+   * @param event      the slot holding the event. The slot is reused once the
+   *                   handler returns, so it must not be kept.
+   * @param sequence   the sequence number of the event.
+   * @param endOfBatch true if this is the last event of the current batch.
+   */
+  public void onEvent(BusEvent event, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,89 @@
+package edu.curtin.metrotik.eventbus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a single handler over the events of the ring, on a thread of its own.
+ * The processor waits for the next event, then hands the handler every event
+ * that has been published since in one batch, and only then moves its
+ * sequence on to release the slots to producers.
+ *
+ * @author Kyer Potts
+ */
+public class EventProcessor implements Runnable {
+  private static final Logger LOGGER = Logger.getLogger(EventProcessor.class.getName());
+
+  private final EventRingBuffer ringBuffer;
+  private final EventHandler handler;
+  // The sequence of the last event handled.
+  private final AtomicLong sequence;
+  private volatile boolean running;
+
+  public EventProcessor(EventRingBuffer ringBuffer, EventHandler handler) {
+    this.ringBuffer = ringBuffer;
+    this.handler = handler;
+    this.sequence = new AtomicLong(-1);
+    this.running = true;
+    ringBuffer.addGatingSequence(sequence);
+  }
+
+  /**
+   * Handles events until the processor is halted. Once halted, any events
+   * already published are still handled before the processor stops, so
+   * nothing published before a shutdown is lost.
+   */
+  @Override
+  public void run() {
+    WaitStrategy waitStrategy = ringBuffer.getWaitStrategy();
+    long nextSequence = sequence.get() + 1;
+    while (waitStrategy.waitFor(nextSequence, ringBuffer, this)) {
+      // Everything published after the first event is taken as the batch.
+      // Producers are held back by this processor, so the batch can never be
+      // longer than the ring.
+      long endOfBatch = nextSequence;
+      while (ringBuffer.isPublished(endOfBatch + 1)) {
+        endOfBatch++;
+      }
+      for (long current = nextSequence; current <= endOfBatch; current++) {
+        try {
+          handler.onEvent(ringBuffer.get(current), current, current == endOfBatch);
+        } catch (RuntimeException e) {
+          // A failing handler must not stop the events behind it from being
+          // handled, or the producers would eventually block.
+          long failed = current;
+          LOGGER.log(Level.SEVERE, e, () -> "Event handler failed on event " + failed);
+        }
+      }
+      sequence.set(endOfBatch);
+      nextSequence = endOfBatch + 1;
+      if (Thread.currentThread().isInterrupted()) {
+        running = false;
+      }
+    }
+    LOGGER.info(() -> "Event processor has stopped at event " + sequence.get());
+  }
+
+  /**
+   * Asks the processor to stop once it has handled every event already
+   * published.
+   */
+  public void halt() {
+    running = false;
+    ringBuffer.getWaitStrategy().signalAllWhenBlocking();
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Accessor for the sequence of the last event handled.
+   *
+   * @return the sequence of the last event handled, or -1 if none have been.
+   */
+  public long getSequence() {
+    return sequence.get();
+  }
+}
@@ -0,0 +1,160 @@
+package edu.curtin.metrotik.eventbus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed size ring of preallocated event slots. Every event is given the
+ * next number in a sequence, and is written into the slot that sequence maps
+ * to. Publishing an event is a claim of the next sequence, a write into the
+ * slot and a store marking the slot as published. No locks are taken and
+ * nothing is allocated.
+ *
+ * The ring never overwrites an event that a processor has yet to handle. Each
+ * processor exposes the sequence it has handled up to, and a producer that has
+ * lapped the slowest processor waits for it to move on before claiming a slot.
+ *
+ * Each account and ticket chain usually only ever publishes from the one
+ * thread, but accounts in the registry may be served by several threads at
+ * once, so sequences are claimed with an atomic increment. Each slot records
+ * the sequence of the last event published into it, so processors never read
+ * a slot that has been claimed but not yet written.
+ *
+ * @author Kyer Potts
+ */
+public class EventRingBuffer {
+  private final BusEvent[] events;
+  private final int mask;
+  // The sequence of the event most recently published into each slot, or -1
+  // if nothing has been published into it yet.
+  private final AtomicLongArray publishedSequences;
+  // The last sequence claimed by a producer.
+  private final AtomicLong claimSequence;
+  private final WaitStrategy waitStrategy;
+
+  // The sequences that each processor has handled up to. Producers may not
+  // claim a slot until every processor has moved past its previous use.
+  private volatile AtomicLong[] gatingSequences;
+  // The lowest processor sequence seen by a producer. Producers only look at
+  // the processors again once they have caught up with this.
+  private volatile long cachedGatingSequence;
+
+  /**
+   * Creates a ring with the given number of slots.
+   *
+   * @param bufferSize   the number of slots, which must be a power of two.
+   * @param waitStrategy the strategy processors use to wait for events.
+   */
+  public EventRingBuffer(int bufferSize, WaitStrategy waitStrategy) {
+    if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+      throw new EventBusException("Event ring size must be a power of two: " + bufferSize);
+    }
+    this.events = new BusEvent[bufferSize];
+    this.mask = bufferSize - 1;
+    this.publishedSequences = new AtomicLongArray(bufferSize);
+    for (int i = 0; i < bufferSize; i++) {
+      events[i] = new BusEvent();
+      publishedSequences.set(i, -1);
+    }
+    this.claimSequence = new AtomicLong(-1);
+    this.waitStrategy = waitStrategy;
+    this.gatingSequences = new AtomicLong[0];
+    this.cachedGatingSequence = -1;
+  }
+
+  /**
+   * Claims the next slot for publishing. The caller must fill the slot and
+   * then publish the sequence, even if filling the slot fails, or processors
+   * will wait on it forever.
+   *
+   * @return the sequence of the claimed slot.
+   */
+  public long next() {
+    long sequence = claimSequence.incrementAndGet();
+    long wrapPoint = sequence - events.length;
+    if (wrapPoint > cachedGatingSequence) {
+      long minimum = minimumGatingSequence(sequence - 1);
+      while (wrapPoint > minimum) {
+        // The ring is full. The producer backs off until the slowest
+        // processor has handled the event it is about to overwrite.
+        LockSupport.parkNanos(1);
+        minimum = minimumGatingSequence(sequence - 1);
+      }
+      cachedGatingSequence = minimum;
+    }
+    return sequence;
+  }
+
+  /**
+   * Retrieves the slot for a sequence.
+   *
+   * @param sequence the sequence of the event.
+   * @return the slot the event is written to.
+   */
+  public BusEvent get(long sequence) {
+    return events[(int) sequence & mask];
+  }
+
+  /**
+   * Marks a claimed slot as published, handing it over to the processors.
+   *
+   * @param sequence the sequence of the slot.
+   */
+  public void publish(long sequence) {
+    publishedSequences.set((int) sequence & mask, sequence);
+    waitStrategy.signalAllWhenBlocking();
+  }
+
+  /**
+   * Checks whether the event at a sequence has been published.
+   *
+   * @param sequence the sequence of the event.
+   * @return true if the event has been published and not yet overwritten.
+   */
+  public boolean isPublished(long sequence) {
+    return publishedSequences.get((int) sequence & mask) == sequence;
+  }
+
+  /**
+   * Accessor for the number of slots in the ring.
+   *
+   * @return the number of slots.
+   */
+  public int getBufferSize() {
+    return events.length;
+  }
+
+  public WaitStrategy getWaitStrategy() {
+    return waitStrategy;
+  }
+
+  /**
+   * Registers the sequence of a processor, so that producers will not
+   * overwrite events it has not yet handled. This must be done before events
+   * are published.
+   *
+   * @param sequence the sequence the processor has handled up to.
+   */
+  public synchronized void addGatingSequence(AtomicLong sequence) {
+    AtomicLong[] current = gatingSequences;
+    AtomicLong[] updated = new AtomicLong[current.length + 1];
+    System.arraycopy(current, 0, updated, 0, current.length);
+    updated[current.length] = sequence;
+    gatingSequences = updated;
+  }
+
+  /**
+   * Finds the sequence that the slowest processor has handled up to.
+   *
+   * @param defaultMinimum the value to return if there are no processors.
+   * @return the lowest processor sequence.
+   */
+  private long minimumGatingSequence(long defaultMinimum) {
+    long minimum = defaultMinimum;
+    for (AtomicLong sequence : gatingSequences) {
+      minimum = Math.min(minimum, sequence.get());
+    }
+    return minimum;
+  }
+}
@@ -0,0 +1,58 @@
+package edu.curtin.metrotik.eventbus;
+
+import edu.curtin.metrotik.ticketing.TicketObserver;
+import edu.curtin.metrotik.useraccounts.AccountStateObserver;
+import edu.curtin.metrotik.useraccounts.AccountTransactionObserver;
+
+/**
+ * Hands the events of the bus on to the existing observer interfaces, so that
+ * components such as the notification handler can be moved behind the bus
+ * without being changed. The observers are called on the thread of the
+ * processor running this handler, so they must be safe to call from there.
+ *
+ * @author Kyer Potts
+ */
+public class ObserverEventHandler implements EventHandler {
+  private final AccountStateObserver stateObserver;
+  private final AccountTransactionObserver transactionObserver;
+  private final TicketObserver ticketObserver;
+
+  /**
+   * Creates a handler that calls the given observers. Any of the observers may
+   * be null, in which case events of that kind are skipped.
+   *
+   * @param stateObserver       the observer of account state changes.
+   * @param transactionObserver the observer of account transactions.
+   * @param ticketObserver      the observer of ticket events.
+   */
+  public ObserverEventHandler(AccountStateObserver stateObserver,
+      AccountTransactionObserver transactionObserver,
+      TicketObserver ticketObserver) {
+    this.stateObserver = stateObserver;
+    this.transactionObserver = transactionObserver;
+    this.ticketObserver = ticketObserver;
+  }
+
+  @Override
+  public void onEvent(BusEvent event, long sequence, boolean endOfBatch) {
+    switch (event.getType()) {
+      case ACCOUNT_STATE:
+        if (stateObserver != null) {
+          stateObserver.accountStateUpdated(event.getAccountEvent());
+        }
+        break;
+      case ACCOUNT_TRANSACTION:
+        if (transactionObserver != null) {
+          transactionObserver.accountTransactionEventOccured(event.getAccountEvent());
+        }
+        break;
+      case TICKET:
+        if (ticketObserver != null) {
+          ticketObserver.ticketEventOccurred(event.getTicketID(), event.getTicketEventType());
+        }
+        break;
+      default:
+        break;
+    }
+  }
+}
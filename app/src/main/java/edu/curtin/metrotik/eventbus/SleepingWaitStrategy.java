@@ -0,0 +1,58 @@
+package edu.curtin.metrotik.eventbus;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits by spinning, then yielding, and then sleeping for a short time
+ * between checks. Producers never have to wake a processor, and an idle
+ * processor uses almost no processor time, at the cost of events waiting up to
+ * the length of a sleep before they are handled.
+ *
+ * @author Kyer Potts
+ */
+public class SleepingWaitStrategy implements WaitStrategy {
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 100;
+  private static final long DEFAULT_SLEEP_NANOS = 100_000;
+
+  private final long sleepNanos;
+
+  public SleepingWaitStrategy() {
+    this(DEFAULT_SLEEP_NANOS);
+  }
+
+  /**
+   * Creates a strategy that sleeps for the given time between checks once it
+   * has finished spinning and yielding.
+   *
+   * @param sleepNanos the length of each sleep, in nanoseconds.
+   */
+  public SleepingWaitStrategy(long sleepNanos) {
+    this.sleepNanos = sleepNanos;
+  }
+
+  @Override
+  public boolean waitFor(long sequence, EventRingBuffer ringBuffer,
+      EventProcessor processor) {
+    int tries = 0;
+    while (!ringBuffer.isPublished(sequence)) {
+      if (!processor.isRunning()) {
+        return false;
+      }
+      if (tries < SPIN_TRIES) {
+        Thread.onSpinWait();
+      } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(sleepNanos);
+      }
+      tries = Math.min(tries + 1, SPIN_TRIES + YIELD_TRIES);
+    }
+    return true;
+  }
+
+  @Override
+  public void signalAllWhenBlocking() {
+    // Processors wake themselves, so there is no one to wake.
+  }
+}
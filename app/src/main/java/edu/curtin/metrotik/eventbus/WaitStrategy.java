@@ -0,0 +1,30 @@
+package edu.curtin.metrotik.eventbus;
+
+/**
+ * Contract for how an event processor waits for the next event to be
+ * published. Strategies trade the latency of handing an event over against
+ * the processor time spent waiting for one.
+ *
+ * @author Kyer Potts
+ */
+public interface WaitStrategy {
+  /**
+   * Waits until the event at the given sequence has been published, or the
+   * processor has been halted.
+   *
+   * @param sequence   the sequence of the event being waited for.
+   * @param ringBuffer the ring the event is published to.
+   * @param processor  the processor that is waiting.
+   * @return true if the event has been published, or false if the processor
+   *         was halted before it was.
+   */
+  public boolean waitFor(long sequence, EventRingBuffer ringBuffer,
+      EventProcessor processor);
+
+  /**
+   * Wakes any processors blocked waiting for an event. Called by the ring
+   * every time an event is published, so strategies that never block do
+   * nothing here.
+   */
+  public void signalAllWhenBlocking();
+}
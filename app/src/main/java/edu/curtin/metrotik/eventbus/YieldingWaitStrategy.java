@@ -0,0 +1,35 @@
+package edu.curtin.metrotik.eventbus;
+
+/**
+ * Waits by spinning on the ring for a short while, and then yielding the
+ * processor to other threads between checks. Latency is close to that of
+ * spinning, while leaving the core to other threads when they need it.
+ *
+ * @author Kyer Potts
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+  private static final int SPIN_TRIES = 100;
+
+  @Override
+  public boolean waitFor(long sequence, EventRingBuffer ringBuffer,
+      EventProcessor processor) {
+    int tries = 0;
+    while (!ringBuffer.isPublished(sequence)) {
+      if (!processor.isRunning()) {
+        return false;
+      }
+      if (tries < SPIN_TRIES) {
+        tries++;
+        Thread.onSpinWait();
+      } else {
+        Thread.yield();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void signalAllWhenBlocking() {
+    // Processors never block, so there is no one to wake.
+  }
+}
@@ -0,0 +1,112 @@
+package edu.curtin.metrotik.journal;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the snapshot of the transaction journal up to date from a thread of
+ * its own, so that recovery only ever replays the journal written since the
+ * last snapshot, however long the journal grows.
+ *
+ * The checkpointer holds its own copy of the state, which it brings up to date
+ * by replaying the durable part of the journal, and snapshots that. Accounts
+ * and tickets in use are never read or locked, so taking a snapshot does not
+ * hold up riders, and every snapshot is exactly the state after a known
+ * position of the journal. The copy is encoded while its lock is held and
+ * written out after it is released.
+ *
+ * @author Kyer Potts
+ */
+public final class JournalCheckpointer implements Closeable {
+  private static final Logger LOGGER = Logger.getLogger(JournalCheckpointer.class.getName());
+
+  private final TransactionJournal journal;
+  private final RecoveredState state;
+  private final Path snapshotFile;
+  private final long intervalNanos;
+  private final Clock clock;
+  private final Thread checkpointThread;
+  // The position of the journal that the state has been brought up to, and
+  // that of the last snapshot written. Only used by the checkpoint thread.
+  private long position;
+  private long snapshotPosition;
+  private volatile boolean closed;
+
+  /**
+   * Creates a checkpointer and starts its thread.
+   *
+   * @param journal        the journal to be snapshotted, which must have been
+   *                       recovered.
+   * @param state          the state recovered from the journal, which the
+   *                       checkpointer goes on bringing up to date.
+   * @param fromPosition   the position of the journal the state has been
+   *                       recovered up to.
+   * @param snapshotFile   the file the snapshot is written to.
+   * @param intervalMillis the time between snapshots, in milliseconds.
+   * @param clock          the clock used to drop expired timed tickets.
+   */
+  public JournalCheckpointer(TransactionJournal journal, RecoveredState state,
+      long fromPosition, Path snapshotFile, long intervalMillis, Clock clock) {
+    this.journal = journal;
+    this.state = state;
+    this.snapshotFile = snapshotFile;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervalMillis));
+    this.clock = clock;
+    this.position = fromPosition;
+    this.snapshotPosition = -1;
+    this.closed = false;
+    this.checkpointThread = new Thread(this::takeSnapshots, "journal-checkpoint");
+    this.checkpointThread.setDaemon(true);
+    this.checkpointThread.start();
+  }
+
+  /**
+   * Stops the checkpointer, waiting for it to take a last snapshot so that
+   * the next run has nothing to replay.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(checkpointThread);
+    try {
+      checkpointThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Body of the checkpoint thread. Takes a snapshot every interval, and a
+   * last one when closed.
+   */
+  private void takeSnapshots() {
+    boolean finished = false;
+    while (!finished) {
+      LockSupport.parkNanos(intervalNanos);
+      finished = closed;
+      checkpoint();
+    }
+  }
+
+  /**
+   * Brings the state up to date with the durable part of the journal and
+   * writes a snapshot, if anything has been written since the last one. A
+   * snapshot that cannot be written is reported and tried again next time,
+   * as the journal still holds everything it would have.
+   */
+  private void checkpoint() {
+    try {
+      position = journal.replay(state, position, journal.getDurablePosition());
+      if (position != snapshotPosition) {
+        JournalSnapshot.write(snapshotFile, state.encode(clock.millis()), position);
+        snapshotPosition = position;
+      }
+    } catch (JournalException e) {
+      LOGGER.warning(() -> "Snapshot has been skipped: " + e.getMessage());
+    }
+  }
+}
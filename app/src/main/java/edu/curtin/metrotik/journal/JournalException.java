@@ -0,0 +1,18 @@
+package edu.curtin.metrotik.journal;
+
+/**
+ * This exception should be thrown whenever the transaction journal cannot be
+ * read from or written to. A change that could not be made durable has not
+ * been acknowledged, so the caller must not report it as done.
+ *
+ * @author Kyer Potts
+ */
+public class JournalException extends RuntimeException {
+  public JournalException(String message) {
+    super(message);
+  }
+
+  public JournalException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
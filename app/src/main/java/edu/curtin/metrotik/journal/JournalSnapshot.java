@@ -0,0 +1,151 @@
+package edu.curtin.metrotik.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Helper class for the snapshot file kept beside the transaction journal. A
+ * snapshot holds the accounts and tickets as they were after a given position
+ * of the journal, so that recovery only needs to replay the journal from that
+ * position onwards.
+ *
+ * The file begins with a header recording the layout of the file, the journal
+ * position the snapshot was taken at, and the length and checksum of the body
+ * that follows. Snapshots are written to a temporary file which is forced to
+ * the disk and then moved over the previous snapshot, so the file always holds
+ * either the previous snapshot or the new one, whole.
+ *
+ * @author Kyer Potts
+ */
+public final class JournalSnapshot {
+  private static final Logger LOGGER = Logger.getLogger(JournalSnapshot.class.getName());
+
+  private static final int MAGIC = 0x4D54534E;
+  private static final int VERSION = 1;
+
+  // Header layout.
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 4;
+  private static final int POSITION_OFFSET = 8;
+  private static final int BODY_LENGTH_OFFSET = 16;
+  private static final int CHECKSUM_OFFSET = 20;
+  private static final int HEADER_SIZE = 24;
+
+  private JournalSnapshot() {
+  }
+
+  /**
+   * Finds the snapshot file kept beside a journal.
+   *
+   * @param journalFile the file backing the journal.
+   * @return the file backing its snapshot.
+   */
+  public static Path fileFor(Path journalFile) {
+    return journalFile.resolveSibling(journalFile.getFileName() + ".snapshot");
+  }
+
+  /**
+   * Writes a snapshot, replacing any previous snapshot once it is on the
+   * disk.
+   *
+   * @param file            the file backing the snapshot.
+   * @param body            the encoded state, positioned at its start.
+   * @param journalPosition the position of the journal the state was taken
+   *                        at.
+   */
+  public static void write(Path file, ByteBuffer body, long journalPosition) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC_OFFSET, MAGIC);
+    header.putInt(VERSION_OFFSET, VERSION);
+    header.putLong(POSITION_OFFSET, journalPosition);
+    header.putInt(BODY_LENGTH_OFFSET, body.remaining());
+    header.putInt(CHECKSUM_OFFSET, checksumOf(body));
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer[] parts = {header, body.duplicate()};
+      while (parts[1].hasRemaining()) {
+        channel.write(parts);
+      }
+      channel.force(true);
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Snapshot could not be written: " + temporary);
+      throw new JournalException("Snapshot could not be written: " + temporary, e);
+    }
+    try {
+      Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Snapshot could not be moved into place: " + file);
+      throw new JournalException("Snapshot could not be moved into place: " + file, e);
+    }
+    LOGGER.info(() -> "Snapshot has been written at journal position " + journalPosition);
+  }
+
+  /**
+   * Loads the snapshot into an empty state, if there is one. A snapshot that
+   * cannot be read or fails its checksum is ignored, as the journal it was
+   * taken from can be replayed in full instead.
+   *
+   * @param file  the file backing the snapshot.
+   * @param state the state the snapshot is loaded into.
+   * @return the position of the journal to replay from, which is 0 if there
+   *         was no snapshot to load.
+   */
+  public static long load(Path file, RecoveredState state) {
+    if (!Files.exists(file)) {
+      return 0;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      readFully(channel, header);
+      if (header.hasRemaining() || header.getInt(MAGIC_OFFSET) != MAGIC ||
+          header.getInt(VERSION_OFFSET) != VERSION ||
+          channel.size() != HEADER_SIZE + (long) header.getInt(BODY_LENGTH_OFFSET)) {
+        LOGGER.warning(() -> "File is not a valid snapshot and has been ignored: " + file);
+        return 0;
+      }
+      ByteBuffer body = ByteBuffer.allocate(header.getInt(BODY_LENGTH_OFFSET));
+      readFully(channel, body);
+      body.flip();
+      if (checksumOf(body) != header.getInt(CHECKSUM_OFFSET)) {
+        LOGGER.warning(() -> "Snapshot failed its checksum and has been ignored: " + file);
+        return 0;
+      }
+      state.decode(body);
+      long position = header.getLong(POSITION_OFFSET);
+      LOGGER.info(() -> "Snapshot has been loaded at journal position " + position);
+      return position;
+    } catch (IOException e) {
+      LOGGER.warning(() -> "Snapshot could not be read and has been ignored: " + file);
+      return 0;
+    }
+  }
+
+  /**
+   * Reads from the channel until the buffer is full or the file ends.
+   *
+   * @param channel the channel to be read from.
+   * @param buffer  the buffer to be filled.
+   * @throws IOException if the file could not be read.
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    int read = 0;
+    while (buffer.hasRemaining() && read >= 0) {
+      read = channel.read(buffer);
+    }
+  }
+
+  private static int checksumOf(ByteBuffer body) {
+    CRC32C checksum = new CRC32C();
+    checksum.update(body.duplicate());
+    return (int) checksum.getValue();
+  }
+}
@@ -0,0 +1,63 @@
+package edu.curtin.metrotik.journal;
+
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.useraccounts.AccountStatus;
+
+/**
+ * Contract for receiving the records of the transaction journal as it is
+ * replayed, in the order they were written.
+ *
+ * @author Kyer Potts
+ */
+public interface JournalVisitor {
+  /**
+   * Provides a contract for replaying a change to the funds or state of an
+   * account.
+   *
+   * @param accountID the ID of the account.
+   * @param change    the amount added to the funds of the account, in cents,
+   *                  which is negative for debits.
+   * @param status    the standing of the account after the change.
+   * @param version   the version of the balance after the change, or 0 if
+   *                  the change does not record the standing of the account.
+   */
+  public void fundsChanged(int accountID, long change, AccountStatus status, long version);
+
+  /**
+   * Provides a contract for replaying the purchase of a ticket. The ticket
+   * has only been paid for once the purchase that it belongs to is captured.
+   *
+   * @param accountID the ID of the account that purchased the ticket.
+   * @param ticket    the ticket as it was when purchased.
+   */
+  public void ticketAdded(int accountID, Ticket ticket);
+
+  /**
+   * Provides a contract for replaying the debit that paid for a purchase.
+   * The tickets of the purchase were replayed directly before it.
+   *
+   * @param accountID   the ID of the account.
+   * @param change      the amount added to the funds of the account, in
+   *                    cents, which is negative for the debit.
+   * @param status      the standing of the account after the debit.
+   * @param version     the version of the balance after the debit.
+   * @param ticketCount the number of tickets purchased.
+   */
+  public void purchaseCaptured(int accountID, long change, AccountStatus status, long version,
+      int ticketCount);
+
+  /**
+   * Provides a contract for replaying zones travelled on a zone ticket.
+   *
+   * @param ticketID the ID of the ticket.
+   * @param zones    the number of zones taken from its allocation.
+   */
+  public void zonesTravelled(long ticketID, int zones);
+
+  /**
+   * Provides a contract for replaying the lease of a block of ticket IDs.
+   *
+   * @param lastTicketID the highest ID in the block.
+   */
+  public void ticketIDsLeased(long lastTicketID);
+}
@@ -0,0 +1,35 @@
+package edu.curtin.metrotik.journal;
+
+import edu.curtin.metrotik.ticketing.TicketIDSource;
+
+/**
+ * A ticket ID source that records the end of every block it leases in the
+ * transaction journal, and waits for the record to be durable before handing
+ * the block out. IDs continue on from the highest block leased after a
+ * restart, so no ID is issued twice, even after a crash. Blocks are leased
+ * rarely, so waiting on the journal adds nothing to most purchases.
+ *
+ * @author Kyer Potts
+ */
+public class JournalledTicketIDSource implements TicketIDSource {
+  private final TicketIDSource source;
+  private final TransactionJournal journal;
+
+  /**
+   * Creates a source that journals the blocks leased from another.
+   *
+   * @param source  the source that blocks are leased from.
+   * @param journal the journal the blocks are recorded in.
+   */
+  public JournalledTicketIDSource(TicketIDSource source, TransactionJournal journal) {
+    this.source = source;
+    this.journal = journal;
+  }
+
+  @Override
+  public long leaseBlock(int size) {
+    long firstID = source.leaseBlock(size);
+    journal.awaitDurable(journal.appendTicketIDsLeased(firstID + size - 1));
+    return firstID;
+  }
+}
@@ -0,0 +1,322 @@
+package edu.curtin.metrotik.journal;
+
+import edu.curtin.metrotik.codec.TicketCodec;
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import edu.curtin.metrotik.ticketingsystem.TicketChain;
+import edu.curtin.metrotik.useraccounts.AccountStatus;
+import edu.curtin.metrotik.useraccounts.UserAccount;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The accounts and tickets rebuilt by replaying the transaction journal. The
+ * funds of an account are the sum of every change to them, which does not
+ * depend on the order the changes were written in. The standing of an account
+ * is taken from the change with the highest version, as threads racing each
+ * other can write changes out of order. Funds that were held for purchases are
+ * not restored, as those purchases ended with the program. The tickets of a
+ * purchase are only kept once the debit that paid for them has been replayed,
+ * so tickets left without their debit by a crash are never restored.
+ *
+ * Once the journal has been replayed, each account and its tickets are
+ * restored when its session is first created. Tickets are only restored to
+ * the first session of an account, as the state may lag behind the journal,
+ * and a session created again after eviction holds the tickets bought since.
+ * Restored tickets are copies, so the state can go on being brought up to
+ * date from the journal, such as by a checkpointer keeping a snapshot, while
+ * the restored tickets are in use. Every method is synchronized for this
+ * reason.
+ *
+ * The state can be encoded as the body of a snapshot, and decoded again to
+ * restore it without replaying the journal that built it. Accounts are
+ * encoded as fixed width records of their ID, standing, funds and balance
+ * version, and tickets as the ID of their account followed by the ticket,
+ * encoded by the ticket codec.
+ *
+ * @author Kyer Potts
+ */
+public class RecoveredState implements JournalVisitor {
+  private static final Logger LOGGER = Logger.getLogger(RecoveredState.class.getName());
+
+  // Snapshot body layout: a header, then the accounts, then the tickets.
+  private static final int LAST_TICKET_ID_OFFSET = 0;
+  private static final int ACCOUNT_COUNT_OFFSET = 8;
+  private static final int TICKET_COUNT_OFFSET = 12;
+  private static final int BODY_HEADER_SIZE = 16;
+
+  private static final int ACCOUNT_RECORD_SIZE = 24;
+  private static final int ACCOUNT_ID_OFFSET = 0;
+  private static final int ACCOUNT_STATUS_OFFSET = 4;
+  private static final int ACCOUNT_FUNDS_OFFSET = 8;
+  private static final int ACCOUNT_VERSION_OFFSET = 16;
+
+  private static final int TICKET_RECORD_SIZE = 8 + TicketCodec.RECORD_SIZE;
+  private static final int TICKET_ACCOUNT_OFFSET = 0;
+  private static final int TICKET_OFFSET = 8;
+
+  private static final AccountStatus[] STATUSES = AccountStatus.values();
+
+  private final Map<Integer, RecoveredAccount> accounts;
+  // The live tickets of each account, in the order they were purchased, and
+  // the zone tickets by ID, so that travel can be replayed against them.
+  private final Map<Integer, Map<Long, Ticket>> tickets;
+  private final Map<Long, ZoneTicket> zoneTickets;
+  private final Map<Long, Integer> zoneTicketOwners;
+  // The tickets of each account replayed since its last captured purchase,
+  // which are waiting on the debit that pays for them.
+  private final Map<Integer, List<Ticket>> uncapturedTickets;
+  // The accounts whose tickets have been restored to a session.
+  private final Set<Integer> restoredAccounts;
+  private long lastTicketID;
+
+  public RecoveredState() {
+    this.accounts = new HashMap<>();
+    this.tickets = new HashMap<>();
+    this.zoneTickets = new HashMap<>();
+    this.zoneTicketOwners = new HashMap<>();
+    this.uncapturedTickets = new HashMap<>();
+    this.restoredAccounts = new HashSet<>();
+    this.lastTicketID = 0;
+  }
+
+  @Override
+  public synchronized void fundsChanged(int accountID, long change, AccountStatus status,
+      long version) {
+    RecoveredAccount account = accounts.computeIfAbsent(accountID, id -> new RecoveredAccount());
+    account.funds += change;
+    if (version > account.version) {
+      account.status = status;
+      account.version = version;
+    }
+  }
+
+  @Override
+  public synchronized void ticketAdded(int accountID, Ticket ticket) {
+    uncapturedTickets.computeIfAbsent(accountID, id -> new ArrayList<>()).add(ticket);
+  }
+
+  @Override
+  public synchronized void purchaseCaptured(int accountID, long change, AccountStatus status,
+      long version, int ticketCount) {
+    fundsChanged(accountID, change, status, version);
+    List<Ticket> uncaptured = uncapturedTickets.remove(accountID);
+    int available = uncaptured == null ? 0 : uncaptured.size();
+    if (available < ticketCount) {
+      LOGGER.warning(() -> "Purchase of " + ticketCount + " tickets by account " + accountID +
+          " only has " + available + " tickets in the journal");
+    }
+    if (uncaptured == null) {
+      return;
+    }
+    // The tickets of a purchase come directly before its debit. Any earlier
+    // ones belong to a purchase that was cut short by a crash, and were never
+    // paid for.
+    for (Ticket ticket : uncaptured.subList(Math.max(0, available - ticketCount), available)) {
+      addTicket(accountID, ticket);
+    }
+  }
+
+  /**
+   * Adds a ticket that has been paid for to the live tickets of an account.
+   *
+   * @param accountID the ID of the account that purchased the ticket.
+   * @param ticket    the ticket.
+   */
+  private void addTicket(int accountID, Ticket ticket) {
+    tickets.computeIfAbsent(accountID, id -> new LinkedHashMap<>())
+        .put(ticket.getTicketID(), ticket);
+    if (ticket instanceof ZoneTicket) {
+      zoneTickets.put(ticket.getTicketID(), (ZoneTicket) ticket);
+      zoneTicketOwners.put(ticket.getTicketID(), accountID);
+    }
+  }
+
+  @Override
+  public synchronized void zonesTravelled(long ticketID, int zones) {
+    ZoneTicket ticket = zoneTickets.get(ticketID);
+    if (ticket == null) {
+      LOGGER.warning(() -> "Travel on unknown ticket " + ticketID + " has been ignored");
+      return;
+    }
+    ticket.claimZones(zones);
+    // Exhausted tickets are removed from their chain, so they are not
+    // restored.
+    if (ticket.getZoneAllocation() == 0) {
+      zoneTickets.remove(ticketID);
+      tickets.get(zoneTicketOwners.remove(ticketID)).remove(ticketID);
+    }
+  }
+
+  @Override
+  public synchronized void ticketIDsLeased(long leasedTicketID) {
+    lastTicketID = Math.max(lastTicketID, leasedTicketID);
+  }
+
+  /**
+   * Accessor for the highest ticket ID leased in a previous run. Ticket IDs
+   * continue on from this value.
+   *
+   * @return the highest ticket ID leased.
+   */
+  public synchronized long getLastTicketID() {
+    return lastTicketID;
+  }
+
+  public synchronized int getAccountCount() {
+    return accounts.size();
+  }
+
+  /**
+   * Counts the live tickets of every account.
+   *
+   * @return the number of tickets that would be restored.
+   */
+  public synchronized int getTicketCount() {
+    int count = 0;
+    for (Map<Long, Ticket> accountTickets : tickets.values()) {
+      count += accountTickets.size();
+    }
+    return count;
+  }
+
+  /**
+   * Restores the funds and standing of an account, if it has any recorded in
+   * the journal.
+   *
+   * @param userAccount the newly created account.
+   */
+  public synchronized void restoreAccount(UserAccount userAccount) {
+    RecoveredAccount account = accounts.get(userAccount.getAccountID());
+    if (account != null) {
+      userAccount.restoreBalance(account.funds, account.status, account.version);
+    }
+  }
+
+  /**
+   * Adds the live tickets of an account to its newly created chains, if they
+   * have not already been restored to an earlier session of the account.
+   *
+   * @param accountID    the ID of the account.
+   * @param zoneTickets  the chain of zone tickets of the account.
+   * @param timedTickets the chain of timed tickets of the account.
+   */
+  public synchronized void restoreTickets(int accountID, TicketChain<ZoneTicket> zoneTickets,
+      TicketChain<TimedTicket> timedTickets) {
+    if (!restoredAccounts.add(accountID)) {
+      return;
+    }
+    Map<Long, Ticket> accountTickets = tickets.getOrDefault(accountID, Collections.emptyMap());
+    for (Ticket ticket : accountTickets.values()) {
+      if (ticket instanceof ZoneTicket) {
+        ZoneTicket zoneTicket = (ZoneTicket) ticket;
+        zoneTickets.addTicket(new ZoneTicket(zoneTicket.getTicketID(),
+            zoneTicket.getPurchaseTimeDate(), zoneTicket.getZoneAllocation()));
+      } else {
+        TimedTicket timedTicket = (TimedTicket) ticket;
+        timedTickets.addTicket(new TimedTicket(timedTicket.getTicketID(),
+            timedTicket.getPurchaseTimeDate(), timedTicket.getValidFromMillis()));
+      }
+    }
+    LOGGER.info(() -> accountTickets.size() + " tickets have been restored to account " +
+        accountID);
+  }
+
+  /**
+   * Encodes the state as the body of a snapshot. The state is copied while
+   * holding the lock of the state, and can be written out after it is
+   * released. Expiry is not journalled, so timed tickets that have expired
+   * are dropped here instead.
+   *
+   * @param currentTimeMillis the current time, in epoch milliseconds.
+   * @return a buffer holding the encoded state, positioned at its start.
+   */
+  public synchronized ByteBuffer encode(long currentTimeMillis) {
+    for (Map<Long, Ticket> accountTickets : tickets.values()) {
+      accountTickets.values().removeIf(ticket -> ticket instanceof TimedTicket &&
+          ((TimedTicket) ticket).getValidToMillis() <= currentTimeMillis);
+    }
+    int ticketCount = getTicketCount();
+    ByteBuffer body = ByteBuffer.allocate(BODY_HEADER_SIZE +
+        accounts.size() * ACCOUNT_RECORD_SIZE + ticketCount * TICKET_RECORD_SIZE);
+    body.putLong(LAST_TICKET_ID_OFFSET, lastTicketID);
+    body.putInt(ACCOUNT_COUNT_OFFSET, accounts.size());
+    body.putInt(TICKET_COUNT_OFFSET, ticketCount);
+    int index = BODY_HEADER_SIZE;
+    for (Map.Entry<Integer, RecoveredAccount> entry : accounts.entrySet()) {
+      RecoveredAccount account = entry.getValue();
+      body.putInt(index + ACCOUNT_ID_OFFSET, entry.getKey());
+      body.put(index + ACCOUNT_STATUS_OFFSET, (byte) account.status.ordinal());
+      body.putLong(index + ACCOUNT_FUNDS_OFFSET, account.funds);
+      body.putLong(index + ACCOUNT_VERSION_OFFSET, account.version);
+      index += ACCOUNT_RECORD_SIZE;
+    }
+    for (Map.Entry<Integer, Map<Long, Ticket>> entry : tickets.entrySet()) {
+      for (Ticket ticket : entry.getValue().values()) {
+        body.putInt(index + TICKET_ACCOUNT_OFFSET, entry.getKey());
+        if (ticket instanceof ZoneTicket) {
+          TicketCodec.encodeZoneTicket(body, index + TICKET_OFFSET, (ZoneTicket) ticket);
+        } else {
+          TicketCodec.encodeTimedTicket(body, index + TICKET_OFFSET, (TimedTicket) ticket);
+        }
+        index += TICKET_RECORD_SIZE;
+      }
+    }
+    return body;
+  }
+
+  /**
+   * Adds the state encoded in the body of a snapshot, which is expected to be
+   * loaded into an empty state before the journal written after it is
+   * replayed.
+   *
+   * @param body the body of the snapshot, positioned at its start.
+   * @throws JournalException if the body is not the length its header says.
+   */
+  public synchronized void decode(ByteBuffer body) {
+    int accountCount = body.getInt(body.position() + ACCOUNT_COUNT_OFFSET);
+    int ticketCount = body.getInt(body.position() + TICKET_COUNT_OFFSET);
+    if (accountCount < 0 || ticketCount < 0 || body.remaining() != BODY_HEADER_SIZE +
+        (long) accountCount * ACCOUNT_RECORD_SIZE + (long) ticketCount * TICKET_RECORD_SIZE) {
+      throw new JournalException("Snapshot of " + body.remaining() + " bytes cannot hold " +
+          accountCount + " accounts and " + ticketCount + " tickets");
+    }
+    int index = body.position();
+    lastTicketID = Math.max(lastTicketID, body.getLong(index + LAST_TICKET_ID_OFFSET));
+    index += BODY_HEADER_SIZE;
+    for (int i = 0; i < accountCount; i++) {
+      RecoveredAccount account = accounts.computeIfAbsent(
+          body.getInt(index + ACCOUNT_ID_OFFSET), id -> new RecoveredAccount());
+      account.status = STATUSES[body.get(index + ACCOUNT_STATUS_OFFSET)];
+      account.funds = body.getLong(index + ACCOUNT_FUNDS_OFFSET);
+      account.version = body.getLong(index + ACCOUNT_VERSION_OFFSET);
+      index += ACCOUNT_RECORD_SIZE;
+    }
+    for (int i = 0; i < ticketCount; i++) {
+      int ticketIndex = index + TICKET_OFFSET;
+      addTicket(body.getInt(index + TICKET_ACCOUNT_OFFSET),
+          TicketCodec.typeOf(body, ticketIndex) == TicketCodec.TYPE_ZONE
+              ? TicketCodec.decodeZoneTicket(body, ticketIndex)
+              : TicketCodec.decodeTimedTicket(body, ticketIndex));
+      index += TICKET_RECORD_SIZE;
+    }
+  }
+
+  /**
+   * The funds and standing of a single account, as rebuilt from the journal.
+   */
+  private static final class RecoveredAccount {
+    private long funds;
+    private AccountStatus status = AccountStatus.GOOD_STANDING;
+    private long version;
+  }
+}
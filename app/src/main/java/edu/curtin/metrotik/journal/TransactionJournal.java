@@ -0,0 +1,677 @@
+package edu.curtin.metrotik.journal;
+
+import edu.curtin.metrotik.codec.TicketCodec;
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import edu.curtin.metrotik.useraccounts.AccountStatus;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * A write-ahead journal of every change to accounts and tickets, kept in a
+ * local file. A change is appended to the journal once it has been made in
+ * memory, and the caller waits for the journal to reach the disk before the
+ * change is acknowledged, so nothing that was acknowledged can be lost in a
+ * crash.
+ *
+ * Appending only copies a compact record into a buffer. A commit thread
+ * writes the buffer out and forces it to the disk, and every caller waiting
+ * on a record in that buffer is released by the one force, so threads making
+ * changes at the same moment share the cost of a single fsync. The commit
+ * thread can also wait a short window after the first record of a group
+ * arrives, trading a little latency for larger groups. While one group is
+ * being forced, the next fills the other buffer.
+ *
+ * Each record begins with a checksum and its type, which gives its length. A
+ * record cut short or garbled by a crash fails its checksum, and the journal
+ * is truncated to the last whole record when it is recovered. Such a record
+ * was never acknowledged.
+ *
+ * A purchase is appended as the records of its tickets followed by the debit
+ * that paid for them, all reserved at once, so they are always committed in
+ * the same group. If a crash cuts the group short, the tickets are left
+ * without their debit, and recovery ignores them, so a ticket is never
+ * restored unless it was paid for.
+ *
+ * Records are never changed once they are durable, so the durable part of the
+ * journal can be read from another thread while records are being appended,
+ * such as to keep a snapshot up to date.
+ *
+ * @author Kyer Potts
+ */
+public final class TransactionJournal implements Closeable {
+  private static final Logger LOGGER = Logger.getLogger(TransactionJournal.class.getName());
+
+  private static final int BUFFER_SIZE = 1 << 20;
+  // A group is committed early, without waiting out the window, once this
+  // much of the buffer has been filled.
+  private static final int COMMIT_THRESHOLD = BUFFER_SIZE / 2;
+  private static final int READ_BUFFER_SIZE = 1 << 16;
+
+  // Record types.
+  private static final byte TYPE_FUNDS_CHANGED = 1;
+  private static final byte TYPE_TICKET_ADDED = 2;
+  private static final byte TYPE_ZONES_TRAVELLED = 3;
+  private static final byte TYPE_TICKET_IDS_LEASED = 4;
+  private static final byte TYPE_PURCHASE_CAPTURED = 5;
+
+  // Record header layout, shared by every type. The checksum covers the
+  // record from the type onwards.
+  private static final int CHECKSUM_OFFSET = 0;
+  private static final int TYPE_OFFSET = 4;
+  private static final int HEADER_SIZE = 8;
+
+  // Funds changed: the account, its standing, the change and the version of
+  // the balance.
+  private static final int FUNDS_SIZE = 32;
+  private static final int FUNDS_ACCOUNT_OFFSET = 8;
+  private static final int FUNDS_STATUS_OFFSET = 12;
+  private static final int FUNDS_CHANGE_OFFSET = 16;
+  private static final int FUNDS_VERSION_OFFSET = 24;
+
+  // Purchase captured: laid out as a funds change, followed by the number of
+  // tickets purchased, whose records come directly before it.
+  private static final int PURCHASE_SIZE = 40;
+  private static final int PURCHASE_TICKETS_OFFSET = 32;
+
+  // Ticket added: the account and the ticket, encoded by the ticket codec.
+  private static final int TICKET_SIZE = 16 + TicketCodec.RECORD_SIZE;
+  private static final int TICKET_ACCOUNT_OFFSET = 8;
+  private static final int TICKET_RECORD_OFFSET = 16;
+
+  // Zones travelled: the zones taken and the ticket they were taken from.
+  private static final int TRAVEL_SIZE = 24;
+  private static final int TRAVEL_ZONES_OFFSET = 8;
+  private static final int TRAVEL_TICKET_OFFSET = 16;
+
+  // Ticket IDs leased: the highest ID of the block.
+  private static final int LEASE_SIZE = 16;
+  private static final int LEASE_ID_OFFSET = 8;
+
+  private static final AccountStatus[] STATUSES = AccountStatus.values();
+
+  private final Path file;
+  private final FileChannel channel;
+  private final long windowNanos;
+  private final Lock lock;
+  // Signalled when the first record of a group is appended, or the group
+  // should be committed without waiting out the window.
+  private final Condition recordsWaiting;
+  // Signalled when a group has been forced to the disk, or the buffers have
+  // been swapped and there is room to append again.
+  private final Condition committed;
+  private final CRC32C checksum;
+  private final Thread commitThread;
+
+  // Records are appended to one buffer while the commit thread writes the
+  // other. Both are guarded by the lock, except while the commit thread is
+  // writing the buffer it has taken.
+  private ByteBuffer pending;
+  private ByteBuffer writing;
+  // The length the file will have once every appended record is written.
+  private long appendedPosition;
+  // The length of the file that is known to be on the disk.
+  private volatile long durablePosition;
+  private boolean recovered;
+  private boolean closed;
+  private IOException failure;
+
+  /**
+   * Opens the journal held in the given file, creating it if it does not
+   * exist. The journal must be recovered before anything is appended.
+   *
+   * @param file        the file backing the journal.
+   * @param windowNanos how long a group is held open for more records before
+   *                    it is committed, in nanoseconds. With no window, a
+   *                    group is committed as soon as the previous one is on
+   *                    the disk.
+   */
+  public TransactionJournal(Path file, long windowNanos) {
+    this.file = file;
+    this.windowNanos = Math.max(0, windowNanos);
+    this.lock = new ReentrantLock();
+    this.recordsWaiting = lock.newCondition();
+    this.committed = lock.newCondition();
+    this.checksum = new CRC32C();
+    this.pending = ByteBuffer.allocate(BUFFER_SIZE);
+    this.writing = ByteBuffer.allocate(BUFFER_SIZE);
+    this.recovered = false;
+    this.closed = false;
+    try {
+      this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Journal could not be opened: " + file);
+      throw new JournalException("Journal could not be opened: " + file, e);
+    }
+    this.commitThread = new Thread(this::commitGroups, "journal-commit");
+    this.commitThread.setDaemon(true);
+  }
+
+  /**
+   * Replays every whole record in the journal, then cuts off anything after
+   * the last whole record, which was being written when the program stopped
+   * and was never acknowledged. The journal can be appended to once it has
+   * been recovered.
+   *
+   * @param visitor receives each record, in the order they were written.
+   * @return the number of records replayed.
+   */
+  public long recover(JournalVisitor visitor) {
+    return recover(visitor, 0);
+  }
+
+  /**
+   * Replays the whole records from the given position onwards, such as the
+   * records written after a snapshot was taken, then cuts off anything after
+   * the last whole record. The journal can be appended to once it has been
+   * recovered.
+   *
+   * @param visitor      receives each record, in the order they were written.
+   * @param fromPosition the position of the first record to be replayed.
+   * @return the number of records replayed.
+   */
+  public long recover(JournalVisitor visitor, long fromPosition) {
+    lock.lock();
+    try {
+      if (recovered) {
+        throw new JournalException("Journal has already been recovered: " + file);
+      }
+      long fileSize = channel.size();
+      if (fromPosition > fileSize) {
+        LOGGER.severe(() -> "Journal is shorter than its snapshot: " + file);
+        throw new JournalException("Journal " + file + " is " + fileSize +
+            " bytes, but its snapshot was taken at " + fromPosition + " bytes");
+      }
+      long[] end = new long[1];
+      long count = scan(visitor, fromPosition, Long.MAX_VALUE, end);
+      if (end[0] < fileSize) {
+        channel.truncate(end[0]);
+        channel.force(true);
+        LOGGER.warning(() -> "Journal has been truncated from " + fileSize + " to " + end[0] +
+            " bytes, as its last record was incomplete");
+      }
+      appendedPosition = end[0];
+      durablePosition = end[0];
+      recovered = true;
+      commitThread.start();
+      LOGGER.info(() -> "Journal has been recovered with " + count + " records");
+      return count;
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Journal could not be recovered: " + file);
+      throw new JournalException("Journal could not be recovered: " + file, e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends a change to the funds or state of an account.
+   *
+   * @param accountID the ID of the account.
+   * @param change    the amount added to the funds, in cents.
+   * @param status    the standing of the account after the change.
+   * @param version   the version of the balance after the change, or 0 if the
+   *                  standing is not being recorded.
+   * @return the position that must be durable for the record to be.
+   */
+  public long appendFundsChanged(int accountID, long change, AccountStatus status,
+      long version) {
+    lock.lock();
+    try {
+      int index = reserve(FUNDS_SIZE);
+      pending.put(index + TYPE_OFFSET, TYPE_FUNDS_CHANGED);
+      pending.putInt(index + FUNDS_ACCOUNT_OFFSET, accountID);
+      pending.put(index + FUNDS_STATUS_OFFSET, (byte) status.ordinal());
+      pending.putLong(index + FUNDS_CHANGE_OFFSET, change);
+      pending.putLong(index + FUNDS_VERSION_OFFSET, version);
+      return seal(index, FUNDS_SIZE);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends a purchase: the tickets purchased, and the debit of the account
+   * that paid for them. The records are reserved together, so the purchase
+   * is committed in a single group, and is only replayed if the debit
+   * reached the disk.
+   *
+   * @param accountID the ID of the account that purchased the tickets.
+   * @param tickets   the tickets, which must be zone or timed tickets.
+   * @param change    the amount added to the funds, in cents, which is
+   *                  negative for the debit.
+   * @param status    the standing of the account after the debit.
+   * @param version   the version of the balance after the debit.
+   * @return the position that must be durable for the purchase to be.
+   * @throws JournalException if the purchase is too large to be committed in
+   *                          a single group.
+   */
+  public long appendPurchase(int accountID, List<? extends Ticket> tickets, long change,
+      AccountStatus status, long version) {
+    long size = (long) tickets.size() * TICKET_SIZE + PURCHASE_SIZE;
+    if (size > BUFFER_SIZE) {
+      throw new JournalException("Purchase of " + tickets.size() +
+          " tickets is too large to be journalled");
+    }
+    lock.lock();
+    try {
+      int index = reserve((int) size);
+      for (Ticket ticket : tickets) {
+        pending.put(index + TYPE_OFFSET, TYPE_TICKET_ADDED);
+        pending.putInt(index + TICKET_ACCOUNT_OFFSET, accountID);
+        if (ticket instanceof ZoneTicket) {
+          TicketCodec.encodeZoneTicket(pending, index + TICKET_RECORD_OFFSET,
+              (ZoneTicket) ticket);
+        } else {
+          TicketCodec.encodeTimedTicket(pending, index + TICKET_RECORD_OFFSET,
+              (TimedTicket) ticket);
+        }
+        seal(index, TICKET_SIZE);
+        index += TICKET_SIZE;
+      }
+      pending.put(index + TYPE_OFFSET, TYPE_PURCHASE_CAPTURED);
+      pending.putInt(index + FUNDS_ACCOUNT_OFFSET, accountID);
+      pending.put(index + FUNDS_STATUS_OFFSET, (byte) status.ordinal());
+      pending.putLong(index + FUNDS_CHANGE_OFFSET, change);
+      pending.putLong(index + FUNDS_VERSION_OFFSET, version);
+      pending.putInt(index + PURCHASE_TICKETS_OFFSET, tickets.size());
+      return seal(index, PURCHASE_SIZE);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends zones travelled on a zone ticket.
+   *
+   * @param ticketID the ID of the ticket.
+   * @param zones    the number of zones taken from its allocation.
+   * @return the position that must be durable for the record to be.
+   */
+  public long appendZonesTravelled(long ticketID, int zones) {
+    lock.lock();
+    try {
+      int index = reserve(TRAVEL_SIZE);
+      pending.put(index + TYPE_OFFSET, TYPE_ZONES_TRAVELLED);
+      pending.putInt(index + TRAVEL_ZONES_OFFSET, zones);
+      pending.putLong(index + TRAVEL_TICKET_OFFSET, ticketID);
+      return seal(index, TRAVEL_SIZE);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends the lease of a block of ticket IDs.
+   *
+   * @param lastTicketID the highest ID in the block.
+   * @return the position that must be durable for the record to be.
+   */
+  public long appendTicketIDsLeased(long lastTicketID) {
+    lock.lock();
+    try {
+      int index = reserve(LEASE_SIZE);
+      pending.put(index + TYPE_OFFSET, TYPE_TICKET_IDS_LEASED);
+      pending.putLong(index + LEASE_ID_OFFSET, lastTicketID);
+      return seal(index, LEASE_SIZE);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits for the journal to be on the disk up to the given position, which
+   * was returned when a record was appended. Returns at once if it already
+   * is.
+   *
+   * @param position the position that must be durable.
+   * @throws JournalException if the journal could not be written, in which
+   *                          case the record must not be acknowledged.
+   */
+  public void awaitDurable(long position) {
+    if (durablePosition >= position) {
+      return;
+    }
+    boolean interrupted = false;
+    lock.lock();
+    try {
+      while (durablePosition < position && failure == null) {
+        try {
+          committed.await();
+        } catch (InterruptedException e) {
+          // The caller cannot be acknowledged until the record is durable,
+          // so the wait carries on and the interrupt is kept for later.
+          interrupted = true;
+        }
+      }
+      if (durablePosition < position) {
+        throw new JournalException("Journal could not be written: " + file, failure);
+      }
+    } finally {
+      lock.unlock();
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Replays the whole records between two positions of the durable part of
+   * the journal. Can be called from any thread once the journal has been
+   * recovered.
+   *
+   * @param visitor      receives each record, in the order they were written.
+   * @param fromPosition the position of the first record to be replayed.
+   * @param toPosition   the position to stop at, which must be no further
+   *                     than the durable length of the journal.
+   * @return the position after the last record replayed.
+   */
+  public long replay(JournalVisitor visitor, long fromPosition, long toPosition) {
+    if (toPosition > durablePosition) {
+      throw new JournalException("Journal can only be replayed up to " + durablePosition +
+          " bytes, not " + toPosition);
+    }
+    long[] end = new long[1];
+    try {
+      scan(visitor, fromPosition, toPosition, end);
+    } catch (IOException e) {
+      throw new JournalException("Journal could not be read: " + file, e);
+    }
+    return end[0];
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Accessor for the length of the journal that is known to be on the disk.
+   *
+   * @return the durable length of the journal, in bytes.
+   */
+  public long getDurablePosition() {
+    return durablePosition;
+  }
+
+  /**
+   * Commits any records still waiting and closes the file.
+   */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      recordsWaiting.signal();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      if (commitThread.isAlive()) {
+        commitThread.join();
+      }
+      channel.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      throw new JournalException("Journal could not be closed: " + file, e);
+    }
+    LOGGER.info(() -> "Journal has been closed at " + durablePosition + " bytes");
+  }
+
+  /**
+   * Makes room in the pending buffer for a record, waiting for the commit
+   * thread to swap the buffers if the pending buffer is full. Must be called
+   * while holding the lock.
+   *
+   * @param size the size of the record.
+   * @return the index the record is to be written at.
+   */
+  private int reserve(int size) {
+    if (!recovered || closed) {
+      throw new JournalException("Journal is not open for appending: " + file);
+    }
+    while (pending.remaining() < size) {
+      if (failure != null) {
+        throw new JournalException("Journal could not be written: " + file, failure);
+      }
+      recordsWaiting.signal();
+      committed.awaitUninterruptibly();
+    }
+    return pending.position();
+  }
+
+  /**
+   * Writes the checksum of a record that has been filled in, and hands the
+   * record to the commit thread. Must be called while holding the lock.
+   *
+   * @param index the index of the record.
+   * @param size  the size of the record.
+   * @return the position that must be durable for the record to be.
+   */
+  private long seal(int index, int size) {
+    pending.putInt(index + CHECKSUM_OFFSET, checksumOf(checksum, pending.array(), index, size));
+    pending.position(index + size);
+    appendedPosition += size;
+    // The commit thread only needs waking for the first record of a group,
+    // and again if the group has grown large enough to commit early.
+    if (index == 0 || (index < COMMIT_THRESHOLD && pending.position() >= COMMIT_THRESHOLD)) {
+      recordsWaiting.signal();
+    }
+    return appendedPosition;
+  }
+
+  private static int checksumOf(CRC32C crc, byte[] bytes, int index, int size) {
+    crc.reset();
+    crc.update(bytes, index + TYPE_OFFSET, size - TYPE_OFFSET);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Body of the commit thread. Waits for records, takes the pending buffer,
+   * and writes and forces it while the other buffer fills, releasing every
+   * caller waiting on the group once it is durable.
+   */
+  private void commitGroups() {
+    boolean finished = false;
+    while (!finished) {
+      long target;
+      lock.lock();
+      try {
+        while (!closed && pending.position() == 0) {
+          recordsWaiting.awaitUninterruptibly();
+        }
+        if (pending.position() == 0) {
+          finished = true;
+          continue;
+        }
+        long remaining = windowNanos;
+        while (!closed && remaining > 0 && pending.position() < COMMIT_THRESHOLD) {
+          try {
+            remaining = recordsWaiting.awaitNanos(remaining);
+          } catch (InterruptedException e) {
+            remaining = 0;
+          }
+        }
+        ByteBuffer group = pending;
+        pending = writing;
+        writing = group;
+        target = appendedPosition;
+        // Appenders waiting for room can carry on in the emptied buffer.
+        committed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      finished = !writeGroup(target);
+    }
+  }
+
+  /**
+   * Writes the taken buffer to the end of the file and forces it to the
+   * disk.
+   *
+   * @param target the length of the file once the buffer is written.
+   * @return true if the group was committed, or false if the journal has
+   *         failed.
+   */
+  private boolean writeGroup(long target) {
+    IOException error = null;
+    writing.flip();
+    long start = target - writing.remaining();
+    try {
+      long position = start;
+      while (writing.hasRemaining()) {
+        position += channel.write(writing, position);
+      }
+      channel.force(false);
+    } catch (IOException e) {
+      error = e;
+    }
+    writing.clear();
+    lock.lock();
+    try {
+      if (error == null) {
+        durablePosition = target;
+      } else {
+        failure = error;
+        LOGGER.severe(() -> "Journal could not be written: " + file);
+      }
+      committed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    return error == null;
+  }
+
+  /**
+   * Reads every whole record between two positions of the file, passing each
+   * to the visitor, and stops at the first record that is incomplete or fails
+   * its checksum. Only positional reads are used, so the file can be appended
+   * to at the same time.
+   *
+   * @param visitor      receives each record.
+   * @param fromPosition the position of the first record.
+   * @param toPosition   the position to stop reading at.
+   * @param end          set to the position after the last whole record.
+   * @return the number of records read.
+   * @throws IOException if the file could not be read.
+   */
+  private long scan(JournalVisitor visitor, long fromPosition, long toPosition, long[] end)
+      throws IOException {
+    // Scans can run alongside appends, so they keep a checksum of their own.
+    CRC32C scanChecksum = new CRC32C();
+    ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    long filePosition = fromPosition;
+    long recordPosition = fromPosition;
+    long count = 0;
+    boolean atEnd = false;
+    while (!atEnd) {
+      long toRead = Math.min(buffer.remaining(), toPosition - filePosition);
+      int read = -1;
+      if (toRead > 0) {
+        buffer.limit(buffer.position() + (int) toRead);
+        read = channel.read(buffer, filePosition);
+      }
+      if (read > 0) {
+        filePosition += read;
+      }
+      buffer.flip();
+      int index = 0;
+      boolean garbled = false;
+      int size = sizeOf(buffer, index);
+      // Records are read until one runs past what has been read so far.
+      while (size != 0 && buffer.limit() - index >= size && !garbled) {
+        if (size < 0 ||
+            buffer.getInt(index + CHECKSUM_OFFSET) !=
+                checksumOf(scanChecksum, buffer.array(), index, size)) {
+          garbled = true;
+        } else {
+          dispatch(buffer, index, visitor);
+          index += size;
+          recordPosition += size;
+          count++;
+          size = sizeOf(buffer, index);
+        }
+      }
+      buffer.position(index);
+      buffer.compact();
+      // Whatever is left at the end of the file is a record cut short.
+      atEnd = garbled || read < 0;
+    }
+    end[0] = recordPosition;
+    return count;
+  }
+
+  /**
+   * Finds the size of the record at the given index from its type.
+   *
+   * @return the size of the record, 0 if too little of the record has been
+   *         read to tell, or -1 if the type is unknown.
+   */
+  private static int sizeOf(ByteBuffer buffer, int index) {
+    if (buffer.limit() - index < HEADER_SIZE) {
+      return 0;
+    }
+    switch (buffer.get(index + TYPE_OFFSET)) {
+      case TYPE_FUNDS_CHANGED:
+        return FUNDS_SIZE;
+      case TYPE_TICKET_ADDED:
+        return TICKET_SIZE;
+      case TYPE_ZONES_TRAVELLED:
+        return TRAVEL_SIZE;
+      case TYPE_TICKET_IDS_LEASED:
+        return LEASE_SIZE;
+      case TYPE_PURCHASE_CAPTURED:
+        return PURCHASE_SIZE;
+      default:
+        return -1;
+    }
+  }
+
+  private static void dispatch(ByteBuffer buffer, int index, JournalVisitor visitor) {
+    switch (buffer.get(index + TYPE_OFFSET)) {
+      case TYPE_FUNDS_CHANGED:
+        visitor.fundsChanged(buffer.getInt(index + FUNDS_ACCOUNT_OFFSET),
+            buffer.getLong(index + FUNDS_CHANGE_OFFSET),
+            STATUSES[buffer.get(index + FUNDS_STATUS_OFFSET)],
+            buffer.getLong(index + FUNDS_VERSION_OFFSET));
+        break;
+      case TYPE_TICKET_ADDED:
+        visitor.ticketAdded(buffer.getInt(index + TICKET_ACCOUNT_OFFSET),
+            decodeTicket(buffer, index + TICKET_RECORD_OFFSET));
+        break;
+      case TYPE_ZONES_TRAVELLED:
+        visitor.zonesTravelled(buffer.getLong(index + TRAVEL_TICKET_OFFSET),
+            buffer.getInt(index + TRAVEL_ZONES_OFFSET));
+        break;
+      case TYPE_PURCHASE_CAPTURED:
+        visitor.purchaseCaptured(buffer.getInt(index + FUNDS_ACCOUNT_OFFSET),
+            buffer.getLong(index + FUNDS_CHANGE_OFFSET),
+            STATUSES[buffer.get(index + FUNDS_STATUS_OFFSET)],
+            buffer.getLong(index + FUNDS_VERSION_OFFSET),
+            buffer.getInt(index + PURCHASE_TICKETS_OFFSET));
+        break;
+      default:
+        visitor.ticketIDsLeased(buffer.getLong(index + LEASE_ID_OFFSET));
+        break;
+    }
+  }
+
+  private static Ticket decodeTicket(ByteBuffer buffer, int index) {
+    if (TicketCodec.typeOf(buffer, index) == TicketCodec.TYPE_ZONE) {
+      return TicketCodec.decodeZoneTicket(buffer, index);
+    }
+    return TicketCodec.decodeTimedTicket(buffer, index);
+  }
+}
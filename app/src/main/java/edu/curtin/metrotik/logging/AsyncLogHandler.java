@@ -0,0 +1,340 @@
+package edu.curtin.metrotik.logging;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * A logging handler that writes records to a file from a thread of its own.
+ * Logging a record only places it in a bounded ring, so a thread that logs,
+ * such as one tapping a rider on, never waits on the disk. The writer thread
+ * takes records from the ring in batches, formats them, and writes and flushes
+ * each batch at once. If the ring fills up, records are dropped rather than
+ * waited on, and a count of the dropped records is written out in their place.
+ *
+ * Records below WARNING from busy packages can be sampled and rate limited,
+ * so that they cannot fill the ring or the disk. The rules are given per
+ * package, and apply to the loggers of that package and every package below
+ * it, with the most specific rule being used. A record is only sampled once
+ * its message has been built, so packages that log on every tap are better
+ * kept quiet with a logger level, which stops the message being built at all.
+ *
+ * The handler is configured through the logging properties, under the name of
+ * this class:
+ * <ul>
+ * <li>level: the lowest level written. Defaults to ALL.</li>
+ * <li>file: the file that records are appended to. Defaults to
+ * Metrotik.jsonl.</li>
+ * <li>capacity: the number of records that can wait to be written. Defaults
+ * to 8192.</li>
+ * <li>batchSize: the most records written in a single batch. Defaults to
+ * 256.</li>
+ * <li>sampling: a comma separated list of package:N rules, keeping one record
+ * in every N.</li>
+ * <li>rateLimit: a comma separated list of package:N rules, keeping at most N
+ * records each second.</li>
+ * </ul>
+ * Records are formatted as JSON lines unless another formatter is set.
+ *
+ * @author Kyer Potts
+ */
+public final class AsyncLogHandler extends Handler {
+  private static final String DEFAULT_FILE = "Metrotik.jsonl";
+  private static final int DEFAULT_CAPACITY = 8192;
+  private static final int DEFAULT_BATCH_SIZE = 256;
+  // How long the writer sleeps when there is nothing to write.
+  private static final long IDLE_NANOS = 10_000_000;
+  private static final long SHUTDOWN_WAIT_MILLIS = 1000;
+
+  private final LogRecordRing ring;
+  private final int batchSize;
+  // Sampling rules keyed by package name, and the sampler found for each
+  // logger, so that the rules are only searched once per logger.
+  private final Map<String, LogSampler> rules;
+  private final Map<String, LogSampler> samplers;
+  private final AtomicLong droppedCount;
+  private final Writer out;
+  private final Thread writerThread;
+  private volatile boolean closed;
+
+  /**
+   * Creates a handler configured from the logging properties. This is the
+   * constructor used by the log manager when the handler is named in the
+   * handlers property.
+   */
+  public AsyncLogHandler() {
+    String prefix = AsyncLogHandler.class.getName();
+    setLevel(parseLevel(prefix + ".level"));
+    setFormatter(new JsonLinesFormatter());
+    this.ring = new LogRecordRing(parseInt(prefix + ".capacity", DEFAULT_CAPACITY));
+    this.batchSize = parseInt(prefix + ".batchSize", DEFAULT_BATCH_SIZE);
+    this.rules = parseRules(prefix + ".sampling", prefix + ".rateLimit");
+    this.samplers = new ConcurrentHashMap<>();
+    this.droppedCount = new AtomicLong(0);
+    this.out = openFile(prefix + ".file");
+    this.closed = out == null;
+    this.writerThread = new Thread(this::writeRecords, "async-log-writer");
+    this.writerThread.setDaemon(true);
+    if (out != null) {
+      writerThread.start();
+    }
+  }
+
+  /**
+   * Places the record in the ring to be written, unless it is sampled out or
+   * the ring is full. Never waits.
+   *
+   * @param record the record to be written.
+   */
+  @Override
+  public void publish(LogRecord record) {
+    if (closed || !isLoggable(record)) {
+      return;
+    }
+    // Warnings and errors are always kept.
+    if (record.getLevel().intValue() < Level.WARNING.intValue() &&
+        !samplerFor(record.getLoggerName()).admit(record.getMillis())) {
+      return;
+    }
+    if (!ring.offer(record)) {
+      droppedCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Wakes the writer so that any waiting records are written now. Each batch
+   * is flushed as it is written, so there is nothing else to flush.
+   */
+  @Override
+  public void flush() {
+    LockSupport.unpark(writerThread);
+  }
+
+  /**
+   * Stops the handler, waiting for the records already in the ring to be
+   * written and the file to be closed.
+   */
+  @Override
+  public void close() {
+    if (closed && !writerThread.isAlive()) {
+      return;
+    }
+    closed = true;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join(SHUTDOWN_WAIT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Accessor for the number of records dropped because the ring was full,
+   * which have not yet been reported in the file.
+   *
+   * @return the number of dropped records.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Body of the writer thread. Writes batches of records until the handler is
+   * closed and the ring is empty, then closes the file.
+   */
+  private void writeRecords() {
+    LogRecord[] batch = new LogRecord[batchSize];
+    StringBuilder text = new StringBuilder();
+    boolean finished = false;
+    while (!finished) {
+      // The flag is read before the ring, so that every record published
+      // before the handler was closed is drained.
+      boolean stopping = closed;
+      int count = ring.drainTo(batch, batchSize);
+      long dropped = droppedCount.getAndSet(0);
+      if (count == 0 && dropped == 0) {
+        if (stopping) {
+          finished = true;
+        } else {
+          LockSupport.parkNanos(IDLE_NANOS);
+        }
+        continue;
+      }
+      text.setLength(0);
+      for (int i = 0; i < count; i++) {
+        appendRecord(text, batch[i]);
+        batch[i] = null;
+      }
+      if (dropped > 0) {
+        LogRecord summary = new LogRecord(Level.WARNING,
+            dropped + " log records were dropped because the log could not keep up");
+        summary.setLoggerName(AsyncLogHandler.class.getName());
+        appendRecord(text, summary);
+      }
+      try {
+        out.write(text.toString());
+        out.flush();
+      } catch (IOException e) {
+        reportError("Log records could not be written", e, ErrorManager.WRITE_FAILURE);
+      }
+    }
+    try {
+      out.close();
+    } catch (IOException e) {
+      reportError("Log file could not be closed", e, ErrorManager.CLOSE_FAILURE);
+    }
+  }
+
+  /**
+   * Formats a record and adds it to the text of the batch. A record that
+   * cannot be formatted is reported and left out, so that it does not stop
+   * the rest of the batch being written.
+   *
+   * @param text   the text of the batch.
+   * @param record the record to be formatted.
+   */
+  private void appendRecord(StringBuilder text, LogRecord record) {
+    try {
+      text.append(getFormatter().format(record));
+    } catch (RuntimeException e) {
+      reportError("Log record could not be formatted", e, ErrorManager.FORMAT_FAILURE);
+    }
+  }
+
+  /**
+   * Finds the sampler for a logger, using the rule for the most specific
+   * package that the logger falls under.
+   *
+   * @param loggerName the name of the logger.
+   * @return the sampler to be used for records from the logger.
+   */
+  private LogSampler samplerFor(String loggerName) {
+    if (rules.isEmpty() || loggerName == null) {
+      return LogSampler.KEEP_ALL;
+    }
+    return samplers.computeIfAbsent(loggerName, name -> {
+      String current = name;
+      while (!current.isEmpty()) {
+        LogSampler sampler = rules.get(current);
+        if (sampler != null) {
+          return sampler;
+        }
+        int dot = current.lastIndexOf('.');
+        current = dot < 0 ? "" : current.substring(0, dot);
+      }
+      return LogSampler.KEEP_ALL;
+    });
+  }
+
+  /**
+   * Reads the sampling and rate limit rules, combining the rules given for
+   * the same package into a single sampler.
+   *
+   * @param samplingProperty  the name of the sampling property.
+   * @param rateLimitProperty the name of the rate limit property.
+   * @return the sampler for each package that has a rule.
+   */
+  private Map<String, LogSampler> parseRules(String samplingProperty, String rateLimitProperty) {
+    Map<String, Integer> sampleEvery = parseRuleList(samplingProperty);
+    Map<String, Integer> maxPerSecond = parseRuleList(rateLimitProperty);
+    Map<String, LogSampler> parsed = new HashMap<>();
+    Map<String, Integer> packages = new HashMap<>(sampleEvery);
+    packages.putAll(maxPerSecond);
+    for (String packageName : packages.keySet()) {
+      try {
+        parsed.put(packageName, new LogSampler(sampleEvery.getOrDefault(packageName, 1),
+            maxPerSecond.getOrDefault(packageName, Integer.MAX_VALUE)));
+      } catch (LoggingException e) {
+        reportError("Log rule for " + packageName + " has been ignored", e,
+            ErrorManager.GENERIC_FAILURE);
+      }
+    }
+    return parsed;
+  }
+
+  /**
+   * Reads a comma separated list of package:N rules.
+   *
+   * @param property the name of the property.
+   * @return the number given for each package.
+   */
+  private Map<String, Integer> parseRuleList(String property) {
+    Map<String, Integer> parsed = new HashMap<>();
+    String value = LogManager.getLogManager().getProperty(property);
+    if (value == null || value.isBlank()) {
+      return parsed;
+    }
+    for (String rule : value.split(",")) {
+      int colon = rule.lastIndexOf(':');
+      try {
+        parsed.put(rule.substring(0, colon).trim(),
+            Integer.parseInt(rule.substring(colon + 1).trim()));
+      } catch (NumberFormatException | IndexOutOfBoundsException e) {
+        reportError("Log rule " + rule.trim() + " in " + property + " has been ignored", e,
+            ErrorManager.GENERIC_FAILURE);
+      }
+    }
+    return parsed;
+  }
+
+  private Level parseLevel(String property) {
+    String value = LogManager.getLogManager().getProperty(property);
+    if (value == null) {
+      return Level.ALL;
+    }
+    try {
+      return Level.parse(value.trim());
+    } catch (IllegalArgumentException e) {
+      reportError("Log level " + value + " has been ignored", e, ErrorManager.GENERIC_FAILURE);
+      return Level.ALL;
+    }
+  }
+
+  private int parseInt(String property, int defaultValue) {
+    String value = LogManager.getLogManager().getProperty(property);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Math.max(1, Integer.parseInt(value.trim()));
+    } catch (NumberFormatException e) {
+      reportError(property + " of " + value + " has been ignored", e,
+          ErrorManager.GENERIC_FAILURE);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Opens the log file for appending.
+   *
+   * @param property the name of the file property.
+   * @return a writer to the file, or null if it could not be opened.
+   */
+  private Writer openFile(String property) {
+    String fileName = LogManager.getLogManager().getProperty(property);
+    if (fileName == null || fileName.isBlank()) {
+      fileName = DEFAULT_FILE;
+    }
+    try {
+      return Files.newBufferedWriter(Paths.get(fileName.trim()), StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      reportError("Log file " + fileName + " could not be opened", e,
+          ErrorManager.OPEN_FAILURE);
+      return null;
+    }
+  }
+}
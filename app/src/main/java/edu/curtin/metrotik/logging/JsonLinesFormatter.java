@@ -0,0 +1,82 @@
+package edu.curtin.metrotik.logging;
+
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats each log record as a single line of JSON, so that logs can be read
+ * back by tools without parsing free text. Each line holds the time, level,
+ * logger name, thread ID and message of the record, and the exception if one
+ * was logged.
+ *
+ * The name of the logger is written rather than the source class and method,
+ * as finding those means walking the stack of the thread that logged, and the
+ * formatter usually runs on another thread.
+ *
+ * @author Kyer Potts
+ */
+public class JsonLinesFormatter extends Formatter {
+  @Override
+  public String format(LogRecord record) {
+    StringBuilder line = new StringBuilder(128);
+    line.append("{\"time\":\"");
+    DateTimeFormatter.ISO_INSTANT.formatTo(record.getInstant(), line);
+    line.append("\",\"level\":\"").append(record.getLevel().getName());
+    line.append("\",\"logger\":");
+    appendString(line, record.getLoggerName());
+    line.append(",\"thread\":").append(record.getLongThreadID());
+    line.append(",\"message\":");
+    appendString(line, formatMessage(record));
+    Throwable thrown = record.getThrown();
+    if (thrown != null) {
+      line.append(",\"thrown\":");
+      appendString(line, thrown.toString());
+    }
+    line.append('}').append(System.lineSeparator());
+    return line.toString();
+  }
+
+  /**
+   * Appends a value as a quoted JSON string, escaping any characters that
+   * JSON does not allow in a string.
+   *
+   * @param line  the line being built.
+   * @param value the value to be appended, which may be null.
+   */
+  private static void appendString(StringBuilder line, String value) {
+    if (value == null) {
+      line.append("null");
+      return;
+    }
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char character = value.charAt(i);
+      switch (character) {
+        case '"':
+          line.append("\\\"");
+          break;
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        default:
+          if (character < 0x20) {
+            line.append(String.format("\\u%04x", (int) character));
+          } else {
+            line.append(character);
+          }
+          break;
+      }
+    }
+    line.append('"');
+  }
+}
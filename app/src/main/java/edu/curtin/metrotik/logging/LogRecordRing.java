@@ -0,0 +1,112 @@
+package edu.curtin.metrotik.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.LogRecord;
+
+/**
+ * A bounded ring of log records, added to by any number of logging threads and
+ * emptied by the single thread that writes them out. Adding a record never
+ * waits: if the ring is full the record is refused, so a thread that logs is
+ * never held up by the disk.
+ *
+ * Each slot holds a sequence number that says whether it is ready to be
+ * written or read. A logging thread claims the tail with compare and set once
+ * the slot there is free, fills it, and then moves the slot sequence on to
+ * hand it to the writer. There is only one writer, so the head needs no
+ * compare and set.
+ *
+ * @author Kyer Potts
+ */
+public class LogRecordRing {
+  private final int mask;
+  private final AtomicLongArray sequences;
+  private final LogRecord[] records;
+  private final AtomicLong tail;
+  // Only read and written by the thread that empties the ring.
+  private long head;
+
+  /**
+   * Creates a ring that holds at least the given number of records. The
+   * capacity is rounded up to a power of two.
+   *
+   * @param capacity the least number of records the ring can hold.
+   */
+  public LogRecordRing(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    mask = size - 1;
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    records = new LogRecord[size];
+    tail = new AtomicLong(0);
+    head = 0;
+  }
+
+  /**
+   * Adds a record to the tail of the ring, unless it is full. Can be called
+   * from any thread.
+   *
+   * @param record the record to be added.
+   * @return true if the record was added, or false if the ring is full.
+   */
+  public boolean offer(LogRecord record) {
+    long position = tail.get();
+    while (true) {
+      int slot = (int) position & mask;
+      long difference = sequences.get(slot) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          records[slot] = record;
+          sequences.set(slot, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        // The slot still holds a record from the previous lap, so the ring is
+        // full.
+        return false;
+      } else {
+        // Another thread has claimed this position already.
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Takes up to the given number of records from the head of the ring, in the
+   * order they were added. Must only be called from the thread that empties
+   * the ring.
+   *
+   * @param batch the array the records are copied into, from index 0.
+   * @param limit the most records to be taken.
+   * @return the number of records taken.
+   */
+  public int drainTo(LogRecord[] batch, int limit) {
+    int taken = 0;
+    while (taken < limit) {
+      int slot = (int) head & mask;
+      if (sequences.get(slot) != head + 1) {
+        // Nothing has been published into the slot yet.
+        break;
+      }
+      batch[taken] = records[slot];
+      // The record is released so the ring does not keep it reachable.
+      records[slot] = null;
+      sequences.set(slot, head + mask + 1);
+      head++;
+      taken++;
+    }
+    return taken;
+  }
+
+  /**
+   * Accessor for the number of records the ring can hold.
+   *
+   * @return the capacity of the ring.
+   */
+  public int getCapacity() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,65 @@
+package edu.curtin.metrotik.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which of the records logged under a package are kept. A sampler
+ * keeps one record in every so many, and then keeps at most so many of those
+ * in each second. Counting is done with atomics, so the loggers of a package
+ * can share a sampler across threads.
+ *
+ * Limits are counted in whole seconds of record time. At the start of a new
+ * second the count is reset by whichever thread notices first, so the limit
+ * may be passed by a few records when many threads log at that moment.
+ *
+ * @author Kyer Potts
+ */
+public class LogSampler {
+  // Keeps every record.
+  public static final LogSampler KEEP_ALL = new LogSampler(1, Integer.MAX_VALUE);
+
+  private final int sampleEvery;
+  private final int maxPerSecond;
+  private final AtomicLong sampled;
+  private final AtomicLong currentSecond;
+  private final AtomicInteger keptThisSecond;
+
+  /**
+   * Creates a sampler.
+   *
+   * @param sampleEvery  one record in this many is kept. 1 keeps every record.
+   * @param maxPerSecond the most records kept in any one second.
+   */
+  public LogSampler(int sampleEvery, int maxPerSecond) {
+    if (sampleEvery < 1 || maxPerSecond < 1) {
+      throw new LoggingException("Log samplers must keep at least one record");
+    }
+    this.sampleEvery = sampleEvery;
+    this.maxPerSecond = maxPerSecond;
+    this.sampled = new AtomicLong(0);
+    this.currentSecond = new AtomicLong(0);
+    this.keptThisSecond = new AtomicInteger(0);
+  }
+
+  /**
+   * Decides whether a record is kept.
+   *
+   * @param recordMillis the time of the record, in epoch milliseconds.
+   * @return true if the record should be written out.
+   */
+  public boolean admit(long recordMillis) {
+    if (sampleEvery > 1 && sampled.getAndIncrement() % sampleEvery != 0) {
+      return false;
+    }
+    if (maxPerSecond == Integer.MAX_VALUE) {
+      return true;
+    }
+    long second = recordMillis / 1000;
+    long current = currentSecond.get();
+    if (second > current && currentSecond.compareAndSet(current, second)) {
+      keptThisSecond.set(0);
+    }
+    return keptThisSecond.incrementAndGet() <= maxPerSecond;
+  }
+}
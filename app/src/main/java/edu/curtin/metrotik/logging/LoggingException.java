@@ -0,0 +1,17 @@
+package edu.curtin.metrotik.logging;
+
+/**
+ * This exception should be thrown whenever the logging pipeline is given a
+ * configuration that it cannot use, such as a sampler that keeps no records.
+ *
+ * @author Kyer Potts
+ */
+public class LoggingException extends RuntimeException {
+  public LoggingException(String message) {
+    super(message);
+  }
+
+  public LoggingException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -25,6 +25,18 @@ public class MonorailSimulator {
     LOGGER.info(() -> "MonorailSimulator has travelled to the next zone");
   }
 
+  /**
+   * This method is responsible for travelling several zones at once. The zone
+   * is wrapped around the 10 zone circuit in a single calculation rather than
+   * one zone at a time.
+   *
+   * @param zones the number of zones to be travelled.
+   */
+  public void travelZones(int zones) {
+    currentZone = (currentZone - 1 + zones) % 10 + 1;
+    LOGGER.info(() -> "MonorailSimulator has travelled " + zones + " zones");
+  }
+
   /**
    * Simple getter method for retrieving the current zone.
    */
@@ -0,0 +1,413 @@
+package edu.curtin.metrotik.persistence;
+
+import edu.curtin.metrotik.codec.TicketCodec;
+import edu.curtin.metrotik.ticketing.TicketIDSource;
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.ticketingsystem.ZoneTicketColumns;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * A ticket store kept in a memory mapped file of fixed width records. The
+ * records live outside of the Java heap, so the size of the store has no
+ * effect on garbage collection, and reopening the store after a restart maps
+ * the file again rather than rebuilding ticket objects.
+ *
+ * The file begins with a header recording the layout of the file, the number
+ * of slots that have been used and the highest ticket ID leased. The header
+ * is followed by the records, mapped in fixed size chunks so that the store is
+ * not limited by the maximum size of a single mapping. Each record holds the
+ * ticket ID, the ticket type, the zone allocation, the purchase time in epoch
+ * seconds and the validity window in epoch milliseconds.
+ *
+ * Records do not say which account they belong to, so a store holds the
+ * tickets of a single account. The first account to claim the store is
+ * recorded in the header, and any other account is refused, including in
+ * later runs.
+ *
+ * The store is also the source of ticket IDs when tickets are persisted. The
+ * end of every block of IDs is written to the header and flushed before the
+ * block is handed out, so IDs are never issued twice, even after a crash.
+ *
+ * @author Kyer Potts
+ */
+public class MappedTicketStore implements Closeable, TicketIDSource {
+  private static final Logger LOGGER = Logger.getLogger(MappedTicketStore.class.getName());
+
+  public static final int RECORD_SIZE = TicketCodec.RECORD_SIZE;
+  private static final int MAGIC = 0x4D54524B;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 64;
+  private static final int DEFAULT_RECORDS_PER_CHUNK = 1 << 16;
+
+  // Header layout.
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 4;
+  private static final int RECORD_SIZE_OFFSET = 8;
+  private static final int CHUNK_SIZE_OFFSET = 12;
+  private static final int SLOT_COUNT_OFFSET = 16;
+  private static final int LAST_TICKET_ID_OFFSET = 24;
+  private static final int OWNER_CLAIMED_OFFSET = 32;
+  private static final int OWNER_ACCOUNT_OFFSET = 36;
+
+  // Record layout. Records are encoded by the ticket codec, so the store
+  // shares its layout.
+  private static final int ID_OFFSET = TicketCodec.ID_OFFSET;
+  private static final int TYPE_OFFSET = TicketCodec.TYPE_OFFSET;
+  private static final int ALLOCATION_OFFSET = TicketCodec.ALLOCATION_OFFSET;
+  private static final int PURCHASE_OFFSET = TicketCodec.PURCHASE_OFFSET;
+  private static final int VALID_FROM_OFFSET = TicketCodec.VALID_FROM_OFFSET;
+  private static final int VALID_TO_OFFSET = TicketCodec.VALID_TO_OFFSET;
+
+  // Record types. Released records are marked free so they can be reused.
+  private static final byte TYPE_FREE = TicketCodec.TYPE_FREE;
+  private static final byte TYPE_ZONE = TicketCodec.TYPE_ZONE;
+  private static final byte TYPE_TIMED = TicketCodec.TYPE_TIMED;
+
+  private FileChannel channel;
+  private MappedByteBuffer header;
+  // Chunks are only added while holding the lock of the store, but are read
+  // without it.
+  private List<MappedByteBuffer> chunks;
+  private int recordsPerChunk;
+  private int slotCount;
+
+  // Free slots are not recorded in the file. They are found by scanning the
+  // record types when the store is opened.
+  private int[] freeSlots;
+  private int freeCount;
+
+  private ZoneTicketColumns zoneColumns;
+
+  /**
+   * Opens the store held in the given file, creating it if it does not exist.
+   *
+   * @param file the file backing the store.
+   */
+  public MappedTicketStore(Path file) {
+    this(file, DEFAULT_RECORDS_PER_CHUNK);
+  }
+
+  /**
+   * Opens the store held in the given file, creating it if it does not exist.
+   * The chunk size of an existing store is read from its header, and the
+   * requested chunk size is only used for new stores.
+   *
+   * @param file            the file backing the store.
+   * @param recordsPerChunk the number of records in each mapped chunk.
+   */
+  public MappedTicketStore(Path file, int recordsPerChunk) {
+    chunks = new CopyOnWriteArrayList<>();
+    freeSlots = new int[16];
+    freeCount = 0;
+    zoneColumns = new ZoneColumns();
+    try {
+      channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+      boolean isNewStore = channel.size() == 0;
+      header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      if (isNewStore) {
+        initialiseHeader(recordsPerChunk);
+      } else {
+        validateHeader(file);
+      }
+      this.recordsPerChunk = header.getInt(CHUNK_SIZE_OFFSET);
+      slotCount = (int) header.getLong(SLOT_COUNT_OFFSET);
+      for (int slot = 0; slot < slotCount; slot += this.recordsPerChunk) {
+        mapChunk();
+      }
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Ticket store could not be opened: " + file);
+      throw new TicketStoreException("Ticket store could not be opened: " + file, e);
+    }
+    collectFreeSlots();
+    LOGGER.info(() -> "Ticket store has been opened with " + slotCount +
+        " slots, " + freeCount + " of them free");
+  }
+
+  /**
+   * Accessor for the zone ticket records of the store, presented as columns
+   * for a columnar zone ticket chain.
+   *
+   * @return the zone ticket columns backed by this store.
+   */
+  public ZoneTicketColumns getZoneColumns() {
+    return zoneColumns;
+  }
+
+  /**
+   * Accessor for the highest ticket ID that has been leased from the store.
+   * Ticket IDs continue from this value after a restart.
+   *
+   * @return the highest ticket ID leased from the store.
+   */
+  public long getLastTicketID() {
+    return header.getLong(LAST_TICKET_ID_OFFSET);
+  }
+
+  /**
+   * Leases a block of ticket IDs, recording the end of the block in the
+   * header. Blocks are leased rarely, so the header is flushed every time,
+   * which keeps the highest leased ID durable before any of the block is used.
+   * Any IDs left unused when the program exits are skipped on the next run.
+   *
+   * @param size the number of IDs in the block.
+   * @return the first ID of the block.
+   */
+  @Override
+  public synchronized long leaseBlock(int size) {
+    long lastTicketID = header.getLong(LAST_TICKET_ID_OFFSET);
+    header.putLong(LAST_TICKET_ID_OFFSET, lastTicketID + size);
+    header.force();
+    return lastTicketID + 1;
+  }
+
+  /**
+   * Claims the store for an account. The owner is written to the header and
+   * flushed the first time the store is claimed, and the same account may
+   * claim it again, such as when its session is created again.
+   *
+   * @param accountID the ID of the account whose tickets are to be stored.
+   * @throws TicketStoreException if the store belongs to another account.
+   */
+  public synchronized void claimAccount(int accountID) {
+    if (header.getInt(OWNER_CLAIMED_OFFSET) == 0) {
+      header.putInt(OWNER_ACCOUNT_OFFSET, accountID);
+      header.putInt(OWNER_CLAIMED_OFFSET, 1);
+      header.force();
+      LOGGER.info(() -> "Ticket store has been claimed by account " + accountID);
+    } else if (header.getInt(OWNER_ACCOUNT_OFFSET) != accountID) {
+      int owner = header.getInt(OWNER_ACCOUNT_OFFSET);
+      LOGGER.severe(() -> "Ticket store belongs to account " + owner +
+          " and cannot hold the tickets of account " + accountID);
+      throw new TicketStoreException("Ticket store belongs to account " + owner +
+          " and cannot hold the tickets of account " + accountID);
+    }
+  }
+
+  /**
+   * Accessor for the number of slots that have ever been used.
+   *
+   * @return the number of slots in use or previously used.
+   */
+  public synchronized int getSlotCount() {
+    return slotCount;
+  }
+
+  /**
+   * Writes a timed ticket into a free slot.
+   *
+   * @param ticket the ticket to be written.
+   * @return the slot the ticket was written to.
+   */
+  public int writeTimedTicket(TimedTicket ticket) {
+    int slot = allocateSlot(TYPE_TIMED);
+    TicketCodec.encodeTimedTicket(chunkOf(slot), offsetOf(slot), ticket);
+    return slot;
+  }
+
+  /**
+   * Checks whether a slot holds a timed ticket.
+   *
+   * @param slot the slot to be checked.
+   * @return true if the slot holds a timed ticket.
+   */
+  public boolean isTimedTicket(int slot) {
+    return typeOf(slot) == TYPE_TIMED;
+  }
+
+  /**
+   * Reads the timed ticket held in a slot.
+   *
+   * @param slot the slot holding the ticket.
+   * @return a new timed ticket with the details held in the slot.
+   */
+  public TimedTicket readTimedTicket(int slot) {
+    if (!isTimedTicket(slot)) {
+      throw new TicketStoreException("Slot " + slot + " does not hold a timed ticket");
+    }
+    return TicketCodec.decodeTimedTicket(chunkOf(slot), offsetOf(slot));
+  }
+
+  /**
+   * Marks a slot as free so that it can be reused.
+   *
+   * @param slot the slot to be released.
+   */
+  public synchronized void releaseSlot(int slot) {
+    chunkOf(slot).put(offsetOf(slot) + TYPE_OFFSET, TYPE_FREE);
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+    }
+    freeSlots[freeCount] = slot;
+    freeCount++;
+  }
+
+  /**
+   * Flushes every mapped region of the store to the file.
+   */
+  public void force() {
+    header.force();
+    for (MappedByteBuffer chunk : chunks) {
+      chunk.force();
+    }
+  }
+
+  @Override
+  public void close() {
+    force();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new TicketStoreException("Ticket store could not be closed", e);
+    }
+    LOGGER.info(() -> "Ticket store has been closed");
+  }
+
+  private void initialiseHeader(int recordsPerChunk) {
+    header.putInt(MAGIC_OFFSET, MAGIC);
+    header.putInt(VERSION_OFFSET, VERSION);
+    header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+    header.putInt(CHUNK_SIZE_OFFSET, recordsPerChunk);
+    header.putLong(SLOT_COUNT_OFFSET, 0);
+    header.putLong(LAST_TICKET_ID_OFFSET, 0);
+    header.putInt(OWNER_CLAIMED_OFFSET, 0);
+  }
+
+  private void validateHeader(Path file) {
+    if (header.getInt(MAGIC_OFFSET) != MAGIC ||
+        header.getInt(VERSION_OFFSET) != VERSION ||
+        header.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+      LOGGER.severe(() -> "File is not a valid ticket store: " + file);
+      throw new TicketStoreException("File is not a valid ticket store: " + file);
+    }
+  }
+
+  /**
+   * Maps the next chunk of records. Mapping past the end of the file extends
+   * the file to fit the chunk.
+   *
+   * @throws IOException if the chunk could not be mapped.
+   */
+  private void mapChunk() throws IOException {
+    long chunkBytes = (long) recordsPerChunk * RECORD_SIZE;
+    long position = HEADER_SIZE + chunks.size() * chunkBytes;
+    chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, position, chunkBytes));
+  }
+
+  private void collectFreeSlots() {
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (typeOf(slot) == TYPE_FREE) {
+        releaseSlot(slot);
+      }
+    }
+  }
+
+  /**
+   * Hands out a slot for a new record, reusing a free slot where possible and
+   * mapping a new chunk when every mapped slot is in use.
+   *
+   * @param type the type of record the slot will hold.
+   * @return the slot for the new record.
+   */
+  private synchronized int allocateSlot(byte type) {
+    int slot;
+    if (freeCount > 0) {
+      freeCount--;
+      slot = freeSlots[freeCount];
+    } else {
+      slot = slotCount;
+      if (slot == chunks.size() * recordsPerChunk) {
+        try {
+          mapChunk();
+        } catch (IOException e) {
+          LOGGER.severe(() -> "Ticket store could not be extended");
+          throw new TicketStoreException("Ticket store could not be extended", e);
+        }
+      }
+      slotCount++;
+      header.putLong(SLOT_COUNT_OFFSET, slotCount);
+    }
+    chunkOf(slot).put(offsetOf(slot) + TYPE_OFFSET, type);
+    return slot;
+  }
+
+  private byte typeOf(int slot) {
+    return chunkOf(slot).get(offsetOf(slot) + TYPE_OFFSET);
+  }
+
+  private MappedByteBuffer chunkOf(int slot) {
+    return chunks.get(slot / recordsPerChunk);
+  }
+
+  private int offsetOf(int slot) {
+    return (slot % recordsPerChunk) * RECORD_SIZE;
+  }
+
+  /**
+   * Presents the zone ticket records of the store as columns. Reads and
+   * writes go straight to the mapped file.
+   */
+  private class ZoneColumns implements ZoneTicketColumns {
+    @Override
+    public int allocateSlot() {
+      return MappedTicketStore.this.allocateSlot(TYPE_ZONE);
+    }
+
+    @Override
+    public void releaseSlot(int slot) {
+      MappedTicketStore.this.releaseSlot(slot);
+    }
+
+    @Override
+    public int getSlotCount() {
+      return MappedTicketStore.this.getSlotCount();
+    }
+
+    @Override
+    public boolean isLive(int slot) {
+      return typeOf(slot) == TYPE_ZONE;
+    }
+
+    @Override
+    public long getTicketID(int slot) {
+      return chunkOf(slot).getLong(offsetOf(slot) + ID_OFFSET);
+    }
+
+    @Override
+    public void setTicketID(int slot, long ticketID) {
+      chunkOf(slot).putLong(offsetOf(slot) + ID_OFFSET, ticketID);
+    }
+
+    @Override
+    public int getAllocation(int slot) {
+      return chunkOf(slot).getInt(offsetOf(slot) + ALLOCATION_OFFSET);
+    }
+
+    @Override
+    public void setAllocation(int slot, int allocation) {
+      chunkOf(slot).putInt(offsetOf(slot) + ALLOCATION_OFFSET, allocation);
+    }
+
+    @Override
+    public long getPurchaseEpochSecond(int slot) {
+      return chunkOf(slot).getLong(offsetOf(slot) + PURCHASE_OFFSET);
+    }
+
+    @Override
+    public void setPurchaseEpochSecond(int slot, long purchaseEpochSecond) {
+      chunkOf(slot).putLong(offsetOf(slot) + PURCHASE_OFFSET, purchaseEpochSecond);
+      // Zone tickets have no validity window.
+      chunkOf(slot).putLong(offsetOf(slot) + VALID_FROM_OFFSET, 0);
+      chunkOf(slot).putLong(offsetOf(slot) + VALID_TO_OFFSET, 0);
+    }
+  }
+}
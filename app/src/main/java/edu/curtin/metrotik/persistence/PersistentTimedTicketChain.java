@@ -0,0 +1,79 @@
+package edu.curtin.metrotik.persistence;
+
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.ticketingsystem.TicketListenerList;
+import edu.curtin.metrotik.ticketingsystem.TimedTicketChain;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A timed ticket chain that writes each of its tickets through to a mapped
+ * ticket store. Timed tickets are few in number and are indexed by validity,
+ * so they are held as objects on the heap, with the store providing the
+ * durable copy that the chain is restored from after a restart.
+ *
+ * @author Kyer Potts
+ */
+public class PersistentTimedTicketChain extends TimedTicketChain {
+  private static final Logger LOGGER = Logger.getLogger(PersistentTimedTicketChain.class.getName());
+
+  private MappedTicketStore store;
+  // Maps the ID of each ticket in the chain to the slot holding its record.
+  private Map<Long, Integer> slots;
+
+  private PersistentTimedTicketChain(MappedTicketStore store, TicketListenerList listeners) {
+    super(listeners);
+    this.store = store;
+    this.slots = new HashMap<>();
+  }
+
+  /**
+   * Creates a chain over a store, restoring any timed tickets that the store
+   * already holds.
+   *
+   * @param store     the store that the tickets are written to.
+   * @param listeners the listeners to be told of ticket events.
+   * @return a chain holding every timed ticket in the store.
+   */
+  public static PersistentTimedTicketChain load(MappedTicketStore store,
+      TicketListenerList listeners) {
+    PersistentTimedTicketChain chain = new PersistentTimedTicketChain(store, listeners);
+    chain.restoreTickets();
+    return chain;
+  }
+
+  @Override
+  public void addTicket(TimedTicket ticket) {
+    super.addTicket(ticket);
+    slots.put(ticket.getTicketID(), store.writeTimedTicket(ticket));
+  }
+
+  /**
+   * Removes the ticket from the chain and releases its record in the store.
+   *
+   * @param ticket the ticket to be invalidated.
+   */
+  @Override
+  public void invalidateTicket(Ticket ticket) {
+    super.invalidateTicket(ticket);
+    Integer slot = slots.remove(ticket.getTicketID());
+    if (slot != null) {
+      store.releaseSlot(slot);
+    }
+  }
+
+  private void restoreTickets() {
+    for (int slot = 0; slot < store.getSlotCount(); slot++) {
+      if (store.isTimedTicket(slot)) {
+        TimedTicket ticket = store.readTimedTicket(slot);
+        // The ticket is already in the store, so it is added to the chain
+        // without being written again.
+        super.addTicket(ticket);
+        slots.put(ticket.getTicketID(), slot);
+      }
+    }
+    LOGGER.info(() -> slots.size() + " timed tickets have been restored from the store");
+  }
+}
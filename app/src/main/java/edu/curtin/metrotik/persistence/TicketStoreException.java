@@ -0,0 +1,17 @@
+package edu.curtin.metrotik.persistence;
+
+/**
+ * This exception should be thrown whenever the ticket store cannot be read
+ * from or written to, or the file backing it is not a valid ticket store.
+ *
+ * @author Kyer Potts
+ */
+public class TicketStoreException extends RuntimeException {
+  public TicketStoreException(String message) {
+    super(message);
+  }
+
+  public TicketStoreException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,158 @@
+package edu.curtin.metrotik.tickethistory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * A file of blocks spilled from purchase time indexes, shared by every index
+ * of a ticket history log. Each block is a run of entries in purchase time
+ * order, with each entry holding a purchase time and the position of its
+ * record in the log. Blocks are appended and never changed, so an index only
+ * needs to remember where each of its blocks starts.
+ *
+ * The most recently read block is kept in memory, as queries page through an
+ * index in order and usually read the same block several times. The file is
+ * not thread-safe, and is only used under the lock of its log.
+ *
+ * @author Kyer Potts
+ */
+public class IndexBlockFile implements Closeable {
+  private static final Logger LOGGER = Logger.getLogger(IndexBlockFile.class.getName());
+  private static final int ENTRY_SIZE = 16;
+
+  private final FileChannel channel;
+  private long end;
+  private ByteBuffer buffer;
+
+  // The block held in memory, or -1 if there is none.
+  private long cachedOffset;
+  private int cachedCount;
+  private long[] cachedSeconds;
+  private long[] cachedPositions;
+
+  /**
+   * Opens the file, discarding any blocks left in it by a previous run.
+   *
+   * @param file the file holding the blocks.
+   */
+  public IndexBlockFile(Path file) {
+    try {
+      channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Ticket history index file could not be opened: " + file);
+      throw new TicketHistoryException("Ticket history index file could not be opened: " +
+          file, e);
+    }
+    end = 0;
+    buffer = ByteBuffer.allocate(0);
+    cachedOffset = -1;
+    cachedSeconds = new long[0];
+    cachedPositions = new long[0];
+  }
+
+  /**
+   * Appends a block of entries to the file.
+   *
+   * @param seconds   the purchase times of the entries, in epoch seconds.
+   * @param positions the positions of the records of the entries.
+   * @param count     the number of entries, taken from the start of the
+   *                  arrays.
+   * @return the offset of the block in the file.
+   */
+  public long write(long[] seconds, long[] positions, int count) {
+    ByteBuffer block = bufferFor(count);
+    for (int i = 0; i < count; i++) {
+      block.putLong(i * ENTRY_SIZE, seconds[i]);
+      block.putLong(i * ENTRY_SIZE + 8, positions[i]);
+    }
+    long offset = end;
+    try {
+      while (block.hasRemaining()) {
+        channel.write(block, offset + block.position());
+      }
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Ticket history index block could not be spilled");
+      throw new TicketHistoryException("Ticket history index block could not be spilled", e);
+    }
+    end += (long) count * ENTRY_SIZE;
+    return offset;
+  }
+
+  /**
+   * Reads a block into memory, unless it is already held.
+   *
+   * @param offset the offset of the block in the file.
+   * @param count  the number of entries in the block.
+   */
+  public void load(long offset, int count) {
+    if (offset == cachedOffset && count == cachedCount) {
+      return;
+    }
+    ByteBuffer block = bufferFor(count);
+    try {
+      while (block.hasRemaining()) {
+        if (channel.read(block, offset + block.position()) < 0) {
+          throw new TicketHistoryException("Ticket history index file ended early");
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Ticket history index block could not be read");
+      throw new TicketHistoryException("Ticket history index block could not be read", e);
+    }
+    if (cachedSeconds.length < count) {
+      cachedSeconds = new long[count];
+      cachedPositions = new long[count];
+    }
+    for (int i = 0; i < count; i++) {
+      cachedSeconds[i] = block.getLong(i * ENTRY_SIZE);
+      cachedPositions[i] = block.getLong(i * ENTRY_SIZE + 8);
+    }
+    cachedOffset = offset;
+    cachedCount = count;
+  }
+
+  /**
+   * Accessor for the purchase time of an entry of the block last loaded.
+   *
+   * @param index the place of the entry in the block.
+   * @return the purchase time, in epoch seconds.
+   */
+  public long secondAt(int index) {
+    return cachedSeconds[index];
+  }
+
+  /**
+   * Accessor for the record position of an entry of the block last loaded.
+   *
+   * @param index the place of the entry in the block.
+   * @return the position of the record in the log.
+   */
+  public long positionAt(int index) {
+    return cachedPositions[index];
+  }
+
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new TicketHistoryException("Ticket history index file could not be closed", e);
+    }
+  }
+
+  private ByteBuffer bufferFor(int count) {
+    if (buffer.capacity() < count * ENTRY_SIZE) {
+      buffer = ByteBuffer.allocate(count * ENTRY_SIZE);
+    }
+    buffer.clear();
+    buffer.limit(count * ENTRY_SIZE);
+    return buffer;
+  }
+}
@@ -0,0 +1,259 @@
+package edu.curtin.metrotik.tickethistory;
+
+import java.util.Arrays;
+
+/**
+ * An index of ticket history records sorted by purchase time. The purchase
+ * time of each record is held beside its position in the log, in a pair of
+ * primitive arrays, so searching the index never reads the log itself. Ranges
+ * are found with a binary search and then read in order, so a range query
+ * costs O(log n + k), and a count costs O(log n).
+ *
+ * Purchases are appended in close to time order, so adding a record is almost
+ * always an append. A record that arrives out of order is shifted back from
+ * the end to its place, which only moves the few records it overtakes.
+ *
+ * Only entries for records in the hot segments of the log need to be held in
+ * memory. Once the records at the front of the index have left the hot
+ * segments, they are retired a full block at a time. Given a block file, they
+ * are spilled to it, and the index remembers only where each block starts and
+ * the last purchase time in it. Without one, they are discarded, along with
+ * the records they point to. The entries left in memory are therefore bounded
+ * by the hot segments and one block, however long the history grows.
+ *
+ * @author Kyer Potts
+ */
+public class PurchaseTimeIndex {
+  private static final int INITIAL_CAPACITY = 4;
+
+  // The file that retired entries are spilled to, or null if they are
+  // discarded.
+  private final IndexBlockFile blockFile;
+  private final int entriesPerBlock;
+  // Every spilled block holds exactly entriesPerBlock entries, and the blocks
+  // come before the entries held in memory in purchase time order.
+  private long[] blockOffsets;
+  private long[] blockLastSeconds;
+  private int blockCount;
+
+  private long[] purchaseSeconds;
+  private long[] positions;
+  private int count;
+
+  /**
+   * Creates an index that retires entries a block at a time.
+   *
+   * @param blockFile       the file that retired entries are spilled to, or
+   *                        null if they are discarded.
+   * @param entriesPerBlock the number of entries retired at once.
+   */
+  public PurchaseTimeIndex(IndexBlockFile blockFile, int entriesPerBlock) {
+    this.blockFile = blockFile;
+    this.entriesPerBlock = entriesPerBlock;
+    blockOffsets = new long[0];
+    blockLastSeconds = new long[0];
+    blockCount = 0;
+    purchaseSeconds = new long[INITIAL_CAPACITY];
+    positions = new long[INITIAL_CAPACITY];
+    count = 0;
+  }
+
+  /**
+   * Adds a record to the index, keeping the index in purchase time order.
+   * Records purchased at the same time are kept in the order they were added.
+   * A record purchased before the end of the spilled blocks, which needs a
+   * record to have overtaken a whole block, brings those blocks back into
+   * memory so that it can take its place.
+   *
+   * @param purchaseSecond the purchase time of the record, in epoch seconds.
+   * @param position       the position of the record in the log.
+   */
+  public void add(long purchaseSecond, long position) {
+    while (blockCount > 0 && blockLastSeconds[blockCount - 1] > purchaseSecond) {
+      reloadLastBlock();
+    }
+    ensureCapacity(count + 1);
+    int index = count;
+    while (index > 0 && purchaseSeconds[index - 1] > purchaseSecond) {
+      purchaseSeconds[index] = purchaseSeconds[index - 1];
+      positions[index] = positions[index - 1];
+      index--;
+    }
+    purchaseSeconds[index] = purchaseSecond;
+    positions[index] = position;
+    count++;
+  }
+
+  /**
+   * Retires the entries for records before a position in the log. Without a
+   * block file, every such entry is discarded. With one, full blocks of them
+   * are spilled from the front of the index, stopping at the first entry for
+   * a record still in memory, so the spilled blocks stay in time order.
+   *
+   * @param boundary the position of the first record still held in memory.
+   */
+  public void retireBefore(long boundary) {
+    if (blockFile == null) {
+      int kept = 0;
+      for (int i = 0; i < count; i++) {
+        if (positions[i] >= boundary) {
+          purchaseSeconds[kept] = purchaseSeconds[i];
+          positions[kept] = positions[i];
+          kept++;
+        }
+      }
+      count = kept;
+    } else {
+      while (count >= entriesPerBlock && allBefore(boundary, entriesPerBlock)) {
+        spillFirstBlock();
+      }
+    }
+    shrink();
+  }
+
+  /**
+   * Accessor for the number of records in the index.
+   *
+   * @return the number of records in the index, spilled or in memory.
+   */
+  public int size() {
+    return spilledCount() + count;
+  }
+
+  /**
+   * Accessor for the position in the log of the record at the given place in
+   * the index. Spilled entries are read from the block file.
+   *
+   * @param index the place of the record in the index, with the earliest
+   *              purchase first.
+   * @return the position of the record in the log.
+   */
+  public long positionAt(int index) {
+    int spilled = spilledCount();
+    if (index >= spilled) {
+      return positions[index - spilled];
+    }
+    int block = index / entriesPerBlock;
+    blockFile.load(blockOffsets[block], entriesPerBlock);
+    return blockFile.positionAt(index % entriesPerBlock);
+  }
+
+  /**
+   * Finds the first record purchased at or after the given time. The spilled
+   * blocks are searched by their last purchase time, so at most one block is
+   * read.
+   *
+   * @param purchaseSecond the time to search for, in epoch seconds.
+   * @return the place in the index of the first record purchased at or after
+   *         the time, or the size of the index if there is none.
+   */
+  public int firstFrom(long purchaseSecond) {
+    if (blockCount == 0 || blockLastSeconds[blockCount - 1] < purchaseSecond) {
+      return spilledCount() + lowerBound(purchaseSeconds, count, purchaseSecond);
+    }
+    int block = lowerBound(blockLastSeconds, blockCount, purchaseSecond);
+    blockFile.load(blockOffsets[block], entriesPerBlock);
+    int low = 0;
+    int high = entriesPerBlock;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (blockFile.secondAt(middle) < purchaseSecond) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return block * entriesPerBlock + low;
+  }
+
+  /**
+   * Counts the records purchased within a time range.
+   *
+   * @param fromSecond the start of the range in epoch seconds, inclusive.
+   * @param toSecond   the end of the range in epoch seconds, exclusive.
+   * @return the number of records purchased within the range.
+   */
+  public int countBetween(long fromSecond, long toSecond) {
+    if (toSecond <= fromSecond) {
+      return 0;
+    }
+    return firstFrom(toSecond) - firstFrom(fromSecond);
+  }
+
+  private int spilledCount() {
+    return blockCount * entriesPerBlock;
+  }
+
+  private boolean allBefore(long boundary, int entries) {
+    for (int i = 0; i < entries; i++) {
+      if (positions[i] >= boundary) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void spillFirstBlock() {
+    long offset = blockFile.write(purchaseSeconds, positions, entriesPerBlock);
+    if (blockCount == blockOffsets.length) {
+      blockOffsets = Arrays.copyOf(blockOffsets, Math.max(INITIAL_CAPACITY, blockCount * 2));
+      blockLastSeconds = Arrays.copyOf(blockLastSeconds, blockOffsets.length);
+    }
+    blockOffsets[blockCount] = offset;
+    blockLastSeconds[blockCount] = purchaseSeconds[entriesPerBlock - 1];
+    blockCount++;
+    count -= entriesPerBlock;
+    System.arraycopy(purchaseSeconds, entriesPerBlock, purchaseSeconds, 0, count);
+    System.arraycopy(positions, entriesPerBlock, positions, 0, count);
+  }
+
+  /**
+   * Brings the last spilled block back into memory, in front of the entries
+   * already held. The space it took in the block file is not reused.
+   */
+  private void reloadLastBlock() {
+    blockCount--;
+    blockFile.load(blockOffsets[blockCount], entriesPerBlock);
+    ensureCapacity(count + entriesPerBlock);
+    System.arraycopy(purchaseSeconds, 0, purchaseSeconds, entriesPerBlock, count);
+    System.arraycopy(positions, 0, positions, entriesPerBlock, count);
+    for (int i = 0; i < entriesPerBlock; i++) {
+      purchaseSeconds[i] = blockFile.secondAt(i);
+      positions[i] = blockFile.positionAt(i);
+    }
+    count += entriesPerBlock;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > positions.length) {
+      int newCapacity = Math.max(capacity, positions.length * 2);
+      purchaseSeconds = Arrays.copyOf(purchaseSeconds, newCapacity);
+      positions = Arrays.copyOf(positions, newCapacity);
+    }
+  }
+
+  /**
+   * Gives back memory once most of the entries have been retired.
+   */
+  private void shrink() {
+    if (positions.length > INITIAL_CAPACITY && count < positions.length / 4) {
+      int newCapacity = Math.max(INITIAL_CAPACITY, count * 2);
+      purchaseSeconds = Arrays.copyOf(purchaseSeconds, newCapacity);
+      positions = Arrays.copyOf(positions, newCapacity);
+    }
+  }
+
+  private static int lowerBound(long[] values, int length, long value) {
+    int low = 0;
+    int high = length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (values[middle] < value) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,35 @@
+package edu.curtin.metrotik.tickethistory;
+
+import edu.curtin.metrotik.ticketing.Ticket;
+
+/**
+ * A ticket read back from the history log, together with the account that
+ * purchased it. Queries across every account return these, as the ticket
+ * alone does not say who bought it.
+ *
+ * @author Kyer Potts
+ */
+public class TicketHistoryEntry {
+  private final int accountID;
+  private final Ticket ticket;
+
+  public TicketHistoryEntry(int accountID, Ticket ticket) {
+    this.accountID = accountID;
+    this.ticket = ticket;
+  }
+
+  // Only getters are required for this class, and the entry should remain
+  // immutable.
+  public int getAccountID() {
+    return accountID;
+  }
+
+  public Ticket getTicket() {
+    return ticket;
+  }
+
+  @Override
+  public String toString() {
+    return "TicketHistoryEntry{accountID=" + accountID + ", ticket=" + ticket + '}';
+  }
+}
@@ -0,0 +1,17 @@
+package edu.curtin.metrotik.tickethistory;
+
+/**
+ * This exception should be thrown whenever the ticket history log cannot read
+ * or write a segment that has been spilled to disk.
+ *
+ * @author Kyer Potts
+ */
+public class TicketHistoryException extends RuntimeException {
+  public TicketHistoryException(String message) {
+    super(message);
+  }
+
+  public TicketHistoryException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
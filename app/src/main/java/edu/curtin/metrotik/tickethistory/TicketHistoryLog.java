@@ -0,0 +1,424 @@
+package edu.curtin.metrotik.tickethistory;
+
+import edu.curtin.metrotik.codec.TicketCodec;
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * An append-only log of every ticket purchased, shared by every account. Each
+ * purchase is encoded as a fixed width record rather than held as a ticket
+ * object, so expired tickets are no longer kept reachable by the accounts that
+ * bought them.
+ *
+ * The log is split into segments of a fixed number of records. Only the most
+ * recent segments are held in memory. When a segment falls out of that window
+ * it is spilled to a single cold file on disk, and its records are read back
+ * from the file when a query reaches them. Without a directory to spill to,
+ * a segment that falls out of the window is discarded, so the log only holds
+ * the most recent history.
+ *
+ * Each account keeps an index of its records sorted by purchase time, and a
+ * second index covers every record in the log. Queries search an index and
+ * page through it, so only the records on the requested page are ever read
+ * from the log and decoded. As segments leave memory, so do the index entries
+ * for their records, which are spilled to a second file in blocks or
+ * discarded with the segment. Memory therefore stays bounded by the hot
+ * window, however long the history grows.
+ *
+ * @author Kyer Potts
+ */
+public class TicketHistoryLog implements Closeable {
+  private static final Logger LOGGER = Logger.getLogger(TicketHistoryLog.class.getName());
+
+  // Record layout. The account ID is followed by the ticket, encoded by the
+  // ticket codec.
+  private static final int ACCOUNT_ID_OFFSET = 0;
+  private static final int TICKET_OFFSET = 8;
+  private static final int RECORD_SIZE = TICKET_OFFSET + TicketCodec.RECORD_SIZE;
+
+  private static final int DEFAULT_RECORDS_PER_SEGMENT = 4096;
+  private static final int DEFAULT_HOT_SEGMENTS = 8;
+  private static final String COLD_FILE_NAME = "ticket-history.log";
+  private static final String INDEX_FILE_NAME = "ticket-history.idx";
+  // Entries are retired from the indexes of accounts in small blocks, so that
+  // an account holds few entries for records that have left memory. The
+  // index of the whole log retires much larger blocks.
+  private static final int ACCOUNT_INDEX_BLOCK = 64;
+  private static final int GLOBAL_INDEX_BLOCK = 4096;
+
+  private final int recordsPerSegment;
+  private final int hotSegments;
+  // Segments still held in memory, indexed by segment number. Spilled or
+  // discarded segments are replaced with null.
+  private final List<ByteBuffer> segments;
+  // The number of segments that have left memory. These are always the oldest
+  // segments, so the cold file holds them in order.
+  private int retiredSegments;
+  // Whether a warning has been logged that history is being discarded.
+  private boolean discardWarned;
+  private long recordCount;
+  private final Map<Integer, PurchaseTimeIndex> accountIndexes;
+  private final PurchaseTimeIndex globalIndex;
+
+  private final FileChannel coldFile;
+  private final IndexBlockFile indexFile;
+  private final ByteBuffer readBuffer;
+
+  /**
+   * Creates a log that holds only the most recent segments in memory, and
+   * discards older ones.
+   */
+  public TicketHistoryLog() {
+    this(null, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_HOT_SEGMENTS);
+  }
+
+  /**
+   * Creates a log that spills cold segments to a file in the given directory.
+   *
+   * @param directory the directory holding the cold file.
+   */
+  public TicketHistoryLog(Path directory) {
+    this(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_HOT_SEGMENTS);
+  }
+
+  /**
+   * Creates a log.
+   *
+   * @param directory         the directory holding the cold files, or null if
+   *                          segments should be discarded rather than spilled.
+   * @param recordsPerSegment the number of records in each segment.
+   * @param hotSegments       the number of the most recent segments kept in
+   *                          memory.
+   */
+  public TicketHistoryLog(Path directory, int recordsPerSegment, int hotSegments) {
+    this.recordsPerSegment = recordsPerSegment;
+    this.hotSegments = hotSegments;
+    this.segments = new ArrayList<>();
+    this.retiredSegments = 0;
+    this.discardWarned = false;
+    this.recordCount = 0;
+    this.accountIndexes = new HashMap<>();
+    this.readBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    if (directory == null) {
+      coldFile = null;
+      indexFile = null;
+    } else {
+      Path file = directory.resolve(COLD_FILE_NAME);
+      try {
+        Files.createDirectories(directory);
+        // The log is rebuilt every run, so any cold file from a previous run is
+        // discarded.
+        coldFile = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+      } catch (IOException e) {
+        LOGGER.severe(() -> "Ticket history file could not be opened: " + file);
+        throw new TicketHistoryException("Ticket history file could not be opened: " + file, e);
+      }
+      indexFile = new IndexBlockFile(directory.resolve(INDEX_FILE_NAME));
+    }
+    this.globalIndex = new PurchaseTimeIndex(indexFile, GLOBAL_INDEX_BLOCK);
+    LOGGER.info(() -> "Ticket history log has been initialised successfully");
+  }
+
+  /**
+   * Appends a purchased ticket to the history of an account.
+   *
+   * @param accountID the ID of the account that purchased the ticket.
+   * @param ticket    the ticket that was purchased.
+   */
+  public synchronized void append(int accountID, Ticket ticket) {
+    long position = recordCount;
+    int segmentNumber = (int) (position / recordsPerSegment);
+    if (segmentNumber == segments.size()) {
+      segments.add(ByteBuffer.allocate(recordsPerSegment * RECORD_SIZE));
+      retireColdSegments();
+    }
+    ByteBuffer segment = segments.get(segmentNumber);
+    int index = (int) (position % recordsPerSegment) * RECORD_SIZE;
+    segment.putInt(index + ACCOUNT_ID_OFFSET, accountID);
+    if (ticket instanceof ZoneTicket) {
+      TicketCodec.encodeZoneTicket(segment, index + TICKET_OFFSET, (ZoneTicket) ticket);
+    } else if (ticket instanceof TimedTicket) {
+      TicketCodec.encodeTimedTicket(segment, index + TICKET_OFFSET, (TimedTicket) ticket);
+    } else {
+      throw new TicketHistoryException("Ticket type cannot be recorded: " + ticket);
+    }
+    recordCount++;
+    // Both indexes are kept up to date as records are appended, which is
+    // almost always an append to each index as well.
+    long purchaseSecond = TicketCodec.toEpochSecond(ticket.getPurchaseTimeDate());
+    accountIndexes.computeIfAbsent(accountID,
+        id -> new PurchaseTimeIndex(indexFile, ACCOUNT_INDEX_BLOCK))
+        .add(purchaseSecond, position);
+    globalIndex.add(purchaseSecond, position);
+  }
+
+  /**
+   * Counts the tickets in the history of an account.
+   *
+   * @param accountID the ID of the account.
+   * @return the number of tickets the account has purchased.
+   */
+  public synchronized int countTickets(int accountID) {
+    PurchaseTimeIndex accountIndex = accountIndexes.get(accountID);
+    return accountIndex == null ? 0 : accountIndex.size();
+  }
+
+  /**
+   * Counts the tickets an account purchased within a time range.
+   *
+   * @param accountID the ID of the account.
+   * @param from      the start of the range, inclusive.
+   * @param to        the end of the range, exclusive.
+   * @return the number of tickets purchased within the range.
+   */
+  public synchronized int countTicketsPurchasedBetween(int accountID,
+      LocalDateTime from, LocalDateTime to) {
+    PurchaseTimeIndex accountIndex = accountIndexes.get(accountID);
+    if (accountIndex == null) {
+      return 0;
+    }
+    return accountIndex.countBetween(TicketCodec.toEpochSecond(from),
+        TicketCodec.toEpochSecond(to));
+  }
+
+  /**
+   * Counts the tickets purchased by every account within a time range.
+   *
+   * @param from the start of the range, inclusive.
+   * @param to   the end of the range, exclusive.
+   * @return the number of tickets purchased within the range.
+   */
+  public synchronized int countAllTicketsPurchasedBetween(LocalDateTime from,
+      LocalDateTime to) {
+    return globalIndex.countBetween(TicketCodec.toEpochSecond(from),
+        TicketCodec.toEpochSecond(to));
+  }
+
+  /**
+   * Pages through the history of an account, newest ticket first.
+   *
+   * @param accountID the ID of the account.
+   * @param skip      the number of the newest tickets to skip over.
+   * @param limit     the greatest number of tickets to return.
+   * @return the tickets on the requested page, newest first. The tickets are
+   *         decoded as they were when purchased.
+   */
+  public synchronized List<Ticket> getNewestTickets(int accountID, int skip, int limit) {
+    List<Ticket> page = new ArrayList<>();
+    PurchaseTimeIndex accountIndex = accountIndexes.get(accountID);
+    if (accountIndex == null) {
+      return page;
+    }
+    for (int i = accountIndex.size() - 1 - skip; i >= 0 && page.size() < limit; i--) {
+      page.add(readTicket(accountIndex.positionAt(i)));
+    }
+    return page;
+  }
+
+  /**
+   * Pages through the tickets an account purchased within a time range,
+   * oldest ticket first. The range is found with a binary search over the
+   * index of the account, so only the tickets on the page are read.
+   *
+   * @param accountID the ID of the account.
+   * @param from      the start of the range, inclusive.
+   * @param to        the end of the range, exclusive.
+   * @param skip      the number of tickets in the range to skip over.
+   * @param limit     the greatest number of tickets to return.
+   * @return the tickets on the requested page, oldest first.
+   */
+  public synchronized List<Ticket> getTicketsPurchasedBetween(int accountID,
+      LocalDateTime from, LocalDateTime to, int skip, int limit) {
+    List<Ticket> page = new ArrayList<>();
+    PurchaseTimeIndex accountIndex = accountIndexes.get(accountID);
+    if (accountIndex == null) {
+      return page;
+    }
+    int end = accountIndex.firstFrom(TicketCodec.toEpochSecond(to));
+    for (int i = accountIndex.firstFrom(TicketCodec.toEpochSecond(from)) + skip;
+        i < end && page.size() < limit; i++) {
+      page.add(readTicket(accountIndex.positionAt(i)));
+    }
+    return page;
+  }
+
+  /**
+   * Pages through the tickets purchased by every account within a time range,
+   * oldest ticket first.
+   *
+   * @param from  the start of the range, inclusive.
+   * @param to    the end of the range, exclusive.
+   * @param skip  the number of tickets in the range to skip over.
+   * @param limit the greatest number of tickets to return.
+   * @return the tickets on the requested page, each with the account that
+   *         purchased it, oldest first.
+   */
+  public synchronized List<TicketHistoryEntry> getAllTicketsPurchasedBetween(
+      LocalDateTime from, LocalDateTime to, int skip, int limit) {
+    List<TicketHistoryEntry> page = new ArrayList<>();
+    int end = globalIndex.firstFrom(TicketCodec.toEpochSecond(to));
+    for (int i = globalIndex.firstFrom(TicketCodec.toEpochSecond(from)) + skip;
+        i < end && page.size() < limit; i++) {
+      long position = globalIndex.positionAt(i);
+      ByteBuffer record = readRecord(position);
+      int index = recordIndex(position, record);
+      page.add(new TicketHistoryEntry(record.getInt(index + ACCOUNT_ID_OFFSET),
+          decodeTicket(record, index)));
+    }
+    return page;
+  }
+
+  /**
+   * Accessor for the number of segments that have been spilled to disk.
+   *
+   * @return the number of cold segments.
+   */
+  public synchronized int getSpilledSegmentCount() {
+    return coldFile == null ? 0 : retiredSegments;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (coldFile != null) {
+      try {
+        coldFile.close();
+      } catch (IOException e) {
+        throw new TicketHistoryException("Ticket history file could not be closed", e);
+      }
+      indexFile.close();
+    }
+    LOGGER.info(() -> "Ticket history log has been closed");
+  }
+
+  /**
+   * Moves every segment older than the hot window out of memory, spilling it
+   * to the cold file if there is one. Segments are spilled in order, so each
+   * is written directly after the last. The index entries for the records of
+   * those segments are then retired from the index of the whole log and the
+   * indexes of the accounts that bought them, which are the only indexes
+   * holding such entries.
+   */
+  private void retireColdSegments() {
+    Set<Integer> accounts = new HashSet<>();
+    while (segments.size() - retiredSegments > hotSegments) {
+      ByteBuffer segment = segments.get(retiredSegments);
+      for (int index = 0; index < segment.capacity(); index += RECORD_SIZE) {
+        accounts.add(segment.getInt(index + ACCOUNT_ID_OFFSET));
+      }
+      if (coldFile != null) {
+        spill(segment, retiredSegments);
+      } else if (!discardWarned) {
+        // Counts and queries only cover the history still in memory from here
+        // on, which is worth knowing once, but not for every segment.
+        discardWarned = true;
+        LOGGER.warning(() -> "Ticket history has no directory to spill to, so history older " +
+            "than the most recent " + (long) hotSegments * recordsPerSegment +
+            " purchases is being discarded");
+      }
+      segments.set(retiredSegments, null);
+      retiredSegments++;
+    }
+    if (accounts.isEmpty()) {
+      return;
+    }
+    long boundary = (long) retiredSegments * recordsPerSegment;
+    globalIndex.retireBefore(boundary);
+    for (Integer accountID : accounts) {
+      PurchaseTimeIndex accountIndex = accountIndexes.get(accountID);
+      accountIndex.retireBefore(boundary);
+      if (accountIndex.size() == 0) {
+        accountIndexes.remove(accountID);
+      }
+    }
+    int retired = retiredSegments;
+    LOGGER.info(() -> retired + " ticket history segments have left memory");
+  }
+
+  private void spill(ByteBuffer segment, int segmentNumber) {
+    long filePosition = (long) segmentNumber * recordsPerSegment * RECORD_SIZE;
+    try {
+      segment.clear();
+      while (segment.hasRemaining()) {
+        coldFile.write(segment, filePosition + segment.position());
+      }
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Ticket history segment could not be spilled");
+      throw new TicketHistoryException("Ticket history segment could not be spilled", e);
+    }
+  }
+
+  /**
+   * Finds the buffer holding a record. Hot records are read in place from
+   * their segment, while cold records are read from the cold file into a
+   * buffer shared by every read.
+   *
+   * @param position the position of the record in the log.
+   * @return the buffer holding the record.
+   */
+  private ByteBuffer readRecord(long position) {
+    int segmentNumber = (int) (position / recordsPerSegment);
+    ByteBuffer segment = segments.get(segmentNumber);
+    if (segment != null) {
+      return segment;
+    }
+    if (coldFile == null) {
+      throw new TicketHistoryException("Ticket history record " + position +
+          " has been discarded");
+    }
+    readBuffer.clear();
+    try {
+      long filePosition = position * RECORD_SIZE;
+      while (readBuffer.hasRemaining()) {
+        if (coldFile.read(readBuffer, filePosition + readBuffer.position()) < 0) {
+          throw new TicketHistoryException("Ticket history file ended early");
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.severe(() -> "Ticket history record could not be read");
+      throw new TicketHistoryException("Ticket history record could not be read", e);
+    }
+    return readBuffer;
+  }
+
+  /**
+   * Finds the index of a record within the buffer returned by readRecord.
+   *
+   * @param position the position of the record in the log.
+   * @param record   the buffer holding the record.
+   * @return the index of the start of the record in the buffer.
+   */
+  private int recordIndex(long position, ByteBuffer record) {
+    return record == readBuffer ? 0 : (int) (position % recordsPerSegment) * RECORD_SIZE;
+  }
+
+  private Ticket readTicket(long position) {
+    ByteBuffer record = readRecord(position);
+    return decodeTicket(record, recordIndex(position, record));
+  }
+
+  private static Ticket decodeTicket(ByteBuffer record, int index) {
+    int ticketIndex = index + TICKET_OFFSET;
+    if (TicketCodec.typeOf(record, ticketIndex) == TicketCodec.TYPE_ZONE) {
+      return TicketCodec.decodeZoneTicket(record, ticketIndex);
+    }
+    return TicketCodec.decodeTimedTicket(record, ticketIndex);
+  }
+}
@@ -0,0 +1,28 @@
+package edu.curtin.metrotik.ticketing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ticket ID source held in memory. Blocks are leased with a single atomic
+ * add, so leasing never takes a lock. IDs are not remembered between runs, so
+ * this source is used when tickets are not persisted.
+ *
+ * @author Kyer Potts
+ */
+public class AtomicTicketIDSource implements TicketIDSource {
+  private final AtomicLong lastTicketID;
+
+  /**
+   * Creates a source that continues on from the given ID.
+   *
+   * @param lastTicketID the highest ticket ID that has already been issued.
+   */
+  public AtomicTicketIDSource(long lastTicketID) {
+    this.lastTicketID = new AtomicLong(lastTicketID);
+  }
+
+  @Override
+  public long leaseBlock(int size) {
+    return lastTicketID.getAndAdd(size) + 1;
+  }
+}
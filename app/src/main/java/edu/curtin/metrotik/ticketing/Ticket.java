@@ -10,22 +10,38 @@ import java.time.LocalDateTime;
  */
 public interface Ticket {
   /**
-   * Provides a contract for tickets to register observers. These observers will
-   * watch for specific events or changes within the ticket and respond to them
-   * appropriately.
+   * Provides a contract for tickets to register the observer they report to.
+   * This is the chain holding the ticket, which passes each event on to any
+   * other interested parties, so a ticket only ever has the one observer.
    *
    * @param observer the observer of the ticket.
    */
-  public void addTicketObserver(TicketObserver observer);
+  public void setTicketObserver(TicketObserver observer);
 
   /**
    * Initiate a single zone of travel. The monorail only considers the value of
    * the zones travelled for ticketing purposes. This method will be called
    * whenever a zone is travelled, and manage it's own behaviour internally.
    *
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds. The clock is read once per request
+   *                          and passed down to every ticket.
    * @return true if the ticket successfully allowed the travel of a zone.
    */
-  public boolean travelZone();
+  public boolean travelZone(long currentTimeMillis);
+
+  /**
+   * Initiate travel over several zones in a single call. The ticket pays for
+   * as many of the requested zones as it is able to, and notifies its
+   * observer at most once if it becomes invalid as a result.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds.
+   *
+   * @return the number of the requested zones that the ticket paid for.
+   */
+  public int travelZones(int zones, long currentTimeMillis);
 
   /**
    * Provides a contract for retrieving the ID of a sinlge ticket. This will
@@ -34,7 +50,7 @@ public interface Ticket {
    *
    * @return the integer value of the id of the ticket
    */
-  public int getTicketID();
+  public long getTicketID();
 
   /**
    * Provides a contract for retrieving the timedate stamp at which the ticket
@@ -47,11 +63,14 @@ public interface Ticket {
    * passenger has the ability to travel the requested number of zones, or if
    * the passenger needs to purchase additional tickets to complete the journey.
    *
-   * @param zones the number of zones that have been requested to be travelled.
+   * @param zones             the number of zones that have been requested to be
+   *                          travelled.
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds.
    *
    * @return the number of zones after a calculation has been applied to the
    *         zones allocated to the ticket and the number of zones requested to
    *         be travelled.
    */
-  public int checkZoneTravel(int zones);
+  public int checkZoneTravel(int zones, long currentTimeMillis);
 }
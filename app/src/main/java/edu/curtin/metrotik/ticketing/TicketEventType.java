@@ -0,0 +1,14 @@
+package edu.curtin.metrotik.ticketing;
+
+/**
+ * The events that a ticket reports to its observer. Tickets report only their
+ * ID and one of these types, so reporting an event never allocates.
+ *
+ * @author Kyer Potts
+ */
+public enum TicketEventType {
+  // The zone allocation of a zone ticket has been used up.
+  EXHAUSTED,
+  // The validity window of a timed ticket has ended.
+  EXPIRED
+}
@@ -1,6 +1,9 @@
 package edu.curtin.metrotik.ticketing;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -16,12 +19,46 @@ import java.util.logging.Logger;
  */
 public class TicketFactory {
   private static final Logger LOGGER = Logger.getLogger(TicketFactory.class.getName());
-  // For the purposes of this program, ticketID's will be reset whenever the
-  // program is re-run. Persistence was not part of the requirements and so no
-  // effort has been made to have persisting elements.
-  private int ticketID = 0;
+  // Unless a ticket store is in use, ticketID's will be reset whenever the
+  // program is re-run.
+  private final TicketIDSequence ticketIDs;
+  // The primed values are only used by createTicket. The single call methods
+  // take everything they need as arguments, so they can be used from several
+  // threads at once.
   private int zoneAllocation = 0;
   private LocalDateTime validFrom = null;
+  // Purchase times and validity windows are taken from this clock, so that
+  // simulations can supply a clock of their own.
+  private final Clock clock;
+
+  public TicketFactory() {
+    this(Clock.systemDefaultZone(), 0);
+  }
+
+  /**
+   * Creates a factory that reads the time from the given clock, and continues
+   * numbering tickets from a previous run.
+   *
+   * @param clock        the clock used for purchase times and to place
+   *                     validity windows in the time zone of the rider.
+   * @param lastTicketID the highest ticket ID that has already been issued.
+   */
+  public TicketFactory(Clock clock, long lastTicketID) {
+    this(clock, new TicketIDSequence(new AtomicTicketIDSource(lastTicketID)));
+  }
+
+  /**
+   * Creates a factory that reads the time from the given clock, and issues
+   * ticket IDs from the given sequence.
+   *
+   * @param clock     the clock used for purchase times and to place validity
+   *                  windows in the time zone of the rider.
+   * @param ticketIDs the sequence that ticket IDs are issued from.
+   */
+  public TicketFactory(Clock clock, TicketIDSequence ticketIDs) {
+    this.clock = clock;
+    this.ticketIDs = ticketIDs;
+  }
 
   /**
    * Factory method to isntantiate tickets.
@@ -29,7 +66,6 @@ public class TicketFactory {
    * @return a fully instantiated ticket.
    */
   public Ticket createTicket() {
-    Ticket newTicket;
     // If the factory has been primed for a timed and a zone ticket it is in an
     // invalid state and it should throw an error.
     if (validFrom != null && zoneAllocation > 0) {
@@ -41,14 +77,7 @@ public class TicketFactory {
     // Ticket is primed for a timed ticket and should return a fully
     // instantiated timed ticket.
     if (validFrom != null) {
-      // Whenever a ticket is instantiated, the ticketID variable must be
-      // increased to ensure that tickets have unique ID's. In a proper
-      // ticketing system this would be an abstracted object that references a
-      // central data source for this information, however it is not required
-      // for a simple demonstration program.
-      ticketID++;
-      newTicket = new TimedTicket(ticketID, LocalDateTime.now(), validFrom);
-      LOGGER.info(() -> "TicketFactory has created a timed ticket");
+      TimedTicket newTicket = createTimedTicket(validFrom);
       // Once a ticket is instantiated, the factory must be reset to a state in
       // which it is ready to be primed for the next ticket.
       validFrom = null;
@@ -56,18 +85,9 @@ public class TicketFactory {
       return newTicket;
     }
     // Ticket is primed for a zone ticket and should return a fully instantiated
-    // timed ticket.
+    // zone ticket.
     else if (zoneAllocation > 0) {
-      // Whenever a ticket is instantiated, the ticketID variable must be
-      // increased to ensure that tickets have unique ID's. In a proper
-      // ticketing system this would be an abstracted object that references a
-      // central data source for this information, however it is not required
-      // for a simple demonstration program.
-      ticketID++;
-      newTicket = new ZoneTicket(ticketID, LocalDateTime.now(), zoneAllocation);
-      LOGGER.info(() -> "TicketFactory has created a zone ticket");
-      // Once a ticket is instantiated, the factory must be reset to a state in
-      // which it is ready to be primed for the next ticket.
+      ZoneTicket newTicket = createZoneTicket(zoneAllocation);
       zoneAllocation = 0;
       LOGGER.info(() -> "TicketFactory has been reset");
       return newTicket;
@@ -82,6 +102,75 @@ public class TicketFactory {
     }
   }
 
+  /**
+   * Factory method to instantiate a timed ticket in a single call. The factory
+   * does not need to be primed, and no state of the factory is changed, so
+   * this can be called from several threads at once.
+   *
+   * @param validFrom the time that the ticket will be valid from.
+   * @return a fully instantiated timed ticket.
+   */
+  public TimedTicket createTimedTicket(LocalDateTime validFrom) {
+    // Every ticket is given an ID that has never been issued before. The
+    // sequence hands each thread a block of IDs of its own, so that
+    // concurrent purchases never share a counter.
+    long ticketID = ticketIDs.nextID();
+    // The validity window is converted to epoch milliseconds once, here, so
+    // that no time zone calculations are needed when the ticket is used.
+    long validFromMillis = validFrom.atZone(clock.getZone()).toInstant().toEpochMilli();
+    TimedTicket newTicket = new TimedTicket(ticketID, LocalDateTime.now(clock), validFromMillis);
+    LOGGER.info(() -> "TicketFactory has created a timed ticket");
+    return newTicket;
+  }
+
+  /**
+   * Factory method to instantiate a zone ticket in a single call. The factory
+   * does not need to be primed, and no state of the factory is changed, so
+   * this can be called from several threads at once.
+   *
+   * @param zones the number of zones to be allocated to the ticket.
+   * @return a fully instantiated zone ticket.
+   */
+  public ZoneTicket createZoneTicket(int zones) {
+    if (zones <= 0) {
+      LOGGER.severe(
+          () -> "Zone tickets must be allocated at least one zone.");
+      throw new TicketInstantiationException(
+          "Zone tickets must be allocated at least one zone.");
+    }
+    ZoneTicket newTicket = new ZoneTicket(ticketIDs.nextID(), LocalDateTime.now(clock), zones);
+    LOGGER.info(() -> "TicketFactory has created a zone ticket");
+    return newTicket;
+  }
+
+  /**
+   * Factory method to instantiate a batch of zone tickets, each with the same
+   * allocation. The tickets are given a contiguous block of IDs and share a
+   * single purchase time, so the cost of each ticket is little more than the
+   * ticket object itself. As with the single call methods, this can be called
+   * from several threads at once.
+   *
+   * @param count the number of tickets to be instantiated.
+   * @param zones the number of zones to be allocated to each ticket.
+   * @return the fully instantiated zone tickets, in ID order.
+   */
+  public List<ZoneTicket> createZoneTickets(int count, int zones) {
+    if (count <= 0 || zones <= 0) {
+      LOGGER.severe(
+          () -> "Zone ticket batches must hold at least one ticket of at least one zone.");
+      throw new TicketInstantiationException(
+          "Zone ticket batches must hold at least one ticket of at least one zone.");
+    }
+    long firstID = ticketIDs.nextBlock(count);
+    LocalDateTime purchased = LocalDateTime.now(clock);
+    List<ZoneTicket> newTickets = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      newTickets.add(new ZoneTicket(firstID + i, purchased, zones));
+    }
+    LOGGER.info(() -> "TicketFactory has created " + count + " zone tickets");
+    return newTickets;
+  }
+
   /**
    * Method to prime the factory for instantiation of a TimedTicket.
    *
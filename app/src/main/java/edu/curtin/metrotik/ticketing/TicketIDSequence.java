@@ -0,0 +1,91 @@
+package edu.curtin.metrotik.ticketing;
+
+import java.util.logging.Logger;
+
+/**
+ * Allocates unique ticket IDs to any number of threads without locking. Each
+ * thread leases a block of IDs from the shared source and hands them out one
+ * at a time, so issuing an ID only touches state owned by the calling thread.
+ * The shared source is only consulted when a thread has used up its block.
+ *
+ * IDs are unique, but they are only in purchase order within a single thread,
+ * as each thread works through a block of its own.
+ *
+ * @author Kyer Potts
+ */
+public class TicketIDSequence {
+  private static final Logger LOGGER = Logger.getLogger(TicketIDSequence.class.getName());
+  private static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private final TicketIDSource source;
+  private final int blockSize;
+  private final ThreadLocal<Lease> leases;
+
+  /**
+   * Creates a sequence that leases blocks of the default size.
+   *
+   * @param source the shared source that blocks are leased from.
+   */
+  public TicketIDSequence(TicketIDSource source) {
+    this(source, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Creates a sequence.
+   *
+   * @param source    the shared source that blocks are leased from.
+   * @param blockSize the number of IDs leased by a thread at a time. Larger
+   *                  blocks consult the source less often, but more IDs go
+   *                  unused when the program exits.
+   */
+  public TicketIDSequence(TicketIDSource source, int blockSize) {
+    this.source = source;
+    this.blockSize = blockSize;
+    this.leases = ThreadLocal.withInitial(Lease::new);
+  }
+
+  /**
+   * Issues the next ticket ID for the calling thread.
+   *
+   * @return a ticket ID that has not been issued before.
+   */
+  public long nextID() {
+    Lease lease = leases.get();
+    if (lease.next == lease.end) {
+      lease.next = source.leaseBlock(blockSize);
+      lease.end = lease.next + blockSize;
+      LOGGER.info(() -> "Ticket IDs have been leased up to " + lease.end);
+    }
+    long ticketID = lease.next;
+    lease.next++;
+    return ticketID;
+  }
+
+  /**
+   * Issues a contiguous block of ticket IDs for the calling thread, such as for
+   * a batch of tickets purchased together. The block is taken from the lease
+   * of the thread when it has room, and is otherwise leased from the source on
+   * its own, leaving the lease of the thread as it was.
+   *
+   * @param count the number of IDs in the block.
+   * @return the first ID of the block.
+   */
+  public long nextBlock(int count) {
+    Lease lease = leases.get();
+    if (lease.end - lease.next >= count) {
+      long firstID = lease.next;
+      lease.next += count;
+      return firstID;
+    }
+    return source.leaseBlock(count);
+  }
+
+  /**
+   * The block of IDs leased by a single thread. The block is empty until the
+   * thread first asks for an ID.
+   */
+  private static final class Lease {
+    private long next;
+    private long end;
+  }
+}
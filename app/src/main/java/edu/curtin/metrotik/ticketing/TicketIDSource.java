@@ -0,0 +1,19 @@
+package edu.curtin.metrotik.ticketing;
+
+/**
+ * Contract for the shared source that ticket IDs are leased from. Sources hand
+ * out IDs in blocks, so that they are only consulted once per block rather
+ * than once per ticket. A source must never hand out the same ID twice.
+ *
+ * @author Kyer Potts
+ */
+public interface TicketIDSource {
+  /**
+   * Provides a contract for leasing a block of consecutive ticket IDs.
+   *
+   * @param size the number of IDs in the block.
+   * @return the first ID of the block. The block runs from this ID up to, but
+   *         not including, this ID plus the size.
+   */
+  public long leaseBlock(int size);
+}
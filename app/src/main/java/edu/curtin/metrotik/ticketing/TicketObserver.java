@@ -5,8 +5,18 @@ package edu.curtin.metrotik.ticketing;
  * ticket. This allows various under the hood functionality to exist, such as
  * removing tickets from a chain when they are no longer valid.
  *
+ * A ticket reports to a single observer, the chain that holds it. The chain
+ * then passes the event on to every other interested party, so observers are
+ * only told the ID of the ticket and what happened to it.
+ *
  * @author Kyer Potts
  */
 public interface TicketObserver {
-  public void invalidateTicket(Ticket ticket);
+  /**
+   * Called when a ticket changes state.
+   *
+   * @param ticketID  the ID of the ticket.
+   * @param eventType what happened to the ticket.
+   */
+  public void ticketEventOccurred(long ticketID, TicketEventType eventType);
 }
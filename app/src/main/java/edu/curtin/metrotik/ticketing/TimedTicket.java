@@ -1,8 +1,7 @@
 package edu.curtin.metrotik.ticketing;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -15,48 +14,54 @@ import java.util.logging.Logger;
 public class TimedTicket implements Ticket {
   private static final Logger LOGGER = Logger.getLogger(TimedTicket.class.getName());
 
-  private Set<TicketObserver> ticketObservers = new HashSet<>();
+  // The chain holding the ticket, or null if the ticket has not been added to
+  // one.
+  private TicketObserver ticketObserver;
 
-  private final int ticketID;
+  // Daily tickets should always be valid for 24 hours from the validFrom
+  // date.
+  private static final long VALIDITY_PERIOD_MILLIS = 24L * 60 * 60 * 1000;
+
+  private final long ticketID;
   private final LocalDateTime timeDatePurchased;
-  private final LocalDateTime validFrom;
-  private final LocalDateTime validTo;
+  // The validity window is held as epoch milliseconds so that checking it on
+  // every tap is a pair of primitive comparisons.
+  private final long validFromMillis;
+  private final long validToMillis;
+  // Expiry may be detected both by a tap and by the expiry wheel, but the
+  // observer should only hear about it once.
+  private boolean invalidated;
 
-  public TimedTicket(int ticketID, LocalDateTime timeDatePurchased,
-      LocalDateTime validFrom) {
+  public TimedTicket(long ticketID, LocalDateTime timeDatePurchased,
+      long validFromMillis) {
     this.timeDatePurchased = timeDatePurchased;
     this.ticketID = ticketID;
-    this.validFrom = validFrom;
-    // daily tickets should always be valid for 24 hours from the validFrom
-    // date.
-    this.validTo = validFrom.plusHours(24);
+    this.validFromMillis = validFromMillis;
+    this.validToMillis = validFromMillis + VALIDITY_PERIOD_MILLIS;
+    this.invalidated = false;
     LOGGER.info(() -> "Timed ticket has been created.");
   }
 
   @Override
-  public void addTicketObserver(TicketObserver observer) {
-    ticketObservers.add(observer);
-    LOGGER.info(() -> "Observer has been added to the timed ticket: " +
+  public void setTicketObserver(TicketObserver observer) {
+    this.ticketObserver = observer;
+    LOGGER.info(() -> "Observer has been set on the timed ticket: " +
         observer.toString());
   }
 
   @Override
-  public boolean travelZone() {
-    // The current date and time must be captured in order to determine the
-    // validity of the ticket.
-    LocalDateTime currentTime = LocalDateTime.now();
-
+  public boolean travelZone(long currentTimeMillis) {
     // We need to check whether the current time falls within the validated
     // ticket parameters. If so, the ticket is valid and the passenger may use
     // it to travel.
-    if (isValid(currentTime)) {
+    if (isValid(currentTimeMillis)) {
       LOGGER.info(
           () -> "Timed ticket has been used to travel: " + this.toString());
       return true;
     }
-    // if the ticket is now expired, the relevant observers need to be notified
+    // if the ticket is now expired, the observer needs to be notified
     // of the change in state.
-    else if (currentTime.isAfter(validTo)) {
+    else if (currentTimeMillis >= validToMillis) {
       invalidateTicket();
       LOGGER.info(() -> "Timed ticket has expired: " + this.toString());
       return false;
@@ -72,7 +77,17 @@ public class TimedTicket implements Ticket {
   }
 
   @Override
-  public int getTicketID() {
+  public int travelZones(int zones, long currentTimeMillis) {
+    // A valid timed ticket pays for the whole journey, as timed tickets have
+    // inexhaustable zone allocations. Otherwise it pays for none of it.
+    if (travelZone(currentTimeMillis)) {
+      return zones;
+    }
+    return 0;
+  }
+
+  @Override
+  public long getTicketID() {
     return this.ticketID;
   }
 
@@ -81,14 +96,33 @@ public class TimedTicket implements Ticket {
     return this.timeDatePurchased;
   }
 
+  /**
+   * Accessor for the start of the validity window of the ticket. Ticket chains
+   * use this to keep their tickets ordered by validity.
+   *
+   * @return the time that the ticket is valid from, in epoch milliseconds.
+   */
+  public long getValidFromMillis() {
+    return this.validFromMillis;
+  }
+
+  /**
+   * Accessor for the end of the validity window of the ticket. Ticket chains
+   * use this to keep their tickets ordered by validity.
+   *
+   * @return the time that the ticket is valid to, in epoch milliseconds.
+   */
+  public long getValidToMillis() {
+    return this.validToMillis;
+  }
+
   @Override
-  public int checkZoneTravel(int zones) {
+  public int checkZoneTravel(int zones, long currentTimeMillis) {
     // If the ticket is currently valid, it can travel all requested zones as
     // timed tickets have inexhaustable zone allocations. As such a valid result
     // will consume all requested travel zones and should return a result of 0,
     // as in there are no more requested zones left to purchase tickets for.
-    LocalDateTime currentTime = LocalDateTime.now();
-    if (isValid(currentTime)) {
+    if (isValid(currentTimeMillis)) {
       LOGGER.info(() -> "Timed ticket can travel the requested zones: " +
           this.toString());
       return 0;
@@ -103,17 +137,24 @@ public class TimedTicket implements Ticket {
   }
 
   /**
-   * Method that notifies observers when a timed ticket is no longer valid.
+   * Method that notifies the observer when a timed ticket is no longer valid.
    * Observers are used in this instance because the ticket does not need to see
    * what is being done with it once it is invalid, it only needs to update
    * interested parties on its state. The state pattern was not used here as it
    * was unnecessary to define different modes of behaviour. Once a ticket is
    * invalid it should be removed from containers that require it's use.
+   * This is public so that containers which already know the ticket has
+   * expired can notify the observer without a travel request. A
+   * ticket is only ever invalidated once, later calls have no effect.
    */
-  private void invalidateTicket() {
+  public void invalidateTicket() {
+    if (invalidated) {
+      return;
+    }
+    invalidated = true;
     LOGGER.info(() -> "Timed ticket has been invalidated: " + this.toString());
-    for (TicketObserver observer : ticketObservers) {
-      observer.invalidateTicket(this);
+    if (ticketObserver != null) {
+      ticketObserver.ticketEventOccurred(ticketID, TicketEventType.EXPIRED);
     }
   }
 
@@ -121,14 +162,14 @@ public class TimedTicket implements Ticket {
    * Helper method to determine whether the ticket is currently valid given the
    * current date and time.
    *
-   * @param currentTime the current date and time that the validity of the
-   *                    ticket is being checked.
+   * @param currentTimeMillis the time that the validity of the ticket is being
+   *                          checked, in epoch milliseconds.
    * @return if the ticket is currently valid, return true, otherwise invalid
    *         tickets should return false.
    */
-  private boolean isValid(LocalDateTime currentTime) {
+  private boolean isValid(long currentTimeMillis) {
     LOGGER.info(() -> "Checking if timed ticket is valid: " + this.toString());
-    if (validFrom.isBefore(currentTime) && currentTime.isBefore(validTo)) {
+    if (validFromMillis < currentTimeMillis && currentTimeMillis < validToMillis) {
       LOGGER.info(() -> "Timed ticket is valid: " + this.toString());
       return true;
     } else {
@@ -146,7 +187,8 @@ public class TimedTicket implements Ticket {
   @Override
   public String toString() {
     return "TimedTicket{"
-        + "ticketID=" + ticketID + ", validFrom=" + validFrom +
-        ", validTo=" + validTo + '}';
+        + "ticketID=" + ticketID + ", validFrom=" +
+        Instant.ofEpochMilli(validFromMillis) + ", validTo=" +
+        Instant.ofEpochMilli(validToMillis) + '}';
   }
 }
@@ -1,8 +1,7 @@
 package edu.curtin.metrotik.ticketing;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -15,46 +14,57 @@ import java.util.logging.Logger;
 public class ZoneTicket implements Ticket {
   private static final Logger LOGGER = Logger.getLogger(ZoneTicket.class.getName());
 
-  private Set<TicketObserver> ticketObservers = new HashSet<>();
+  // The chain holding the ticket, or null if the ticket has not been added to
+  // one. It is set before the ticket is published to any travelling thread.
+  private TicketObserver ticketObserver;
 
-  private final int ticketID;
+  private final long ticketID;
   private final LocalDateTime timeDatePurchased;
-  private int zoneAllocation;
+  // The allocation is only ever changed by compare and set, so that the same
+  // ticket can be travelled on from several threads without losing or double
+  // spending zones.
+  private final AtomicInteger zoneAllocation;
 
-  public ZoneTicket(int ticketID, LocalDateTime timeDatePurchased,
+  public ZoneTicket(long ticketID, LocalDateTime timeDatePurchased,
       int zoneAllocation) {
     this.ticketID = ticketID;
     this.timeDatePurchased = timeDatePurchased;
     // The number of zones allocated to the ticket must be recorded. The zone
     // allocations must only change whenever the ticket successfully allows a
     // user to travel.
-    this.zoneAllocation = zoneAllocation;
+    this.zoneAllocation = new AtomicInteger(zoneAllocation);
     LOGGER.info(() -> "Zone ticket has been created.");
   }
 
+  /**
+   * Creates a ticket whose allocation is held elsewhere, such as a view of a
+   * ticket stored in the columns of a chain. No allocation is created, and
+   * nothing is logged, so a view costs no more than its own fields. Subclasses
+   * must override every method that reads or spends the allocation.
+   *
+   * @param ticketID          the ID of the ticket.
+   * @param timeDatePurchased the time the ticket was purchased.
+   */
+  protected ZoneTicket(long ticketID, LocalDateTime timeDatePurchased) {
+    this.ticketID = ticketID;
+    this.timeDatePurchased = timeDatePurchased;
+    this.zoneAllocation = null;
+  }
+
   @Override
-  public void addTicketObserver(TicketObserver observer) {
-    this.ticketObservers.add(observer);
-    LOGGER.info(() -> "Observer has been added to the zone ticket: " +
+  public void setTicketObserver(TicketObserver observer) {
+    this.ticketObserver = observer;
+    LOGGER.info(() -> "Observer has been set on the zone ticket: " +
         observer.toString());
   }
 
   @Override
-  public boolean travelZone() {
+  public boolean travelZone(long currentTimeMillis) {
     // If the zoneAllocation is greater than 0, the ticket is valid and an
     // allocation can be spent on a zone of travel.
-    if (zoneAllocation > 0) {
-      zoneAllocation--;
+    if (claimZones(1) == 1) {
       // A zone allocation was successfully used in order to travel a zone, and
       // the ticket must return a true value to reflect that.
-
-      // Zone allocations must be checked again to determine ticket validity for
-      // the purposes of notifying observers.
-      if (zoneAllocation == 0) {
-        LOGGER.info(() -> "Zone ticket allocation has been exhausted: " +
-            this.toString());
-        invalidateTicket();
-      }
       LOGGER.info(() -> "Zone ticket has been used to travel a zone: " +
           this.toString());
       return true;
@@ -67,7 +77,54 @@ public class ZoneTicket implements Ticket {
   }
 
   @Override
-  public int getTicketID() {
+  public int travelZones(int zones, long currentTimeMillis) {
+    // The ticket pays for as much of the journey as its allocation allows, and
+    // the remainder is left for other tickets to pay for.
+    int zonesPaid = claimZones(zones);
+    if (zonesPaid == 0) {
+      LOGGER.severe(
+          () -> "Zone ticket is invalid and should not be available to be checked for travel.");
+      throw new TicketingException(
+          "Ticket is invalid and has been requested to be used for travel.");
+    }
+    LOGGER.info(() -> "Zone ticket has been used to travel " + zonesPaid +
+        " zones: " + this.toString());
+    return zonesPaid;
+  }
+
+  /**
+   * Takes as much of the requested zones from the allocation as it can cover,
+   * using compare and set so that concurrent claims never take the same zone
+   * twice. Only the claim that takes the last zone invalidates the ticket, so
+   * the observer is notified exactly once. Unlike travel, an exhausted ticket is
+   * not an error here, as another thread may have exhausted it first.
+   *
+   * @param zones the number of zones requested.
+   * @return the number of zones taken from the allocation, which is 0 if the
+   *         ticket has already been exhausted.
+   */
+  public int claimZones(int zones) {
+    int current;
+    int claimed;
+    do {
+      current = zoneAllocation.get();
+      if (current <= 0) {
+        return 0;
+      }
+      claimed = Math.min(zones, current);
+    } while (!zoneAllocation.compareAndSet(current, current - claimed));
+    // Zone allocations must be checked again to determine ticket validity for
+    // the purposes of notifying the observer.
+    if (current == claimed) {
+      LOGGER.info(() -> "Zone ticket allocation has been exhausted: " +
+          this.toString());
+      invalidateTicket();
+    }
+    return claimed;
+  }
+
+  @Override
+  public long getTicketID() {
     return this.ticketID;
   }
 
@@ -76,16 +133,27 @@ public class ZoneTicket implements Ticket {
     return this.timeDatePurchased;
   }
 
+  /**
+   * Accessor for the number of zones remaining on the ticket. Ticket chains use
+   * this to keep a running total of the allocation they hold.
+   *
+   * @return the number of zones that can still be travelled on the ticket.
+   */
+  public int getZoneAllocation() {
+    return this.zoneAllocation.get();
+  }
+
   @Override
-  public int checkZoneTravel(int zones) {
+  public int checkZoneTravel(int zones, long currentTimeMillis) {
     // zone allocations should never be less than 0. It should be impossible for
     // them to exist in this state.
-    assert (this.zoneAllocation < 0);
+    int allocation = this.zoneAllocation.get();
+    assert (allocation < 0);
 
     // The number of zones left required to travel after being calculated
     // against the zoneAllocation of the ticket must be determined in order
     // return the remainder.
-    int zonesLeft = zones - this.zoneAllocation;
+    int zonesLeft = zones - allocation;
 
     // If the allocations of the ticket exceed the requested number of travel
     // zones, the method should return a result of 0, as in there are no more
@@ -101,14 +169,14 @@ public class ZoneTicket implements Ticket {
     // calculation.
     else {
       LOGGER.info(() -> "Zone ticket only has enough allocation to travel: " +
-          this.zoneAllocation + " out of " + zones +
+          allocation + " out of " + zones +
           " zones. " + zonesLeft + " zones left.");
       return zonesLeft;
     }
   }
 
   /**
-   * Method that notifies observers when a zone ticket is no longer valid.
+   * Method that notifies the observer when a zone ticket is no longer valid.
    * Observers are used in this instance because the ticket does not need to see
    * what is being done with it once it is invalid, it only needs to update
    * interested parties on its state. The state pattern was not used here as it
@@ -117,8 +185,8 @@ public class ZoneTicket implements Ticket {
    */
   private void invalidateTicket() {
     LOGGER.info(() -> "Zone ticket has been invalidated: " + this.toString());
-    for (TicketObserver observer : ticketObservers) {
-      observer.invalidateTicket(this);
+    if (ticketObserver != null) {
+      ticketObserver.ticketEventOccurred(ticketID, TicketEventType.EXHAUSTED);
     }
   }
 }
@@ -0,0 +1,446 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TicketEventType;
+import edu.curtin.metrotik.ticketing.TicketObserver;
+import edu.curtin.metrotik.ticketing.TicketingException;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A zone ticket chain that stores its tickets in primitive columns rather than
+ * as ticket objects. Each ticket occupies a slot made up of an ID, a remaining
+ * zone allocation and a purchase time in epoch seconds. Slots of exhausted
+ * tickets are released back to the columns to be reused by later tickets.
+ *
+ * Tickets added to the chain are copied into the columns and the original
+ * object is discarded. Events are therefore dispatched by the chain rather than
+ * by each ticket, and the Ticket interface is provided through lightweight
+ * views that are only created when they are asked for.
+ *
+ * @author Kyer Potts
+ */
+public class ColumnarZoneTicketChain implements TicketChain<ZoneTicket> {
+  private static final Logger LOGGER = Logger.getLogger(ColumnarZoneTicketChain.class.getName());
+  private static final int INITIAL_CAPACITY = 16;
+
+  private ZoneTicketColumns columns;
+
+  // Slots in the order the tickets will be used for travel, held as a circular
+  // queue. The oldest ticket is always exhausted before the next is used.
+  private int[] travelOrder;
+  private int orderHead;
+  private int liveTickets;
+  // For each slot, its index in the travel order array, or -1 if the slot is
+  // not in the travel order. This finds a ticket's position without a search.
+  private int[] orderIndex;
+
+  private long remainingAllocation;
+  private TicketListenerList listeners;
+
+  /**
+   * Creates a chain with its columns held in arrays on the heap.
+   */
+  public ColumnarZoneTicketChain() {
+    this(new HeapZoneTicketColumns(), new TicketListenerList());
+  }
+
+  /**
+   * Creates a chain over existing columns. Any live tickets already held by
+   * the columns, such as those in a store that has been reopened, are placed
+   * in travel order by ticket ID without creating any ticket objects.
+   *
+   * @param columns   the storage for the tickets in the chain.
+   * @param listeners the listeners to be told of ticket events.
+   */
+  public ColumnarZoneTicketChain(ZoneTicketColumns columns, TicketListenerList listeners) {
+    this.columns = columns;
+    orderHead = 0;
+    liveTickets = 0;
+    remainingAllocation = 0;
+    this.listeners = listeners;
+    travelOrder = new int[Math.max(INITIAL_CAPACITY, columns.getSlotCount())];
+    orderIndex = new int[travelOrder.length];
+    Arrays.fill(orderIndex, -1);
+    restoreTravelOrder();
+    LOGGER.info(() -> "Columnar zone ticket chain has been initialised with " +
+        liveTickets + " tickets");
+  }
+
+  /**
+   * Copies the ticket into the next free slot. The ticket object itself is not
+   * retained.
+   *
+   * @param ticket the ticket to be added to the chain.
+   */
+  @Override
+  public void addTicket(ZoneTicket ticket) {
+    if (ticket.getZoneAllocation() <= 0) {
+      LOGGER.info(() -> "Exhausted zone ticket has not been added to the chain: " +
+          ticket.toString());
+      return;
+    }
+    int slot = columns.allocateSlot();
+    columns.setTicketID(slot, ticket.getTicketID());
+    columns.setPurchaseEpochSecond(slot,
+        ticket.getPurchaseTimeDate().toEpochSecond(ZoneOffset.UTC));
+    columns.setAllocation(slot, ticket.getZoneAllocation());
+    appendToTravelOrder(slot);
+    remainingAllocation += ticket.getZoneAllocation();
+    LOGGER.info(() -> "Ticket has been added to the columnar chain in slot " + slot);
+  }
+
+  /**
+   * Creates a view over each live ticket in the chain, in travel order.
+   *
+   * @return a list of views of the tickets in the chain.
+   */
+  @Override
+  public List<ZoneTicket> getTickets() {
+    List<ZoneTicket> views = new ArrayList<>(liveTickets);
+    for (int i = 0; i < liveTickets; i++) {
+      views.add(new ZoneTicketView(slotAt(i)));
+    }
+    return views;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return liveTickets == 0;
+  }
+
+  /**
+   * Removes a ticket from the chain before it has been exhausted. This is
+   * expected to be rare, so the travel order is searched for the slot.
+   *
+   * @param ticket the ticket to be invalidated.
+   */
+  @Override
+  public void invalidateTicket(Ticket ticket) {
+    for (int i = 0; i < liveTickets; i++) {
+      int slot = slotAt(i);
+      if (columns.getTicketID(slot) == ticket.getTicketID()) {
+        remainingAllocation -= columns.getAllocation(slot);
+        removeFromTravelOrder(i);
+        columns.releaseSlot(slot);
+        LOGGER.info(() -> "Ticket has been invalidated and removed from the columnar chain: " +
+            ticket.getTicketID());
+        return;
+      }
+    }
+  }
+
+  /**
+   * The tickets in this chain are held in its columns and never report events
+   * of their own, so the only events reported to the chain are for tickets it
+   * does not hold. They are ignored.
+   *
+   * @param ticketID  the ID of the ticket.
+   * @param eventType what happened to the ticket.
+   */
+  @Override
+  public void ticketEventOccurred(long ticketID, TicketEventType eventType) {
+    LOGGER.info(() -> "Columnar chain has ignored an event for ticket " + ticketID);
+  }
+
+  @Override
+  public boolean canTravelZones(int zones, long currentTimeMillis) {
+    boolean canTravel = zones <= remainingAllocation;
+    LOGGER.info(() -> "Columnar chain holds " + remainingAllocation +
+        " zones, " + zones + " requested. Can travel: " + canTravel);
+    return canTravel;
+  }
+
+  @Override
+  public boolean travelZone(long currentTimeMillis) {
+    if (liveTickets == 0) {
+      LOGGER.info(
+          () -> "There are no valid zone tickets that can register a zone of travel");
+      return false;
+    }
+    consumeFromHead(1);
+    return true;
+  }
+
+  /**
+   * Takes allocation from the slots in travel order until the journey is paid
+   * for. As with the object based chain, the journey is either paid for in
+   * full or not at all.
+   *
+   * @param zones   the number of zones requested to be travelled.
+   * @param receipt the receipt on which each ticket payment is recorded.
+   * @return the number of zones paid for, either all of them or none.
+   */
+  @Override
+  public int travelZones(int zones, long currentTimeMillis, TravelReceipt receipt) {
+    if (!canTravelZones(zones, currentTimeMillis)) {
+      return 0;
+    }
+    int zonesLeft = zones;
+    while (zonesLeft > 0) {
+      long ticketID = columns.getTicketID(travelOrder[orderHead]);
+      int paid = consumeFromHead(zonesLeft);
+      receipt.addPayment(ticketID, paid);
+      zonesLeft -= paid;
+    }
+    LOGGER.info(() -> "Columnar chain has paid for " + zones + " zones");
+    return zones;
+  }
+
+  /**
+   * Accessor for the running total of zone allocation held by the chain.
+   *
+   * @return the number of zones that can be travelled on the chain.
+   */
+  public long getRemainingAllocation() {
+    return remainingAllocation;
+  }
+
+  /**
+   * Accessor for the number of tickets currently held by the chain.
+   *
+   * @return the number of live tickets.
+   */
+  public int getTicketCount() {
+    return liveTickets;
+  }
+
+  /**
+   * Spends allocation from the ticket at the front of the travel order.
+   *
+   * @param zones the maximum number of zones to take from the ticket.
+   * @return the number of zones the ticket paid for.
+   */
+  private int consumeFromHead(int zones) {
+    return consumeFromSlot(travelOrder[orderHead], 0, zones);
+  }
+
+  /**
+   * Spends allocation from the ticket in a slot. If the ticket is exhausted,
+   * it is removed from the travel order, its slot is freed and the listeners
+   * of the chain are notified.
+   *
+   * @param slot     the slot of the ticket to be travelled.
+   * @param position the position of the slot in the travel order.
+   * @param zones    the maximum number of zones to take from the ticket.
+   * @return the number of zones the ticket paid for.
+   */
+  private int consumeFromSlot(int slot, int position, int zones) {
+    int allocation = columns.getAllocation(slot);
+    int paid = Math.min(zones, allocation);
+    columns.setAllocation(slot, allocation - paid);
+    remainingAllocation -= paid;
+    if (allocation == paid) {
+      if (position == 0) {
+        orderIndex[slot] = -1;
+        orderHead = (orderHead + 1) % travelOrder.length;
+        liveTickets--;
+      } else {
+        removeFromTravelOrder(position);
+      }
+      // The event is dispatched before the slot is released, as it may be
+      // reused straight away.
+      listeners.dispatch(columns.getTicketID(slot), TicketEventType.EXHAUSTED);
+      columns.releaseSlot(slot);
+    }
+    return paid;
+  }
+
+  /**
+   * Finds the position of a slot in the travel order.
+   *
+   * @param slot the slot to be found.
+   * @return the position of the slot, or -1 if it is not in the travel order.
+   */
+  private int positionOf(int slot) {
+    int index = slot < orderIndex.length ? orderIndex[slot] : -1;
+    if (index < 0) {
+      return -1;
+    }
+    return (index - orderHead + travelOrder.length) % travelOrder.length;
+  }
+
+  /**
+   * Retrieves the slot at a position in the travel order.
+   *
+   * @param position the position relative to the front of the travel order.
+   * @return the slot at that position.
+   */
+  private int slotAt(int position) {
+    return travelOrder[(orderHead + position) % travelOrder.length];
+  }
+
+  private void removeFromTravelOrder(int position) {
+    orderIndex[slotAt(position)] = -1;
+    for (int i = position; i < liveTickets - 1; i++) {
+      int index = (orderHead + i) % travelOrder.length;
+      int slot = slotAt(i + 1);
+      travelOrder[index] = slot;
+      orderIndex[slot] = index;
+    }
+    liveTickets--;
+  }
+
+  /**
+   * Adds a slot to the back of the travel order, growing the queue when it is
+   * full. The queue is unwrapped so that it starts at the beginning of the new
+   * array.
+   *
+   * @param slot the slot to be added.
+   */
+  private void appendToTravelOrder(int slot) {
+    if (liveTickets == travelOrder.length) {
+      int[] newOrder = new int[travelOrder.length * 2];
+      for (int i = 0; i < liveTickets; i++) {
+        newOrder[i] = slotAt(i);
+        orderIndex[newOrder[i]] = i;
+      }
+      travelOrder = newOrder;
+      orderHead = 0;
+    }
+    if (slot >= orderIndex.length) {
+      int oldLength = orderIndex.length;
+      orderIndex = Arrays.copyOf(orderIndex, Math.max(oldLength * 2, slot + 1));
+      Arrays.fill(orderIndex, oldLength, orderIndex.length, -1);
+    }
+    int index = (orderHead + liveTickets) % travelOrder.length;
+    travelOrder[index] = slot;
+    orderIndex[slot] = index;
+    liveTickets++;
+  }
+
+  /**
+   * Rebuilds the travel order from the live slots held by the columns. Ticket
+   * IDs are handed out in purchase order, so sorting by ID restores the order
+   * the tickets were bought in. IDs are leased in dense blocks, so the live IDs
+   * almost always span less than 2^31 values. In that case each ID, taken
+   * relative to the lowest, is packed with its slot into a single long so that
+   * the sort is done on primitives. Otherwise the slots are sorted by ID with
+   * a comparator.
+   */
+  private void restoreTravelOrder() {
+    int slotCount = columns.getSlotCount();
+    int[] liveSlots = new int[slotCount];
+    int live = 0;
+    long lowestID = Long.MAX_VALUE;
+    long highestID = Long.MIN_VALUE;
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (columns.isLive(slot)) {
+        long ticketID = columns.getTicketID(slot);
+        lowestID = Math.min(lowestID, ticketID);
+        highestID = Math.max(highestID, ticketID);
+        liveSlots[live] = slot;
+        live++;
+      }
+    }
+    if (live > 0 && highestID - lowestID <= Integer.MAX_VALUE) {
+      long[] packed = new long[live];
+      for (int i = 0; i < live; i++) {
+        packed[i] = ((columns.getTicketID(liveSlots[i]) - lowestID) << 32) | liveSlots[i];
+      }
+      Arrays.sort(packed);
+      for (int i = 0; i < live; i++) {
+        liveSlots[i] = (int) packed[i];
+      }
+    } else {
+      Integer[] boxed = new Integer[live];
+      for (int i = 0; i < live; i++) {
+        boxed[i] = liveSlots[i];
+      }
+      Arrays.sort(boxed, Comparator.comparingLong(columns::getTicketID));
+      for (int i = 0; i < live; i++) {
+        liveSlots[i] = boxed[i];
+      }
+    }
+    for (int i = 0; i < live; i++) {
+      int slot = liveSlots[i];
+      appendToTravelOrder(slot);
+      remainingAllocation += columns.getAllocation(slot);
+    }
+  }
+
+  /**
+   * A view of a ticket held in a slot of the chain. The view reads and writes
+   * the columns directly, and holds nothing but the slot and the fields the
+   * ticket was created with. It is a ZoneTicket so that the chain can hand its
+   * tickets out as zone tickets, but it is created without an allocation of
+   * its own.
+   */
+  private class ZoneTicketView extends ZoneTicket {
+    // The slot may be reused once the ticket is exhausted, so the view
+    // remembers which ticket it was created for.
+    private final int slot;
+
+    private ZoneTicketView(int slot) {
+      super(columns.getTicketID(slot), LocalDateTime.ofEpochSecond(
+          columns.getPurchaseEpochSecond(slot), 0, ZoneOffset.UTC));
+      this.slot = slot;
+    }
+
+    @Override
+    public void setTicketObserver(TicketObserver observer) {
+      // Tickets in this chain never report events of their own. The chain
+      // that holds them passes their events on to its listeners instead.
+    }
+
+    @Override
+    public boolean travelZone(long currentTimeMillis) {
+      return travelZones(1, currentTimeMillis) == 1;
+    }
+
+    @Override
+    public int travelZones(int zones, long currentTimeMillis) {
+      int paid = claimZones(zones);
+      if (paid == 0) {
+        LOGGER.severe(
+            () -> "Zone ticket is invalid and should not be available to be checked for travel.");
+        throw new TicketingException(
+            "Ticket is invalid and has been requested to be used for travel.");
+      }
+      return paid;
+    }
+
+    /**
+     * Spends allocation from the slot of the ticket, if it is still in the
+     * chain.
+     *
+     * @param zones the number of zones requested.
+     * @return the number of zones taken, which is 0 if the ticket has already
+     *         been exhausted.
+     */
+    @Override
+    public int claimZones(int zones) {
+      int position = positionOf(slot);
+      if (position < 0 || !isCurrent()) {
+        return 0;
+      }
+      return consumeFromSlot(slot, position, zones);
+    }
+
+    @Override
+    public int getZoneAllocation() {
+      return isCurrent() ? columns.getAllocation(slot) : 0;
+    }
+
+    @Override
+    public int checkZoneTravel(int zones, long currentTimeMillis) {
+      return Math.max(0, zones - getZoneAllocation());
+    }
+
+    @Override
+    public String toString() {
+      return "ZoneTicket{ticketID=" + getTicketID() + ", zoneAllocation=" +
+          getZoneAllocation() + '}';
+    }
+
+    private boolean isCurrent() {
+      return columns.getTicketID(slot) == getTicketID();
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TicketEventType;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A zone ticket chain that can be travelled on from several threads at once,
+ * such as gate taps for the same account arriving together. No locks are
+ * taken. Eligibility checks are a single read of the running allocation total,
+ * zones are reserved from the total and then claimed from the tickets with
+ * compare and set, and tickets can be removed while other threads are
+ * iterating over them.
+ *
+ * @author Kyer Potts
+ */
+public class ConcurrentZoneTicketChain implements TicketChain<ZoneTicket> {
+  private static final Logger LOGGER = Logger.getLogger(ConcurrentZoneTicketChain.class.getName());
+
+  // Tickets in the order they will be used for travel. Iterators over the
+  // deque never throw when tickets are removed underneath them.
+  private final Deque<ZoneTicket> travelOrder;
+  // The sum of the zone allocation on every ticket in the chain that has not
+  // yet been reserved by a journey. A journey reserves all of its zones here
+  // before claiming them from the tickets, so the total never promises zones
+  // that the tickets cannot provide.
+  private final AtomicLong remainingAllocation;
+  private final TicketListenerList listeners;
+
+  public ConcurrentZoneTicketChain() {
+    this(new TicketListenerList());
+  }
+
+  /**
+   * Creates a chain that passes the events of its tickets on to the given
+   * listeners.
+   *
+   * @param listeners the listeners to be told of ticket events.
+   */
+  public ConcurrentZoneTicketChain(TicketListenerList listeners) {
+    travelOrder = new ConcurrentLinkedDeque<>();
+    remainingAllocation = new AtomicLong(0);
+    this.listeners = listeners;
+    LOGGER.info(() -> "Concurrent zone ticket chain has been initialised successfully");
+  }
+
+  /**
+   * Adds a ticket to the end of the travel order. The ticket is made visible
+   * to travelling threads before its allocation is added to the total, so that
+   * any reservation made against the allocation can always find it.
+   *
+   * @param ticket the ticket to be added to the chain.
+   */
+  @Override
+  public void addTicket(ZoneTicket ticket) {
+    ticket.setTicketObserver(this);
+    travelOrder.addLast(ticket);
+    remainingAllocation.addAndGet(ticket.getZoneAllocation());
+    LOGGER.info(() -> "Ticket has been added to the chain successfully: " +
+        ticket.toString());
+  }
+
+  /**
+   * Accessor for the tickets held by the chain. The view is weakly
+   * consistent, as other threads may be travelling on the chain.
+   *
+   * @return an unmodifiable view of the tickets in travel order.
+   */
+  @Override
+  public Collection<ZoneTicket> getTickets() {
+    return Collections.unmodifiableCollection(travelOrder);
+  }
+
+  /**
+   * Removes an exhausted ticket from the travel order. Zone tickets only
+   * invalidate themselves once their allocation reaches zero, and those zones
+   * were already taken off the total when they were reserved, so the total is
+   * left as it is.
+   *
+   * @param ticket the ticket to be invalidated.
+   */
+  @Override
+  public void invalidateTicket(Ticket ticket) {
+    travelOrder.remove(ticket);
+    LOGGER.info(
+        () -> "Ticket has been invalidated and removed from the chain successfully: " +
+            ticket.toString());
+  }
+
+  /**
+   * Removes an exhausted ticket from the travel order and passes the event on
+   * to the listeners of the chain. Only the thread that claimed the last zone
+   * of a ticket reports it, so the event is passed on exactly once.
+   *
+   * @param ticketID  the ID of the ticket.
+   * @param eventType what happened to the ticket.
+   */
+  @Override
+  public void ticketEventOccurred(long ticketID, TicketEventType eventType) {
+    Iterator<ZoneTicket> iter = travelOrder.iterator();
+    while (iter.hasNext()) {
+      ZoneTicket ticket = iter.next();
+      if (ticket.getTicketID() == ticketID) {
+        iter.remove();
+        LOGGER.info(() -> "Ticket has been invalidated and removed from the chain successfully: " +
+            ticket.toString());
+        listeners.dispatch(ticketID, eventType);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public boolean canTravelZones(int zones, long currentTimeMillis) {
+    boolean canTravel = zones <= remainingAllocation.get();
+    LOGGER.info(() -> "Concurrent zone chain can travel " + zones +
+        " zones: " + canTravel);
+    return canTravel;
+  }
+
+  @Override
+  public boolean travelZone(long currentTimeMillis) {
+    return travelZones(1, currentTimeMillis, new TravelReceipt(1)) == 1;
+  }
+
+  /**
+   * Reserves the journey from the running total, then claims the reserved
+   * zones from the tickets in travel order. A journey is paid for in full or
+   * not at all. Another thread may exhaust a ticket between this thread seeing
+   * it and claiming from it, in which case the claim simply moves on. The
+   * reservation guarantees the zones exist somewhere in the chain, so the
+   * travel order is walked again until every reserved zone has been claimed.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request.
+   * @param receipt           the receipt on which each ticket payment is
+   *                          recorded.
+   * @return the number of zones paid for, either all of them or none.
+   */
+  @Override
+  public int travelZones(int zones, long currentTimeMillis, TravelReceipt receipt) {
+    if (!reserveZones(zones)) {
+      LOGGER.info(() -> "Concurrent zone chain cannot pay for " + zones + " zones");
+      return 0;
+    }
+    int zonesLeft = zones;
+    while (zonesLeft > 0) {
+      for (ZoneTicket ticket : travelOrder) {
+        if (zonesLeft == 0) {
+          break;
+        }
+        int paid = ticket.claimZones(zonesLeft);
+        if (paid > 0) {
+          receipt.addPayment(ticket.getTicketID(), paid);
+          zonesLeft -= paid;
+        }
+      }
+    }
+    LOGGER.info(() -> "Concurrent zone chain has paid for " + zones + " zones");
+    return zones;
+  }
+
+  /**
+   * Accessor for the running total of zone allocation held by the chain.
+   *
+   * @return the number of zones that can be travelled on the chain.
+   */
+  public long getRemainingAllocation() {
+    return remainingAllocation.get();
+  }
+
+  /**
+   * Takes the requested zones off the running total, unless that would take
+   * it below zero.
+   *
+   * @param zones the number of zones to be reserved.
+   * @return true if the zones were reserved.
+   */
+  private boolean reserveZones(int zones) {
+    long current;
+    do {
+      current = remainingAllocation.get();
+      if (current < zones) {
+        return false;
+      }
+    } while (!remainingAllocation.compareAndSet(current, current - zones));
+    return true;
+  }
+}
@@ -0,0 +1,214 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TicketEventType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A container for various types of tickets attached to each account, backed by
+ * a hash map of ticket objects keyed by ticket ID, so that the ticket behind an
+ * event can be found without a walk over the chain. Generics are implemented
+ * here for better code reuse, as each type of ticket will need a separate
+ * container
+ *
+ * @author Kyer Potts
+ */
+public class HashTicketChain<T extends Ticket> implements TicketChain<T> {
+  private static final Logger LOGGER = Logger.getLogger(HashTicketChain.class.getName());
+  private Map<Long, T> tickets;
+  // Events reported by the tickets in the chain are passed on to these
+  // listeners, which are usually shared with every other chain.
+  private TicketListenerList listeners;
+
+  public HashTicketChain() {
+    this(new TicketListenerList());
+  }
+
+  /**
+   * Creates a chain that passes the events of its tickets on to the given
+   * listeners.
+   *
+   * @param listeners the listeners to be told of ticket events.
+   */
+  public HashTicketChain(TicketListenerList listeners) {
+    tickets = new HashMap<>();
+    this.listeners = listeners;
+    LOGGER.info(() -> "Ticket chain has been initialised successfully");
+  }
+
+  @Override
+  public void addTicket(T ticket) {
+    tickets.put(ticket.getTicketID(), ticket);
+
+    // These containers will observe each of it's individual tickets to
+    // determine whether they need to be removed from the chain due to being
+    // invalid
+    ticket.setTicketObserver(this);
+    LOGGER.info(() -> "Ticket has been added to the chain successfully: " +
+        ticket.toString());
+  }
+
+  /**
+   * Adds a batch of tickets to the chain, logging the batch once rather than
+   * each ticket.
+   *
+   * @param newTickets the tickets to be added to the chain.
+   */
+  @Override
+  public void addTickets(Collection<? extends T> newTickets) {
+    for (T ticket : newTickets) {
+      tickets.put(ticket.getTicketID(), ticket);
+      ticket.setTicketObserver(this);
+    }
+    LOGGER.info(() -> newTickets.size() + " tickets have been added to the chain successfully");
+  }
+
+  /**
+   * Accessor method for the tickets contained within the chain.
+   *
+   * @return the tickets contained encapsulated within the chain.
+   */
+  @Override
+  public Collection<T> getTickets() {
+    return tickets.values();
+  }
+
+  /**
+   * Method for invalidating a ticket. This method uses the observer pattern to
+   * allow the ticket object to notify the observing objects when it becomes
+   * invalid. In the case of a ticket chain, when a ticket becomes invalid, it
+   * is removed from the chain as it is no longer required and should not be
+   * checked again for the purposes of zone travel. If it is checked it is due
+   * to an error state, and appropriate error handling has been implemented to
+   * ensure that.
+   *
+   * @param ticket the ticket to be invalidated.
+   */
+  @Override
+  public void invalidateTicket(Ticket ticket) {
+    tickets.remove(ticket.getTicketID());
+    LOGGER.info(
+        () -> "Ticket has been invalidated and removed from the chain successfully: " +
+            ticket.toString());
+  }
+
+  /**
+   * Removes the ticket that reported the event from the chain, and passes the
+   * event on to the listeners of the chain. Events from tickets that are no
+   * longer in the chain are ignored.
+   *
+   * @param ticketID  the ID of the ticket.
+   * @param eventType what happened to the ticket.
+   */
+  @Override
+  public void ticketEventOccurred(long ticketID, TicketEventType eventType) {
+    T ticket = findTicket(ticketID);
+    if (ticket != null) {
+      invalidateTicket(ticket);
+      listeners.dispatch(ticketID, eventType);
+    }
+  }
+
+  /**
+   * Finds a ticket in the chain by its ID.
+   *
+   * @param ticketID the ID of the ticket to be found.
+   * @return the ticket, or null if it is not in the chain.
+   */
+  protected T findTicket(long ticketID) {
+    return tickets.get(ticketID);
+  }
+
+  @Override
+  public boolean canTravelZones(int zones, long currentTimeMillis) {
+    LOGGER.info(
+        () -> "Checking whether the chain can travel " + zones + " zones");
+    int remainingZones;
+    // Iterating through all of the tickets in the chain to determine whether
+    // there is appropriate allocation amongst all tickets to travel the
+    // requested zones.
+    for (Ticket ticket : tickets.values()) {
+      remainingZones = ticket.checkZoneTravel(zones, currentTimeMillis);
+      if (LOGGER.isLoggable(java.util.logging.Level.INFO)) {
+        LOGGER.log(java.util.logging.Level.INFO,
+            "Remaining zones left to check: " + remainingZones);
+      }
+
+      // As soon as the remaining zones drops to 0, there is appropriate ticket
+      // allocation to allow for the travel over the requested zones.
+      if (remainingZones == 0) {
+        LOGGER.info(
+            () -> "There is enough zone allocation to travel the requested zones");
+        return true;
+      }
+    }
+
+    // If there are still remaining zones, there isn't enough zone allocation
+    // attributed to the tickets.
+    LOGGER.info(
+        () -> "There is not enough zone allocation to travel the requested zones");
+    return false;
+  }
+
+  /**
+   * Encapsulating method for travelling a single zone. This container is only
+   * concerned with travelling a single zone at a time. Multiple zone travel
+   * should be handled by an object containing core domain logic.
+   *
+   * @param currentTimeMillis the time of the travel request.
+   * @return true if the zone was successfully travelled and the appropriate
+   *         allocation deducted from any enclosed tickets.
+   */
+  @Override
+  public boolean travelZone(long currentTimeMillis) {
+    LOGGER.info(() -> "Attempting to travel a single zone");
+    // Tickets must first be checked to determine validity. As soon as a valid
+    // ticket is found, the travel of the zone is registered and internal
+    // ticketing logic is handled by the ticket object.
+    for (Ticket t : tickets.values()) {
+      if (t.travelZone(currentTimeMillis)) {
+        LOGGER.info(() -> "A ticket has been found to travel a single zone");
+        return true;
+      }
+    }
+    // If there are no valid tickets that can register a zone of travel, a false
+    // value is returned to allow the domain logic components of the program to
+    // manage control flow.
+    LOGGER.info(
+        () -> "There are no valid tickets that can register a zone of travel");
+    return false;
+  }
+
+  /**
+   * Travels several zones in a single pass over the chain. Tickets pay for as
+   * much of the journey as they can until it is paid for in full. The tickets
+   * are copied before travel, as tickets that become invalid remove themselves
+   * from the chain.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request.
+   * @param receipt the receipt on which each ticket payment is recorded.
+   * @return the number of zones that were paid for by the chain.
+   */
+  @Override
+  public int travelZones(int zones, long currentTimeMillis, TravelReceipt receipt) {
+    int zonesPaid = 0;
+    for (T ticket : new ArrayList<>(tickets.values())) {
+      if (zonesPaid == zones) {
+        break;
+      }
+      int paid = ticket.travelZones(zones - zonesPaid, currentTimeMillis);
+      if (paid > 0) {
+        receipt.addPayment(ticket.getTicketID(), paid);
+        zonesPaid += paid;
+      }
+    }
+    int totalPaid = zonesPaid;
+    LOGGER.info(() -> "Chain has paid for " + totalPaid + " of " + zones + " zones");
+    return zonesPaid;
+  }
+}
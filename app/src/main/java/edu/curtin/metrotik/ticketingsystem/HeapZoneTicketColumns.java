@@ -0,0 +1,106 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import java.util.Arrays;
+
+/**
+ * Zone ticket columns held in parallel primitive arrays on the heap. Released
+ * slots are kept on a stack and handed out again before the arrays grow.
+ *
+ * @author Kyer Potts
+ */
+public class HeapZoneTicketColumns implements ZoneTicketColumns {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] ticketIDs;
+  private int[] allocations;
+  private long[] purchaseEpochSeconds;
+
+  // Slots that have been released and can be reused.
+  private int[] freeSlots;
+  private int freeCount;
+  // The number of slots that have ever been handed out.
+  private int slotsUsed;
+
+  public HeapZoneTicketColumns() {
+    ticketIDs = new long[INITIAL_CAPACITY];
+    allocations = new int[INITIAL_CAPACITY];
+    purchaseEpochSeconds = new long[INITIAL_CAPACITY];
+    freeSlots = new int[INITIAL_CAPACITY];
+    freeCount = 0;
+    slotsUsed = 0;
+  }
+
+  @Override
+  public int allocateSlot() {
+    if (freeCount > 0) {
+      freeCount--;
+      return freeSlots[freeCount];
+    }
+    if (slotsUsed == ticketIDs.length) {
+      grow();
+    }
+    int slot = slotsUsed;
+    slotsUsed++;
+    return slot;
+  }
+
+  @Override
+  public void releaseSlot(int slot) {
+    allocations[slot] = 0;
+    freeSlots[freeCount] = slot;
+    freeCount++;
+  }
+
+  @Override
+  public int getSlotCount() {
+    return slotsUsed;
+  }
+
+  @Override
+  public boolean isLive(int slot) {
+    // Exhausted tickets are always released, so any slot with allocation
+    // remaining holds a live ticket.
+    return allocations[slot] > 0;
+  }
+
+  @Override
+  public long getTicketID(int slot) {
+    return ticketIDs[slot];
+  }
+
+  @Override
+  public void setTicketID(int slot, long ticketID) {
+    ticketIDs[slot] = ticketID;
+  }
+
+  @Override
+  public int getAllocation(int slot) {
+    return allocations[slot];
+  }
+
+  @Override
+  public void setAllocation(int slot, int allocation) {
+    allocations[slot] = allocation;
+  }
+
+  @Override
+  public long getPurchaseEpochSecond(int slot) {
+    return purchaseEpochSeconds[slot];
+  }
+
+  @Override
+  public void setPurchaseEpochSecond(int slot, long purchaseEpochSecond) {
+    purchaseEpochSeconds[slot] = purchaseEpochSecond;
+  }
+
+  /**
+   * Doubles the capacity of every column.
+   */
+  private void grow() {
+    int newCapacity = ticketIDs.length * 2;
+    ticketIDs = Arrays.copyOf(ticketIDs, newCapacity);
+    allocations = Arrays.copyOf(allocations, newCapacity);
+    purchaseEpochSeconds = Arrays.copyOf(purchaseEpochSeconds, newCapacity);
+    freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+  }
+}
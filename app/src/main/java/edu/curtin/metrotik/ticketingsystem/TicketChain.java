@@ -1,120 +1,113 @@
 package edu.curtin.metrotik.ticketingsystem;
 
 import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TicketEventType;
 import edu.curtin.metrotik.ticketing.TicketObserver;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.logging.Logger;
+import java.util.Collection;
 
 /**
- * A container for various types of tickets attached to each account. Generics
+ * Contract for the containers of tickets attached to each account. Generics
  * are implemented here for better code reuse, as each type of ticket will need
- * a separate container
+ * a separate container. Implementations are free to store their tickets
+ * however they see fit, as long as the tickets can be presented through the
+ * Ticket interface.
+ *
+ * Each chain is the observer of its own tickets. When a ticket reports an
+ * event, the chain removes the ticket if it is no longer valid and then passes
+ * the event on to the listeners it was given.
  *
  * @author Kyer Potts
  */
-public class TicketChain<T extends Ticket> implements TicketObserver {
-  private static final Logger LOGGER = Logger.getLogger(TicketChain.class.getName());
-  private Set<T> tickets;
-
-  public TicketChain() {
-    tickets = new HashSet<>();
-    LOGGER.info(() -> "Ticket chain has been initialised successfully");
-  }
-
-  public void addTicket(T ticket) {
-    tickets.add(ticket);
-
-    // These containers will observe each of it's individual tickets to
-    // determine whether they need to be removed from the chain due to being
-    // invalid
-    ticket.addTicketObserver(this);
-    LOGGER.info(() -> "Ticket has been added to the chain successfully: " +
-        ticket.toString());
-  }
+public interface TicketChain<T extends Ticket> extends TicketObserver {
+  /**
+   * Provides a contract for adding a ticket to the chain. The chain is
+   * responsible for observing the ticket, or otherwise tracking its validity.
+   *
+   * @param ticket the ticket to be added to the chain.
+   */
+  public void addTicket(T ticket);
 
   /**
-   * Accessor method for the tickets contained within the chain.
+   * Provides a contract for adding a batch of tickets to the chain in a single
+   * step. Chains that can add tickets more cheaply in bulk should override
+   * this, otherwise each ticket is added in turn.
    *
-   * @return the set of tickets contained encapsulated within the chain.
+   * @param tickets the tickets to be added to the chain, in travel order.
    */
-  public Set<T> getTickets() {
-    return tickets;
+  public default void addTickets(Collection<? extends T> tickets) {
+    for (T ticket : tickets) {
+      addTicket(ticket);
+    }
   }
 
   /**
-   * Method for invalidating a ticket. This method uses the observer pattern to
-   * allow the ticket object to notify the observing objects when it becomes
-   * invalid. In the case of a ticket chain, when a ticket becomes invalid, it
-   * is removed from the chain as it is no longer required and should not be
-   * checked again for the purposes of zone travel. If it is checked it is due
-   * to an error state, and appropriate error handling has been implemented to
-   * ensure that.
+   * Provides a contract for removing a ticket from the chain once it is no
+   * longer valid. No event is passed on to the listeners of the chain.
    *
    * @param ticket the ticket to be invalidated.
    */
-  @Override
-  public void invalidateTicket(Ticket ticket) {
-    tickets.remove(ticket);
-    LOGGER.info(
-        () -> "Ticket has been invalidated and removed from the chain successfully: " +
-            ticket.toString());
-  }
+  public void invalidateTicket(Ticket ticket);
 
-  public boolean canTravelZones(int zones) {
-    LOGGER.info(
-        () -> "Checking whether the chain can travel " + zones + " zones");
-    int remainingZones;
-    // Iterating through all of the tickets in the chain to determine whether
-    // there is appropriate allocation amongst all tickets to travel the
-    // requested zones.
-    for (Ticket ticket : tickets) {
-      remainingZones = ticket.checkZoneTravel(zones);
-      if (LOGGER.isLoggable(java.util.logging.Level.INFO)) {
-        LOGGER.log(java.util.logging.Level.INFO,
-            "Remaining zones left to check: " + remainingZones);
-      }
+  /**
+   * Provides a contract for handling an event reported by a ticket in the
+   * chain. Every event reported by a ticket means that it is no longer valid,
+   * so the ticket is removed from the chain before the event is passed on to
+   * the listeners.
+   *
+   * @param ticketID  the ID of the ticket.
+   * @param eventType what happened to the ticket.
+   */
+  @Override
+  public void ticketEventOccurred(long ticketID, TicketEventType eventType);
 
-      // As soon as the remaining zones drops to 0, there is appropriate ticket
-      // allocation to allow for the travel over the requested zones.
-      if (remainingZones == 0) {
-        LOGGER.info(
-            () -> "There is enough zone allocation to travel the requested zones");
-        return true;
-      }
-    }
+  /**
+   * Provides a contract for retrieving the tickets contained within the chain.
+   *
+   * @return the tickets currently held by the chain.
+   */
+  public Collection<? extends T> getTickets();
 
-    // If there are still remaining zones, there isn't enough zone allocation
-    // attributed to the tickets.
-    LOGGER.info(
-        () -> "There is not enough zone allocation to travel the requested zones");
-    return false;
+  /**
+   * Provides a contract for checking whether the chain holds any tickets.
+   * Chains that build their tickets on demand should override this.
+   *
+   * @return true if the chain holds no tickets.
+   */
+  public default boolean isEmpty() {
+    return getTickets().isEmpty();
   }
 
   /**
-   * Encapsulating method for travelling a single zone. This container is only
-   * concerned with travelling a single zone at a time. Multiple zone travel
-   * should be handled by an object containing core domain logic.
+   * Provides a contract for checking whether the tickets in the chain can pay
+   * for the requested number of zones.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds.
+   * @return true if there is appropriate allocation to travel the zones.
+   */
+  public boolean canTravelZones(int zones, long currentTimeMillis);
+
+  /**
+   * Provides a contract for travelling a single zone on the chain.
    *
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds.
    * @return true if the zone was successfully travelled and the appropriate
    *         allocation deducted from any enclosed tickets.
    */
-  public boolean travelZone() {
-    LOGGER.info(() -> "Attempting to travel a single zone");
-    // Tickets must first be checked to determine validity. As soon as a valid
-    // ticket is found, the travel of the zone is registered and internal
-    // ticketing logic is handled by the ticket object.
-    for (Ticket t : tickets) {
-      if (t.travelZone()) {
-        LOGGER.info(() -> "A ticket has been found to travel a single zone");
-        return true;
-      }
-    }
-    // If there are no valid tickets that can register a zone of travel, a false
-    // value is returned to allow the domain logic components of the program to
-    // manage control flow.
-    LOGGER.info(
-        () -> "There are no valid tickets that can register a zone of travel");
-    return false;
-  }
+  public boolean travelZone(long currentTimeMillis);
+
+  /**
+   * Provides a contract for travelling several zones in a single pass over the
+   * chain.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds.
+   * @param receipt           the receipt on which each ticket payment is
+   *                          recorded.
+   * @return the number of zones that were paid for by the chain.
+   */
+  public int travelZones(int zones, long currentTimeMillis, TravelReceipt receipt);
 }
@@ -0,0 +1,230 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A hierarchical timer wheel that expires timed tickets as soon as their
+ * validity window ends, rather than waiting for a rider to tap on with them.
+ *
+ * Time is divided into ticks. The wheel has several levels of slots, with each
+ * slot on the lowest level covering a single tick, and each slot on a higher
+ * level covering a whole revolution of the level below it. A ticket is placed
+ * in the lowest level that can reach its expiry. As time passes, the slots of
+ * the higher levels are cascaded down into the lower levels, until the ticket
+ * reaches the lowest level and expires. Scheduling a ticket and expiring it
+ * are both constant time, no matter how many tickets are outstanding.
+ *
+ * Each level keeps a bitmap of the slots holding tickets, so the wheel moves
+ * straight to the next tick at which a slot is due, rather than one tick at a
+ * time. Moving the wheel over a long idle spell costs no more than moving it
+ * over a single tick.
+ *
+ * @author Kyer Potts
+ */
+public class TicketExpiryWheel {
+  private static final Logger LOGGER = Logger.getLogger(TicketExpiryWheel.class.getName());
+
+  // Each level has 64 slots, so the slot at a level is found with a shift and
+  // a mask of the expiry tick.
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS_PER_LEVEL = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS_PER_LEVEL - 1;
+  // Four levels of 64 slots reach 64^4 ticks into the future, which is over 31
+  // years with the default tick of one minute.
+  private static final int LEVELS = 4;
+  private static final long DEFAULT_TICK_MILLIS = 60_000;
+
+  private final long tickMillis;
+  private long currentTick;
+  // Slots are keyed by their level and position, and only exist while they
+  // hold tickets. An account only ever has a handful of timed tickets, so this
+  // keeps an idle wheel small when there is one per account.
+  private final Map<Integer, List<TimedTicket>> slots;
+  // One bit for each slot of each level, set while the slot holds tickets.
+  private final long[] occupied;
+  private int scheduledCount;
+
+  /**
+   * Creates a wheel with a tick of one minute, starting from the given time.
+   *
+   * @param startTimeMillis the time the wheel starts from, in epoch
+   *                        milliseconds.
+   */
+  public TicketExpiryWheel(long startTimeMillis) {
+    this(startTimeMillis, DEFAULT_TICK_MILLIS);
+  }
+
+  /**
+   * Creates a wheel starting from the given time.
+   *
+   * @param startTimeMillis the time the wheel starts from, in epoch
+   *                        milliseconds.
+   * @param tickMillis      the length of a single tick. Tickets expire at the
+   *                        end of the tick their validity window ends in.
+   */
+  public TicketExpiryWheel(long startTimeMillis, long tickMillis) {
+    this.tickMillis = tickMillis;
+    this.currentTick = startTimeMillis / tickMillis;
+    this.scheduledCount = 0;
+    this.slots = new HashMap<>();
+    this.occupied = new long[LEVELS];
+    LOGGER.info(() -> "Ticket expiry wheel has been initialised with a tick of " +
+        tickMillis + "ms");
+  }
+
+  /**
+   * Registers a ticket to be expired when its validity window ends. Tickets
+   * that have already expired are invalidated straight away.
+   *
+   * @param ticket the ticket to be expired.
+   */
+  public void schedule(TimedTicket ticket) {
+    // The expiry is rounded up to a whole tick, so that a ticket is never
+    // expired before the end of its validity window.
+    long expiryTick = (ticket.getValidToMillis() + tickMillis - 1) / tickMillis;
+    if (expiryTick <= currentTick) {
+      ticket.invalidateTicket();
+      return;
+    }
+    place(ticket, expiryTick);
+    scheduledCount++;
+  }
+
+  /**
+   * Moves the wheel forward to the given time, expiring every ticket whose
+   * validity window ended along the way. The tickets are collected as the
+   * wheel turns and are invalidated together once it has stopped.
+   *
+   * @param currentTimeMillis the time to move the wheel to, in epoch
+   *                          milliseconds.
+   * @return the number of tickets that were expired.
+   */
+  public int advanceTo(long currentTimeMillis) {
+    long targetTick = currentTimeMillis / tickMillis;
+    List<TimedTicket> expired = new ArrayList<>();
+    // Only the ticks at which a slot is due are visited, as every tick in
+    // between would find nothing to expire or cascade. An empty wheel moves
+    // straight to the target.
+    long nextTick = nextDueTick();
+    while (nextTick <= targetTick) {
+      currentTick = nextTick;
+      cascade();
+      List<TimedTicket> slot = removeSlot(0, currentTick);
+      if (slot != null) {
+        expired.addAll(slot);
+      }
+      nextTick = nextDueTick();
+    }
+    currentTick = Math.max(currentTick, targetTick);
+    scheduledCount -= expired.size();
+    for (TimedTicket ticket : expired) {
+      ticket.invalidateTicket();
+    }
+    if (!expired.isEmpty()) {
+      LOGGER.info(() -> expired.size() + " timed tickets have been expired by the wheel");
+    }
+    return expired.size();
+  }
+
+  /**
+   * Accessor for the number of tickets waiting to expire.
+   *
+   * @return the number of tickets held by the wheel.
+   */
+  public int getScheduledCount() {
+    return scheduledCount;
+  }
+
+  /**
+   * Places a ticket in the lowest level that can reach its expiry tick.
+   *
+   * @param ticket     the ticket to be placed.
+   * @param expiryTick the tick at which the ticket expires.
+   */
+  private void place(TimedTicket ticket, long expiryTick) {
+    long delta = expiryTick - currentTick;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+      level++;
+    }
+    int key = slotKey(level, expiryTick);
+    slots.computeIfAbsent(key, k -> new ArrayList<>()).add(ticket);
+    occupied[level] |= 1L << (key & SLOT_MASK);
+  }
+
+  /**
+   * Empties the slot that a tick falls in at the given level.
+   *
+   * @param level the level of the wheel.
+   * @param tick  the tick whose slot is emptied.
+   * @return the tickets that were in the slot, or null if it was empty.
+   */
+  private List<TimedTicket> removeSlot(int level, long tick) {
+    int key = slotKey(level, tick);
+    List<TimedTicket> tickets = slots.remove(key);
+    if (tickets != null) {
+      occupied[level] &= ~(1L << (key & SLOT_MASK));
+    }
+    return tickets;
+  }
+
+  /**
+   * Finds the first tick after the current one at which a slot holding
+   * tickets is due, either to expire its tickets on the lowest level or to
+   * cascade them down from a higher one. A slot on a higher level is due at
+   * the start of the revolution of the level below that it covers, so the
+   * first due slot of each level is the first set bit of its bitmap after
+   * the slot the current tick is in.
+   *
+   * @return the tick, or Long.MAX_VALUE if the wheel holds no tickets.
+   */
+  private long nextDueTick() {
+    long next = Long.MAX_VALUE;
+    for (int level = 0; level < LEVELS; level++) {
+      if (occupied[level] != 0) {
+        int shift = SLOT_BITS * level;
+        long firstSlot = (currentTick >>> shift) + 1;
+        int skipped = Long.numberOfTrailingZeros(
+            Long.rotateRight(occupied[level], (int) (firstSlot & SLOT_MASK)));
+        next = Math.min(next, (firstSlot + skipped) << shift);
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Finds the key of the slot that a tick falls in at the given level.
+   *
+   * @param level the level of the wheel.
+   * @param tick  the tick to be found.
+   * @return the key of the slot.
+   */
+  private static int slotKey(int level, long tick) {
+    return level * SLOTS_PER_LEVEL + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+  }
+
+  /**
+   * Whenever the lower levels complete a revolution, the next slot of the
+   * level above is emptied and its tickets are placed again, which moves them
+   * down to the level that now covers their expiry.
+   */
+  private void cascade() {
+    int level = 1;
+    while (level < LEVELS &&
+        (currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+      List<TimedTicket> tickets = removeSlot(level, currentTick);
+      if (tickets != null) {
+        for (TimedTicket ticket : tickets) {
+          long expiryTick = (ticket.getValidToMillis() + tickMillis - 1) / tickMillis;
+          place(ticket, expiryTick);
+        }
+      }
+      level++;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import edu.curtin.metrotik.ticketing.TicketEventType;
+import edu.curtin.metrotik.ticketing.TicketObserver;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * The listeners that ticket chains pass ticket events on to, such as the user
+ * interface. A single list is shared by every chain, rather than each ticket
+ * holding observers of its own.
+ *
+ * Listeners are held in an array that is copied whenever a listener is added
+ * or removed. Listeners are registered once at start up, while events are
+ * dispatched on every invalidation, so dispatching is a walk over an array
+ * that never allocates and needs no lock, even when chains are travelled from
+ * several threads.
+ *
+ * @author Kyer Potts
+ */
+public class TicketListenerList {
+  private static final Logger LOGGER = Logger.getLogger(TicketListenerList.class.getName());
+  private static final TicketObserver[] NO_LISTENERS = new TicketObserver[0];
+
+  private volatile TicketObserver[] listeners;
+
+  public TicketListenerList() {
+    listeners = NO_LISTENERS;
+  }
+
+  /**
+   * Registers a listener to be told of every ticket event dispatched through
+   * the list.
+   *
+   * @param listener the listener to be added.
+   */
+  public synchronized void addListener(TicketObserver listener) {
+    TicketObserver[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+    newListeners[listeners.length] = listener;
+    listeners = newListeners;
+    LOGGER.info(() -> "Listener has been added to the ticket listener list: " +
+        listener.toString());
+  }
+
+  /**
+   * Removes a listener from the list. Events already being dispatched may
+   * still reach it.
+   *
+   * @param listener the listener to be removed.
+   */
+  public synchronized void removeListener(TicketObserver listener) {
+    TicketObserver[] current = listeners;
+    for (int i = 0; i < current.length; i++) {
+      if (current[i].equals(listener)) {
+        TicketObserver[] newListeners = new TicketObserver[current.length - 1];
+        System.arraycopy(current, 0, newListeners, 0, i);
+        System.arraycopy(current, i + 1, newListeners, i, current.length - i - 1);
+        listeners = newListeners;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Passes a ticket event on to every listener.
+   *
+   * @param ticketID  the ID of the ticket.
+   * @param eventType what happened to the ticket.
+   */
+  public void dispatch(long ticketID, TicketEventType eventType) {
+    for (TicketObserver listener : listeners) {
+      listener.ticketEventOccurred(ticketID, eventType);
+    }
+  }
+}
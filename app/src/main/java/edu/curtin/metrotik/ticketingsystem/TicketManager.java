@@ -1,29 +1,90 @@
 package edu.curtin.metrotik.ticketingsystem;
 
+import edu.curtin.metrotik.journal.TransactionJournal;
 import edu.curtin.metrotik.ticketing.*;
 import edu.curtin.metrotik.useraccounts.UserAccount;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
  * This class encapsulates the various ticket chains and manages the business
  * logic required on the different ticketing types.
  *
+ * If the manager is given a transaction journal, every zone travelled on a
+ * zone ticket is written to the journal, and the request only returns once
+ * the journal has reached the disk. The tickets added to it must already have
+ * been journalled with the debit that paid for them, which the manager takes
+ * no part in, so it only says whether they need to be.
+ *
  * @author Kyer Potts
  */
 public class TicketManager {
   private static final Logger LOGGER = Logger.getLogger(TicketManager.class.getName());
   // Each of the various ticket types are handled by the ticket manager. These
   // are managed within
-  private TicketChain<Ticket> zoneTickets;
-  private TicketChain<Ticket> timedTickets;
+  private TicketChain<ZoneTicket> zoneTickets;
+  private TicketChain<TimedTicket> timedTickets;
+  // Timed tickets are registered with the wheel as they are added, so that
+  // they are removed from the chain as soon as they expire.
+  private TicketExpiryWheel expiryWheel;
+  // The journal that purchases and travel are made durable in, or null if
+  // tickets only live in memory.
+  private TransactionJournal journal;
+
+  /**
+   * Creates a manager whose expiry wheel starts at the current time of the
+   * given clock, which should be the clock that tickets are checked against.
+   *
+   * @param zoneTickets  the chain of zone tickets.
+   * @param timedTickets the chain of timed tickets.
+   * @param clock        the clock that the time of travel is read from.
+   */
+  public TicketManager(TicketChain<ZoneTicket> zoneTickets,
+      TicketChain<TimedTicket> timedTickets, Clock clock) {
+    this(zoneTickets, timedTickets, new TicketExpiryWheel(clock.millis()));
+  }
 
-  public TicketManager(TicketChain<Ticket> zoneTickets,
-      TicketChain<Ticket> timedTickets) {
+  public TicketManager(TicketChain<ZoneTicket> zoneTickets,
+      TicketChain<TimedTicket> timedTickets, TicketExpiryWheel expiryWheel) {
+    this(zoneTickets, timedTickets, expiryWheel, null);
+  }
+
+  /**
+   * Creates a manager that journals the zones travelled on its tickets.
+   *
+   * @param zoneTickets  the chain of zone tickets.
+   * @param timedTickets the chain of timed tickets.
+   * @param expiryWheel  the wheel that timed tickets are expired by.
+   * @param journal      the journal that purchases and travel are written
+   *                     to, or null if tickets only live in memory.
+   */
+  public TicketManager(TicketChain<ZoneTicket> zoneTickets,
+      TicketChain<TimedTicket> timedTickets, TicketExpiryWheel expiryWheel,
+      TransactionJournal journal) {
+    this.journal = journal;
     this.zoneTickets = zoneTickets;
     this.timedTickets = timedTickets;
+    this.expiryWheel = expiryWheel;
+    // A chain may already hold tickets, such as those restored from a ticket
+    // store, and these need to expire as well.
+    for (TimedTicket ticket : timedTickets.getTickets()) {
+      expiryWheel.schedule(ticket);
+    }
     LOGGER.info(() -> "TicketManager has been instantiated successfully.");
   }
 
+  /**
+   * Whether tickets are journalled, in which case each ticket added to the
+   * manager must be journalled with its purchase before it is added.
+   *
+   * @return true if the manager has a journal.
+   */
+  public boolean isJournalled() {
+    return journal != null;
+  }
+
   /**
    * Simple method for adding zone tickets to the appropriate container, and
    * also insert it into the purchase history of the user account.
@@ -33,13 +94,29 @@ public class TicketManager {
    * @param userAccount the account to which the ticket will be added to the
    *                    purchase history.
    */
-  public void addZoneTicket(Ticket zoneTicket, UserAccount userAccount) {
+  public void addZoneTicket(ZoneTicket zoneTicket, UserAccount userAccount) {
     zoneTickets.addTicket(zoneTicket);
     userAccount.addTicketToTicketHistory(zoneTicket);
     LOGGER.info(() -> "Zone ticket has been added to the ticket manager: " +
         zoneTicket.toString());
   }
 
+  /**
+   * Adds a batch of zone tickets to the appropriate container and the purchase
+   * history of the user account, in a single step for each.
+   *
+   * @param newZoneTickets the instantiated zone tickets to be added to the
+   *                       ticketManager.
+   * @param userAccount    the account to which the tickets will be added to
+   *                       the purchase history.
+   */
+  public void addZoneTickets(List<ZoneTicket> newZoneTickets, UserAccount userAccount) {
+    zoneTickets.addTickets(newZoneTickets);
+    userAccount.addTicketsToTicketHistory(newZoneTickets);
+    LOGGER.info(() -> newZoneTickets.size() +
+        " zone tickets have been added to the ticket manager");
+  }
+
   /**
    * Simple method for adding timed tickets to the appropriate container. It is
    * also inserted into the purchase history of the user account.
@@ -49,8 +126,9 @@ public class TicketManager {
    * @param userAccount the account to which the ticket will be added to the
    *                    purchase history.
    */
-  public void addTimedTicket(Ticket timedTicket, UserAccount userAccount) {
+  public void addTimedTicket(TimedTicket timedTicket, UserAccount userAccount) {
     timedTickets.addTicket(timedTicket);
+    expiryWheel.schedule(timedTicket);
     userAccount.addTicketToTicketHistory(timedTicket);
     LOGGER.info(() -> "Timed ticket has been added to the ticket manager: " +
         timedTicket.toString());
@@ -67,20 +145,23 @@ public class TicketManager {
    * @param userAccount the account to which the ticket will be added to the
    *                    purchase history.
    *
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds.
+   *
    * @return will return true if there is sufficient ticket
    *         allocation to travel the requested zones.
    */
-  public boolean canRideForRequestedZones(int zones) {
+  public boolean canRideForRequestedZones(int zones, long currentTimeMillis) {
     // Timed tickets are checked first as per business logic. There is no need
     // to use zone allocation resources if there is already a valid timed ticket
     // currently in effect. Only when all timed tickets have been checked, is it
     // necessary to check zone allocated tickets to determine whether there is
     // appropriate ticketing for travel.
-    if (timedTickets.canTravelZones(zones)) {
+    if (timedTickets.canTravelZones(zones, currentTimeMillis)) {
       LOGGER.info(
           () -> "Timed tickets can been used to travel requested zones.");
       return true;
-    } else if (zoneTickets.canTravelZones(zones)) {
+    } else if (zoneTickets.canTravelZones(zones, currentTimeMillis)) {
       LOGGER.info(
           () -> "Zone tickets can been used to travel requested zones.");
       return true;
@@ -100,13 +181,20 @@ public class TicketManager {
    * timed ticket must always be used before consuming a zone allocation on a
    * zone ticket.
    *
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds.
    * @return true if the zone was successfully travelled.
    */
-  public boolean travelRequestedZones() {
-    if (timedTickets.travelZone()) {
+  public boolean travelRequestedZones(long currentTimeMillis) {
+    // The journal needs to know which ticket paid for the zone, which only a
+    // receipt says.
+    if (journal != null) {
+      return travelZones(1, currentTimeMillis).isComplete();
+    }
+    if (timedTickets.travelZone(currentTimeMillis)) {
       LOGGER.info(() -> "Timed ticket has been used to travel a single zone.");
       return true;
-    } else if (zoneTickets.travelZone()) {
+    } else if (zoneTickets.travelZone(currentTimeMillis)) {
       LOGGER.info(() -> "Zone ticket has been used to travel a single zone.");
       return true;
     } else {
@@ -115,4 +203,61 @@ public class TicketManager {
       return false;
     }
   }
+
+  /**
+   * Travels several zones in a single pass. As with single zone travel, a
+   * valid timed ticket pays for the journey first. Otherwise the journey is
+   * paid for with allocation from the zone tickets, in the order they were
+   * purchased. The journey is either paid for in full or not at all.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request, in epoch
+   *                          milliseconds. The same time is used to check
+   *                          every ticket.
+   * @return a receipt stating which tickets paid for which zones. The receipt
+   *         is incomplete if there was not enough ticketing for the journey.
+   */
+  public TravelReceipt travelZones(int zones, long currentTimeMillis) {
+    TravelReceipt receipt = new TravelReceipt(zones);
+    if (timedTickets.travelZones(zones, currentTimeMillis, receipt) == zones) {
+      LOGGER.info(() -> "Timed ticket has been used to travel " + zones + " zones.");
+    } else if (zoneTickets.travelZones(zones, currentTimeMillis, receipt) == zones) {
+      // Travel on a timed ticket changes nothing, so only travel on zone
+      // tickets is journalled.
+      journalTravel(receipt);
+      LOGGER.info(() -> "Zone tickets have been used to travel " + zones + " zones.");
+    } else {
+      LOGGER.info(() -> "No tickets could be used to travel " + zones + " zones.");
+    }
+    return receipt;
+  }
+
+  /**
+   * Expires every timed ticket whose validity window has ended by the given
+   * time. Expired tickets notify their observers, which removes them from the
+   * timed ticket chain.
+   *
+   * @param currentTimeMillis the current time, in epoch milliseconds.
+   * @return the number of tickets that were expired.
+   */
+  public int expireTickets(long currentTimeMillis) {
+    return expiryWheel.advanceTo(currentTimeMillis);
+  }
+
+  /**
+   * Journals the zones each zone ticket paid for on a journey, waiting for
+   * them to be durable.
+   *
+   * @param receipt the receipt of the journey.
+   */
+  private void journalTravel(TravelReceipt receipt) {
+    if (journal == null) {
+      return;
+    }
+    long position = 0;
+    for (Map.Entry<Long, Integer> payment : receipt.getPayments().entrySet()) {
+      position = journal.appendZonesTravelled(payment.getKey(), payment.getValue());
+    }
+    journal.awaitDurable(position);
+  }
 }
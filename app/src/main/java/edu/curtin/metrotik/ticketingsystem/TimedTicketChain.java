@@ -0,0 +1,163 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * A ticket chain specialised for timed tickets. Alongside the tickets held by
+ * the chain, an index ordered by validity is maintained so that travel checks
+ * can go directly to the ticket that is currently valid, rather than checking
+ * every ticket that has been purchased in advance.
+ *
+ * @author Kyer Potts
+ */
+public class TimedTicketChain extends HashTicketChain<TimedTicket> {
+  private static final Logger LOGGER = Logger.getLogger(TimedTicketChain.class.getName());
+
+  // Tickets are ordered by the end of their validity window first. Ties are
+  // broken by the start of the window and then the ticket ID, so that distinct
+  // tickets are never considered equal by the index.
+  private static final Comparator<TimedTicket> VALIDITY_ORDER = Comparator
+      .comparingLong(TimedTicket::getValidToMillis)
+      .thenComparingLong(TimedTicket::getValidFromMillis)
+      .thenComparingLong(TimedTicket::getTicketID);
+
+  private NavigableSet<TimedTicket> validityIndex;
+
+  public TimedTicketChain() {
+    this(new TicketListenerList());
+  }
+
+  /**
+   * Creates a chain that passes the events of its tickets on to the given
+   * listeners.
+   *
+   * @param listeners the listeners to be told of ticket events.
+   */
+  public TimedTicketChain(TicketListenerList listeners) {
+    super(listeners);
+    validityIndex = new TreeSet<>(VALIDITY_ORDER);
+    LOGGER.info(() -> "Timed ticket chain has been initialised successfully");
+  }
+
+  @Override
+  public void addTicket(TimedTicket ticket) {
+    super.addTicket(ticket);
+    validityIndex.add(ticket);
+  }
+
+  /**
+   * Removes the ticket from the validity index as well as the chain itself.
+   *
+   * @param ticket the ticket to be invalidated.
+   */
+  @Override
+  public void invalidateTicket(Ticket ticket) {
+    validityIndex.remove(ticket);
+    super.invalidateTicket(ticket);
+  }
+
+  /**
+   * A timed ticket absorbs all requested zones or none of them, so the chain
+   * can travel the requested zones whenever there is a currently valid ticket.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request.
+   * @return true if there is a currently valid timed ticket in the chain.
+   */
+  @Override
+  public boolean canTravelZones(int zones, long currentTimeMillis) {
+    LOGGER.info(
+        () -> "Checking whether the timed chain can travel " + zones + " zones");
+    return findValidTicket(currentTimeMillis) != null;
+  }
+
+  @Override
+  public boolean travelZone(long currentTimeMillis) {
+    LOGGER.info(() -> "Attempting to travel a single zone on a timed ticket");
+    TimedTicket validTicket = findValidTicket(currentTimeMillis);
+    if (validTicket == null) {
+      LOGGER.info(
+          () -> "There are no valid timed tickets that can register a zone of travel");
+      return false;
+    }
+    return validTicket.travelZone(currentTimeMillis);
+  }
+
+  /**
+   * A single valid timed ticket pays for the whole journey, so only the ticket
+   * at the front of the index is used.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request.
+   * @param receipt           the receipt on which the ticket payment is
+   *                          recorded.
+   * @return the number of zones paid for, either all of them or none.
+   */
+  @Override
+  public int travelZones(int zones, long currentTimeMillis, TravelReceipt receipt) {
+    TimedTicket validTicket = findValidTicket(currentTimeMillis);
+    if (validTicket == null) {
+      LOGGER.info(
+          () -> "There are no valid timed tickets that can pay for the journey");
+      return 0;
+    }
+    int paid = validTicket.travelZones(zones, currentTimeMillis);
+    if (paid > 0) {
+      receipt.addPayment(validTicket.getTicketID(), paid);
+    }
+    return paid;
+  }
+
+  /**
+   * Locates the ticket that is valid at the given time. Expired tickets are
+   * drained from the front of the index first. Every timed ticket is valid for
+   * the same length of time, so the live ticket that expires soonest is also
+   * the one that started earliest. If that ticket has not yet started, no
+   * other ticket in the chain can be valid either.
+   *
+   * @param currentTimeMillis the time at which validity is being checked.
+   * @return the currently valid ticket, or null if there is none.
+   */
+  private TimedTicket findValidTicket(long currentTimeMillis) {
+    expireTickets(currentTimeMillis);
+    if (validityIndex.isEmpty()) {
+      return null;
+    }
+    TimedTicket earliest = validityIndex.first();
+    if (earliest.getValidFromMillis() < currentTimeMillis) {
+      return earliest;
+    }
+    return null;
+  }
+
+  /**
+   * Removes every ticket whose validity window has ended from the front of the
+   * index in a single pass. The tickets are collected before they are
+   * invalidated so that observers removing them from the chain do not modify
+   * the index while it is being read.
+   *
+   * @param currentTimeMillis the time at which expiry is being checked.
+   */
+  private void expireTickets(long currentTimeMillis) {
+    List<TimedTicket> expired = new ArrayList<>();
+    while (!validityIndex.isEmpty() &&
+        validityIndex.first().getValidToMillis() <= currentTimeMillis) {
+      expired.add(validityIndex.pollFirst());
+    }
+    for (TimedTicket ticket : expired) {
+      // Invalidating the ticket notifies this chain, which passes the event on
+      // to its listeners such as the user interface.
+      ticket.invalidateTicket();
+    }
+    if (!expired.isEmpty()) {
+      LOGGER.info(() -> expired.size() + " expired timed tickets have been removed");
+    }
+  }
+}
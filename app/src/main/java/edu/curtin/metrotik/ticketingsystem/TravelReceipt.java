@@ -0,0 +1,70 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A record of a journey over several zones. The receipt states how many zones
+ * were requested, and which tickets paid for which of those zones, in the
+ * order the tickets were used.
+ *
+ * @author Kyer Potts
+ */
+public class TravelReceipt {
+  private final int zonesRequested;
+  private int zonesTravelled;
+  // Maps the ID of each ticket used to the number of zones it paid for.
+  private Map<Long, Integer> payments;
+
+  public TravelReceipt(int zonesRequested) {
+    this.zonesRequested = zonesRequested;
+    this.zonesTravelled = 0;
+    this.payments = new LinkedHashMap<>();
+  }
+
+  /**
+   * Records that a ticket has paid for a number of zones of the journey.
+   *
+   * @param ticketID the ID of the ticket used.
+   * @param zones    the number of zones the ticket paid for.
+   */
+  public void addPayment(long ticketID, int zones) {
+    payments.merge(ticketID, zones, Integer::sum);
+    zonesTravelled += zones;
+  }
+
+  public int getZonesRequested() {
+    return zonesRequested;
+  }
+
+  public int getZonesTravelled() {
+    return zonesTravelled;
+  }
+
+  /**
+   * Accessor for the tickets used on the journey.
+   *
+   * @return an unmodifiable map of ticket ID to the number of zones paid for by
+   *         that ticket, in the order the tickets were used.
+   */
+  public Map<Long, Integer> getPayments() {
+    return Collections.unmodifiableMap(payments);
+  }
+
+  /**
+   * Determines whether the tickets used paid for the whole journey.
+   *
+   * @return true if every requested zone was paid for.
+   */
+  public boolean isComplete() {
+    return zonesTravelled == zonesRequested;
+  }
+
+  @Override
+  public String toString() {
+    return "TravelReceipt{"
+        + "zonesRequested=" + zonesRequested + ", zonesTravelled=" +
+        zonesTravelled + ", payments=" + payments + '}';
+  }
+}
@@ -0,0 +1,156 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+/**
+ * A ticket chain specialised for zone tickets. The chain keeps a running total
+ * of the zone allocation remaining across all of its tickets, so checking
+ * whether a journey can be travelled is a single comparison rather than a walk
+ * over every ticket. Tickets are consumed in the order they were added.
+ *
+ * @author Kyer Potts
+ */
+public class ZoneTicketChain extends HashTicketChain<ZoneTicket> {
+  private static final Logger LOGGER = Logger.getLogger(ZoneTicketChain.class.getName());
+
+  // Tickets in the order they will be used for travel. The oldest ticket is
+  // always exhausted before allocation is taken from the next.
+  private Deque<ZoneTicket> travelOrder;
+  // The sum of the zone allocation remaining on every ticket in the chain. This
+  // must be kept up to date whenever a ticket is added, travelled or
+  // invalidated.
+  private long remainingAllocation;
+
+  public ZoneTicketChain() {
+    this(new TicketListenerList());
+  }
+
+  /**
+   * Creates a chain that passes the events of its tickets on to the given
+   * listeners.
+   *
+   * @param listeners the listeners to be told of ticket events.
+   */
+  public ZoneTicketChain(TicketListenerList listeners) {
+    super(listeners);
+    travelOrder = new ArrayDeque<>();
+    remainingAllocation = 0;
+    LOGGER.info(() -> "Zone ticket chain has been initialised successfully");
+  }
+
+  @Override
+  public void addTicket(ZoneTicket ticket) {
+    super.addTicket(ticket);
+    travelOrder.addLast(ticket);
+    remainingAllocation += ticket.getZoneAllocation();
+  }
+
+  @Override
+  public void addTickets(Collection<? extends ZoneTicket> tickets) {
+    super.addTickets(tickets);
+    travelOrder.addAll(tickets);
+    for (ZoneTicket ticket : tickets) {
+      remainingAllocation += ticket.getZoneAllocation();
+    }
+  }
+
+  /**
+   * Removes the ticket from the travel order as well as the chain itself. Any
+   * allocation still remaining on the ticket is taken off the running total.
+   * Exhausted tickets are almost always at the front of the travel order, so
+   * the search will usually stop at the first element.
+   *
+   * @param ticket the ticket to be invalidated.
+   */
+  @Override
+  public void invalidateTicket(Ticket ticket) {
+    Iterator<ZoneTicket> iter = travelOrder.iterator();
+    boolean found = false;
+    while (!found && iter.hasNext()) {
+      ZoneTicket next = iter.next();
+      if (next.equals(ticket)) {
+        remainingAllocation -= next.getZoneAllocation();
+        iter.remove();
+        found = true;
+      }
+    }
+    super.invalidateTicket(ticket);
+  }
+
+  /**
+   * Zone allocation can be combined across tickets, so the chain can travel
+   * the requested zones whenever the running total covers them.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request.
+   * @return true if there is enough allocation across all tickets.
+   */
+  @Override
+  public boolean canTravelZones(int zones, long currentTimeMillis) {
+    boolean canTravel = zones <= remainingAllocation;
+    LOGGER.info(() -> "Zone chain holds " + remainingAllocation +
+        " zones, " + zones + " requested. Can travel: " + canTravel);
+    return canTravel;
+  }
+
+  @Override
+  public boolean travelZone(long currentTimeMillis) {
+    ZoneTicket ticket = travelOrder.peekFirst();
+    if (ticket == null) {
+      LOGGER.info(
+          () -> "There are no valid zone tickets that can register a zone of travel");
+      return false;
+    }
+    // The running total is reduced before the ticket is travelled, as the
+    // ticket may invalidate itself and be removed from the chain with whatever
+    // allocation it has left.
+    remainingAllocation--;
+    return ticket.travelZone(currentTimeMillis);
+  }
+
+  /**
+   * Takes allocation from the tickets in the order they were added until the
+   * journey is paid for. The running total is checked first, so a journey is
+   * either paid for in full or not at all. Each ticket that is exhausted
+   * notifies its observers once, rather than once per zone.
+   *
+   * @param zones             the number of zones requested to be travelled.
+   * @param currentTimeMillis the time of the travel request.
+   * @param receipt the receipt on which each ticket payment is recorded.
+   * @return the number of zones paid for, either all of them or none.
+   */
+  @Override
+  public int travelZones(int zones, long currentTimeMillis, TravelReceipt receipt) {
+    if (!canTravelZones(zones, currentTimeMillis)) {
+      return 0;
+    }
+    int zonesLeft = zones;
+    while (zonesLeft > 0) {
+      ZoneTicket ticket = travelOrder.peekFirst();
+      int zonesToPay = Math.min(zonesLeft, ticket.getZoneAllocation());
+      // As with a single zone, the running total is reduced before the ticket
+      // is travelled so that invalidation removes only what is left over.
+      remainingAllocation -= zonesToPay;
+      int paid = ticket.travelZones(zonesToPay, currentTimeMillis);
+      receipt.addPayment(ticket.getTicketID(), paid);
+      zonesLeft -= paid;
+    }
+    LOGGER.info(() -> "Zone chain has paid for " + zones + " zones");
+    return zones;
+  }
+
+  /**
+   * Accessor for the running total of zone allocation held by the chain.
+   *
+   * @return the number of zones that can be travelled on the chain.
+   */
+  public long getRemainingAllocation() {
+    return remainingAllocation;
+  }
+}
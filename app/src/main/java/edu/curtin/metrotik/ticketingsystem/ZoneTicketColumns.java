@@ -0,0 +1,54 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+/**
+ * Contract for the primitive storage behind a columnar zone ticket chain. Each
+ * ticket occupies a numbered slot, and each field of the ticket is read and
+ * written by slot. The storage is responsible for handing out slots and for
+ * reusing the slots of tickets that have been released.
+ *
+ * @author Kyer Potts
+ */
+public interface ZoneTicketColumns {
+  /**
+   * Provides a contract for claiming a slot for a new ticket.
+   *
+   * @return the slot that the ticket should be written to.
+   */
+  public int allocateSlot();
+
+  /**
+   * Provides a contract for releasing the slot of a ticket that is no longer
+   * valid, so that it can be reused.
+   *
+   * @param slot the slot to be released.
+   */
+  public void releaseSlot(int slot);
+
+  /**
+   * Provides a contract for retrieving the number of slots that have ever been
+   * handed out. Every live ticket occupies a slot below this number.
+   *
+   * @return the number of slots in use or previously used.
+   */
+  public int getSlotCount();
+
+  /**
+   * Provides a contract for checking whether a slot currently holds a ticket.
+   *
+   * @param slot the slot to be checked.
+   * @return true if the slot holds a live zone ticket.
+   */
+  public boolean isLive(int slot);
+
+  public long getTicketID(int slot);
+
+  public void setTicketID(int slot, long ticketID);
+
+  public int getAllocation(int slot);
+
+  public void setAllocation(int slot, int allocation);
+
+  public long getPurchaseEpochSecond(int slot);
+
+  public void setPurchaseEpochSecond(int slot, long purchaseEpochSecond);
+}
@@ -0,0 +1,124 @@
+package edu.curtin.metrotik.useraccounts;
+
+/**
+ * An immutable snapshot of the money in an account and the state it is in.
+ * The funds, the amount held for purchases still being made, and the state
+ * are kept together, so that an account can swap in a new snapshot with a
+ * single compare and set and its state can never disagree with its balance.
+ *
+ * Every snapshot made from another carries a version one higher than the
+ * snapshot it came from. Changes to the account can be recorded out of order
+ * by threads racing each other, and the version tells which of them was made
+ * last.
+ *
+ * @author Kyer Potts
+ */
+public final class AccountBalance {
+  private final long funds;
+  private final long held;
+  private final AccountState state;
+  private final long version;
+
+  /**
+   * Creates the first snapshot of an account.
+   *
+   * @param funds the funds in the account, in cents.
+   * @param held  the funds set aside for purchases that have not yet been
+   *              captured or released, in cents.
+   * @param state the state of the account.
+   */
+  public AccountBalance(long funds, long held, AccountState state) {
+    this(funds, held, state, 0);
+  }
+
+  /**
+   * Creates a snapshot, such as one restored from a previous run.
+   *
+   * @param funds   the funds in the account, in cents.
+   * @param held    the funds set aside for purchases that have not yet been
+   *                captured or released, in cents.
+   * @param state   the state of the account.
+   * @param version the version of the snapshot.
+   */
+  public AccountBalance(long funds, long held, AccountState state, long version) {
+    this.funds = funds;
+    this.held = held;
+    this.state = state;
+    this.version = version;
+  }
+
+  public long getFunds() {
+    return funds;
+  }
+
+  public long getHeld() {
+    return held;
+  }
+
+  /**
+   * Accessor for the funds that are not set aside for pending purchases.
+   *
+   * @return the available funds, in cents.
+   */
+  public long getAvailable() {
+    return funds - held;
+  }
+
+  public AccountState getState() {
+    return state;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Creates a snapshot with different funds, in the given state.
+   *
+   * @param newFunds the funds in the new snapshot, in cents.
+   * @param newState the state of the new snapshot.
+   * @return a new snapshot holding the same amount of held funds.
+   */
+  public AccountBalance withFunds(long newFunds, AccountState newState) {
+    return new AccountBalance(newFunds, held, newState, version + 1);
+  }
+
+  /**
+   * Creates a snapshot with different funds and a different amount held, in
+   * the given state.
+   *
+   * @param newFunds the funds in the new snapshot, in cents.
+   * @param newHeld  the funds held in the new snapshot, in cents.
+   * @param newState the state of the new snapshot.
+   * @return a new snapshot.
+   */
+  public AccountBalance withFunds(long newFunds, long newHeld, AccountState newState) {
+    return new AccountBalance(newFunds, newHeld, newState, version + 1);
+  }
+
+  /**
+   * Creates a snapshot with a different amount held.
+   *
+   * @param newHeld the funds held in the new snapshot, in cents.
+   * @return a new snapshot with the same funds and state.
+   */
+  public AccountBalance withHeld(long newHeld) {
+    return new AccountBalance(funds, newHeld, state, version + 1);
+  }
+
+  /**
+   * Creates a snapshot in a different state.
+   *
+   * @param newState the state of the new snapshot.
+   * @return a new snapshot with the same funds.
+   */
+  public AccountBalance withState(AccountState newState) {
+    return new AccountBalance(funds, held, newState, version + 1);
+  }
+
+  @Override
+  public String toString() {
+    return "AccountBalance{funds=" + Money.format(funds) + ", held=" + Money.format(held) +
+        ", state=" + state.getAccountState() + '}';
+  }
+}
@@ -1,40 +1,118 @@
-
 package edu.curtin.metrotik.useraccounts;
 
-import java.util.logging.Logger;
-
 /**
  * This class provides an encapsulated event object that can be passed to the
- * various observers. It contains a message detailing the event, as well as a
- * reference to the account object the event originated from.
+ * various observers. It holds what happened as a code, along with the amount
+ * involved, the standing of the account before and after the event, and the
+ * ID of the account the event originated from.
+ *
+ * Events are raised on every credit and debit, so they hold only these few
+ * fields. The message describing the event is only put together when an
+ * observer asks for it.
  *
  * @author Kyer Potts
  */
 public class AccountEvent {
-  private static final Logger LOGGER = Logger.getLogger(AccountEvent.class.getName());
-  private UserAccount origin;
-  private String message;
-  private boolean eventSuccess;
+  private final int accountID;
+  private final AccountEventCode code;
+  // The amount is held in cents.
+  private final long amount;
+  private final AccountStatus oldStatus;
+  private final AccountStatus newStatus;
 
-  public AccountEvent(UserAccount origin, String message,
-      boolean eventSuccess) {
-    this.origin = origin;
-    this.message = message;
-    this.eventSuccess = eventSuccess;
-    LOGGER.info(() -> "Account event created successfully.");
+  /**
+   * Creates an event.
+   *
+   * @param accountID the ID of the account the event originated from.
+   * @param code      what happened.
+   * @param amount    the amount credited or debited in cents, or 0 for events
+   *                  that do not involve funds.
+   * @param oldStatus the standing of the account before the event.
+   * @param newStatus the standing of the account after the event.
+   */
+  public AccountEvent(int accountID, AccountEventCode code, long amount,
+      AccountStatus oldStatus, AccountStatus newStatus) {
+    this.accountID = accountID;
+    this.code = code;
+    this.amount = amount;
+    this.oldStatus = oldStatus;
+    this.newStatus = newStatus;
   }
 
   // Only getters are required for this class, and event should remain
   // immutable.
-  public UserAccount getOrigin() {
-    return origin;
+  public int getAccountID() {
+    return accountID;
   }
 
-  public String getMessage() {
-    return message;
+  public AccountEventCode getCode() {
+    return code;
+  }
+
+  public long getAmount() {
+    return amount;
+  }
+
+  public AccountStatus getOldStatus() {
+    return oldStatus;
+  }
+
+  public AccountStatus getNewStatus() {
+    return newStatus;
   }
 
   public boolean isEventSuccess() {
-    return eventSuccess;
+    return code.isSuccess();
+  }
+
+  /**
+   * Puts together a message describing the event for display to the user. The
+   * message is built again on every call, so observers that need it more than
+   * once should keep it.
+   *
+   * @return a message describing the event.
+   */
+  public String getMessage() {
+    switch (code) {
+      case CREDIT_SUCCEEDED:
+        return "Credit of: " + Money.format(amount) + " successful.";
+      case CREDIT_REJECTED_DEACTIVATED:
+        return "Credit of: " + Money.format(amount) + " unsuccessful. Account is deactivated.";
+      case DEBIT_SUCCEEDED:
+        return "Debit of: " + Money.format(amount) + " successful.";
+      case DEBIT_REJECTED_IN_DEBT:
+        return "Debit of: " + Money.format(amount) +
+            " unsuccessful. Cannot deduct funds from account state: " +
+            oldStatus.getDisplayName();
+      case DEBIT_REJECTED_ARREARS:
+        return "Debit of: " + Money.format(amount) +
+            " unsuccessful. Deactivated account must only use remaining credit. It cannot enter arrears.";
+      case STATE_CHANGED:
+        return "Account changed from: " + oldStatus.getDisplayName() +
+            " to: " + newStatus.getDisplayName();
+      case DEACTIVATION_REJECTED:
+        return "Accounts in state: " + oldStatus.getDisplayName() +
+            " cannot be deactivated. The account must be returned to good standing before being deactivated.";
+      case FUNDS_HELD:
+        return "Funds of: " + Money.format(amount) + " held for a purchase.";
+      case FUNDS_RELEASED:
+        return "Funds of: " + Money.format(amount) + " released.";
+      case DEACTIVATION_REJECTED_PENDING:
+        return "Account cannot be deactivated while a purchase is being made.";
+      case ALREADY_DEACTIVATED:
+        return "Account has already been deactivated.";
+      case HOLD_REJECTED_OVERDRAWN:
+        return "Purchase of: " + Money.format(amount) +
+            " unsuccessful. Funds already held for purchases would overdraw the account.";
+      default:
+        return code.toString();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "AccountEvent{accountID=" + accountID + ", code=" + code +
+        ", amount=" + amount + ", oldStatus=" + oldStatus +
+        ", newStatus=" + newStatus + '}';
   }
 }
@@ -0,0 +1,42 @@
+package edu.curtin.metrotik.useraccounts;
+
+/**
+ * Identifies what happened in an account event. Each code states whether the
+ * event was a success, so that the event itself only needs to hold the code.
+ *
+ * @author Kyer Potts
+ */
+public enum AccountEventCode {
+  CREDIT_SUCCEEDED(true),
+  // Deactivated accounts cannot be credited.
+  CREDIT_REJECTED_DEACTIVATED(false),
+  DEBIT_SUCCEEDED(true),
+  // Accounts in debt cannot be debited.
+  DEBIT_REJECTED_IN_DEBT(false),
+  // Deactivated accounts cannot be debited into arrears.
+  DEBIT_REJECTED_ARREARS(false),
+  STATE_CHANGED(true),
+  // Funds were set aside for a purchase, or returned when it was abandoned.
+  // The account is not debited or credited, so these are not sent to
+  // observers.
+  FUNDS_HELD(true),
+  FUNDS_RELEASED(true),
+  // Accounts in debt cannot be deactivated.
+  DEACTIVATION_REJECTED(false),
+  // Accounts cannot be deactivated while funds are held for a purchase.
+  DEACTIVATION_REJECTED_PENDING(false),
+  ALREADY_DEACTIVATED(false),
+  // Funds already held take the account past zero, so holding more would
+  // overdraw it a second time. Added last, as codes are stored by position.
+  HOLD_REJECTED_OVERDRAWN(false);
+
+  private final boolean success;
+
+  AccountEventCode(boolean success) {
+    this.success = success;
+  }
+
+  public boolean isSuccess() {
+    return success;
+  }
+}
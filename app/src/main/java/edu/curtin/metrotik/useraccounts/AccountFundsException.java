@@ -12,4 +12,8 @@ public class AccountFundsException extends RuntimeException {
   public AccountFundsException(String message) {
     super(message);
   }
+
+  public AccountFundsException(String message, Throwable cause) {
+    super(message, cause);
+  }
 }
@@ -4,6 +4,12 @@ package edu.curtin.metrotik.useraccounts;
  * State pattern interface provides a contract to handle the various behaviours
  * associated with all states the UserAccount object may have.
  *
+ * Each method decides the outcome of a request from a snapshot of the balance,
+ * and returns the transition to be applied rather than changing the account.
+ * The account applies the transition with a compare and set, and asks the
+ * state again if another thread changed the balance in the meantime, so these
+ * methods must not have side effects.
+ *
  * @author Kyer Potts
  */
 public interface AccountState {
@@ -12,13 +18,13 @@ public interface AccountState {
    * Provides a contract for the state pattern to handle credits to a
    * UserAccounts funds
    *
-   * @param credit      the amount to be credited to the account
-   * @param funds       the current funds held by the account
-   * @param userAccount required in order to update any observers and mutate the
-   *                    account state if there are any changes
-   * @return the result of the mutation of the funds variable
+   * @param credit      the amount to be credited to the account, in cents
+   * @param balance     the current balance of the account, in this state
+   * @param userAccount the account, which holds the states that this state
+   *                    may move to
+   * @return the outcome of the credit and the balance it leads to
    */
-  public double creditFunds(double credit, double funds,
+  public AccountTransition creditFunds(long credit, AccountBalance balance,
       UserAccount userAccount)
       throws AccountFundsException;
 
@@ -26,21 +32,52 @@ public interface AccountState {
    * Provides a contract for the state pattern to handle debits to a
    * UserAccounts funds
    *
-   * @param debit       the amount to be debited to the account
-   * @param funds       the current funds held by the account
-   * @param userAccount required in order to update any observers and mutate the
-   *                    account state if there are any changes
-   * @return the result of the mutation of the funds variable
+   * @param debit       the amount to be debited to the account, in cents
+   * @param balance     the current balance of the account, in this state
+   * @param userAccount the account, which holds the states that this state
+   *                    may move to
+   * @return the outcome of the debit and the balance it leads to
    */
-  public double debitFunds(double debit, double funds, UserAccount userAccount);
+  public AccountTransition debitFunds(long debit, AccountBalance balance,
+      UserAccount userAccount);
+
+  /**
+   * Provides a contract for setting funds aside for a purchase. A hold is
+   * accepted under the same rules as a debit, but the funds are only debited
+   * when the hold is captured.
+   *
+   * @param amount      the amount to be held, in cents
+   * @param balance     the current balance of the account, in this state
+   * @param userAccount the account, which holds the states that this state
+   *                    may move to
+   * @return the outcome of the hold and the balance it leads to
+   */
+  public AccountTransition holdFunds(long amount, AccountBalance balance,
+      UserAccount userAccount);
+
+  /**
+   * Provides a contract for debiting funds that have already been held. The
+   * funds were set aside when the hold was accepted, so capturing them always
+   * succeeds.
+   *
+   * @param amount      the amount held, in cents
+   * @param balance     the current balance of the account, in this state
+   * @param userAccount the account, which holds the states that this state
+   *                    may move to
+   * @return the debit and the balance it leads to
+   */
+  public AccountTransition captureFunds(long amount, AccountBalance balance,
+      UserAccount userAccount);
 
   /**
    * Provides a contract for deactivating a UserAccount
    *
-   * @param userAccount required in order to update any observers and mutate the
-   *                    account state if there are any changes
+   * @param balance     the current balance of the account, in this state
+   * @param userAccount the account, which holds the states that this state
+   *                    may move to
+   * @return the outcome of the request and the balance it leads to
    */
-  public void deactivateAccount(UserAccount userAccount);
+  public AccountTransition deactivateAccount(AccountBalance balance, UserAccount userAccount);
 
   /**
    * Provides a contract for the retrieval of the current state of the account
@@ -49,4 +86,12 @@ public interface AccountState {
    * @return the current state of the account as a string.
    */
   public String getAccountState();
+
+  /**
+   * Provides a contract for the retrieval of the current standing of the
+   * account, as recorded in account events.
+   *
+   * @return the current standing of the account.
+   */
+  public AccountStatus getAccountStatus();
 }
@@ -0,0 +1,24 @@
+package edu.curtin.metrotik.useraccounts;
+
+/**
+ * The standings an account can be in, one for each account state. Events
+ * record the standing of the account rather than the state object, so that
+ * they hold no reference to the account they came from.
+ *
+ * @author Kyer Potts
+ */
+public enum AccountStatus {
+  GOOD_STANDING("Good Standing"),
+  IN_DEBT("In Debt"),
+  DEACTIVATED("Deactivated");
+
+  private final String displayName;
+
+  AccountStatus(String displayName) {
+    this.displayName = displayName;
+  }
+
+  public String getDisplayName() {
+    return displayName;
+  }
+}
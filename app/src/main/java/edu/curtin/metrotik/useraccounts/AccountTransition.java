@@ -0,0 +1,59 @@
+package edu.curtin.metrotik.useraccounts;
+
+/**
+ * The outcome an account state decides on for a request: what happened, and
+ * the balance the account should move to. Working out a transition changes
+ * nothing, so the account can work it out again if another thread changes the
+ * balance first, and only applies it once its compare and set succeeds.
+ *
+ * @author Kyer Potts
+ */
+public final class AccountTransition {
+  private final AccountEventCode code;
+  private final long amount;
+  private final AccountBalance balance;
+
+  /**
+   * Creates a transition.
+   *
+   * @param code    what happened.
+   * @param amount  the amount credited, debited or held, in cents.
+   * @param balance the balance the account moves to, which is the balance the
+   *                state was given if the request was rejected.
+   */
+  public AccountTransition(AccountEventCode code, long amount, AccountBalance balance) {
+    this.code = code;
+    this.amount = amount;
+    this.balance = balance;
+  }
+
+  /**
+   * Creates a transition for a rejected request, which leaves the balance as
+   * it is.
+   *
+   * @param code    why the request was rejected.
+   * @param amount  the amount requested, in cents.
+   * @param balance the balance the state was given.
+   * @return a transition to the same balance.
+   */
+  public static AccountTransition rejected(AccountEventCode code, long amount,
+      AccountBalance balance) {
+    return new AccountTransition(code, amount, balance);
+  }
+
+  public AccountEventCode getCode() {
+    return code;
+  }
+
+  public long getAmount() {
+    return amount;
+  }
+
+  public AccountBalance getBalance() {
+    return balance;
+  }
+
+  public boolean isSuccess() {
+    return code.isSuccess();
+  }
+}
@@ -22,66 +22,67 @@ public class DeactivatedState implements AccountState {
   }
 
   @Override
-  public double creditFunds(double credit, double funds,
+  public AccountTransition creditFunds(long credit, AccountBalance balance,
       UserAccount userAccount) {
     // Validate the credit parameter to prevent accounting errors.
     mutatorValidator.checkForInvalidFundMutator(credit);
 
-    // Observers are notified of unsuccessful credit
-    String eventMessage = "Credit of: " + credit + " unsuccessful. Account is deactivated.";
-    userAccount.notifyAccountTransactionObservers(
-        new AccountEvent(userAccount, eventMessage, false));
-    LOGGER.info(() -> "Credit of: " + credit +
-        " unsuccessful. Account is deactivated.");
-    // The current funds are returned so as not to change the state of funds in
+    // The current funds are kept so as not to change the state of funds in
     // the account.
-    return funds;
+    return AccountTransition.rejected(AccountEventCode.CREDIT_REJECTED_DEACTIVATED, credit,
+        balance);
   }
 
   @Override
-  public double debitFunds(double debit, double funds,
+  public AccountTransition debitFunds(long debit, AccountBalance balance,
       UserAccount userAccount) {
     // Validate the credit parameter to prevent accounting errors.
     mutatorValidator.checkForInvalidFundMutator(debit);
 
     // funds can still be debited from a deactivated account, however the
-    // account must not end up in arrears.
-    if (funds - debit >= 0) {
-      // Observers are notified of successful debit
-      String eventMessage = "Debit of: " + debit + " successful.";
-      userAccount.notifyAccountTransactionObservers(
-          new AccountEvent(userAccount, eventMessage, true));
+    // account must not end up in arrears. Funds held for purchases are
+    // already spoken for, so only the available funds can be used.
+    if (balance.getAvailable() - debit >= 0) {
+      return new AccountTransition(AccountEventCode.DEBIT_SUCCEEDED, debit,
+          balance.withFunds(balance.getFunds() - debit, this));
+    }
+    return AccountTransition.rejected(AccountEventCode.DEBIT_REJECTED_ARREARS, debit, balance);
+  }
 
-      LOGGER.info(() -> "Debit of: " + debit + " successful.");
+  @Override
+  public AccountTransition holdFunds(long amount, AccountBalance balance,
+      UserAccount userAccount) {
+    mutatorValidator.checkForInvalidFundMutator(amount);
 
-      return funds - debit;
+    // Holds follow the same rule as debits, so that capturing every hold
+    // can never take the account into arrears.
+    if (balance.getAvailable() - amount >= 0) {
+      return new AccountTransition(AccountEventCode.FUNDS_HELD, amount,
+          balance.withHeld(balance.getHeld() + amount));
     }
-    // Observers are notified of unsuccessful debit if there are not enough
-    // funds left in the account.
-    String eventMessage = "Debit of: " + debit +
-        " unsuccessful. Deactivated account must only use remaining credit. It cannot enter arrears.";
-    userAccount.notifyAccountTransactionObservers(
-        new AccountEvent(userAccount, eventMessage, false));
-
-    LOGGER.info(
-        () -> "Debit of: " + debit +
-            " unsuccessful. Deactivated account must only use remaining credit. It cannot enter arrears.");
+    return AccountTransition.rejected(AccountEventCode.DEBIT_REJECTED_ARREARS, amount, balance);
+  }
 
-    return funds;
+  @Override
+  public AccountTransition captureFunds(long amount, AccountBalance balance,
+      UserAccount userAccount) {
+    return new AccountTransition(AccountEventCode.DEBIT_SUCCEEDED, amount,
+        balance.withFunds(balance.getFunds() - amount, balance.getHeld() - amount, this));
   }
 
   @Override
-  public void deactivateAccount(UserAccount userAccount) {
+  public AccountTransition deactivateAccount(AccountBalance balance, UserAccount userAccount) {
     // State change failures must notify observers
-    String eventMessage = "Account has already been deactivated.";
-    userAccount.notifyAccountStateObservers(
-        new AccountEvent(userAccount, eventMessage, false));
-
-    LOGGER.info(() -> "Account has already been deactivated.");
+    return AccountTransition.rejected(AccountEventCode.ALREADY_DEACTIVATED, 0, balance);
   }
 
   @Override
   public String getAccountState() {
-    return "Deactivated";
+    return getAccountStatus().getDisplayName();
+  }
+
+  @Override
+  public AccountStatus getAccountStatus() {
+    return AccountStatus.DEACTIVATED;
   }
 }
@@ -15,6 +15,8 @@ public class FundMutatorValidator {
    * Function for mutation validation. Mutation of the funds variable must
    * always occur with a positive value.
    *
+   * @param mutator the amount the funds are to be changed by, in cents.
+   *
    * @throws AccountFundsException is thrown when an invalid value is passed via
    *                               the mutator param. Values passed via the
    *                               credit param must always be positive,
@@ -26,15 +28,15 @@ public class FundMutatorValidator {
    *                               create unintended side
    *                               effects.
    */
-  public void checkForInvalidFundMutator(double mutator) {
-    if (mutator < 0.0) {
+  public void checkForInvalidFundMutator(long mutator) {
+    if (mutator < 0) {
 
       LOGGER.warning(
-          () -> "Invalid value passed. Fund mutation parameter must never be less than 0.0. Value passed was: " +
-              mutator);
+          () -> "Invalid value passed. Fund mutation parameter must never be less than 0.00. Value passed was: " +
+              Money.format(mutator));
       throw new AccountFundsException(
-          "Invalid value passed. Fund mutation parameter must never be less than 0.0. Value passed was: " +
-              mutator);
+          "Invalid value passed. Fund mutation parameter must never be less than 0.00. Value passed was: " +
+              Money.format(mutator));
     }
   }
 }
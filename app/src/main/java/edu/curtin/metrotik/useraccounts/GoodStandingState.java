@@ -26,65 +26,86 @@ public class GoodStandingState implements AccountState {
    * direct deposits.
    */
   @Override
-  public double creditFunds(double credit, double funds,
+  public AccountTransition creditFunds(long credit, AccountBalance balance,
       UserAccount userAccount) {
 
     // Validate the credit parameter to prevent accounting errors.
     mutatorValidator.checkForInvalidFundMutator(credit);
 
-    // Observers are notified of successful credit
-    String eventMessage = "Credit of: " + credit + " successful.";
-    userAccount.notifyAccountTransactionObservers(
-        new AccountEvent(userAccount, eventMessage, true));
-    // The credit is added to the funds and then returned in order to properly
-    // update the variable stored within the encapsulating account class.
-    LOGGER.info(() -> "Credit of: " + credit + " successful.");
-    // The credit is added to the funds and then returned in order to properly
-    // update the variable stored within the encapsulating account class.
-    return funds + credit;
+    // The credit is added to the funds, and the account stays in good
+    // standing.
+    return new AccountTransition(AccountEventCode.CREDIT_SUCCEEDED, credit,
+        balance.withFunds(balance.getFunds() + credit, this));
   }
 
   @Override
-  public double debitFunds(double debit, double funds,
+  public AccountTransition debitFunds(long debit, AccountBalance balance,
       UserAccount userAccount) {
     // Validate the debit parameter to prevent accounting errors.
     mutatorValidator.checkForInvalidFundMutator(debit);
 
-    if (funds - debit < 0) {
-      userAccount.setAccountState(userAccount.iNDEBT);
-      LOGGER.info(() -> "Account changed from: " + getAccountState() +
-          " to: " + userAccount.getState());
+    return new AccountTransition(AccountEventCode.DEBIT_SUCCEEDED, debit,
+        debit(debit, balance, userAccount));
+  }
 
-      // Whenever the account changes state, the observers must be notified.
-      String eventMessage = "Account changed from: " + getAccountState() +
-          " to: " + userAccount.getState();
-      userAccount.notifyAccountStateObservers(
-          new AccountEvent(userAccount, eventMessage, true));
-    }
+  @Override
+  public AccountTransition holdFunds(long amount, AccountBalance balance,
+      UserAccount userAccount) {
+    mutatorValidator.checkForInvalidFundMutator(amount);
 
-    // Observers are notified of successful debit
-    String eventMessage = "Debit of: " + debit + " successful.";
-    userAccount.notifyAccountTransactionObservers(
-        new AccountEvent(userAccount, eventMessage, true));
+    // An account in good standing may be debited once past zero, after which
+    // it is in debt. Holds already taken past zero are that one overdraft, as
+    // they will go into debt when captured, so no more can be held until they
+    // are settled.
+    if (balance.getAvailable() < 0) {
+      return AccountTransition.rejected(AccountEventCode.HOLD_REJECTED_OVERDRAWN, amount,
+          balance);
+    }
+    return new AccountTransition(AccountEventCode.FUNDS_HELD, amount,
+        balance.withHeld(balance.getHeld() + amount));
+  }
 
-    LOGGER.info(() -> "Debit of: " + debit + " successful.");
-    return funds - debit;
+  @Override
+  public AccountTransition captureFunds(long amount, AccountBalance balance,
+      UserAccount userAccount) {
+    return new AccountTransition(AccountEventCode.DEBIT_SUCCEEDED, amount,
+        debit(amount, balance.withHeld(balance.getHeld() - amount), userAccount));
   }
 
   @Override
-  public void deactivateAccount(UserAccount userAccount) {
-    userAccount.setAccountState(userAccount.dEACTIVATED);
-    LOGGER.info(() -> "Account changed from: " + getAccountState() +
-        " to: " + userAccount.getState());
-    // Whenever the account changes state, the observers must be notified.
-    String eventMessage = "Account changed from: " + getAccountState() +
-        " to: " + userAccount.getState();
-    userAccount.notifyAccountStateObservers(
-        new AccountEvent(userAccount, eventMessage, true));
+  public AccountTransition deactivateAccount(AccountBalance balance, UserAccount userAccount) {
+    // An account with funds held for a purchase must wait for the purchase to
+    // finish, as a deactivated account could not then be debited into
+    // arrears.
+    if (balance.getHeld() > 0) {
+      return AccountTransition.rejected(AccountEventCode.DEACTIVATION_REJECTED_PENDING, 0,
+          balance);
+    }
+    return new AccountTransition(AccountEventCode.STATE_CHANGED, 0,
+        balance.withState(userAccount.dEACTIVATED));
   }
 
   @Override
   public String getAccountState() {
-    return "Good Standing";
+    return getAccountStatus().getDisplayName();
+  }
+
+  @Override
+  public AccountStatus getAccountStatus() {
+    return AccountStatus.GOOD_STANDING;
+  }
+
+  /**
+   * Debits the funds, moving the account into debt if they fall below 0.
+   *
+   * @param debit       the amount to be debited, in cents.
+   * @param balance     the balance the debit is made from.
+   * @param userAccount the account, which holds the in debt state.
+   * @return the balance after the debit.
+   */
+  private AccountBalance debit(long debit, AccountBalance balance,
+      UserAccount userAccount) {
+    long newFunds = balance.getFunds() - debit;
+    return balance.withFunds(newFunds, newFunds < 0 ? userAccount.iNDEBT : this);
   }
 }
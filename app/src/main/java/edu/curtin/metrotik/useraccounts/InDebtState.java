@@ -17,10 +17,11 @@ public class InDebtState implements AccountState {
 
   public InDebtState(FundMutatorValidator fundMutatorValidator) {
     this.mutatorValidator = fundMutatorValidator;
+    LOGGER.info(() -> "InDebtState initialised successfully");
   }
 
   @Override
-  public double creditFunds(double credit, double funds,
+  public AccountTransition creditFunds(long credit, AccountBalance balance,
       UserAccount userAccount) {
 
     // Validate the credit parameter to prevent accounting errors.
@@ -28,63 +29,52 @@ public class InDebtState implements AccountState {
 
     // If the account is returned to a positive value, then the business logic
     // dictates that it should be returned to a good standing state.
-    if (funds + credit > 0) {
-      userAccount.setAccountState(userAccount.gOODSTANDING);
-      LOGGER.info(() -> "Account changed from: " + getAccountState() +
-          " to: " + userAccount.getState());
-
-      // Whenever the account changes state, the observers must be notified.
-      String eventMessage = "Account changed from: " + getAccountState() +
-          " to: " + userAccount.getState();
-      userAccount.notifyAccountStateObservers(
-          new AccountEvent(userAccount, eventMessage, true));
-    }
-
-    // Observers are notified of successful credit
-    String eventMessage = "Credit of: " + credit + " successful.";
-    userAccount.notifyAccountTransactionObservers(
-        new AccountEvent(userAccount, eventMessage, true));
-    // The credit is added to the funds and then returned in order to properly
-    // update the variable stored within the encapsulating account class.
-    LOGGER.info(() -> "Credit of: " + credit + " successful.");
-    return funds + credit;
+    long newFunds = balance.getFunds() + credit;
+    return new AccountTransition(AccountEventCode.CREDIT_SUCCEEDED, credit,
+        balance.withFunds(newFunds, newFunds > 0 ? userAccount.gOODSTANDING : this));
   }
 
   @Override
-  public double debitFunds(double debit, double funds,
+  public AccountTransition debitFunds(long debit, AccountBalance balance,
       UserAccount userAccount) {
     mutatorValidator.checkForInvalidFundMutator(debit);
 
-    LOGGER.info(
-        () -> "Debit of: " + debit +
-            " unsuccessful. Cannot deduct funds from account state: " +
-            getAccountState());
+    // Funds cannot be deducted while the account is in debt.
+    return AccountTransition.rejected(AccountEventCode.DEBIT_REJECTED_IN_DEBT, debit, balance);
+  }
+
+  @Override
+  public AccountTransition holdFunds(long amount, AccountBalance balance,
+      UserAccount userAccount) {
+    mutatorValidator.checkForInvalidFundMutator(amount);
 
-    // Observers are notified of unsuccessful credit
-    String eventMessage = "Debit of :" + debit +
-        " unsuccessful. Cannot deduct funds from account state: " +
-        getAccountState();
-    userAccount.notifyAccountTransactionObservers(
-        new AccountEvent(userAccount, eventMessage, false));
+    // Holds follow the same rule as debits.
+    return AccountTransition.rejected(AccountEventCode.DEBIT_REJECTED_IN_DEBT, amount, balance);
+  }
 
-    return funds;
+  @Override
+  public AccountTransition captureFunds(long amount, AccountBalance balance,
+      UserAccount userAccount) {
+    // The funds were held before the account went into debt, so the purchase
+    // they were held for is still paid for.
+    return new AccountTransition(AccountEventCode.DEBIT_SUCCEEDED, amount,
+        balance.withFunds(balance.getFunds() - amount, balance.getHeld() - amount, this));
   }
 
   @Override
-  public void deactivateAccount(UserAccount userAccount) {
-    LOGGER.info(
-        () -> "Account in state: " + getAccountState() +
-            " cannot be deactivated. The account must be returned to good standing before being deactivated.");
+  public AccountTransition deactivateAccount(AccountBalance balance, UserAccount userAccount) {
     // Whenever a state change is requested and it is unsuccessful, observers
     // should be notified.
-    String eventMessage = "Accounts in state: " + getAccountState() +
-        " cannot be deactivated. The account must be returned to good standing before being deactivated.";
-    userAccount.notifyAccountStateObservers(
-        new AccountEvent(userAccount, eventMessage, false));
+    return AccountTransition.rejected(AccountEventCode.DEACTIVATION_REJECTED, 0, balance);
   }
 
   @Override
   public String getAccountState() {
-    return "In Debt";
+    return getAccountStatus().getDisplayName();
+  }
+
+  @Override
+  public AccountStatus getAccountStatus() {
+    return AccountStatus.IN_DEBT;
   }
 }
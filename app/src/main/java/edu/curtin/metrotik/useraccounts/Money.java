@@ -0,0 +1,62 @@
+package edu.curtin.metrotik.useraccounts;
+
+import java.math.BigDecimal;
+
+/**
+ * Helper class for amounts of money. Money is held throughout the program as a
+ * long count of cents, so that arithmetic on balances is exact and needs no
+ * rounding. This class converts between cents and the dollars and cents shown
+ * to and entered by the user.
+ *
+ * @author Kyer Potts
+ */
+public final class Money {
+  public static final long CENTS_PER_DOLLAR = 100;
+  // The number of decimal places in an amount of dollars.
+  private static final int SCALE = 2;
+
+  private Money() {
+  }
+
+  /**
+   * Converts a whole number of dollars to cents.
+   *
+   * @param dollars the number of dollars.
+   * @return the amount in cents.
+   */
+  public static long ofDollars(long dollars) {
+    return Math.multiplyExact(dollars, CENTS_PER_DOLLAR);
+  }
+
+  /**
+   * Converts an amount of dollars entered by the user to cents. The amount is
+   * converted exactly, so amounts with fractions of a cent are refused rather
+   * than rounded.
+   *
+   * @param dollars the amount of dollars, such as "12.5" or "3".
+   * @return the amount in cents.
+   * @throws NumberFormatException if the text is not a number.
+   * @throws AccountFundsException if the amount has fractions of a cent or is
+   *                               too large to be held.
+   */
+  public static long parse(String dollars) {
+    BigDecimal amount = new BigDecimal(dollars.trim());
+    try {
+      return amount.movePointRight(SCALE).longValueExact();
+    } catch (ArithmeticException e) {
+      throw new AccountFundsException("Amounts must be whole cents and no larger than " +
+          format(Long.MAX_VALUE) + ". Value passed was: " + dollars, e);
+    }
+  }
+
+  /**
+   * Formats an amount for display to the user, as dollars with two decimal
+   * places.
+   *
+   * @param cents the amount in cents.
+   * @return the amount in dollars, such as "12.50" or "-10.00".
+   */
+  public static String format(long cents) {
+    return BigDecimal.valueOf(cents, SCALE).toPlainString();
+  }
+}
@@ -0,0 +1,145 @@
+package edu.curtin.metrotik.useraccounts;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Budgets that let many threads debit a shared account at once without all
+ * of them updating the same balance. In the style of a LongAdder, the
+ * account's available funds are split across several stripes, and each thread
+ * debits the stripe it maps to with a compare and set on that stripe alone.
+ *
+ * A stripe is granted its budget by holding funds in the account, so budgets
+ * are always funds the account is known to have, and spending a budget can
+ * never take the account below zero. When a stripe runs low it is topped up
+ * from the available funds of the account, and when those have run out every
+ * stripe's budget is taken back so that it can be handed to the stripes that
+ * need it. Granting and taking back budgets is done by the account, one
+ * thread at a time; only debits from a stripe are made concurrently.
+ *
+ * @author Kyer Potts
+ */
+public class StripedBalance {
+  // Each stripe is spaced 16 longs apart, so that no two stripes share a
+  // cache line.
+  private static final int STRIDE = 16;
+
+  private final int mask;
+  private final long budgetPerStripe;
+  // The unspent budget of each stripe, in cents.
+  private final AtomicLongArray budgets;
+  // The sum of the budgets granted since they were last taken back, in cents.
+  // Only changed by the thread granting or taking back budgets.
+  private volatile long granted;
+
+  /**
+   * Creates a set of stripes, with no budget granted yet.
+   *
+   * @param stripeCount     the least number of stripes. The count is rounded
+   *                        up to a power of two.
+   * @param budgetPerStripe the budget granted to a stripe each time it runs
+   *                        low, in cents.
+   */
+  public StripedBalance(int stripeCount, long budgetPerStripe) {
+    if (stripeCount < 1 || budgetPerStripe < 1) {
+      throw new AccountFundsException(
+          "Striped balances must have at least one stripe and a budget of at least one cent");
+    }
+    int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+    this.mask = size - 1;
+    this.budgetPerStripe = budgetPerStripe;
+    this.budgets = new AtomicLongArray(size * STRIDE);
+    this.granted = 0;
+  }
+
+  /**
+   * Finds the stripe that the current thread debits.
+   *
+   * @return the index of the stripe.
+   */
+  public int stripeIndex() {
+    long id = Thread.currentThread().getId();
+    // The ID is mixed so that threads created one after another do not all
+    // fall on neighbouring stripes.
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+  }
+
+  /**
+   * Debits a stripe if it has enough budget left. Can be called from any
+   * thread.
+   *
+   * @param stripe the index of the stripe.
+   * @param amount the amount to be debited, in cents.
+   * @return true if the stripe was debited, or false if its budget is too low.
+   */
+  public boolean tryDebit(int stripe, long amount) {
+    int index = stripe * STRIDE;
+    long budget = budgets.get(index);
+    while (budget >= amount) {
+      if (budgets.compareAndSet(index, budget, budget - amount)) {
+        return true;
+      }
+      budget = budgets.get(index);
+    }
+    return false;
+  }
+
+  /**
+   * Adds to the budget of a stripe. The funds must already have been held in
+   * the account. Must only be called by the thread granting budgets.
+   *
+   * @param stripe the index of the stripe.
+   * @param amount the budget to be added, in cents.
+   */
+  public void grant(int stripe, long amount) {
+    granted += amount;
+    budgets.addAndGet(stripe * STRIDE, amount);
+  }
+
+  /**
+   * Takes back the budget of every stripe. Once a stripe's budget is taken
+   * back, no further debits can be made from it until it is granted more.
+   * Must only be called by the thread granting budgets.
+   *
+   * @return the budget that was granted and has not been spent, in cents.
+   */
+  public long reclaimAll() {
+    long unspent = 0;
+    for (int index = 0; index < budgets.length(); index += STRIDE) {
+      unspent += budgets.getAndSet(index, 0);
+    }
+    granted = 0;
+    return unspent;
+  }
+
+  /**
+   * Accessor for the budget granted since budgets were last taken back.
+   *
+   * @return the granted budget, in cents.
+   */
+  public long getGranted() {
+    return granted;
+  }
+
+  /**
+   * Sums the budget that has been spent from every stripe. As with a
+   * LongAdder, the sum is not taken at a single moment if stripes are being
+   * debited at the same time.
+   *
+   * @return the spent budget, in cents.
+   */
+  public long getSpent() {
+    long unspent = 0;
+    for (int index = 0; index < budgets.length(); index += STRIDE) {
+      unspent += budgets.get(index);
+    }
+    return granted - unspent;
+  }
+
+  public long getBudgetPerStripe() {
+    return budgetPerStripe;
+  }
+
+  public int getStripeCount() {
+    return mask + 1;
+  }
+}
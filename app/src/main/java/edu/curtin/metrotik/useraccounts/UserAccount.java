@@ -1,9 +1,16 @@
 package edu.curtin.metrotik.useraccounts;
 
+import edu.curtin.metrotik.journal.TransactionJournal;
 import edu.curtin.metrotik.ticketing.Ticket;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
+import edu.curtin.metrotik.tickethistory.TicketHistoryLog;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 /**
@@ -11,12 +18,30 @@ import java.util.logging.Logger;
  * class uses the state pattern to alter the behaviours of the account depending
  * on it's status.
  *
+ * The funds and the state of the account are held together in a single
+ * snapshot, which is replaced with compare and set. Any number of threads can
+ * credit and debit the account at once without locking, no update is lost,
+ * and a change of state is always made together with the change of funds that
+ * caused it. Purchases can hold funds first and capture them once the ticket
+ * has been made, so that a failed purchase never takes money.
+ *
+ * Accounts shared by many riders can instead be given a striped balance, so
+ * that riders tapping at the same moment debit separate budgets rather than
+ * the one balance. Budgets are held funds, and are all taken back before any
+ * request that depends on the exact balance, so the rules of each state hold
+ * exactly as they do without stripes.
+ *
+ * Accounts can also be given a transaction journal. Every change to the funds
+ * or state of the account is then written to the journal once it has been
+ * made, and the request only returns, and observers are only told, once the
+ * journal has reached the disk.
+ *
  * @author Kyer Potts
  */
 public class UserAccount {
   private static final Logger LOGGER = Logger.getLogger(UserAccount.class.getName());
-  // References the current state that the account exists in
-  private AccountState currentState;
+  private static final int PRIVATE_HISTORY_SEGMENT_SIZE = 64;
+  private static final int PRIVATE_HISTORY_SEGMENTS = 4;
 
   // Convention normally dictates that constants are all caps, however the pmd
   // ruleset provided requires a lower case letter at the start of the variable
@@ -25,8 +50,10 @@ public class UserAccount {
   public final InDebtState iNDEBT;
   public final DeactivatedState dEACTIVATED;
 
-  // Keeps a record of all tickets purchased by this account.
-  private Set<Ticket> ticketHistory;
+  // Keeps a record of all tickets purchased by this account. The log is
+  // usually shared by every account, and holds encoded records rather than the
+  // tickets themselves.
+  private TicketHistoryLog ticketHistory;
 
   // Contains all of the observers registered to this particular account
   private Set<AccountStateObserver> accountStateObservers;
@@ -37,10 +64,62 @@ public class UserAccount {
   private String firstName;
   private String lastName;
   private String email;
-  private double funds;
+  // References the current state that the account exists in, together with
+  // its funds. The funds are held in cents, so that balances are always exact.
+  private final AtomicReference<AccountBalance> balance;
+  // The budgets debits are made from when the account is shared by many
+  // riders, or null if every debit is made from the balance.
+  private final StripedBalance stripes;
+  // The journal that changes are made durable in, or null if the account
+  // only lives in memory.
+  private final TransactionJournal journal;
 
   public UserAccount(int accountID, String firstName, String lastName,
       String email) {
+    // Accounts created without a shared log keep a small log of their own,
+    // holding only their most recent purchases.
+    this(accountID, firstName, lastName, email,
+        new TicketHistoryLog(null, PRIVATE_HISTORY_SEGMENT_SIZE, PRIVATE_HISTORY_SEGMENTS));
+  }
+
+  public UserAccount(int accountID, String firstName, String lastName,
+      String email, TicketHistoryLog ticketHistory) {
+    this(accountID, firstName, lastName, email, ticketHistory, null);
+  }
+
+  /**
+   * Creates an account whose debits are made from striped budgets, for an
+   * account shared by many riders.
+   *
+   * @param accountID     the ID of the account.
+   * @param firstName     the first name of the account holder.
+   * @param lastName      the last name of the account holder.
+   * @param email         the email of the account holder.
+   * @param ticketHistory the log that purchased tickets are recorded in.
+   * @param stripes       the budgets that debits are made from, or null for
+   *                      every debit to be made from the balance.
+   */
+  public UserAccount(int accountID, String firstName, String lastName,
+      String email, TicketHistoryLog ticketHistory, StripedBalance stripes) {
+    this(accountID, firstName, lastName, email, ticketHistory, stripes, null);
+  }
+
+  /**
+   * Creates an account whose changes are written to a transaction journal.
+   *
+   * @param accountID     the ID of the account.
+   * @param firstName     the first name of the account holder.
+   * @param lastName      the last name of the account holder.
+   * @param email         the email of the account holder.
+   * @param ticketHistory the log that purchased tickets are recorded in.
+   * @param stripes       the budgets that debits are made from, or null for
+   *                      every debit to be made from the balance.
+   * @param journal       the journal that changes are written to, or null if
+   *                      the account only lives in memory.
+   */
+  public UserAccount(int accountID, String firstName, String lastName,
+      String email, TicketHistoryLog ticketHistory, StripedBalance stripes,
+      TransactionJournal journal) {
     // FindMutatorValidator is dependency injected into the state objects at
     // this level because it is the lowest encapsulating element that does not
     // use the validator object. I find that the encapsulating level is the best
@@ -57,18 +136,20 @@ public class UserAccount {
     this.lastName = lastName;
     this.email = email;
 
-    // New accounts must always be initialised to 0, this will change if
-    // persistence is enabled.
-    funds = 0.0;
-
-    ticketHistory = new LinkedHashSet<>();
+    this.ticketHistory = ticketHistory;
 
-    accountStateObservers = new HashSet<>();
-    accountTransactionObservers = new HashSet<>();
+    // Observers are notified from whichever thread changes the account, so
+    // the sets must be safe to read while another thread subscribes.
+    accountStateObservers = new CopyOnWriteArraySet<>();
+    accountTransactionObservers = new CopyOnWriteArraySet<>();
 
-    // Account should always be initialised in GoodStanding. Accounts will only
-    // move to other standings depending on external events.
-    currentState = gOODSTANDING;
+    // New accounts must always be initialised to 0, this will change if
+    // persistence is enabled. Account should always be initialised in
+    // GoodStanding. Accounts will only move to other standings depending on
+    // external events.
+    balance = new AtomicReference<>(new AccountBalance(0, 0, gOODSTANDING));
+    this.stripes = stripes;
+    this.journal = journal;
 
     LOGGER.info(() -> "New account created: " + this.toString());
   }
@@ -90,12 +171,63 @@ public class UserAccount {
     return email;
   }
 
-  public double getFunds() {
-    return funds;
+  /**
+   * Accessor for the funds held by the account.
+   *
+   * @return the balance of the account, in cents.
+   */
+  public long getFunds() {
+    return getBalance().getFunds();
+  }
+
+  /**
+   * Accessor for the funds, held funds and state of the account, all taken at
+   * the same moment. With a striped balance, budget spent from the stripes is
+   * added up separately, so while riders are tapping the snapshot may not
+   * include their latest debits.
+   *
+   * @return a snapshot of the balance.
+   */
+  public AccountBalance getBalance() {
+    AccountBalance current = balance.get();
+    if (stripes == null) {
+      return current;
+    }
+    // Spent budget has been debited, and is no longer held.
+    long spent = stripes.getSpent();
+    return new AccountBalance(current.getFunds() - spent, current.getHeld() - spent,
+        current.getState(), current.getVersion());
   }
 
   public String getState() {
-    return currentState.getAccountState();
+    return balance.get().getState().getAccountState();
+  }
+
+  /**
+   * Restores the funds and standing the account had in a previous run. Nothing
+   * is journalled and no observer is told, as nothing has changed since the
+   * previous run. Must be called before the account is used.
+   *
+   * @param funds   the funds of the account, in cents.
+   * @param status  the standing of the account.
+   * @param version the version of the balance, which later changes continue
+   *                on from.
+   */
+  public void restoreBalance(long funds, AccountStatus status, long version) {
+    AccountState state;
+    switch (status) {
+      case IN_DEBT:
+        state = iNDEBT;
+        break;
+      case DEACTIVATED:
+        state = dEACTIVATED;
+        break;
+      default:
+        state = gOODSTANDING;
+        break;
+    }
+    balance.set(new AccountBalance(funds, 0, state, version));
+    LOGGER.info(() -> "Account " + accountID + " has been restored: " + balance.get());
   }
 
   /**
@@ -127,41 +259,174 @@ public class UserAccount {
    * Method for crediting funds to the account. Leverages the state pattern
    * implemented with this class to define behaviour.
    *
-   * @param credit the amount to be credited to the account
+   * @param credit the amount to be credited to the account, in cents
+   * @return true if the account was credited.
    */
-  public void creditFunds(double credit) {
-    funds = currentState.creditFunds(credit, funds, this);
+  public boolean creditFunds(long credit) {
+    // Crediting an account in good standing or deactivated does not depend on
+    // its funds, and an account in debt has no budgets, so credits never need
+    // the budgets taken back.
+    return apply((state, current) -> state.creditFunds(credit, current, this),
+        Notify.TRANSACTION).isSuccess();
   }
 
   /**
    * Method for debiting funds to the account. Leverages the state pattern
    * implemented with this class to define behaviour.
    *
-   * @param debit the amount to be debited from the account
+   * @param debit the amount to be debited from the account, in cents
+   * @return true if the account was debited.
+   */
+  public boolean debitFunds(long debit) {
+    if (stripes == null) {
+      return apply((state, current) -> state.debitFunds(debit, current, this),
+          Notify.TRANSACTION).isSuccess();
+    }
+    // Budgets are only granted while the account could be debited by that
+    // much, so a debit that fits in the budget of a stripe needs nothing else
+    // checked. The state cannot change while a stripe has budget.
+    int stripe = stripes.stripeIndex();
+    AccountStatus status = balance.get().getState().getAccountStatus();
+    if (debit >= 0 && stripes.tryDebit(stripe, debit)) {
+      journalStripeDebit(debit, status);
+      notifyAccountTransactionObservers(AccountEventCode.DEBIT_SUCCEEDED, debit, status);
+      return true;
+    }
+    synchronized (stripes) {
+      return debitRefillingStripe(stripe, debit);
+    }
+  }
+
+  /**
+   * Sets funds aside for a purchase. The hold is accepted under the same
+   * rules as a debit, and the funds cannot be spent elsewhere until the hold
+   * is captured or released. Observers are only told if the hold is refused.
+   *
+   * @param amount the amount to be held, in cents.
+   * @return the hold, which must be captured or released if it was accepted.
    */
-  public void debitFunds(double debit) {
-    funds = currentState.debitFunds(debit, funds, this);
+  public FundsHold holdFunds(long amount) {
+    AccountTransition transition = applyExactly(
+        (state, current) -> state.holdFunds(amount, current, this), Notify.TRANSACTION);
+    return new FundsHold(this, amount, transition.getCode());
+  }
+
+  /**
+   * Debits funds that have been held. This always succeeds, even if the
+   * account has gone into debt since the funds were held.
+   *
+   * @param hold the hold to be captured.
+   */
+  public void captureFunds(FundsHold hold) {
+    captureFunds(hold, Collections.emptyList());
+  }
+
+  /**
+   * Debits funds that have been held for the purchase of tickets. The debit
+   * and the tickets are journalled in a single step, so after a crash either
+   * both are recovered or neither is.
+   *
+   * @param hold    the hold to be captured.
+   * @param tickets the tickets purchased, or none if the tickets are not
+   *                journalled.
+   */
+  public void captureFunds(FundsHold hold, List<? extends Ticket> tickets) {
+    hold.settle(this);
+    applyExactly((state, current) -> state.captureFunds(hold.getAmount(), current, this),
+        Notify.TRANSACTION, tickets);
+  }
+
+  /**
+   * Returns held funds to the available funds, when the purchase they were
+   * held for could not be made.
+   *
+   * @param hold the hold to be released.
+   */
+  public void releaseFunds(FundsHold hold) {
+    hold.settle(this);
+    apply((state, current) -> new AccountTransition(AccountEventCode.FUNDS_RELEASED,
+        hold.getAmount(), current.withHeld(current.getHeld() - hold.getAmount())),
+        Notify.TRANSACTION);
   }
 
   /**
    * Method for deactivating the account. Leverages the state pattern
    * implemented with this class to define behaviour.
+   *
+   * @return true if the account was deactivated.
    */
-  public void deactivateAccount() {
-    currentState.deactivateAccount(this);
+  public boolean deactivateAccount() {
+    return applyExactly((state, current) -> state.deactivateAccount(current, this),
+        Notify.STATE).isSuccess();
   }
 
   /**
-   * Adds a ticket to the ticket history set. Tickets must be unique, as they
-   * will form a set.
+   * Adds a ticket to the ticket history log.
    *
    * @param ticket the ticket to be added to the ticket history list
    */
   public void addTicketToTicketHistory(Ticket ticket) {
-    ticketHistory.add(ticket);
+    ticketHistory.append(accountID, ticket);
     LOGGER.info(() -> "Ticket added to account: " + ticket.toString());
   }
 
+  /**
+   * Adds a batch of tickets to the ticket history log.
+   *
+   * @param tickets the tickets to be added to the ticket history list
+   */
+  public void addTicketsToTicketHistory(Collection<? extends Ticket> tickets) {
+    for (Ticket ticket : tickets) {
+      ticketHistory.append(accountID, ticket);
+    }
+    LOGGER.info(() -> tickets.size() + " tickets added to account: " + accountID);
+  }
+
+  /**
+   * Counts the tickets purchased by this account.
+   *
+   * @return the number of tickets in the ticket history.
+   */
+  public int getTicketHistoryCount() {
+    return ticketHistory.countTickets(accountID);
+  }
+
+  /**
+   * Pages through the ticket history, newest ticket first.
+   *
+   * @param skip  the number of the newest tickets to skip over.
+   * @param limit the greatest number of tickets to return.
+   * @return the tickets on the requested page, as they were when purchased.
+   */
+  public List<Ticket> getNewestTickets(int skip, int limit) {
+    return ticketHistory.getNewestTickets(accountID, skip, limit);
+  }
+
+  /**
+   * Pages through the tickets purchased within a time range, oldest first.
+   *
+   * @param from  the start of the range, inclusive.
+   * @param to    the end of the range, exclusive.
+   * @param skip  the number of tickets in the range to skip over.
+   * @param limit the greatest number of tickets to return.
+   * @return the tickets on the requested page, as they were when purchased.
+   */
+  public List<Ticket> getTicketsPurchasedBetween(LocalDateTime from, LocalDateTime to,
+      int skip, int limit) {
+    return ticketHistory.getTicketsPurchasedBetween(accountID, from, to, skip, limit);
+  }
+
+  /**
+   * Counts the tickets in the ticket history purchased within a time range.
+   *
+   * @param from the start of the range, inclusive.
+   * @param to   the end of the range, exclusive.
+   * @return the number of tickets purchased within the range.
+   */
+  public int countTicketsPurchasedBetween(LocalDateTime from, LocalDateTime to) {
+    return ticketHistory.countTicketsPurchasedBetween(accountID, from, to);
+  }
+
   /**
    * Method allows the various account state classes leveraging the state
    * pattern to alter the state of the encapsulating class.
@@ -170,7 +435,221 @@ public class UserAccount {
    *                 the method successfully transitions state
    */
   public void setAccountState(AccountState newState) {
-    this.currentState = newState;
+    applyExactly((state, current) -> new AccountTransition(AccountEventCode.STATE_CHANGED, 0,
+        current.withState(newState)), Notify.NONE);
+  }
+
+  /**
+   * Debits the account when the stripe of the current thread does not have
+   * enough budget. The stripe is topped up from the available funds if it
+   * can be. Otherwise every budget is taken back, the debit is decided on the
+   * whole balance, and the stripe is given a new budget from what is left.
+   * Must be called while holding the lock on the stripes.
+   *
+   * @param stripe the index of the stripe of the current thread.
+   * @param debit  the amount to be debited, in cents.
+   * @return true if the account was debited.
+   */
+  private boolean debitRefillingStripe(int stripe, long debit) {
+    AccountStatus status = balance.get().getState().getAccountStatus();
+    // Other threads on the same stripe may spend the new budget first, in
+    // which case the stripe is topped up again until the funds run out.
+    while (debit >= 0 && grantBudget(stripe, debit)) {
+      if (stripes.tryDebit(stripe, debit)) {
+        journalStripeDebit(debit, status);
+        notifyAccountTransactionObservers(AccountEventCode.DEBIT_SUCCEEDED, debit, status);
+        return true;
+      }
+    }
+    reclaimBudgets();
+    boolean debited = apply((state, current) -> state.debitFunds(debit, current, this),
+        Notify.TRANSACTION).isSuccess();
+    grantBudget(stripe, 0);
+    return debited;
+  }
+
+  /**
+   * Holds funds for a stripe and adds them to its budget. Budgets are only
+   * granted from funds the account has available and under the rules for
+   * holding funds, so an account in debt is never granted a budget, and
+   * spending a budget can never take the account below zero. Must be called
+   * while holding the lock on the stripes.
+   *
+   * @param stripe the index of the stripe.
+   * @param needed the least budget that is of use, in cents.
+   * @return true if a budget was granted.
+   */
+  private boolean grantBudget(int stripe, long needed) {
+    AccountTransition transition = apply((state, current) -> {
+      long grant = Math.min(Math.max(stripes.getBudgetPerStripe(), needed),
+          current.getAvailable());
+      if (grant <= 0 || grant < needed) {
+        return AccountTransition.rejected(AccountEventCode.DEBIT_REJECTED_ARREARS, needed,
+            current);
+      }
+      return state.holdFunds(grant, current, this);
+    }, Notify.NONE);
+    if (transition.getCode() != AccountEventCode.FUNDS_HELD) {
+      return false;
+    }
+    stripes.grant(stripe, transition.getAmount());
+    return true;
+  }
+
+  /**
+   * Takes back the budget of every stripe. Spent budget has already been
+   * reported as debits, so it is taken from the funds without notifying
+   * anyone, and unspent budget is returned to the available funds. Must be
+   * called while holding the lock on the stripes.
+   */
+  private void reclaimBudgets() {
+    long granted = stripes.getGranted();
+    if (granted == 0) {
+      return;
+    }
+    long unspent = stripes.reclaimAll();
+    long spent = granted - unspent;
+    // Debits from the stripes were journalled as they were made, so taking
+    // them from the funds is not journalled again.
+    apply((state, current) -> new AccountTransition(AccountEventCode.FUNDS_RELEASED, unspent,
+        current.withFunds(current.getFunds() - spent, current.getHeld() - granted, state)),
+        Notify.NONE, false);
+  }
+
+  /**
+   * Journals a debit made from the budget of a stripe, waiting for it to be
+   * durable. The debit does not change the balance, so it records no
+   * version, and the standing of the account is left to the changes that do.
+   *
+   * @param debit  the amount debited, in cents.
+   * @param status the standing of the account.
+   */
+  private void journalStripeDebit(long debit, AccountStatus status) {
+    if (journal != null) {
+      journal.awaitDurable(journal.appendFundsChanged(accountID, -debit, status, 0));
+    }
+  }
+
+  /**
+   * Applies a request that depends on the exact balance. With a striped
+   * balance, every budget is taken back first, and no budget can be granted
+   * until the request has been applied.
+   *
+   * @param request the request to be put to the current state.
+   * @param notify  the observers to be told of the outcome.
+   * @return the transition that was applied.
+   */
+  private AccountTransition applyExactly(BalanceRequest request, Notify notify) {
+    return applyExactly(request, notify, Collections.emptyList());
+  }
+
+  /**
+   * Applies a request that depends on the exact balance, journalling the
+   * tickets it paid for along with it.
+   *
+   * @param request   the request to be put to the current state.
+   * @param notify    the observers to be told of the outcome.
+   * @param purchased the tickets paid for by the request.
+   * @return the transition that was applied.
+   */
+  private AccountTransition applyExactly(BalanceRequest request, Notify notify,
+      List<? extends Ticket> purchased) {
+    if (stripes == null) {
+      return apply(request, notify, true, purchased);
+    }
+    synchronized (stripes) {
+      reclaimBudgets();
+      return apply(request, notify, true, purchased);
+    }
+  }
+
+  /**
+   * Applies a request, journalling any change it makes.
+   *
+   * @param request the request to be put to the current state.
+   * @param notify  the observers to be told of the outcome.
+   * @return the transition that was applied.
+   */
+  private AccountTransition apply(BalanceRequest request, Notify notify) {
+    return apply(request, notify, true, Collections.emptyList());
+  }
+
+  /**
+   * Applies a request, journalling any change it makes only if asked to.
+   *
+   * @param request    the request to be put to the current state.
+   * @param notify     the observers to be told of the outcome.
+   * @param journalled whether the change is to be journalled.
+   * @return the transition that was applied.
+   */
+  private AccountTransition apply(BalanceRequest request, Notify notify, boolean journalled) {
+    return apply(request, notify, journalled, Collections.emptyList());
+  }
+
+  /**
+   * Asks the current state for the outcome of a request and applies it. If
+   * another thread changes the balance first, the compare and set fails and
+   * the state that is now current is asked again. Any change to the funds or
+   * state is journalled, and observers are only notified once the new
+   * balance is in place and durable.
+   *
+   * @param request    the request to be put to the current state.
+   * @param notify     the observers to be told of the outcome.
+   * @param journalled whether the change is to be journalled.
+   * @param purchased  the tickets paid for by the change, which are
+   *                   journalled in the same step.
+   * @return the transition that was applied.
+   */
+  private AccountTransition apply(BalanceRequest request, Notify notify, boolean journalled,
+      List<? extends Ticket> purchased) {
+    AccountBalance current;
+    AccountTransition transition;
+    do {
+      current = balance.get();
+      transition = request.decide(current.getState(), current);
+    } while (transition.getBalance() != current &&
+        !balance.compareAndSet(current, transition.getBalance()));
+
+    AccountTransition applied = transition;
+    AccountStatus oldStatus = current.getState().getAccountStatus();
+    AccountStatus newStatus = applied.getBalance().getState().getAccountStatus();
+    // Held funds are not restored after a restart, so only changes to the
+    // funds or the state need to be journalled.
+    long change = applied.getBalance().getFunds() - current.getFunds();
+    if (journal != null && journalled && !purchased.isEmpty()) {
+      journal.awaitDurable(journal.appendPurchase(accountID, purchased, change, newStatus,
+          applied.getBalance().getVersion()));
+    } else if (journal != null && journalled && (change != 0 || oldStatus != newStatus)) {
+      journal.awaitDurable(journal.appendFundsChanged(accountID, change, newStatus,
+          applied.getBalance().getVersion()));
+    }
+    if (notify == Notify.NONE) {
+      return applied;
+    }
+    LOGGER.info(() -> "Account " + accountID + ": " + applied.getCode() + " of " +
+        Money.format(applied.getAmount()) + ", now " + applied.getBalance());
+
+    // Whenever the account changes state, the observers must be notified.
+    if (oldStatus != newStatus) {
+      notifyAccountStateObservers(AccountEventCode.STATE_CHANGED, oldStatus, newStatus);
+    }
+    switch (applied.getCode()) {
+      case STATE_CHANGED:
+      case FUNDS_HELD:
+      case FUNDS_RELEASED:
+        // Nothing was credited or debited, and any change of state has
+        // already been sent.
+        break;
+      default:
+        if (notify == Notify.TRANSACTION) {
+          // The transaction is reported in the state it was made in.
+          notifyAccountTransactionObservers(applied.getCode(), applied.getAmount(), oldStatus);
+        } else {
+          notifyAccountStateObservers(applied.getCode(), oldStatus, newStatus);
+        }
+        break;
+    }
+    return applied;
   }
 
   /**
@@ -198,4 +677,122 @@ public class UserAccount {
       obs.accountTransactionEventOccured(newEvent);
     }
   }
+
+  /**
+   * Notifies the observers of a state change, or of a failed attempt to
+   * change state. The event is only created if there is an observer to
+   * receive it.
+   *
+   * @param code      what happened.
+   * @param oldStatus the standing of the account before the event.
+   * @param newStatus the standing of the account after the event.
+   */
+  protected void notifyAccountStateObservers(AccountEventCode code,
+      AccountStatus oldStatus, AccountStatus newStatus) {
+    if (!accountStateObservers.isEmpty()) {
+      notifyAccountStateObservers(new AccountEvent(accountID, code, 0, oldStatus, newStatus));
+    }
+  }
+
+  /**
+   * Notifies the observers of a transaction. The event is only created if
+   * there is an observer to receive it.
+   *
+   * @param code   what happened.
+   * @param amount the amount credited or debited, in cents.
+   * @param status the standing of the account, which transactions leave
+   *               unchanged.
+   */
+  protected void notifyAccountTransactionObservers(AccountEventCode code, long amount,
+      AccountStatus status) {
+    if (!accountTransactionObservers.isEmpty()) {
+      notifyAccountTransactionObservers(new AccountEvent(accountID, code, amount, status, status));
+    }
+  }
+
+  /**
+   * The observers told of the outcome of a request.
+   */
+  private enum Notify {
+    TRANSACTION,
+    STATE,
+    // Used for bookkeeping that is not seen by the account holder.
+    NONE
+  }
+
+  /**
+   * A request to be put to the state of the account.
+   */
+  @FunctionalInterface
+  private interface BalanceRequest {
+    /**
+     * Decides the outcome of the request.
+     *
+     * @param state   the state the account is in.
+     * @param current the balance of the account.
+     * @return the outcome of the request.
+     */
+    AccountTransition decide(AccountState state, AccountBalance current);
+  }
+
+  /**
+   * Funds set aside in an account for a purchase that is still being made.
+   * The hold keeps the funds from being spent elsewhere until the purchase
+   * either captures them, which debits the account, or releases them, which
+   * returns them to the available funds. A hold can only be settled once.
+   */
+  public static final class FundsHold {
+    private final UserAccount account;
+    private final long amount;
+    private final AccountEventCode code;
+    private final AtomicBoolean settled;
+
+    private FundsHold(UserAccount account, long amount, AccountEventCode code) {
+      this.account = account;
+      this.amount = amount;
+      this.code = code;
+      // Refused holds have nothing to settle.
+      this.settled = new AtomicBoolean(!code.isSuccess());
+    }
+
+    public long getAmount() {
+      return amount;
+    }
+
+    /**
+     * Accessor for the outcome of the request for the hold, which says why
+     * the hold was refused.
+     *
+     * @return the outcome of the request.
+     */
+    public AccountEventCode getCode() {
+      return code;
+    }
+
+    /**
+     * Whether the funds were set aside. A refused hold cannot be captured.
+     *
+     * @return true if the funds are held.
+     */
+    public boolean isHeld() {
+      return code.isSuccess();
+    }
+
+    /**
+     * Marks the hold as settled, checking that it belongs to the given
+     * account and has not been settled already.
+     *
+     * @param settlingAccount the account the hold is being settled against.
+     */
+    private void settle(UserAccount settlingAccount) {
+      if (settlingAccount != account) {
+        throw new AccountFundsException("Funds held in account " + account.getAccountID() +
+            " cannot be settled against account " + settlingAccount.getAccountID());
+      }
+      if (!settled.compareAndSet(false, true)) {
+        throw new AccountFundsException("Hold of " + Money.format(amount) +
+            " has already been settled, or was never held");
+      }
+    }
+  }
 }
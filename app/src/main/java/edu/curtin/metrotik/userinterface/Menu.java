@@ -1,6 +1,8 @@
 package edu.curtin.metrotik.userinterface;
 
 import edu.curtin.metrotik.controller.MainController;
+import edu.curtin.metrotik.useraccounts.AccountFundsException;
+import edu.curtin.metrotik.useraccounts.Money;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -42,10 +44,13 @@ public class Menu {
     do {
       System.out.println(
           "Please enter the amount of funds you would like to add, or enter 0 to return to the previous menu: ");
+      String amount = input.next();
+      // The newline character must be consumed after the next() method
+      input.nextLine();
       try {
-        double funds = input.nextDouble();
-        // The newline character must be consumed after the nextDouble() method
-        input.nextLine();
+        // The amount is read as text and converted to cents exactly, so that
+        // amounts such as 0.10 are not rounded on the way in.
+        long funds = Money.parse(amount);
 
         repeatInputCapture = false;
 
@@ -56,8 +61,10 @@ public class Menu {
 
         // The controller handles the request to add funds.
         controller.addFunds(funds);
-      } catch (InputMismatchException e) {
+      } catch (NumberFormatException e) {
         System.out.println("Invalid input, please enter a number only.");
+      } catch (AccountFundsException e) {
+        System.out.println("Invalid input, please enter a positive amount in dollars and cents.");
       }
     } while (repeatInputCapture);
   }
@@ -107,7 +114,7 @@ public class Menu {
     boolean repeatInputCapture = true;
     do {
       System.out.println(
-          "Please enter 1 for a timed ticket, 2 for a zone ticket, or enter 0 to return to the previous menu: ");
+          "Please enter 1 for a timed ticket, 2 for a zone ticket, 3 for a group of zone tickets, or enter 0 to return to the previous menu: ");
       try {
         String selection = input.nextLine();
         repeatInputCapture = false;
@@ -123,8 +130,12 @@ public class Menu {
             // The user has chosen to purchase a zone ticket.
             zoneTicketPurchase();
             break;
+          case "3":
+            // The user has chosen to purchase several zone tickets at once.
+            zoneTicketBatchPurchase();
+            break;
           default:
-            System.out.println("Invalid input, please enter 1, 2, or 0.");
+            System.out.println("Invalid input, please enter 1, 2, 3, or 0.");
             break;
         }
 
@@ -203,4 +214,43 @@ public class Menu {
       }
     } while (repeatInputCapture);
   }
+
+  /**
+   * Method to handle user input for purchasing a group of zone tickets.
+   */
+  private void zoneTicketBatchPurchase() {
+    boolean repeatInputCapture = true;
+    do {
+      System.out.println(
+          "Please enter the number of tickets, followed by the number of zones on each ticket, or enter 0 to return to the previous menu: ");
+      try {
+        int count = input.nextInt();
+        // If the user enters 0, return to the previous menu.
+        if (count == 0) {
+          input.nextLine();
+          return;
+        }
+        int zones = input.nextInt();
+        // The newline character must be consumed after the nextInt() method
+        input.nextLine();
+
+        repeatInputCapture = false;
+
+        if (zones == 0) {
+          return;
+        }
+
+        // The controller handles the request to purchase the tickets. If the
+        // user does not have sufficient funds, they are notified.
+        if (!controller.requestZoneTicketBatchPurchase(count, zones)) {
+          System.out.println(
+              "You do not have sufficient funds to purchase these zone tickets. Please add funds to your account.");
+          return;
+        }
+      } catch (InputMismatchException e) {
+        input.nextLine();
+        System.out.println("Invalid input, please enter integers only.");
+      }
+    } while (repeatInputCapture);
+  }
 }
@@ -1,48 +1,247 @@
 package edu.curtin.metrotik.userinterface;
 
-import edu.curtin.metrotik.ticketing.Ticket;
+import edu.curtin.metrotik.ticketing.TicketEventType;
 import edu.curtin.metrotik.ticketing.TicketObserver;
 import edu.curtin.metrotik.useraccounts.AccountEvent;
+import edu.curtin.metrotik.useraccounts.AccountEventCode;
 import edu.curtin.metrotik.useraccounts.AccountStateObserver;
 import edu.curtin.metrotik.useraccounts.AccountTransactionObserver;
-import java.util.LinkedList;
-import java.util.Queue;
+import edu.curtin.metrotik.useraccounts.Money;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
 
 /**
  * This class is responsible for recieving information based on various events
  * that occur throughout program, and displaying them to the user. A queue is
  * implemented which stores each of the events as they occur in order, which are
  * then organised into a readable format whenever the program "ticks" through a
- * cycle.
+ * cycle. Events may be delivered from the thread of an event bus, so the queue
+ * can be added to from any thread.
+ *
+ * The queue is bounded, so that notifications cannot build up without limit
+ * when nothing is printing them. What happens to a notification that arrives
+ * while the queue is full is decided by the overflow policy. When the queue is
+ * printed, repeated notifications are grouped together, and the whole batch is
+ * written to the screen at once. Account events are queued as they are, and
+ * their messages are only put together here, once per group.
+ *
+ * @author Kyer Potts
  */
 public class NotificationHandler implements TicketObserver,
     AccountStateObserver,
     AccountTransactionObserver {
-  private Queue<String> notificationQueue = new LinkedList<>();
+  private static final Logger LOGGER = Logger.getLogger(NotificationHandler.class.getName());
+  private static final int DEFAULT_CAPACITY = 1024;
+  // How long a blocked thread waits before checking the queue again.
+  private static final long BLOCK_NANOS = 100_000;
+  // Grouped ticket notifications list at most this many ticket IDs.
+  private static final int MAX_LISTED_TICKETS = 10;
+  private static final NotificationQueue.NotificationConsumer DISCARD = (kind, event,
+      ticketID) -> {
+  };
+
+  private final NotificationQueue notificationQueue;
+  private final OverflowPolicy overflowPolicy;
+  // Notifications discarded to make room under the drop oldest policy.
+  private final AtomicLong droppedCount;
+  // Notifications counted rather than queued under the coalesce policy, by
+  // kind.
+  private final AtomicLongArray coalescedCounts;
+
+  public NotificationHandler() {
+    this(DEFAULT_CAPACITY, OverflowPolicy.COALESCE);
+  }
+
+  /**
+   * Creates a handler with a queue of the given size.
+   *
+   * @param capacity       the least number of notifications that can be held
+   *                       between prints.
+   * @param overflowPolicy what to do with notifications that arrive while the
+   *                       queue is full.
+   */
+  public NotificationHandler(int capacity, OverflowPolicy overflowPolicy) {
+    this.notificationQueue = new NotificationQueue(capacity);
+    this.overflowPolicy = overflowPolicy;
+    this.droppedCount = new AtomicLong(0);
+    this.coalescedCounts = new AtomicLongArray(NotificationKind.values().length);
+  }
 
   @Override
   public void accountTransactionEventOccured(AccountEvent accountEvent) {
-    notificationQueue.add(accountEvent.getMessage());
+    enqueue(accountEvent.isEventSuccess() ? NotificationKind.TRANSACTION
+        : NotificationKind.FAILED_TRANSACTION, accountEvent, 0);
   }
 
   @Override
   public void accountStateUpdated(AccountEvent accountEvent) {
-    notificationQueue.add(accountEvent.getMessage());
+    enqueue(NotificationKind.ACCOUNT_STATE, accountEvent, 0);
   }
 
   @Override
-  public void invalidateTicket(Ticket ticket) {
-    String invalidTicketMessage = "Ticket ID: " + ticket.getTicketID() + " is now invalid.";
-    notificationQueue.add(invalidTicketMessage);
+  public void ticketEventOccurred(long ticketID, TicketEventType eventType) {
+    // The text of a ticket notification is only built when it is printed.
+    enqueue(NotificationKind.TICKET, null, ticketID);
   }
 
   /**
-   * Method loops through all notifications that have accumulated throughout a
-   * tick of the program running and prints them to the screen.
+   * Method takes all notifications that have accumulated throughout a tick of
+   * the program running, groups repeated notifications together, and prints
+   * them to the screen in a single write.
    */
   public void printNotifications() {
-    while (!notificationQueue.isEmpty()) {
-      System.out.println(notificationQueue.poll());
+    StringBuilder batch = new StringBuilder();
+    long dropped = droppedCount.getAndSet(0);
+    if (dropped > 0) {
+      batch.append(dropped).append(" older notifications were dropped.")
+          .append(System.lineSeparator());
+    }
+    NotificationBatch grouper = new NotificationBatch(batch);
+    notificationQueue.drainTo(grouper);
+    grouper.finish();
+    for (NotificationKind kind : NotificationKind.values()) {
+      long coalesced = coalescedCounts.getAndSet(kind.ordinal(), 0);
+      if (coalesced > 0) {
+        batch.append(coalesced).append(" further ").append(kind.getDescription())
+            .append(" notifications were coalesced.").append(System.lineSeparator());
+      }
+    }
+    if (batch.length() > 0) {
+      System.out.print(batch);
+    }
+  }
+
+  /**
+   * Adds a notification to the queue, applying the overflow policy if the
+   * queue is full.
+   *
+   * @param kind     the kind of notification.
+   * @param event    the account event, or null for a ticket notification.
+   * @param ticketID the ID of the ticket, for a ticket notification.
+   */
+  private void enqueue(NotificationKind kind, AccountEvent event, long ticketID) {
+    if (notificationQueue.offer(kind, event, ticketID)) {
+      return;
+    }
+    switch (overflowPolicy) {
+      case DROP_OLDEST:
+        while (!notificationQueue.offer(kind, event, ticketID)) {
+          if (notificationQueue.poll(DISCARD)) {
+            droppedCount.incrementAndGet();
+          }
+        }
+        break;
+      case BLOCK:
+        LOGGER.info(() -> "Notification queue is full, waiting for it to be printed");
+        while (!notificationQueue.offer(kind, event, ticketID)) {
+          LockSupport.parkNanos(BLOCK_NANOS);
+        }
+        break;
+      default:
+        coalescedCounts.incrementAndGet(kind.ordinal());
+        break;
+    }
+  }
+
+  /**
+   * Groups notifications as they are taken from the queue. A run of
+   * successful credits or debits is written as a single line with their
+   * total, a run of identical notifications is written once with a count, and
+   * a run of ticket notifications is written as a single line listing the
+   * tickets.
+   */
+  private static class NotificationBatch implements NotificationQueue.NotificationConsumer {
+    private final StringBuilder batch;
+    private NotificationKind runKind;
+    private AccountEvent runEvent;
+    private int runCount;
+    // The sum of the amounts in the run, in cents.
+    private long runTotal;
+    private final StringBuilder runTickets;
+
+    private NotificationBatch(StringBuilder batch) {
+      this.batch = batch;
+      this.runTickets = new StringBuilder();
+    }
+
+    @Override
+    public void accept(NotificationKind kind, AccountEvent event, long ticketID) {
+      boolean sameRun = kind == runKind &&
+          (kind == NotificationKind.TICKET || sameGroup(event, runEvent));
+      if (!sameRun) {
+        finish();
+        runKind = kind;
+        runEvent = event;
+      }
+      if (kind == NotificationKind.TICKET && runCount < MAX_LISTED_TICKETS) {
+        if (runCount > 0) {
+          runTickets.append(", ");
+        }
+        runTickets.append(ticketID);
+      }
+      if (event != null) {
+        runTotal += event.getAmount();
+      }
+      runCount++;
+    }
+
+    /**
+     * Decides whether two account events are shown together. Successful
+     * credits and debits are grouped whatever their amounts, and any other
+     * events are grouped when they would show the same message.
+     *
+     * @param event the event taken from the queue.
+     * @param first the first event of the current run.
+     * @return true if the event belongs to the current run.
+     */
+    private static boolean sameGroup(AccountEvent event, AccountEvent first) {
+      if (event.getCode() != first.getCode()) {
+        return false;
+      }
+      if (isTotalled(event.getCode())) {
+        return true;
+      }
+      return event.getAmount() == first.getAmount() &&
+          event.getOldStatus() == first.getOldStatus() &&
+          event.getNewStatus() == first.getNewStatus();
+    }
+
+    private static boolean isTotalled(AccountEventCode code) {
+      return code == AccountEventCode.CREDIT_SUCCEEDED ||
+          code == AccountEventCode.DEBIT_SUCCEEDED;
+    }
+
+    /**
+     * Writes out the current run of notifications.
+     */
+    private void finish() {
+      if (runCount == 1 && runKind == NotificationKind.TICKET) {
+        batch.append("Ticket ID: ").append(runTickets).append(" is now invalid.");
+      } else if (runKind == NotificationKind.TICKET) {
+        batch.append("Ticket IDs: ").append(runTickets);
+        if (runCount > MAX_LISTED_TICKETS) {
+          batch.append(" and ").append(runCount - MAX_LISTED_TICKETS).append(" others");
+        }
+        batch.append(" are now invalid.");
+      } else if (runCount == 1) {
+        batch.append(runEvent.getMessage());
+      } else if (runCount > 1 && isTotalled(runEvent.getCode())) {
+        batch.append(runCount).append(
+            runEvent.getCode() == AccountEventCode.CREDIT_SUCCEEDED ? " credits" : " debits")
+            .append(" totalling: ").append(Money.format(runTotal)).append(" successful.");
+      } else if (runCount > 1) {
+        batch.append(runEvent.getMessage()).append(" (x").append(runCount).append(')');
+      }
+      if (runCount > 0) {
+        batch.append(System.lineSeparator());
+      }
+      runKind = null;
+      runEvent = null;
+      runCount = 0;
+      runTotal = 0;
+      runTickets.setLength(0);
     }
   }
 }
@@ -0,0 +1,24 @@
+package edu.curtin.metrotik.userinterface;
+
+/**
+ * The kinds of notification shown to the user. Notifications of the same kind
+ * are grouped together when they are shown.
+ *
+ * @author Kyer Potts
+ */
+public enum NotificationKind {
+  TRANSACTION("account transaction"),
+  FAILED_TRANSACTION("failed transaction"),
+  ACCOUNT_STATE("account state"),
+  TICKET("ticket");
+
+  private final String description;
+
+  NotificationKind(String description) {
+    this.description = description;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+}
@@ -0,0 +1,159 @@
+package edu.curtin.metrotik.userinterface;
+
+import edu.curtin.metrotik.useraccounts.AccountEvent;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded queue of notifications held in a ring of preallocated slots. Any
+ * number of threads may add to the queue, and notifications are taken from it
+ * in the order they were added. No locks are taken.
+ *
+ * Each slot holds a sequence number that says whether it is ready to be
+ * written or read. A thread adding a notification claims the tail with
+ * compare and set once the slot there is free, fills it, and then moves the
+ * slot sequence on to hand it to readers. Taking a notification works the
+ * same way from the head. As taking is also claimed with compare and set, a
+ * thread adding to a full queue may take the oldest notification to make room.
+ *
+ * Notifications are stored as their kind, the account event and a ticket ID,
+ * so no notification needs any text until it is shown.
+ *
+ * @author Kyer Potts
+ */
+public class NotificationQueue {
+  private final int mask;
+  private final AtomicLongArray sequences;
+  private final NotificationKind[] kinds;
+  private final AccountEvent[] events;
+  private final long[] ticketIDs;
+  private final AtomicLong head;
+  private final AtomicLong tail;
+
+  /**
+   * Creates a queue that holds at least the given number of notifications.
+   * The capacity is rounded up to a power of two.
+   *
+   * @param capacity the least number of notifications the queue can hold.
+   */
+  public NotificationQueue(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    mask = size - 1;
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    kinds = new NotificationKind[size];
+    events = new AccountEvent[size];
+    ticketIDs = new long[size];
+    head = new AtomicLong(0);
+    tail = new AtomicLong(0);
+  }
+
+  /**
+   * Adds a notification to the tail of the queue, unless it is full.
+   *
+   * @param kind     the kind of notification.
+   * @param event    the account event, or null for a ticket notification.
+   * @param ticketID the ID of the ticket, for a ticket notification.
+   * @return true if the notification was added, or false if the queue is full.
+   */
+  public boolean offer(NotificationKind kind, AccountEvent event, long ticketID) {
+    long position = tail.get();
+    while (true) {
+      int slot = (int) position & mask;
+      long difference = sequences.get(slot) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          kinds[slot] = kind;
+          events[slot] = event;
+          ticketIDs[slot] = ticketID;
+          sequences.set(slot, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        // The slot still holds a notification from the previous lap, so the
+        // queue is full.
+        return false;
+      } else {
+        // Another thread has claimed this position already.
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Takes the notification at the head of the queue and hands it to the
+   * consumer.
+   *
+   * @param consumer the consumer to be given the notification.
+   * @return true if a notification was taken, or false if the queue is empty.
+   */
+  public boolean poll(NotificationConsumer consumer) {
+    long position = head.get();
+    while (true) {
+      int slot = (int) position & mask;
+      long difference = sequences.get(slot) - (position + 1);
+      if (difference == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          NotificationKind kind = kinds[slot];
+          AccountEvent event = events[slot];
+          long ticketID = ticketIDs[slot];
+          // The event is released so the queue does not keep it reachable.
+          events[slot] = null;
+          sequences.set(slot, position + mask + 1);
+          consumer.accept(kind, event, ticketID);
+          return true;
+        }
+        position = head.get();
+      } else if (difference < 0) {
+        // Nothing has been published into the slot yet, so the queue is
+        // empty.
+        return false;
+      } else {
+        position = head.get();
+      }
+    }
+  }
+
+  /**
+   * Takes every notification currently in the queue, in order, and hands
+   * each to the consumer.
+   *
+   * @param consumer the consumer to be given the notifications.
+   * @return the number of notifications taken.
+   */
+  public int drainTo(NotificationConsumer consumer) {
+    int drained = 0;
+    while (poll(consumer)) {
+      drained++;
+    }
+    return drained;
+  }
+
+  /**
+   * Accessor for the number of notifications the queue can hold.
+   *
+   * @return the capacity of the queue.
+   */
+  public int getCapacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Contract for receiving notifications taken from the queue.
+   */
+  @FunctionalInterface
+  public interface NotificationConsumer {
+    /**
+     * Called with each notification taken from the queue.
+     *
+     * @param kind     the kind of notification.
+     * @param event    the account event, or null for a ticket
+     *                 notification.
+     * @param ticketID the ID of the ticket, for a ticket notification.
+     */
+    public void accept(NotificationKind kind, AccountEvent event, long ticketID);
+  }
+}
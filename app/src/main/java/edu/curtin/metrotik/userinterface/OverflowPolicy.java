@@ -0,0 +1,20 @@
+package edu.curtin.metrotik.userinterface;
+
+/**
+ * What the notification handler does with a notification that arrives while
+ * its queue is full.
+ *
+ * @author Kyer Potts
+ */
+public enum OverflowPolicy {
+  // The oldest queued notification is discarded to make room, and the number
+  // discarded is reported with the next batch.
+  DROP_OLDEST,
+  // The thread delivering the notification waits until the queue is drained.
+  // This must only be used when notifications are delivered from a thread
+  // other than the one printing them, such as that of an event bus.
+  BLOCK,
+  // The notification is not queued, but counted with the others of its kind,
+  // and the counts are reported with the next batch.
+  COALESCE
+}
@@ -0,0 +1,86 @@
+package edu.curtin.metrotik;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs tasks on threads of their own and releases them all at once, so that
+ * they contend as closely as they can. An assertion that fails on one of the
+ * threads is rethrown to the test, wrapped in an ExecutionException.
+ *
+ * @author Kyer Potts
+ */
+public final class ConcurrentRunner {
+  private static final long TIMEOUT_SECONDS = 120;
+
+  private ConcurrentRunner() {
+  }
+
+  /**
+   * Runs each task on a thread of its own, starting them together.
+   *
+   * @param tasks the tasks to be run.
+   * @return the time from the tasks being released to the last of them
+   *         finishing, in nanoseconds.
+   */
+  public static long runTogether(List<? extends Callable<?>> tasks)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (Callable<?> task : tasks) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return task.call();
+        }));
+      }
+      long begin = System.nanoTime();
+      start.countDown();
+      for (Future<?> result : results) {
+        result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      }
+      return System.nanoTime() - begin;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs the same task on several threads, starting them together.
+   *
+   * @param threads the number of threads.
+   * @param task    the task, which is given the index of the thread it runs
+   *                on.
+   * @return the time from the tasks being released to the last of them
+   *         finishing, in nanoseconds.
+   */
+  public static long runTogether(int threads, ThreadTask task)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int thread = 0; thread < threads; thread++) {
+      int index = thread;
+      tasks.add(() -> {
+        task.run(index);
+        return null;
+      });
+    }
+    return runTogether(tasks);
+  }
+
+  /**
+   * The work done by one of the threads.
+   */
+  @FunctionalInterface
+  public interface ThreadTask {
+    void run(int thread);
+  }
+}
@@ -0,0 +1,73 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Checks that the views handed out by a columnar zone ticket chain spend the
+ * allocation held in its columns, whichever order they are travelled on in,
+ * and that a view of an exhausted ticket never spends the allocation of a
+ * ticket that has since reused its slot.
+ *
+ * @author Kyer Potts
+ */
+public class ColumnarZoneTicketChainTest {
+  private static final int TICKETS = 5000;
+
+  @Test
+  public void travellingOnEveryViewExhaustsTheChain() {
+    ColumnarZoneTicketChain chain = filledChain(TICKETS, 2);
+    for (ZoneTicket view : chain.getTickets()) {
+      assertEquals(2, view.travelZones(2, System.currentTimeMillis()));
+      assertEquals(0, view.getZoneAllocation());
+    }
+    assertTrue(chain.isEmpty());
+    assertEquals(0, chain.getRemainingAllocation());
+  }
+
+  @Test
+  public void viewsTravelledOutOfOrderKeepTheChainInStep() {
+    ColumnarZoneTicketChain chain = filledChain(5, 3);
+    List<ZoneTicket> views = chain.getTickets();
+    assertEquals(3, views.get(2).claimZones(3));
+    assertEquals(0, views.get(2).claimZones(1));
+    assertEquals(1, views.get(4).claimZones(1));
+    assertEquals(4, chain.getTicketCount());
+    assertEquals(11, chain.getRemainingAllocation());
+
+    // The chain pays from the front, passing over the exhausted ticket.
+    TravelReceipt receipt = new TravelReceipt(10);
+    assertEquals(10, chain.travelZones(10, System.currentTimeMillis(), receipt));
+    assertEquals(List.of(1L, 2L, 4L, 5L),
+        receipt.getPayments().keySet().stream().sorted().toList());
+    assertEquals(1, views.get(4).getZoneAllocation());
+    assertEquals(1, chain.getRemainingAllocation());
+  }
+
+  @Test
+  public void viewOfExhaustedTicketCannotSpendItsReusedSlot() {
+    ColumnarZoneTicketChain chain = filledChain(1, 2);
+    ZoneTicket exhausted = chain.getTickets().get(0);
+    assertEquals(2, exhausted.claimZones(2));
+    chain.addTicket(new ZoneTicket(2, LocalDateTime.now(), 4));
+
+    assertEquals(0, exhausted.claimZones(1));
+    assertEquals(0, exhausted.getZoneAllocation());
+    assertEquals(4, chain.getRemainingAllocation());
+    assertEquals(4, chain.getTickets().get(0).getZoneAllocation());
+  }
+
+  private static ColumnarZoneTicketChain filledChain(int tickets, int zones) {
+    ColumnarZoneTicketChain chain = new ColumnarZoneTicketChain();
+    LocalDateTime purchased = LocalDateTime.now();
+    for (long id = 1; id <= tickets; id++) {
+      chain.addTicket(new ZoneTicket(id, purchased, zones));
+    }
+    return chain;
+  }
+}
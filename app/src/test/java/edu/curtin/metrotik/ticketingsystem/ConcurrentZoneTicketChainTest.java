@@ -0,0 +1,111 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.curtin.metrotik.ConcurrentRunner;
+import edu.curtin.metrotik.ticketing.ZoneTicket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * Hammers a concurrent zone ticket chain with threads adding tickets and
+ * threads travelling on them at the same time. Every zone allocated to a
+ * ticket must end up either claimed by exactly one journey or still left in
+ * the chain, and no ticket may pay for more zones than it was allocated.
+ *
+ * @author Kyer Potts
+ */
+public class ConcurrentZoneTicketChainTest {
+  private static final int ADDING_THREADS = 2;
+  private static final int TRAVELLING_THREADS = 4;
+  private static final int TICKETS_PER_THREAD = 2000;
+  private static final int JOURNEYS_PER_THREAD = 4000;
+  private static final int MAX_ZONES = 5;
+
+  @Test
+  public void zonesClaimedAndRemainingEqualZonesAllocated()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    ConcurrentZoneTicketChain chain = new ConcurrentZoneTicketChain();
+    Map<Long, Integer> allocated = new ConcurrentHashMap<>();
+    Map<Long, Integer> claimed = new ConcurrentHashMap<>();
+    AtomicLong zonesTravelled = new AtomicLong();
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int thread = 0; thread < ADDING_THREADS; thread++) {
+      long firstID = (long) thread * TICKETS_PER_THREAD + 1;
+      tasks.add(() -> {
+        for (long id = firstID; id < firstID + TICKETS_PER_THREAD; id++) {
+          int zones = (int) (id % MAX_ZONES) + 1;
+          allocated.put(id, zones);
+          chain.addTicket(new ZoneTicket(id, LocalDateTime.now(), zones));
+        }
+        return null;
+      });
+    }
+    for (int thread = 0; thread < TRAVELLING_THREADS; thread++) {
+      int firstZones = thread;
+      tasks.add(() -> {
+        for (int journey = 0; journey < JOURNEYS_PER_THREAD; journey++) {
+          int zones = (firstZones + journey) % MAX_ZONES + 1;
+          TravelReceipt receipt = new TravelReceipt(zones);
+          int paid = chain.travelZones(zones, System.currentTimeMillis(), receipt);
+          assertTrue("A journey is paid for in full or not at all",
+              paid == 0 || paid == zones);
+          assertEquals(paid, receipt.getZonesTravelled());
+          zonesTravelled.addAndGet(paid);
+          receipt.getPayments().forEach((id, zonesPaid) -> claimed.merge(id, zonesPaid,
+              Integer::sum));
+        }
+        return null;
+      });
+    }
+
+    ConcurrentRunner.runTogether(tasks);
+
+    long zonesAllocated = allocated.values().stream().mapToLong(Integer::longValue).sum();
+    long zonesClaimed = claimed.values().stream().mapToLong(Integer::longValue).sum();
+    long zonesRemaining = chain.getTickets().stream()
+        .mapToLong(ZoneTicket::getZoneAllocation).sum();
+    assertEquals(zonesTravelled.get(), zonesClaimed);
+    assertEquals(zonesAllocated, zonesClaimed + zonesRemaining);
+    assertEquals(zonesRemaining, chain.getRemainingAllocation());
+    for (Map.Entry<Long, Integer> entry : claimed.entrySet()) {
+      assertTrue("Ticket " + entry.getKey() + " was over-claimed",
+          entry.getValue() <= allocated.get(entry.getKey()));
+    }
+    for (ZoneTicket ticket : chain.getTickets()) {
+      assertEquals("Ticket " + ticket.getTicketID() + " lost zones",
+          (int) allocated.get(ticket.getTicketID()),
+          ticket.getZoneAllocation() + claimed.getOrDefault(ticket.getTicketID(), 0));
+    }
+  }
+
+  @Test
+  public void exhaustedChainRefusesEveryJourney()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    ConcurrentZoneTicketChain chain = new ConcurrentZoneTicketChain();
+    int tickets = 500;
+    for (long id = 1; id <= tickets; id++) {
+      chain.addTicket(new ZoneTicket(id, LocalDateTime.now(), 2));
+    }
+    AtomicLong zonesTravelled = new AtomicLong();
+    ConcurrentRunner.runTogether(TRAVELLING_THREADS, thread -> {
+      // Far more journeys are attempted than the chain can pay for.
+      for (int journey = 0; journey < tickets; journey++) {
+        zonesTravelled.addAndGet(chain.travelZones(3, System.currentTimeMillis(),
+            new TravelReceipt(3)));
+      }
+    });
+    long zonesAllocated = tickets * 2L;
+    assertEquals(zonesAllocated - zonesAllocated % 3, zonesTravelled.get());
+    assertEquals(zonesAllocated % 3, chain.getRemainingAllocation());
+  }
+}
@@ -0,0 +1,73 @@
+package edu.curtin.metrotik.ticketingsystem;
+
+import static org.junit.Assert.assertEquals;
+
+import edu.curtin.metrotik.ticketing.TimedTicket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that the expiry wheel expires every ticket at the end of the tick its
+ * validity window ends in, however far it is moved at once, including over
+ * idle spells far longer than any of its levels.
+ *
+ * @author Kyer Potts
+ */
+public class TicketExpiryWheelTest {
+  private static final long TICK_MILLIS = 60_000;
+  private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+  private static final long YEAR_MILLIS = 365 * DAY_MILLIS;
+  private static final int TICKETS = 2000;
+
+  @Test
+  public void ticketsExpireInTheTickTheirWindowEnds() {
+    TicketExpiryWheel wheel = new TicketExpiryWheel(0, TICK_MILLIS);
+    List<Long> expiryTicks = new ArrayList<>();
+    for (int id = 0; id < TICKETS; id++) {
+      // Windows are spread over two months, with a few years beyond the
+      // reach of the lower levels.
+      long validFrom = id % 100 == 0 ? (id / 100 + 1) * YEAR_MILLIS
+          : id * 37 * TICK_MILLIS + id % 3 * 1000;
+      TimedTicket ticket = new TimedTicket(id, LocalDateTime.now(), validFrom);
+      expiryTicks.add((ticket.getValidToMillis() + TICK_MILLIS - 1) / TICK_MILLIS);
+      wheel.schedule(ticket);
+    }
+    assertEquals(TICKETS, wheel.getScheduledCount());
+
+    Random random = new Random(7);
+    long tick = 0;
+    int remaining = TICKETS;
+    while (remaining > 0) {
+      // Mostly short steps, with the odd idle spell of a year.
+      long nextTick = tick + (random.nextInt(10) == 0 ? YEAR_MILLIS / TICK_MILLIS
+          : 1 + random.nextInt(5000));
+      long from = tick;
+      long expected = expiryTicks.stream().filter(t -> t > from && t <= nextTick).count();
+      assertEquals("Tickets expired moving to tick " + nextTick, expected,
+          wheel.advanceTo(nextTick * TICK_MILLIS));
+      remaining -= (int) expected;
+      assertEquals(remaining, wheel.getScheduledCount());
+      tick = nextTick;
+    }
+  }
+
+  @Test
+  public void idleWheelMovesStraightToTheTarget() {
+    TicketExpiryWheel wheel = new TicketExpiryWheel(0, TICK_MILLIS);
+    long later = 1000 * YEAR_MILLIS;
+    assertEquals(0, wheel.advanceTo(later));
+
+    // The wheel is now at the later time, so a ticket whose window has
+    // already ended there is expired straight away.
+    wheel.schedule(new TimedTicket(1, LocalDateTime.now(), later - DAY_MILLIS - TICK_MILLIS));
+    assertEquals(0, wheel.getScheduledCount());
+    wheel.schedule(new TimedTicket(2, LocalDateTime.now(), later - DAY_MILLIS + TICK_MILLIS));
+    assertEquals(1, wheel.getScheduledCount());
+    assertEquals(0, wheel.advanceTo(later));
+    assertEquals(1, wheel.advanceTo(later + TICK_MILLIS));
+    assertEquals(0, wheel.getScheduledCount());
+  }
+}
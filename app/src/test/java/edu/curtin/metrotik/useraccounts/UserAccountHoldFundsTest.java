@@ -0,0 +1,68 @@
+package edu.curtin.metrotik.useraccounts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import edu.curtin.metrotik.ConcurrentRunner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Checks that holding funds for purchases follows the rule for debits: an
+ * account in good standing may be overdrawn by one purchase, and is then in
+ * debt. Purchases racing each other must not each be granted that overdraft.
+ *
+ * @author Kyer Potts
+ */
+public class UserAccountHoldFundsTest {
+  private static final int THREADS = 8;
+  private static final int PURCHASES_PER_THREAD = 50;
+  private static final long OPENING_FUNDS = 250;
+  private static final long PRICE = 100;
+
+  @Test
+  public void concurrentPurchasesOverdrawTheAccountOnce()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    UserAccount account = new UserAccount(1, "Jimmy", "Barnes", "jimmy.barnes@yahoo.com");
+    assertTrue(account.creditFunds(OPENING_FUNDS));
+    AtomicInteger purchases = new AtomicInteger();
+    ConcurrentRunner.runTogether(THREADS, thread -> {
+      for (int i = 0; i < PURCHASES_PER_THREAD; i++) {
+        UserAccount.FundsHold hold = account.holdFunds(PRICE);
+        if (hold.isHeld()) {
+          account.captureFunds(hold);
+          purchases.incrementAndGet();
+        }
+      }
+    });
+
+    // Two purchases are paid for, and the third overdraws the account.
+    AccountBalance balance = account.getBalance();
+    assertEquals(3, purchases.get());
+    assertEquals(OPENING_FUNDS - purchases.get() * PRICE, balance.getFunds());
+    assertTrue("Debt must stay within one purchase", balance.getFunds() > -PRICE);
+    assertEquals(0, balance.getHeld());
+    assertEquals(AccountStatus.IN_DEBT, balance.getState().getAccountStatus());
+  }
+
+  @Test
+  public void holdPastZeroRefusesFurtherHoldsUntilSettled() {
+    UserAccount account = new UserAccount(1, "Jimmy", "Barnes", "jimmy.barnes@yahoo.com");
+    assertTrue(account.creditFunds(OPENING_FUNDS));
+    UserAccount.FundsHold overdraft = account.holdFunds(OPENING_FUNDS + PRICE);
+    assertTrue(overdraft.isHeld());
+    // The account is still in good standing, as nothing has been debited.
+    assertEquals(AccountStatus.GOOD_STANDING,
+        account.getBalance().getState().getAccountStatus());
+
+    UserAccount.FundsHold refused = account.holdFunds(PRICE);
+    assertFalse(refused.isHeld());
+    assertEquals(AccountEventCode.HOLD_REJECTED_OVERDRAWN, refused.getCode());
+
+    account.releaseFunds(overdraft);
+    assertTrue(account.holdFunds(PRICE).isHeld());
+  }
+}